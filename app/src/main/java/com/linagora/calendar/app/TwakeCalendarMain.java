@@ -73,12 +73,18 @@ import com.linagora.calendar.dav.DavModule;
 import com.linagora.calendar.restapi.RestApiModule;
 import com.linagora.calendar.saas.contact.CommonContactPublisherModule;
 import com.linagora.calendar.smtp.SmtpModule;
+import com.linagora.calendar.storage.AlarmOutbox;
+import com.linagora.calendar.storage.AlarmOutboxConfigurationModule;
 import com.linagora.calendar.storage.CaffeineOIDCTokenCache;
 import com.linagora.calendar.storage.FileUploadConfigurationModule;
+import com.linagora.calendar.storage.MemoryAlarmOutbox;
+import com.linagora.calendar.storage.MemoryPresenceRegistry;
 import com.linagora.calendar.storage.MemoryStorageModule;
 import com.linagora.calendar.storage.OIDCTokenCache;
 import com.linagora.calendar.storage.OIDCTokenCacheConfigurationModule;
 import com.linagora.calendar.storage.OpenPaaSUserDeletionTaskStep;
+import com.linagora.calendar.storage.PresenceConfigurationModule;
+import com.linagora.calendar.storage.PresenceRegistry;
 import com.linagora.calendar.storage.TechnicalUserTokenModule;
 import com.linagora.calendar.storage.configuration.ReadOnlyPropertyProviderModule;
 import com.linagora.calendar.storage.eventsearch.CalendarSearchDeletionTaskStep;
@@ -86,9 +92,11 @@ import com.linagora.calendar.storage.eventsearch.MemoryCalendarSearchService;
 import com.linagora.calendar.storage.ldap.LdapStorageModule;
 import com.linagora.calendar.storage.mongodb.MongoDBStorageModule;
 import com.linagora.calendar.storage.opensearch.OpensearchCalendarSearchModule;
+import com.linagora.calendar.storage.redis.RedisAlarmOutboxModule;
 import com.linagora.calendar.storage.redis.RedisCommonModule;
 import com.linagora.calendar.storage.redis.RedisEventBusModule;
 import com.linagora.calendar.storage.redis.RedisOIDCModule;
+import com.linagora.calendar.storage.redis.RedisPresenceModule;
 import com.linagora.calendar.webadmin.CalendarRoutesModule;
 import com.linagora.calendar.webadmin.DomainMembersSyncRouteModule;
 import com.linagora.calendar.webadmin.DomainTasksModule;
@@ -217,7 +225,9 @@ public class TwakeCalendarMain {
             return Modules.combine(new RedisCommonModule(),
                 new OIDCTokenCacheConfigurationModule(),
                 new RedisOIDCModule(),
-                new RedisEventBusModule());
+                new RedisEventBusModule(),
+                new RedisAlarmOutboxModule(),
+                new RedisPresenceModule());
         }
         return new AbstractModule() {
             @Override
@@ -225,6 +235,12 @@ public class TwakeCalendarMain {
                 install(new OIDCTokenCacheConfigurationModule());
                 bind(CaffeineOIDCTokenCache.class).in(Scopes.SINGLETON);
                 bind(OIDCTokenCache.class).to(CaffeineOIDCTokenCache.class);
+                install(new AlarmOutboxConfigurationModule());
+                bind(MemoryAlarmOutbox.class).in(Scopes.SINGLETON);
+                bind(AlarmOutbox.class).to(MemoryAlarmOutbox.class);
+                install(new PresenceConfigurationModule());
+                bind(MemoryPresenceRegistry.class).in(Scopes.SINGLETON);
+                bind(PresenceRegistry.class).to(MemoryPresenceRegistry.class);
                 bind(RetryBackoffConfiguration.class).toInstance(RetryBackoffConfiguration.DEFAULT);
                 bind(EventBus.Configuration.class).toInstance(new EventBus.Configuration(EventBus.DEFAULT_MAX_CONCURRENCY, Optional.empty()));
                 bind(EventDelivery.class).to(InVmEventDelivery.class);
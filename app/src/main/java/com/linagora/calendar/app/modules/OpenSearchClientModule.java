@@ -23,10 +23,16 @@ import org.apache.james.backends.opensearch.IndexName;
 import org.apache.james.backends.opensearch.OpenSearchHealthCheck;
 import org.apache.james.backends.opensearch.ReactorOpenSearchClient;
 import org.apache.james.core.healthcheck.HealthCheck;
+import org.apache.james.utils.InitializationOperation;
+import org.apache.james.utils.InitilizationOperationBuilder;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Scopes;
+import com.google.inject.multibindings.MapBinder;
 import com.google.inject.multibindings.Multibinder;
+import com.google.inject.multibindings.ProvidesIntoSet;
+import com.linagora.calendar.storage.audit.AuditTrailSink;
+import com.linagora.calendar.storage.opensearch.OpensearchAuditTrailSink;
 
 public class OpenSearchClientModule extends AbstractModule {
 
@@ -40,5 +46,17 @@ public class OpenSearchClientModule extends AbstractModule {
             .to(OpenSearchHealthCheck.class);
 
         Multibinder.newSetBinder(binder(), IndexName.class);
+
+        bind(OpensearchAuditTrailSink.class).in(Scopes.SINGLETON);
+        MapBinder.newMapBinder(binder(), String.class, AuditTrailSink.class)
+            .addBinding(OpensearchAuditTrailSink.NAME)
+            .to(OpensearchAuditTrailSink.class);
+    }
+
+    @ProvidesIntoSet
+    InitializationOperation createAuditTrailIndex(OpensearchAuditTrailSink.IndexCreator instance) {
+        return InitilizationOperationBuilder
+            .forClass(OpensearchAuditTrailSink.IndexCreator.class)
+            .init(instance::createIndexMapping);
     }
 }
@@ -32,6 +32,8 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
@@ -227,10 +229,61 @@ class DisplayAlarmWebsocketFlowIntegrationTest {
                   .replace("{eventStartTime}", start.toInstant().toString());
 
             assertThatJson(alarmMessage)
+                .whenIgnoringPaths("alarms[0].cursor")
                 .isEqualTo(expected);
+            assertThatJson(alarmMessage)
+                .node("alarms[0].cursor")
+                .isString();
         });
     }
 
+    @Test
+    void shouldReplayDisplayAlarmMissedWhileDisconnected(TwakeCalendarGuiceServer server) throws Exception {
+        AlarmEventStoreProbe alarmStore = server.getProbe(AlarmEventStoreProbe.class);
+
+        // GIVEN: Bob creates an event with a DISPLAY alarm
+        String eventUid = UUID.randomUUID().toString();
+        String ics = buildEventICSWithDisplayAlarm(eventUid, bob.username().asString());
+        davTestHelper.upsertCalendar(bob, ics, eventUid);
+
+        awaitAtMost
+            .untilAsserted(() -> assertThat(alarmStore.find(eventUid, bob.username().asString())).isPresent());
+
+        // WHEN: the alarm triggers while Bob has no websocket opened
+        Calendar calendar = CalendarUtil.parseIcs(ics);
+        ZonedDateTime start = EventParseUtils.getStartTime((VEvent) calendar.getComponents("VEVENT").getFirst());
+        clock.setInstant(start.minus(TRIGGER).plusSeconds(1).toInstant());
+
+        awaitAtMost
+            .untilAsserted(() -> assertThat(alarmStore.find(eventUid, bob.username().asString())).isEmpty());
+
+        // AND: Bob reconnects, enabling display notifications from the beginning of his outbox
+        BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        webSocket = connectWebSocket(restApiPort, generateTicket(bob), messages);
+        webSocket.send("{\"enableDisplayNotification\": true, \"alarmCursor\": \"0-0\"}");
+
+        // THEN: Bob receives the missed alarm
+        String alarmMessage = awaitMessage(messages, msg -> msg.contains("eventSummary"));
+        assertThatJson(alarmMessage)
+            .node("alarms[0].eventSummary")
+            .isStringEqualTo("Display Alarm Test");
+        String cursor = JsonPath.from(alarmMessage).getString("alarms[0].cursor");
+
+        // AND: resuming from the received cursor replays nothing more
+        webSocket.close(1000, "reconnect");
+        BlockingQueue<String> resumedMessages = new LinkedBlockingQueue<>();
+        webSocket = connectWebSocket(restApiPort, generateTicket(bob), resumedMessages);
+        webSocket.send("{\"enableDisplayNotification\": true, \"alarmCursor\": \"" + cursor + "\"}");
+
+        awaitMessage(resumedMessages, msg -> msg.contains("displayNotificationEnabled"));
+        TimeUnit.SECONDS.sleep(2);
+        List<String> received = new ArrayList<>();
+        resumedMessages.drainTo(received);
+        assertThat(received)
+            .as("No alarm should be replayed after the last received cursor")
+            .noneMatch(msg -> msg.contains("eventSummary"));
+    }
+
     @Test
     void shouldNotReceiveDisplayAlarmFromDifferentUser(TwakeCalendarGuiceServer server) throws Exception {
         AlarmEventStoreProbe alarmStore = server.getProbe(AlarmEventStoreProbe.class);
@@ -0,0 +1,367 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.app.restapi.routes;
+
+import static net.javacrumbs.jsonunit.assertj.JsonAssertions.assertThatJson;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.apache.james.core.Username;
+import org.apache.james.events.Event;
+import org.apache.james.events.EventBus;
+import org.apache.james.utils.GuiceProbe;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.google.common.base.Splitter;
+import com.google.inject.Inject;
+import com.google.inject.multibindings.Multibinder;
+import com.linagora.calendar.app.AppTestHelper;
+import com.linagora.calendar.app.TwakeCalendarConfiguration;
+import com.linagora.calendar.app.TwakeCalendarExtension;
+import com.linagora.calendar.app.TwakeCalendarGuiceServer;
+import com.linagora.calendar.app.modules.CalendarDataProbe;
+import com.linagora.calendar.dav.DavModuleTestHelper;
+import com.linagora.calendar.dav.SabreDavExtension;
+import com.linagora.calendar.restapi.RestApiServerProbe;
+import com.linagora.calendar.storage.CalendarChangeEvent;
+import com.linagora.calendar.storage.CalendarURL;
+import com.linagora.calendar.storage.CalendarURLRegistrationKey;
+import com.linagora.calendar.storage.OpenPaaSUser;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import reactor.core.Disposable;
+import reactor.netty.http.client.HttpClient;
+
+class ServerSentEventsRouteTest {
+    private static final String PASSWORD = "secret";
+    private static final Duration AWAIT_TIMEOUT = Duration.ofSeconds(10);
+    private static final HttpClient HTTP_CLIENT = HttpClient.create()
+        .responseTimeout(Duration.ofMinutes(1));
+
+    static class EventBusProbe implements GuiceProbe {
+        private final EventBus eventBus;
+
+        @Inject
+        EventBusProbe(EventBus eventBus) {
+            this.eventBus = eventBus;
+        }
+
+        public void dispatch(CalendarChangeEvent event, CalendarURL calendarURL) {
+            eventBus.dispatch(event, new CalendarURLRegistrationKey(calendarURL))
+                .block();
+        }
+    }
+
+    record ReceivedEvent(Optional<String> id, String data) {
+    }
+
+    @RegisterExtension
+    @Order(1)
+    static SabreDavExtension sabreDavExtension = SabreDavExtension.shared();
+
+    @RegisterExtension
+    @Order(2)
+    static TwakeCalendarExtension twakeCalendarExtension = new TwakeCalendarExtension(
+        TwakeCalendarConfiguration.builder()
+            .configurationFromClasspath()
+            .userChoice(TwakeCalendarConfiguration.UserChoice.MEMORY)
+            .dbChoice(TwakeCalendarConfiguration.DbChoice.MONGODB),
+        AppTestHelper.OIDC_BY_PASS_MODULE,
+        DavModuleTestHelper.FROM_SABRE_EXTENSION.apply(sabreDavExtension),
+        binder -> Multibinder.newSetBinder(binder, GuiceProbe.class)
+            .addBinding().to(EventBusProbe.class));
+
+    private OpenPaaSUser bob;
+    private OpenPaaSUser alice;
+    private int restApiPort;
+    private final List<Disposable> connections = new ArrayList<>();
+
+    @BeforeEach
+    void setUp(TwakeCalendarGuiceServer server) throws Exception {
+        this.bob = sabreDavExtension.newTestUser(Optional.of("bob"));
+        this.alice = sabreDavExtension.newTestUser(Optional.of("alice"));
+
+        CalendarDataProbe calendarDataProbe = server.getProbe(CalendarDataProbe.class);
+        calendarDataProbe.addDomain(bob.username().getDomainPart().get());
+        calendarDataProbe.addUserToRepository(bob.username(), PASSWORD);
+        calendarDataProbe.addUserToRepository(alice.username(), PASSWORD);
+
+        restApiPort = server.getProbe(RestApiServerProbe.class).getPort().getValue();
+    }
+
+    @AfterEach
+    void tearDown() {
+        connections.forEach(Disposable::dispose);
+        connections.clear();
+    }
+
+    @Test
+    void sseShouldServeAnEventStream() {
+        int status = HTTP_CLIENT.headers(headers -> headers.add(HttpHeaderNames.AUTHORIZATION, basicAuth(bob.username())))
+            .get()
+            .uri(sseUri(""))
+            .response()
+            .doOnNext(response -> assertThat(response.responseHeaders().get(HttpHeaderNames.CONTENT_TYPE)).isEqualTo("text/event-stream"))
+            .map(response -> response.status().code())
+            .block(AWAIT_TIMEOUT);
+
+        assertThat(status).isEqualTo(200);
+    }
+
+    @Test
+    void sseShouldPushCalendarListRegisteredUponConnection() throws Exception {
+        BlockingQueue<ReceivedEvent> events = new LinkedBlockingQueue<>();
+        connect(bob.username(), "", Optional.empty(), events);
+
+        ReceivedEvent event = awaitEvent(events, data -> data.contains("calendarListRegistered"));
+
+        assertThatJson(event.data()).isEqualTo("{\"calendarListRegistered\":true}");
+        assertThat(event.id()).isPresent();
+    }
+
+    @Test
+    void sseShouldRejectUnauthenticatedRequests() {
+        int status = HTTP_CLIENT.get()
+            .uri(sseUri(""))
+            .response()
+            .map(response -> response.status().code())
+            .block(AWAIT_TIMEOUT);
+
+        assertThat(status).isEqualTo(401);
+    }
+
+    @Test
+    void sseShouldRejectUnsupportedSubscriptionResources() {
+        int status = HTTP_CLIENT.headers(headers -> headers.add(HttpHeaderNames.AUTHORIZATION, basicAuth(bob.username())))
+            .get()
+            .uri(sseUri("?register=/unsupported/resource"))
+            .response()
+            .map(response -> response.status().code())
+            .block(AWAIT_TIMEOUT);
+
+        assertThat(status).isEqualTo(400);
+    }
+
+    @Test
+    void sseShouldAcknowledgeRequestedSubscriptions() throws Exception {
+        String calendarUri = CalendarURL.from(bob.id()).asUri().toString();
+        BlockingQueue<ReceivedEvent> events = new LinkedBlockingQueue<>();
+        connect(bob.username(), "?register=" + calendarUri, Optional.empty(), events);
+
+        ReceivedEvent ack = awaitEvent(events, data -> data.contains("registered"));
+
+        assertThatJson(ack.data()).isEqualTo("""
+            {
+                "registered": ["%s"]
+            }
+            """.formatted(calendarUri));
+    }
+
+    @Test
+    void sseShouldReportForbiddenSubscriptions() throws Exception {
+        String aliceCalendarUri = CalendarURL.from(alice.id()).asUri().toString();
+        BlockingQueue<ReceivedEvent> events = new LinkedBlockingQueue<>();
+        connect(bob.username(), "?register=" + aliceCalendarUri, Optional.empty(), events);
+
+        ReceivedEvent ack = awaitEvent(events, data -> data.contains("notRegistered"));
+
+        assertThatJson(ack.data()).isEqualTo("""
+            {
+                "notRegistered": {
+                    "%s": "Forbidden"
+                }
+            }
+            """.formatted(aliceCalendarUri));
+    }
+
+    @Test
+    void sseShouldPushCalendarChanges(TwakeCalendarGuiceServer server) throws Exception {
+        CalendarURL calendarURL = CalendarURL.from(bob.id());
+        String calendarUri = calendarURL.asUri().toString();
+        BlockingQueue<ReceivedEvent> events = new LinkedBlockingQueue<>();
+        connect(bob.username(), "?register=" + calendarUri, Optional.empty(), events);
+        awaitEvent(events, data -> data.contains("registered"));
+
+        server.getProbe(EventBusProbe.class)
+            .dispatch(new CalendarChangeEvent(Event.EventId.random(), calendarURL), calendarURL);
+
+        ReceivedEvent pushed = awaitEvent(events, data -> data.contains("syncToken"));
+        assertThatJson(pushed.data()).isEqualTo("""
+            {
+                "%s": {
+                    "syncToken": "${json-unit.ignore}"
+                }
+            }
+            """.formatted(calendarUri));
+    }
+
+    @Test
+    void sseShouldResumeWithLastEventId(TwakeCalendarGuiceServer server) throws Exception {
+        CalendarURL calendarURL = CalendarURL.from(bob.id());
+        String calendarUri = calendarURL.asUri().toString();
+        BlockingQueue<ReceivedEvent> events = new LinkedBlockingQueue<>();
+        Disposable connection = connect(bob.username(), "?register=" + calendarUri, Optional.empty(), events);
+        String lastEventId = awaitEvent(events, data -> data.contains("registered")).id().orElseThrow();
+
+        // Notifications happening while disconnected are buffered
+        connection.dispose();
+        server.getProbe(EventBusProbe.class)
+            .dispatch(new CalendarChangeEvent(Event.EventId.random(), calendarURL), calendarURL);
+
+        BlockingQueue<ReceivedEvent> resumedEvents = new LinkedBlockingQueue<>();
+        connect(bob.username(), "?register=" + calendarUri, Optional.of(lastEventId), resumedEvents);
+
+        ReceivedEvent replayed = awaitEvent(resumedEvents, data -> data.contains("syncToken"));
+        assertThatJson(replayed.data()).node(calendarUri + ".syncToken").isPresent();
+        assertThat(replayed.id().orElseThrow()).isNotEqualTo(lastEventId);
+        assertThat(streamIdOf(replayed.id().orElseThrow())).isEqualTo(streamIdOf(lastEventId));
+    }
+
+    @Test
+    void sseShouldNotReplayEventsAlreadyReceivedUponResume() throws Exception {
+        BlockingQueue<ReceivedEvent> events = new LinkedBlockingQueue<>();
+        Disposable connection = connect(bob.username(), "", Optional.empty(), events);
+        String lastEventId = awaitEvent(events, data -> data.contains("calendarListRegistered")).id().orElseThrow();
+        connection.dispose();
+
+        BlockingQueue<ReceivedEvent> resumedEvents = new LinkedBlockingQueue<>();
+        connect(bob.username(), "", Optional.of(lastEventId), resumedEvents);
+
+        assertThat(resumedEvents.poll(2, TimeUnit.SECONDS)).isNull();
+    }
+
+    @Test
+    void sseShouldAcceptLastEventIdAsQueryParameter(TwakeCalendarGuiceServer server) throws Exception {
+        CalendarURL calendarURL = CalendarURL.from(bob.id());
+        String calendarUri = calendarURL.asUri().toString();
+        BlockingQueue<ReceivedEvent> events = new LinkedBlockingQueue<>();
+        Disposable connection = connect(bob.username(), "?register=" + calendarUri, Optional.empty(), events);
+        String lastEventId = awaitEvent(events, data -> data.contains("registered")).id().orElseThrow();
+
+        connection.dispose();
+        server.getProbe(EventBusProbe.class)
+            .dispatch(new CalendarChangeEvent(Event.EventId.random(), calendarURL), calendarURL);
+
+        BlockingQueue<ReceivedEvent> resumedEvents = new LinkedBlockingQueue<>();
+        connect(bob.username(), "?register=" + calendarUri + "&lastEventId=" + lastEventId, Optional.empty(), resumedEvents);
+
+        assertThatJson(awaitEvent(resumedEvents, data -> data.contains("syncToken")).data())
+            .node(calendarUri + ".syncToken").isPresent();
+    }
+
+    @Test
+    void sseShouldResetTheStreamWhenLastEventIdIsUnknown() throws Exception {
+        BlockingQueue<ReceivedEvent> events = new LinkedBlockingQueue<>();
+        connect(bob.username(), "", Optional.of("unknown-stream:12"), events);
+
+        ReceivedEvent first = awaitEvent(events, any -> true);
+        assertThatJson(first.data()).isEqualTo("{\"streamReset\":true}");
+        assertThatJson(awaitEvent(events, data -> data.contains("calendarListRegistered")).data())
+            .isEqualTo("{\"calendarListRegistered\":true}");
+    }
+
+    @Test
+    void sseShouldNotResumeTheStreamOfAnotherUser() throws Exception {
+        BlockingQueue<ReceivedEvent> bobEvents = new LinkedBlockingQueue<>();
+        Disposable connection = connect(bob.username(), "", Optional.empty(), bobEvents);
+        String bobEventId = awaitEvent(bobEvents, data -> data.contains("calendarListRegistered")).id().orElseThrow();
+        connection.dispose();
+
+        BlockingQueue<ReceivedEvent> aliceEvents = new LinkedBlockingQueue<>();
+        connect(alice.username(), "", Optional.of(bobEventId), aliceEvents);
+
+        ReceivedEvent first = awaitEvent(aliceEvents, any -> true);
+        assertThatJson(first.data()).isEqualTo("{\"streamReset\":true}");
+        assertThat(streamIdOf(first.id().orElseThrow())).isNotEqualTo(streamIdOf(bobEventId));
+    }
+
+    private Disposable connect(Username username, String query, Optional<String> lastEventId, BlockingQueue<ReceivedEvent> events) {
+        StringBuilder pending = new StringBuilder();
+        Disposable connection = HTTP_CLIENT.headers(headers -> {
+                headers.add(HttpHeaderNames.AUTHORIZATION, basicAuth(username));
+                lastEventId.ifPresent(id -> headers.add("Last-Event-ID", id));
+            })
+            .get()
+            .uri(sseUri(query))
+            .responseContent()
+            .asString(StandardCharsets.UTF_8)
+            .subscribe(chunk -> {
+                pending.append(chunk);
+                int separator;
+                while ((separator = pending.indexOf("\n\n")) >= 0) {
+                    parseEvent(pending.substring(0, separator)).ifPresent(events::offer);
+                    pending.delete(0, separator + 2);
+                }
+            });
+        connections.add(connection);
+        return connection;
+    }
+
+    private Optional<ReceivedEvent> parseEvent(String block) {
+        Optional<String> id = Optional.empty();
+        Optional<String> data = Optional.empty();
+        for (String line : Splitter.on('\n').split(block)) {
+            if (line.startsWith("id: ")) {
+                id = Optional.of(line.substring("id: ".length()));
+            }
+            if (line.startsWith("data: ")) {
+                data = Optional.of(line.substring("data: ".length()));
+            }
+        }
+        Optional<String> finalId = id;
+        return data.map(value -> new ReceivedEvent(finalId, value));
+    }
+
+    private ReceivedEvent awaitEvent(BlockingQueue<ReceivedEvent> events, Predicate<String> accept) throws InterruptedException {
+        long deadline = System.nanoTime() + AWAIT_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            ReceivedEvent event = events.poll(100, TimeUnit.MILLISECONDS);
+            if (event != null && accept.test(event.data())) {
+                return event;
+            }
+        }
+        throw new AssertionError("No server-sent event matched the expected condition");
+    }
+
+    private String streamIdOf(String eventId) {
+        return Splitter.on(':').splitToList(eventId).getFirst();
+    }
+
+    private String sseUri(String query) {
+        return "http://localhost:" + restApiPort + "/sse" + query;
+    }
+
+    private String basicAuth(Username username) {
+        return "Basic " + Base64.getEncoder().encodeToString((username.asString() + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,179 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import jakarta.inject.Inject;
+
+import org.apache.james.metrics.api.Metric;
+import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.metrics.api.TimeMetric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Limits the deliveries a consumer handles concurrently, tuning the limit from the handler latency and error rate.
+ *
+ * <p>The limit grows additively (by one every {@code limit} successes) as long as the handler latency stays close to
+ * the lowest latency observed, and shrinks multiplicatively when it degrades or when the handler fails, within the
+ * configured {@link AmqpConcurrencyConfiguration.Bounds}. The lowest latency slowly drifts up so that a durably slower
+ * downstream becomes the new normal instead of pinning the limit to its minimum.
+ *
+ * <p>Consumers set their prefetch and concurrency to the maximum bound: deliveries waiting for a slot are thus
+ * bounded by the prefetch.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    public static class Factory {
+        private final MetricFactory metricFactory;
+        private final AmqpConcurrencyConfiguration configuration;
+
+        @Inject
+        public Factory(MetricFactory metricFactory, AmqpConcurrencyConfiguration configuration) {
+            this.metricFactory = metricFactory;
+            this.configuration = configuration;
+        }
+
+        public AdaptiveConcurrencyLimiter create(String consumer) {
+            return new AdaptiveConcurrencyLimiter(consumer, configuration.boundsFor(consumer), metricFactory);
+        }
+    }
+
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double LATENCY_BACKOFF = 0.9;
+    private static final double ERROR_BACKOFF = 0.75;
+    private static final double BASELINE_DRIFT = 1.001;
+
+    private static class Slot {
+        private final Sinks.Empty<Void> granted = Sinks.empty();
+        private boolean acquired;
+        private long startedAt;
+    }
+
+    private final String consumer;
+    private final AmqpConcurrencyConfiguration.Bounds bounds;
+    private final TimeMetric latencyMetric;
+    private final Metric errorMetric;
+    private final Deque<Slot> waiting = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private long baselineNanos = Long.MAX_VALUE;
+
+    public AdaptiveConcurrencyLimiter(String consumer, AmqpConcurrencyConfiguration.Bounds bounds, MetricFactory metricFactory) {
+        this.consumer = consumer;
+        this.bounds = bounds;
+        this.latencyMetric = metricFactory.timer("calendar.amqp." + consumer + ".latency");
+        this.errorMetric = metricFactory.generate("calendar.amqp." + consumer + ".errors");
+        this.limit = bounds.min();
+    }
+
+    public int maxConcurrency() {
+        return bounds.max();
+    }
+
+    public <T> Mono<T> execute(Mono<T> task) {
+        return Mono.defer(() -> {
+            Slot slot = new Slot();
+            return acquire(slot)
+                .then(Mono.defer(() -> {
+                    slot.startedAt = System.nanoTime();
+                    return task;
+                }))
+                .doFinally(signal -> release(slot, signal));
+        });
+    }
+
+    private synchronized Mono<Void> acquire(Slot slot) {
+        if (waiting.isEmpty() && inFlight < currentLimit()) {
+            inFlight++;
+            slot.acquired = true;
+            return Mono.empty();
+        }
+        waiting.add(slot);
+        return slot.granted.asMono();
+    }
+
+    private void release(Slot slot, SignalType signal) {
+        List<Slot> granted = new ArrayList<>();
+        synchronized (this) {
+            if (!slot.acquired) {
+                waiting.remove(slot);
+                return;
+            }
+            inFlight--;
+            if (slot.startedAt != 0 && signal != SignalType.CANCEL) {
+                adjust(System.nanoTime() - slot.startedAt, signal == SignalType.ON_ERROR);
+            }
+            while (!waiting.isEmpty() && inFlight < currentLimit()) {
+                Slot next = waiting.poll();
+                next.acquired = true;
+                inFlight++;
+                granted.add(next);
+            }
+        }
+        granted.forEach(next -> next.granted.tryEmitEmpty());
+    }
+
+    private void adjust(long latencyNanos, boolean failed) {
+        latencyMetric.record(Duration.ofNanos(latencyNanos));
+        int previousLimit = currentLimit();
+
+        baselineNanos = Math.min(latencyNanos, (long) (baselineNanos * BASELINE_DRIFT));
+        if (failed) {
+            errorMetric.increment();
+            limit = Math.max(bounds.min(), limit * ERROR_BACKOFF);
+        } else if (latencyNanos > baselineNanos * LATENCY_TOLERANCE) {
+            limit = Math.max(bounds.min(), limit * LATENCY_BACKOFF);
+        } else {
+            limit = Math.min(bounds.max(), limit + 1 / limit);
+        }
+
+        if (currentLimit() != previousLimit) {
+            LOGGER.debug("Concurrency of consumer {} is now {}", consumer, currentLimit());
+        }
+    }
+
+    @VisibleForTesting
+    synchronized int currentLimit() {
+        return (int) limit;
+    }
+
+    @VisibleForTesting
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    @VisibleForTesting
+    synchronized int waiting() {
+        return waiting.size();
+    }
+}
@@ -0,0 +1,85 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import static org.apache.james.util.ReactorUtils.DEFAULT_CONCURRENCY;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.configuration2.Configuration;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Streams;
+
+/**
+ * Bounds within which {@link AdaptiveConcurrencyLimiter} tunes the in-flight deliveries of each consumer.
+ */
+public record AmqpConcurrencyConfiguration(Bounds defaultBounds,
+                                           Map<String, Bounds> consumerBounds) {
+
+    public record Bounds(int min, int max) {
+        public Bounds {
+            Preconditions.checkArgument(min > 0, "Minimum concurrency must be positive, got %s", min);
+            Preconditions.checkArgument(max >= min, "Maximum concurrency must not be lower than minimum concurrency, got %s < %s", max, min);
+        }
+    }
+
+    public static final String MIN_PROPERTY = "amqp.concurrency.min";
+    public static final String MAX_PROPERTY = "amqp.concurrency.max";
+    public static final Bounds BOUNDS_DEFAULT = new Bounds(1, DEFAULT_CONCURRENCY);
+
+    private static final String PROPERTY_PREFIX = "amqp.concurrency";
+    private static final Pattern CONSUMER_PROPERTY = Pattern.compile("amqp\\.concurrency\\.([^.]+)\\.(min|max)");
+
+    public static final AmqpConcurrencyConfiguration DEFAULT = new AmqpConcurrencyConfiguration(BOUNDS_DEFAULT, Map.of());
+
+    public static AmqpConcurrencyConfiguration parse(Configuration configuration) {
+        Bounds defaultBounds = new Bounds(configuration.getInt(MIN_PROPERTY, BOUNDS_DEFAULT.min()),
+            configuration.getInt(MAX_PROPERTY, BOUNDS_DEFAULT.max()));
+
+        ImmutableMap<String, Bounds> consumerBounds = Streams.stream(configuration.getKeys(PROPERTY_PREFIX))
+            .map(CONSUMER_PROPERTY::matcher)
+            .filter(Matcher::matches)
+            .map(matcher -> matcher.group(1))
+            .distinct()
+            .collect(ImmutableMap.toImmutableMap(consumer -> consumer, consumer -> new Bounds(
+                consumerBound(configuration, consumer, "min").orElse(defaultBounds.min()),
+                consumerBound(configuration, consumer, "max").orElse(defaultBounds.max()))));
+
+        return new AmqpConcurrencyConfiguration(defaultBounds, consumerBounds);
+    }
+
+    private static Optional<Integer> consumerBound(Configuration configuration, String consumer, String bound) {
+        return Optional.ofNullable(configuration.getInteger("%s.%s.%s".formatted(PROPERTY_PREFIX, consumer, bound), null));
+    }
+
+    public AmqpConcurrencyConfiguration {
+        Preconditions.checkNotNull(defaultBounds, "'defaultBounds' must not be null");
+        Preconditions.checkNotNull(consumerBounds, "'consumerBounds' must not be null");
+    }
+
+    public Bounds boundsFor(String consumer) {
+        return consumerBounds.getOrDefault(consumer, defaultBounds);
+    }
+}
@@ -0,0 +1,91 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.james.util.DurationParser;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Streams;
+
+/**
+ * Delays of the retry queues a failed delivery goes through before being dead-lettered. An empty list dead-letters
+ * failed deliveries straight away.
+ */
+public record AmqpRetryConfiguration(List<Duration> defaultDelays,
+                                     Map<String, List<Duration>> consumerDelays) {
+
+    public static final String DELAYS_PROPERTY = "amqp.retry.delays";
+    public static final List<Duration> DELAYS_DEFAULT = List.of(Duration.ofSeconds(1), Duration.ofSeconds(10),
+        Duration.ofMinutes(1), Duration.ofMinutes(10));
+
+    private static final String PROPERTY_PREFIX = "amqp.retry";
+    private static final Pattern CONSUMER_DELAYS_PROPERTY = Pattern.compile("amqp\\.retry\\.([^.]+)\\.delays");
+
+    public static final AmqpRetryConfiguration DEFAULT = new AmqpRetryConfiguration(DELAYS_DEFAULT, Map.of());
+    public static final AmqpRetryConfiguration DISABLED = new AmqpRetryConfiguration(List.of(), Map.of());
+
+    public static AmqpRetryConfiguration parse(Configuration configuration) {
+        List<Duration> defaultDelays = Optional.of(DELAYS_PROPERTY)
+            .filter(configuration::containsKey)
+            .map(property -> parseDelays(configuration, property))
+            .orElse(DELAYS_DEFAULT);
+
+        ImmutableMap.Builder<String, List<Duration>> consumerDelays = ImmutableMap.builder();
+        Streams.stream(configuration.getKeys(PROPERTY_PREFIX))
+            .map(CONSUMER_DELAYS_PROPERTY::matcher)
+            .filter(Matcher::matches)
+            .forEach(matcher -> consumerDelays.put(matcher.group(1), parseDelays(configuration, matcher.group())));
+
+        return new AmqpRetryConfiguration(defaultDelays, consumerDelays.build());
+    }
+
+    private static List<Duration> parseDelays(Configuration configuration, String property) {
+        return Arrays.stream(configuration.getStringArray(property))
+            .flatMap(value -> Splitter.on(',').trimResults().omitEmptyStrings().splitToStream(value))
+            .map(value -> DurationParser.parse(value, ChronoUnit.SECONDS))
+            .collect(ImmutableList.toImmutableList());
+    }
+
+    public AmqpRetryConfiguration {
+        Preconditions.checkNotNull(defaultDelays, "'defaultDelays' must not be null");
+        Preconditions.checkNotNull(consumerDelays, "'consumerDelays' must not be null");
+        Stream.concat(Stream.of(defaultDelays), consumerDelays.values().stream())
+            .flatMap(List::stream)
+            .forEach(delay -> Preconditions.checkArgument(delay.isPositive(), "Retry delays must be positive, got %s", delay));
+    }
+
+    public List<Duration> delaysFor(String consumer) {
+        return consumerDelays.getOrDefault(consumer, defaultDelays);
+    }
+}
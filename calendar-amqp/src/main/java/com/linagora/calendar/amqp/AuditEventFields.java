@@ -0,0 +1,109 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.base.Splitter;
+
+/**
+ * The few top-level fields of a Sabre message that the audit trail needs.
+ *
+ * <p>Messages may embed the whole event or contact (jCal / jCard): the parser streams over the body and skips
+ * every other value without materializing it.
+ */
+record AuditEventFields(Optional<String> owner,
+                        Optional<String> eventPath,
+                        Optional<String> calendarPath,
+                        Optional<String> uid,
+                        Optional<String> connectedUser) {
+
+    static final AuditEventFields EMPTY = new AuditEventFields(Optional.empty(), Optional.empty(), Optional.empty(),
+        Optional.empty(), Optional.empty());
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    static AuditEventFields parse(byte[] body) throws IOException {
+        String owner = null;
+        String eventPath = null;
+        String calendarPath = null;
+        String uid = null;
+        String connectedUser = null;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expecting a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value.isStructStart()) {
+                    parser.skipChildren();
+                    continue;
+                }
+                switch (field) {
+                    case "owner" -> owner = textOf(parser, value);
+                    case "eventPath" -> eventPath = textOf(parser, value);
+                    case "calendarPath" -> calendarPath = textOf(parser, value);
+                    case "uid" -> uid = textOf(parser, value);
+                    case "connectedUser" -> connectedUser = textOf(parser, value);
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        return new AuditEventFields(Optional.ofNullable(owner), Optional.ofNullable(eventPath), Optional.ofNullable(calendarPath),
+            Optional.ofNullable(uid), Optional.ofNullable(connectedUser).filter(user -> !user.isBlank()));
+    }
+
+    private static String textOf(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return parser.getText();
+    }
+
+    /**
+     * The owner of the resource: explicitly provided, or else deduced from the resource path.
+     */
+    Optional<String> resourceOwner() {
+        return owner.or(() -> path().flatMap(AuditEventFields::parseOwnerFromPath));
+    }
+
+    Optional<String> path() {
+        return eventPath.or(() -> calendarPath);
+    }
+
+    private static Optional<String> parseOwnerFromPath(String path) {
+        List<String> parts = Splitter.on('/')
+            .omitEmptyStrings()
+            .splitToList(path);
+        if (parts.size() >= 3) {
+            return Optional.of(parts.get(1));
+        }
+        return Optional.empty();
+    }
+}
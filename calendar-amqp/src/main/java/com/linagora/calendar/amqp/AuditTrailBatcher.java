@@ -0,0 +1,127 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linagora.calendar.storage.audit.AuditTrailEntry;
+import com.linagora.calendar.storage.audit.AuditTrailSink;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Groups the audit trail entries submitted within a short window, and writes them to the {@link AuditTrailSink} in
+ * one call. The publisher returned on submission completes once the batch holding the entry is written, so that the
+ * matching delivery is only acknowledged once its entry is persisted.
+ */
+class AuditTrailBatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuditTrailBatcher.class);
+    private static final Duration EMIT_RETRY_DURATION = Duration.ofSeconds(1);
+
+    private record Pending(AuditTrailEntry entry, Sinks.Empty<Void> written) {
+    }
+
+    private final AuditTrailSink sink;
+    private final AuditTrailConfiguration configuration;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private volatile Sinks.Many<Pending> pendings;
+    private volatile boolean running;
+    private Disposable subscription;
+
+    AuditTrailBatcher(AuditTrailSink sink, AuditTrailConfiguration configuration, AdaptiveConcurrencyLimiter limiter) {
+        this.sink = sink;
+        this.configuration = configuration;
+        this.limiter = limiter;
+    }
+
+    synchronized void start() {
+        running = true;
+        subscribe();
+    }
+
+    synchronized void stop() {
+        running = false;
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    private synchronized void subscribe() {
+        if (!running) {
+            return;
+        }
+        Sinks.Many<Pending> sink = Sinks.many().unicast().onBackpressureBuffer();
+        pendings = sink;
+        subscription = sink.asFlux()
+            .bufferTimeout(configuration.batchSize(), configuration.batchWindow(), true)
+            .flatMap(this::write, limiter.maxConcurrency())
+            .doOnDiscard(Pending.class, pending -> pending.written().tryEmitError(notRunning()))
+            .subscribe(any -> {
+            }, e -> {
+                LOGGER.error("Audit trail batching failed, subscribing again", e);
+                subscribe();
+            });
+    }
+
+    Mono<Void> submit(AuditTrailEntry entry) {
+        return Mono.defer(() -> {
+            Sinks.Many<Pending> sink = pendings;
+            if (!running || sink == null) {
+                return Mono.error(notRunning());
+            }
+            Pending pending = new Pending(entry, Sinks.empty());
+            emit(sink, pending);
+            return pending.written().asMono();
+        });
+    }
+
+    private void emit(Sinks.Many<Pending> sink, Pending pending) {
+        // Deliveries are handled concurrently: retry emissions racing with each other
+        long deadline = System.nanoTime() + EMIT_RETRY_DURATION.toNanos();
+        Sinks.EmitResult result = sink.tryEmitNext(pending);
+        while (result == Sinks.EmitResult.FAIL_NON_SERIALIZED && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+            result = sink.tryEmitNext(pending);
+        }
+        if (result.isFailure()) {
+            pending.written().tryEmitError(notRunning());
+        }
+    }
+
+    private static IllegalStateException notRunning() {
+        return new IllegalStateException("The audit trail batcher is not running");
+    }
+
+    private Mono<Void> write(List<Pending> batch) {
+        return limiter.execute(Mono.defer(() -> sink.write(batch.stream().map(Pending::entry).toList())))
+            .doOnSuccess(any -> batch.forEach(pending -> pending.written().tryEmitEmpty()))
+            .onErrorResume(e -> {
+                LOGGER.warn("Failed to write a batch of {} audit trail entries", batch.size(), e);
+                batch.forEach(pending -> pending.written().tryEmitError(e));
+                return Mono.empty();
+            });
+    }
+}
@@ -0,0 +1,65 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.Optional;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.james.util.DurationParser;
+
+import com.google.common.base.Preconditions;
+import com.linagora.calendar.storage.audit.LoggerAuditTrailSink;
+
+public record AuditTrailConfiguration(String sink,
+                                      int batchSize,
+                                      Duration batchWindow) {
+
+    public static final String SINK_PROPERTY = "audit.sink";
+    public static final String SINK_DEFAULT = LoggerAuditTrailSink.NAME;
+    public static final String BATCH_SIZE_PROPERTY = "audit.batch.size";
+    public static final int BATCH_SIZE_DEFAULT = 128;
+    public static final String BATCH_WINDOW_PROPERTY = "audit.batch.window";
+    public static final Duration BATCH_WINDOW_DEFAULT = Duration.ofMillis(100);
+
+    public static final AuditTrailConfiguration DEFAULT = new AuditTrailConfiguration(SINK_DEFAULT, BATCH_SIZE_DEFAULT, BATCH_WINDOW_DEFAULT);
+
+    public static AuditTrailConfiguration parse(Configuration configuration) {
+        String sink = Optional.ofNullable(configuration.getString(SINK_PROPERTY, null))
+            .map(value -> value.trim().toLowerCase(Locale.US))
+            .orElse(SINK_DEFAULT);
+        Duration batchWindow = Optional.ofNullable(configuration.getString(BATCH_WINDOW_PROPERTY, null))
+            .map(value -> DurationParser.parse(value, ChronoUnit.MILLIS))
+            .orElse(BATCH_WINDOW_DEFAULT);
+
+        return new AuditTrailConfiguration(sink,
+            configuration.getInt(BATCH_SIZE_PROPERTY, BATCH_SIZE_DEFAULT),
+            batchWindow);
+    }
+
+    public AuditTrailConfiguration {
+        Preconditions.checkArgument(sink != null && !sink.isBlank(), "'%s' must not be blank", SINK_PROPERTY);
+        Preconditions.checkArgument(batchSize > 0, "'%s' must be positive", BATCH_SIZE_PROPERTY);
+        Preconditions.checkNotNull(batchWindow, "'%s' must not be null", BATCH_WINDOW_PROPERTY);
+        Preconditions.checkArgument(!batchWindow.isNegative() && !batchWindow.isZero(), "'%s' must be positive", BATCH_WINDOW_PROPERTY);
+    }
+}
@@ -19,9 +19,9 @@
 package com.linagora.calendar.amqp;
 
 import java.io.FileNotFoundException;
+import java.util.Map;
 import java.util.function.Supplier;
 
-import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.apache.james.backends.rabbitmq.QueueArguments;
 import org.apache.james.backends.rabbitmq.RabbitMQConfiguration;
@@ -31,17 +31,21 @@ import org.apache.james.utils.InitializationOperation;
 import org.apache.james.utils.InitilizationOperationBuilder;
 import org.apache.james.utils.PropertiesProvider;
 
+import com.google.common.base.Preconditions;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
 import com.google.inject.Provides;
 import com.google.inject.Scopes;
 import com.google.inject.Singleton;
+import com.google.inject.multibindings.MapBinder;
 import com.google.inject.multibindings.Multibinder;
 import com.google.inject.multibindings.ProvidesIntoSet;
 import com.google.inject.name.Named;
+import com.linagora.calendar.storage.audit.AuditTrailSink;
+import com.linagora.calendar.storage.audit.LoggerAuditTrailSink;
 
 public class CalendarAmqpModule extends AbstractModule {
     public static final String INJECT_KEY_DAV = "dav";
-    public static final int DEFAULT_ITIP_EVENT_MESSAGES_PREFETCH_COUNT = 16;
 
     private static final boolean FALLBACK_CLASSIC_QUEUES_VERSION_1 = Boolean.parseBoolean(System.getProperty("fallback.classic.queues.v1", "false"));
     private static final String QUEUES_QUORUM_BYPASS_PROPERTY = "dav.queues.quorum.bypass";
@@ -61,7 +65,14 @@ public class CalendarAmqpModule extends AbstractModule {
         bind(CalendarListNotificationHandler.class).in(Scopes.SINGLETON);
         bind(ItipLocalDeliveryConsumer.class).in(Scopes.SINGLETON);
         bind(EventAuditLogConsumer.class).in(Scopes.SINGLETON);
+        bind(UpdateNotificationDigester.class).in(Scopes.SINGLETON);
 
+        bind(LoggerAuditTrailSink.class).in(Scopes.SINGLETON);
+        MapBinder.newMapBinder(binder(), String.class, AuditTrailSink.class)
+            .addBinding(LoggerAuditTrailSink.NAME)
+            .to(LoggerAuditTrailSink.class);
+
+        bind(CalendarQueueInspector.class).in(Scopes.SINGLETON);
         Multibinder<HealthCheck> healthCheckMultibinder = Multibinder.newSetBinder(binder(), HealthCheck.class);
         healthCheckMultibinder.addBinding().to(RabbitMQCalendarQueueConsumerHealthCheck.class);
         healthCheckMultibinder.addBinding().to(RabbitMQDeadLetterQueueEmptinessHealthCheck.class);
@@ -83,6 +94,65 @@ public class CalendarAmqpModule extends AbstractModule {
         return QueueArguments::builder;
     }
 
+    @Provides
+    @Singleton
+    ItipLocalDeliveryConfiguration provideItipLocalDeliveryConfiguration(PropertiesProvider propertiesProvider) throws ConfigurationException {
+        try {
+            return ItipLocalDeliveryConfiguration.parse(propertiesProvider.getConfiguration("configuration"));
+        } catch (FileNotFoundException e) {
+            return ItipLocalDeliveryConfiguration.DEFAULT;
+        }
+    }
+
+    @Provides
+    @Singleton
+    AmqpRetryConfiguration provideAmqpRetryConfiguration(PropertiesProvider propertiesProvider) throws ConfigurationException {
+        try {
+            return AmqpRetryConfiguration.parse(propertiesProvider.getConfiguration("configuration"));
+        } catch (FileNotFoundException e) {
+            return AmqpRetryConfiguration.DEFAULT;
+        }
+    }
+
+    @Provides
+    @Singleton
+    AmqpConcurrencyConfiguration provideAmqpConcurrencyConfiguration(PropertiesProvider propertiesProvider) throws ConfigurationException {
+        try {
+            return AmqpConcurrencyConfiguration.parse(propertiesProvider.getConfiguration("configuration"));
+        } catch (FileNotFoundException e) {
+            return AmqpConcurrencyConfiguration.DEFAULT;
+        }
+    }
+
+    @Provides
+    @Singleton
+    NotificationDigestConfiguration provideNotificationDigestConfiguration(PropertiesProvider propertiesProvider) throws ConfigurationException {
+        try {
+            return NotificationDigestConfiguration.parse(propertiesProvider.getConfiguration("configuration"));
+        } catch (FileNotFoundException e) {
+            return NotificationDigestConfiguration.DEFAULT;
+        }
+    }
+
+    @Provides
+    @Singleton
+    AuditTrailConfiguration provideAuditTrailConfiguration(PropertiesProvider propertiesProvider) throws ConfigurationException {
+        try {
+            return AuditTrailConfiguration.parse(propertiesProvider.getConfiguration("configuration"));
+        } catch (FileNotFoundException e) {
+            return AuditTrailConfiguration.DEFAULT;
+        }
+    }
+
+    @Provides
+    @Singleton
+    AuditTrailSink provideAuditTrailSink(AuditTrailConfiguration configuration, Map<String, Provider<AuditTrailSink>> sinks) {
+        Provider<AuditTrailSink> sink = sinks.get(configuration.sink());
+        Preconditions.checkArgument(sink != null, "Unavailable audit trail sink '%s', expecting one of %s",
+            configuration.sink(), sinks.keySet());
+        return sink.get();
+    }
+
     private boolean getQuorumQueuesByPass(PropertiesProvider propertiesProvider) throws ConfigurationException {
         try {
             return propertiesProvider.getConfiguration("configuration")
@@ -116,6 +186,13 @@ public class CalendarAmqpModule extends AbstractModule {
             .init(instance::init);
     }
 
+    @ProvidesIntoSet
+    public InitializationOperation startUpdateNotificationDigester(UpdateNotificationDigester instance) {
+        return InitilizationOperationBuilder
+            .forClass(UpdateNotificationDigester.class)
+            .init(instance::start);
+    }
+
     @ProvidesIntoSet
     public InitializationOperation provisionSabreResources(SabreResourceProvisioner provisioner) {
         return InitilizationOperationBuilder
@@ -231,12 +308,4 @@ public class CalendarAmqpModule extends AbstractModule {
             .init(instance::init);
     }
 
-    @Provides
-    @Singleton
-    @Named("itipEventMessagesPrefetchCount")
-    int provideITIPEventMessagesPrefetchCount(PropertiesProvider propertiesProvider) throws ConfigurationException, FileNotFoundException {
-        Configuration config = propertiesProvider.getConfiguration("configuration");
-        return config.getInt("itip.event.messages.prefetch.count", DEFAULT_ITIP_EVENT_MESSAGES_PREFETCH_COUNT);
-    }
-
 }
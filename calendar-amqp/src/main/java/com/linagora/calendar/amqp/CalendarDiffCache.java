@@ -0,0 +1,58 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import java.time.Duration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.linagora.calendar.amqp.CalendarDiffCalculator.CalendarDiff;
+
+import net.fortuna.ical4j.model.Calendar;
+
+/**
+ * The recipients of a message are processed one by one, yet the new and old calendars they are given are the same
+ * instances, shared through the {@link ParsedCalendarCache}. This cache keeps the recipient independent diff of
+ * recently seen calendar pairs, keyed by instance, so that it is computed once per message rather than once per
+ * recipient.
+ */
+class CalendarDiffCache {
+    private static final long MAX_SIZE = 1_000;
+    private static final Duration EXPIRY = Duration.ofMinutes(1);
+
+    private record Entry(Calendar oldCalendar, CalendarDiff diff) {
+    }
+
+    private final Cache<Calendar, Entry> diffs = Caffeine.newBuilder()
+        .weakKeys()
+        .maximumSize(MAX_SIZE)
+        .expireAfterAccess(EXPIRY)
+        .build();
+
+    CalendarDiff diff(Calendar newCalendar, Calendar oldCalendar) {
+        Entry entry = diffs.getIfPresent(newCalendar);
+        if (entry != null && entry.oldCalendar() == oldCalendar) {
+            return entry.diff();
+        }
+        CalendarDiff diff = CalendarDiffCalculator.diff(newCalendar, oldCalendar);
+        diffs.put(newCalendar, new Entry(oldCalendar, diff));
+        return diff;
+    }
+}
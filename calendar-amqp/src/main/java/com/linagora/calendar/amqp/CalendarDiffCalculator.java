@@ -22,11 +22,14 @@ import static com.linagora.calendar.amqp.CalendarDiffCalculator.DateTimeProperty
 
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -40,7 +43,8 @@ import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.ImmutableList;
-import com.linagora.calendar.storage.event.EventFields.Person;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.linagora.calendar.storage.event.EventParseUtils;
 
 import net.fortuna.ical4j.model.Calendar;
@@ -116,81 +120,133 @@ public class CalendarDiffCalculator {
         }
     }
 
-    public static List<EventDiff> calculate(String recipientEmail, Calendar newCalendar, Calendar oldCalendar) {
-        String recipient = StringUtils.lowerCase(recipientEmail);
-        if (!EventParseUtils.isRecurringEvent(newCalendar) && !EventParseUtils.isRecurringEvent(oldCalendar)) {
-            return calculateSingleEventDiff(recipient, newCalendar, oldCalendar);
+    /**
+     * The part of the diff that does not depend on the recipient: the property changes and organizer transitions of
+     * every occurrence of the new calendar, computed once for all the recipients of a message.
+     */
+    public record CalendarDiff(boolean recurring, List<OccurrenceDiff> occurrences) {
+        public List<EventDiff> forRecipient(String recipientEmail) {
+            String recipient = StringUtils.lowerCase(recipientEmail);
+            return occurrences.stream()
+                .flatMap(occurrence -> occurrence.forRecipient(recipient, recurring).stream())
+                .collect(ImmutableList.toImmutableList());
         }
+    }
 
-        return calculateRecurringEventDiff(recipient, newCalendar, oldCalendar);
+    record OccurrenceDiff(VEvent currentEvent,
+                          boolean hasPreviousOccurrence,
+                          Attendees previousAttendees,
+                          Attendees currentAttendees,
+                          Optional<List<PropertyChange>> changes,
+                          boolean organizerAcceptedTransition,
+                          boolean organizerDeclinedBookingTransition) {
+
+        Optional<EventDiff> forRecipient(String recipient, boolean recurring) {
+            boolean recipientWasAttending = previousAttendees.attends(recipient);
+            boolean recipientIsAttendingNow = currentAttendees.attends(recipient);
+            if (!recipientIsAttendingNow && !recipientWasAttending) {
+                return Optional.empty();
+            }
+            if (hasNoRelevantChanges(recipient, recurring, recipientWasAttending, recipientIsAttendingNow)) {
+                return Optional.empty();
+            }
+            return Optional.of(new EventDiff(currentEvent, !recipientWasAttending, changes));
+        }
+
+        private boolean hasNoRelevantChanges(String recipient, boolean recurring, boolean recipientWasAttending, boolean recipientIsAttendingNow) {
+            if (recurring) {
+                return hasPreviousOccurrence && changes.isEmpty() && !organizerAcceptedTransition;
+            }
+            return recipientWasAttending && recipientIsAttendingNow && changes.isEmpty() && !organizerAcceptedTransition
+                && !organizerDeclinedBookingTransition && previousAttendees.partStat(recipient).equals(currentAttendees.partStat(recipient));
+        }
     }
 
-    private static List<EventDiff> calculateSingleEventDiff(String recipient, Calendar newCalendar, Calendar oldCalendar) {
-        VEvent currentEvent = EventParseUtils.getFirstEvent(newCalendar);
-        VEvent previousEvent = EventParseUtils.getFirstEvent(oldCalendar);
+    /**
+     * The attendees of an occurrence, indexed by address so that checking a recipient does not scan the whole list.
+     */
+    record Attendees(List<String> values, Set<String> addresses, Map<String, Optional<PartStat>> partStats) {
+        private static final String MAILTO_PREFIX = "mailto:";
+        static final Attendees NONE = new Attendees(ImmutableList.of(), ImmutableSet.of(), ImmutableMap.of());
+
+        static Attendees of(VEvent vEvent) {
+            if (vEvent == null) {
+                return NONE;
+            }
+            List<String> values = vEvent.getProperties(Property.ATTENDEE).stream()
+                .map(Property::getValue)
+                .filter(Objects::nonNull)
+                .collect(ImmutableList.toImmutableList());
+            Set<String> addresses = values.stream()
+                .map(value -> Strings.CI.removeStart(value, MAILTO_PREFIX).toLowerCase(Locale.US))
+                .collect(ImmutableSet.toImmutableSet());
+            Map<String, Optional<PartStat>> partStats = new HashMap<>();
+            EventParseUtils.getAttendees(vEvent)
+                .forEach(person -> partStats.putIfAbsent(person.email().asString().toLowerCase(Locale.US), person.partStat()));
+            return new Attendees(values, addresses, partStats);
+        }
 
-        boolean recipientWasAttending = attends(recipient, previousEvent);
-        boolean recipientIsAttendingNow = attends(recipient, currentEvent);
-        if (!recipientIsAttendingNow && !recipientWasAttending) {
-            return ImmutableList.of();
+        boolean attends(String recipient) {
+            return addresses.contains(recipient)
+                || values.stream().anyMatch(attendee -> Strings.CI.contains(attendee, recipient));
         }
 
-        Optional<List<PropertyChange>> changes = computePropertyChanges(previousEvent, currentEvent);
-        boolean organizerAcceptedTransition = organizerAcceptedTransition(previousEvent, currentEvent);
-        boolean organizerDeclinedBookingTransition = organizerDeclinedBookingTransition(previousEvent, currentEvent);
-        boolean attendeePartStatChanged = attendeePartStatChanged(recipient, previousEvent, currentEvent);
-        boolean hasNoRelevantChanges = recipientWasAttending && recipientIsAttendingNow && changes.isEmpty() && !organizerAcceptedTransition && !organizerDeclinedBookingTransition && !attendeePartStatChanged;
-        if (hasNoRelevantChanges) {
-            return ImmutableList.of();
+        Optional<PartStat> partStat(String recipient) {
+            return partStats.getOrDefault(recipient, Optional.empty());
         }
+    }
 
-        return List.of(new EventDiff(currentEvent, !recipientWasAttending, changes));
+    public static List<EventDiff> calculate(String recipientEmail, Calendar newCalendar, Calendar oldCalendar) {
+        return diff(newCalendar, oldCalendar).forRecipient(recipientEmail);
     }
 
-    private static List<EventDiff> calculateRecurringEventDiff(String recipient, Calendar newCalendar, Calendar oldCalendar) {
+    public static CalendarDiff diff(Calendar newCalendar, Calendar oldCalendar) {
+        if (!EventParseUtils.isRecurringEvent(newCalendar) && !EventParseUtils.isRecurringEvent(oldCalendar)) {
+            return new CalendarDiff(false, ImmutableList.of(singleEventDiff(newCalendar, oldCalendar)));
+        }
+
+        return new CalendarDiff(true, recurringEventDiff(newCalendar, oldCalendar));
+    }
+
+    private static OccurrenceDiff singleEventDiff(Calendar newCalendar, Calendar oldCalendar) {
+        VEvent currentEvent = EventParseUtils.getFirstEvent(newCalendar);
+        VEvent previousEvent = EventParseUtils.getFirstEvent(oldCalendar);
+
+        return new OccurrenceDiff(currentEvent,
+            true,
+            Attendees.of(previousEvent),
+            Attendees.of(currentEvent),
+            computePropertyChanges(previousEvent, currentEvent),
+            organizerAcceptedTransition(previousEvent, currentEvent),
+            organizerDeclinedBookingTransition(previousEvent, currentEvent));
+    }
+
+    private static List<OccurrenceDiff> recurringEventDiff(Calendar newCalendar, Calendar oldCalendar) {
         Map<String, VEvent> previousEventsByRecurrenceId = indexByRecurrenceId(oldCalendar);
         VEvent previousMasterEvent = previousEventsByRecurrenceId.get(MASTER_RECURRENCE_ID);
         Map<String, VEvent> currentEventsByRecurrenceId = indexByRecurrenceId(newCalendar);
 
         return currentEventsByRecurrenceId.entrySet().stream()
-            .flatMap(entry -> computeDiffForEvent(recipient, previousEventsByRecurrenceId, previousMasterEvent, entry).stream())
-            .toList();
+            .map(entry -> occurrenceDiff(previousEventsByRecurrenceId, previousMasterEvent, entry))
+            .collect(ImmutableList.toImmutableList());
     }
 
-    private static Optional<EventDiff> computeDiffForEvent(String recipient,
-                                                           Map<String, VEvent> previousEventsByRecurrenceId,
-                                                           VEvent previousMasterEvent,
-                                                           Map.Entry<String, VEvent> currentEventEntry) {
+    private static OccurrenceDiff occurrenceDiff(Map<String, VEvent> previousEventsByRecurrenceId,
+                                                 VEvent previousMasterEvent,
+                                                 Map.Entry<String, VEvent> currentEventEntry) {
         VEvent previousOccurrence = previousEventsByRecurrenceId.get(currentEventEntry.getKey());
         VEvent currentOccurrence = currentEventEntry.getValue();
-        VEvent previousEventForRecipient = Optional.ofNullable(previousOccurrence)
+        VEvent previousEvent = Optional.ofNullable(previousOccurrence)
             .orElseGet(() -> toPreviousOccurrenceFromMaster(previousMasterEvent, currentOccurrence)
                 .orElse(previousMasterEvent));
-        boolean hasPreviousOccurrence = previousOccurrence != null;
-
-        boolean recipientWasAttending = attends(recipient, previousEventForRecipient);
-        boolean recipientIsAttendingNow = attends(recipient, currentOccurrence);
-        if (!recipientIsAttendingNow && !recipientWasAttending) {
-            return Optional.empty();
-        }
-
-        Optional<List<PropertyChange>> changes = computePropertyChanges(previousEventForRecipient, currentOccurrence);
-        boolean organizerAcceptedTransition = organizerAcceptedTransition(previousEventForRecipient, currentOccurrence);
-        boolean hasNoRelevantChanges = hasPreviousOccurrence && changes.isEmpty() && !organizerAcceptedTransition;
-        if (hasNoRelevantChanges) {
-            return Optional.empty();
-        }
 
-        return Optional.of(new EventDiff(currentOccurrence, !recipientWasAttending, changes));
-    }
-
-    private static boolean attendeePartStatChanged(String recipient, VEvent previousEvent, VEvent currentEvent) {
-        Function<VEvent, Optional<PartStat>> attendeePartStat = event -> EventParseUtils.getAttendees(event).stream()
-            .filter(person -> Strings.CI.equals(person.email().asString(), recipient))
-            .findFirst()
-            .flatMap(Person::partStat);
-
-        return !attendeePartStat.apply(previousEvent).equals(attendeePartStat.apply(currentEvent));
+        return new OccurrenceDiff(currentOccurrence,
+            previousOccurrence != null,
+            Attendees.of(previousEvent),
+            Attendees.of(currentOccurrence),
+            computePropertyChanges(previousEvent, currentOccurrence),
+            previousEvent != null && organizerAcceptedTransition(previousEvent, currentOccurrence),
+            false);
     }
 
     private static Optional<VEvent> toPreviousOccurrenceFromMaster(VEvent previousMasterEvent, VEvent currentOccurrence) {
@@ -274,12 +330,6 @@ public class CalendarDiffCalculator {
                 Function.identity(), (first, second) -> first, LinkedHashMap::new));
     }
 
-    private static boolean attends(String recipient, VEvent vEvent) {
-        return vEvent != null && vEvent.getProperties(Property.ATTENDEE).stream()
-            .map(Property::getValue)
-            .anyMatch(attendee -> Strings.CI.contains(attendee, recipient));
-    }
-
     private static Optional<List<PropertyChange>> computePropertyChanges(VEvent previous, VEvent current) {
         if (previous == null) {
             return Optional.empty();
@@ -19,7 +19,10 @@
 package com.linagora.calendar.amqp;
 
 import java.io.IOException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.BinaryOperator;
+import java.util.function.Predicate;
 
 import org.apache.james.core.MailAddress;
 
@@ -28,7 +31,6 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
-import com.linagora.calendar.api.CalendarUtil;
 
 import net.fortuna.ical4j.model.Calendar;
 import net.fortuna.ical4j.model.property.Method;
@@ -48,10 +50,41 @@ public record CalendarEventNotificationEmailDTO(@JsonProperty("senderEmail") @Js
                           @JsonProperty("summary") Optional<StringChange> summary,
                           @JsonProperty("location") Optional<StringChange> location,
                           @JsonProperty("description") Optional<StringChange> description) {
+
+        /**
+         * @return the changes from before {@code this} to after {@code later}. Properties changed back to their
+         * previous value are dropped.
+         */
+        public Changes andThen(Changes later) {
+            return new Changes(fold(dtstart, later.dtstart, DateTimeChange::andThen, DateTimeChange::reverted),
+                fold(dtend, later.dtend, DateTimeChange::andThen, DateTimeChange::reverted),
+                fold(summary, later.summary, StringChange::andThen, StringChange::reverted),
+                fold(location, later.location, StringChange::andThen, StringChange::reverted),
+                fold(description, later.description, StringChange::andThen, StringChange::reverted));
+        }
+
+        public boolean isEmpty() {
+            return dtstart.isEmpty() && dtend.isEmpty() && summary.isEmpty() && location.isEmpty() && description.isEmpty();
+        }
+
+        private static <T> Optional<T> fold(Optional<T> earlier, Optional<T> later, BinaryOperator<T> andThen, Predicate<T> reverted) {
+            Optional<T> folded = earlier.map(earlierChange -> later.map(laterChange -> andThen.apply(earlierChange, laterChange))
+                    .orElse(earlierChange))
+                .or(() -> later);
+            return folded.filter(Predicate.not(reverted));
+        }
     }
 
     public record DateTimeChange(@JsonProperty("previous") DateTimeValue previous,
                                  @JsonProperty("current") DateTimeValue current) {
+
+        DateTimeChange andThen(DateTimeChange later) {
+            return new DateTimeChange(previous, later.current);
+        }
+
+        boolean reverted() {
+            return Objects.equals(previous, current);
+        }
     }
 
     public record DateTimeValue(@JsonProperty("isAllDay") boolean isAllDay,
@@ -63,13 +96,21 @@ public record CalendarEventNotificationEmailDTO(@JsonProperty("senderEmail") @Js
 
     public record StringChange(@JsonProperty("previous") String previous,
                                @JsonProperty("current") String current) {
+
+        StringChange andThen(StringChange later) {
+            return new StringChange(previous, later.current);
+        }
+
+        boolean reverted() {
+            return Objects.equals(previous, current);
+        }
     }
 
     public static class CalendarEventDeserializer extends JsonDeserializer<Calendar> {
         @Override
         public Calendar deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
             String icsString = p.getValueAsString();
-            return CalendarUtil.parseIcs(icsString);
+            return ParsedCalendarCache.parse(icsString, ctxt);
         }
     }
 
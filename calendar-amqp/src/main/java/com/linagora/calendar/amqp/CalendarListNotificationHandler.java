@@ -22,6 +22,7 @@ import java.util.Set;
 
 import jakarta.inject.Inject;
 
+import org.apache.james.core.Username;
 import org.apache.james.events.EventBus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +34,7 @@ import com.linagora.calendar.storage.CalendarListChangedEvent.ChangeType;
 import com.linagora.calendar.storage.CalendarURL;
 import com.linagora.calendar.storage.OpenPaaSUser;
 import com.linagora.calendar.storage.OpenPaaSUserDAO;
+import com.linagora.calendar.storage.PresenceRegistry;
 import com.linagora.calendar.storage.ResourceDAO;
 import com.linagora.calendar.storage.TeamCalendarRepository;
 import com.linagora.calendar.storage.UsernameRegistrationKey;
@@ -49,14 +51,16 @@ public class CalendarListNotificationHandler {
     private final OpenPaaSUserDAO openPaaSUserDAO;
     private final ResourceDAO resourceDAO;
     private final TeamCalendarRepository teamCalendarRepository;
+    private final PresenceRegistry presenceRegistry;
 
     @Inject
     public CalendarListNotificationHandler(EventBus eventBus, OpenPaaSUserDAO openPaaSUserDAO, ResourceDAO resourceDAO,
-                                           TeamCalendarRepository teamCalendarRepository) {
+                                           TeamCalendarRepository teamCalendarRepository, PresenceRegistry presenceRegistry) {
         this.resourceDAO = resourceDAO;
         this.eventBus = eventBus;
         this.openPaaSUserDAO = openPaaSUserDAO;
         this.teamCalendarRepository = teamCalendarRepository;
+        this.presenceRegistry = presenceRegistry;
     }
 
     public Mono<Void> handle(CalendarListExchange exchange, CalendarListChangesMessage message) {
@@ -65,6 +69,7 @@ public class CalendarListNotificationHandler {
 
         return openPaaSUserDAO.retrieve(calendarURL.base())
             .switchIfEmpty(Mono.defer(() -> ignoreKnownNonUserOwner(exchange, calendarURL)))
+            .filterWhen(user -> isOnline(user.username()))
             .flatMap(user -> eventBus.dispatch(
                     CalendarListChangedEvent.of(user.username(), calendarURL, changeType),
                     new UsernameRegistrationKey(user.username()))
@@ -72,6 +77,19 @@ public class CalendarListNotificationHandler {
                 .then());
     }
 
+    private Mono<Boolean> isOnline(Username username) {
+        return presenceRegistry.isOnline(username)
+            .doOnNext(online -> {
+                if (!online) {
+                    LOGGER.debug("Skip calendar list notification for offline user {}", username.asString());
+                }
+            })
+            .onErrorResume(error -> {
+                LOGGER.warn("Failed to check the presence of {}, dispatching the calendar list notification anyway", username.asString(), error);
+                return Mono.just(true);
+            });
+    }
+
     private Mono<OpenPaaSUser> ignoreKnownNonUserOwner(CalendarListExchange exchange, CalendarURL calendarURL) {
         return resourceDAO.findById(ResourceId.from(calendarURL.base()))
             .hasElement()
@@ -0,0 +1,170 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import jakarta.inject.Inject;
+
+import org.apache.james.backends.rabbitmq.ReactorRabbitMQChannelPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownSignalException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Inspects the calendar queues, and only them, with passive queue declarations on pooled channels.
+ *
+ * <p>Health checks read a cached snapshot. A stale snapshot is still served while a refresh runs in the background,
+ * so that health check requests never wait for the broker once the first snapshot is taken.
+ */
+public class CalendarQueueInspector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CalendarQueueInspector.class);
+
+    public static final Duration CACHE_DURATION = Duration.ofSeconds(10);
+    private static final Duration REFRESH_TIMEOUT = Duration.ofSeconds(10);
+    private static final int CONCURRENCY = 4;
+
+    public record QueueStatus(String queue, boolean exists, int messageCount, int consumerCount) {
+        static QueueStatus missing(String queue) {
+            return new QueueStatus(queue, false, 0, 0);
+        }
+    }
+
+    public record Snapshot(Instant refreshedAt, Map<String, QueueStatus> statuses) {
+        public List<QueueStatus> statusesOf(Collection<String> queues) {
+            return queues.stream()
+                .map(queue -> statuses.getOrDefault(queue, QueueStatus.missing(queue)))
+                .collect(ImmutableList.toImmutableList());
+        }
+    }
+
+    private record Cached(Instant refreshedAt, Mono<Snapshot> snapshot) {
+    }
+
+    private final ReactorRabbitMQChannelPool channelPool;
+    private final List<String> queues;
+    private final Duration cacheDuration;
+    private final Clock clock;
+    private final AtomicReference<Cached> cache = new AtomicReference<>();
+    private final AtomicReference<Mono<Cached>> ongoingRefresh = new AtomicReference<>();
+
+    @Inject
+    public CalendarQueueInspector(ReactorRabbitMQChannelPool channelPool) {
+        this(channelPool, ImmutableList.<String>builder()
+            .addAll(CalendarQueueUtil.getAllQueueNames())
+            .addAll(CalendarQueueUtil.getAllDeadLetterQueueNames())
+            .build(), CACHE_DURATION, Clock.systemUTC());
+    }
+
+    @VisibleForTesting
+    CalendarQueueInspector(ReactorRabbitMQChannelPool channelPool, List<String> queues, Duration cacheDuration, Clock clock) {
+        this.channelPool = channelPool;
+        this.queues = queues;
+        this.cacheDuration = cacheDuration;
+        this.clock = clock;
+    }
+
+    /**
+     * The latest snapshot. Fails if the latest refresh failed.
+     */
+    public Mono<Snapshot> snapshot() {
+        return Mono.defer(() -> {
+            Cached cached = cache.get();
+            if (cached == null) {
+                return refresh().flatMap(Cached::snapshot);
+            }
+            if (cached.refreshedAt().plus(cacheDuration).isBefore(clock.instant())) {
+                refresh().subscribe();
+            }
+            return cached.snapshot();
+        });
+    }
+
+    private Mono<Cached> refresh() {
+        Mono<Cached> ongoing = ongoingRefresh.get();
+        if (ongoing != null) {
+            return ongoing;
+        }
+        Mono<Cached> refresh = inspectQueues()
+            .map(Mono::just)
+            .onErrorResume(e -> {
+                LOGGER.warn("Failed to inspect calendar queues", e);
+                return Mono.just(Mono.error(e));
+            })
+            .map(snapshot -> new Cached(clock.instant(), snapshot))
+            .doOnNext(cache::set)
+            .doFinally(any -> ongoingRefresh.set(null))
+            .cache();
+        if (ongoingRefresh.compareAndSet(null, refresh)) {
+            return refresh;
+        }
+        return refresh();
+    }
+
+    private Mono<Snapshot> inspectQueues() {
+        return Flux.fromIterable(queues)
+            .flatMap(this::inspectQueue, CONCURRENCY)
+            .collectMap(QueueStatus::queue)
+            .map(statuses -> new Snapshot(clock.instant(), statuses))
+            .timeout(REFRESH_TIMEOUT);
+    }
+
+    private Mono<QueueStatus> inspectQueue(String queue) {
+        return channelPool.getChannelMono()
+            .flatMap(channel -> Mono.fromCallable(() -> inspectQueue(channel, queue))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(signal -> channelPool.getChannelCloseHandler().accept(signal, channel)));
+    }
+
+    private QueueStatus inspectQueue(Channel channel, String queue) throws IOException {
+        try {
+            AMQP.Queue.DeclareOk declareOk = channel.queueDeclarePassive(queue);
+            return new QueueStatus(queue, true, declareOk.getMessageCount(), declareOk.getConsumerCount());
+        } catch (IOException e) {
+            // The broker closes the channel on a missing queue: the pool then discards it
+            if (isNotFound(e)) {
+                return QueueStatus.missing(queue);
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isNotFound(IOException e) {
+        return e.getCause() instanceof ShutdownSignalException signal
+            && signal.getReason() instanceof AMQP.Channel.Close close
+            && close.getReplyCode() == AMQP.NOT_FOUND;
+    }
+}
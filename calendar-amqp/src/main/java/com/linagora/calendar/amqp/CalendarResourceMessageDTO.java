@@ -26,7 +26,6 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
-import com.linagora.calendar.api.CalendarUtil;
 
 import net.fortuna.ical4j.model.Calendar;
 
@@ -49,7 +48,7 @@ public record CalendarResourceMessageDTO(@JsonProperty("resourceId") String reso
         @Override
         public Calendar deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
             String icsString = p.getValueAsString();
-            return CalendarUtil.parseIcs(icsString);
+            return ParsedCalendarCache.parse(icsString, ctxt);
         }
     }
 }
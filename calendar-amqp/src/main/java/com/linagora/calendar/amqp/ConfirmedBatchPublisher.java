@@ -0,0 +1,184 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rabbitmq.client.AMQP;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.rabbitmq.CorrelableOutboundMessage;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.OutboundMessageResult;
+import reactor.rabbitmq.Sender;
+
+/**
+ * Groups the messages submitted within a short window, and publishes each group with publisher confirms through a
+ * single {@link Sender#sendWithTypedPublishConfirms(org.reactivestreams.Publisher)} call, so that the confirmation
+ * round trip is paid once per batch rather than once per message.
+ *
+ * <p>Batches are published one after the other, in submission order. Only the messages of a batch the broker did not
+ * confirm are published again: confirmed messages are never re-sent. Each message carries a message id that is kept
+ * across retries: consumers recognize the copy of a message whose confirm got lost with its channel through a
+ * {@link DuplicateDeliveryFilter}.
+ */
+class ConfirmedBatchPublisher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfirmedBatchPublisher.class);
+    private static final Duration EMIT_RETRY_DURATION = Duration.ofSeconds(1);
+    private static final Duration RETRY_BACKOFF = Duration.ofMillis(100);
+
+    private record Pending(CorrelableOutboundMessage<String> message, Sinks.Empty<Void> confirmed) {
+        static Pending of(OutboundMessage message) {
+            AMQP.BasicProperties properties = Optional.ofNullable(message.getProperties()).orElseGet(AMQP.BasicProperties::new);
+            String messageId = Optional.ofNullable(properties.getMessageId()).orElseGet(() -> UUID.randomUUID().toString());
+            return new Pending(new CorrelableOutboundMessage<>(message.getExchange(), message.getRoutingKey(),
+                properties.builder().messageId(messageId).build(), message.getBody(), messageId), Sinks.empty());
+        }
+
+        String messageId() {
+            return message.getCorrelationMetadata();
+        }
+    }
+
+    private final Sender sender;
+    private final int batchSize;
+    private final Duration batchWindow;
+    private final int maxRetries;
+    private volatile Sinks.Many<Pending> pendings;
+    private volatile boolean running;
+    private Disposable subscription;
+
+    ConfirmedBatchPublisher(Sender sender, int batchSize, Duration batchWindow, int maxRetries) {
+        this.sender = sender;
+        this.batchSize = batchSize;
+        this.batchWindow = batchWindow;
+        this.maxRetries = maxRetries;
+    }
+
+    synchronized void start() {
+        running = true;
+        subscribe();
+    }
+
+    synchronized void stop() {
+        running = false;
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    private synchronized void subscribe() {
+        if (!running) {
+            return;
+        }
+        Sinks.Many<Pending> sink = Sinks.many().unicast().onBackpressureBuffer();
+        pendings = sink;
+        subscription = sink.asFlux()
+            .bufferTimeout(batchSize, batchWindow, true)
+            .concatMap(batch -> publish(batch, 0))
+            .doOnDiscard(Pending.class, pending -> pending.confirmed().tryEmitError(notRunning()))
+            .subscribe(any -> {
+            }, e -> {
+                LOGGER.error("Batch publishing failed, subscribing again", e);
+                subscribe();
+            });
+    }
+
+    /**
+     * Completes once every message is confirmed by the broker, or fails once the retries of one of them are exhausted.
+     * Fails right away when the publisher is not running.
+     */
+    Mono<Void> publish(List<OutboundMessage> messages) {
+        return Mono.defer(() -> {
+            Sinks.Many<Pending> sink = pendings;
+            if (!running || sink == null) {
+                return Mono.error(notRunning());
+            }
+            List<Pending> submitted = messages.stream()
+                .map(Pending::of)
+                .toList();
+            submitted.forEach(pending -> emit(sink, pending));
+            return Flux.fromIterable(submitted)
+                .concatMap(pending -> pending.confirmed().asMono())
+                .then();
+        });
+    }
+
+    private void emit(Sinks.Many<Pending> sink, Pending pending) {
+        // Deliveries are handled concurrently: retry emissions racing with each other
+        long deadline = System.nanoTime() + EMIT_RETRY_DURATION.toNanos();
+        Sinks.EmitResult result = sink.tryEmitNext(pending);
+        while (result == Sinks.EmitResult.FAIL_NON_SERIALIZED && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+            result = sink.tryEmitNext(pending);
+        }
+        if (result.isFailure()) {
+            pending.confirmed().tryEmitError(notRunning());
+        }
+    }
+
+    private static IllegalStateException notRunning() {
+        return new IllegalStateException("The batch publisher is not running");
+    }
+
+    private Mono<Void> publish(List<Pending> batch, int attempt) {
+        Map<String, Pending> unconfirmed = new ConcurrentHashMap<>();
+        batch.forEach(pending -> unconfirmed.put(pending.messageId(), pending));
+        return sender.sendWithTypedPublishConfirms(Flux.fromIterable(batch).map(Pending::message))
+            .filter(OutboundMessageResult::isAck)
+            .doOnNext(result -> Optional.ofNullable(unconfirmed.remove(result.getOutboundMessage().getCorrelationMetadata()))
+                .ifPresent(pending -> pending.confirmed().tryEmitEmpty()))
+            .then()
+            .onErrorResume(e -> {
+                LOGGER.warn("Failed to publish a batch of {} messages", batch.size(), e);
+                return Mono.empty();
+            })
+            .then(Mono.defer(() -> retryUnconfirmed(batch, unconfirmed, attempt)));
+    }
+
+    private Mono<Void> retryUnconfirmed(List<Pending> batch, Map<String, Pending> unconfirmedById, int attempt) {
+        List<Pending> unconfirmed = batch.stream()
+            .filter(pending -> unconfirmedById.containsKey(pending.messageId()))
+            .toList();
+        if (unconfirmed.isEmpty()) {
+            return Mono.empty();
+        }
+        if (attempt >= maxRetries) {
+            LOGGER.error("{} messages were still not confirmed after {} retries", unconfirmed.size(), maxRetries);
+            IllegalStateException failure = new IllegalStateException("Message not confirmed by the broker");
+            unconfirmed.forEach(pending -> pending.confirmed().tryEmitError(failure));
+            return Mono.empty();
+        }
+        LOGGER.info("Publishing again {} of {} messages not confirmed by the broker", unconfirmed.size(), batch.size());
+        return Mono.delay(RETRY_BACKOFF.multipliedBy(attempt + 1))
+            .then(publish(unconfirmed, attempt + 1));
+    }
+}
@@ -0,0 +1,187 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.james.backends.rabbitmq.QueueArguments;
+import org.apache.james.backends.rabbitmq.ReactorRabbitMQChannelPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JacksonException;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.MessageProperties;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.rabbitmq.AcknowledgableDelivery;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.QueueSpecification;
+
+/**
+ * Tiered delayed retries for the deliveries of a queue.
+ *
+ * <p>Each delay is backed by a retry queue with a matching message TTL. Once it expires there, RabbitMQ dead-letters
+ * the message back to the main queue through the default exchange. When a handler fails, the delivery is published
+ * to the retry queue of its attempt, then acknowledged. Once every delay has been tried, the failure is propagated:
+ * the consumer rejects the delivery, which lands in the dead-letter queue as before.
+ *
+ * <p>Deliveries that cannot be deserialized are not retried.
+ *
+ * <p>A retried delivery comes back after the deliveries published in the meantime: consumers processing the deliveries
+ * of a key in order drop the superseded retries through {@link SupersededRetries}.
+ */
+public class DelayedRetryQueues {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DelayedRetryQueues.class);
+
+    public static final String RETRY_COUNT_HEADER = "x-tcalendar-retry-count";
+    public static final String ORIGINAL_EXCHANGE_HEADER = "x-tcalendar-original-exchange";
+    public static final String FIRST_FAILURE_HEADER = "x-tcalendar-first-failure";
+
+    private static final String DEFAULT_EXCHANGE = "";
+    private static final String MESSAGE_TTL = "x-message-ttl";
+    private static final String DEAD_LETTER_EXCHANGE = "x-dead-letter-exchange";
+    private static final String DEAD_LETTER_ROUTING_KEY = "x-dead-letter-routing-key";
+
+    public static int retryCount(AcknowledgableDelivery delivery) {
+        return header(delivery, RETRY_COUNT_HEADER)
+            .map(value -> ((Number) value).intValue())
+            .orElse(0);
+    }
+
+    /**
+     * The exchange the delivery was first published to: retried deliveries come back through the default exchange.
+     */
+    public static String originalExchange(AcknowledgableDelivery delivery) {
+        return header(delivery, ORIGINAL_EXCHANGE_HEADER)
+            .map(Object::toString)
+            .orElse(delivery.getEnvelope().getExchange());
+    }
+
+    /**
+     * When the handling of a retried delivery failed for the first time.
+     */
+    public static Optional<Instant> firstFailure(AcknowledgableDelivery delivery) {
+        return header(delivery, FIRST_FAILURE_HEADER)
+            .map(Object::toString)
+            .map(Instant::parse);
+    }
+
+    private static Optional<Object> header(AcknowledgableDelivery delivery, String name) {
+        return Optional.ofNullable(delivery.getProperties())
+            .map(AMQP.BasicProperties::getHeaders)
+            .map(headers -> headers.get(name));
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        return Throwables.getCausalChain(error).stream()
+            .noneMatch(cause -> cause instanceof CalendarEventDeserializeException || cause instanceof JacksonException);
+    }
+
+    private final ReactorRabbitMQChannelPool channelPool;
+    private final Supplier<QueueArguments.Builder> queueArgumentSupplier;
+    private final String queue;
+    private final List<Duration> delays;
+    private final Clock clock;
+
+    public DelayedRetryQueues(ReactorRabbitMQChannelPool channelPool,
+                              Supplier<QueueArguments.Builder> queueArgumentSupplier,
+                              String queue,
+                              List<Duration> delays) {
+        this(channelPool, queueArgumentSupplier, queue, delays, Clock.systemUTC());
+    }
+
+    public DelayedRetryQueues(ReactorRabbitMQChannelPool channelPool,
+                              Supplier<QueueArguments.Builder> queueArgumentSupplier,
+                              String queue,
+                              List<Duration> delays,
+                              Clock clock) {
+        this.channelPool = channelPool;
+        this.queueArgumentSupplier = queueArgumentSupplier;
+        this.queue = queue;
+        this.delays = ImmutableList.copyOf(delays);
+        this.clock = clock;
+    }
+
+    public void declare() {
+        Flux.fromIterable(delays)
+            .distinct()
+            .concatMap(delay -> channelPool.getSender().declareQueue(QueueSpecification.queue(retryQueueName(delay))
+                .durable(true)
+                .arguments(queueArgumentSupplier.get()
+                    .put(MESSAGE_TTL, delay.toMillis())
+                    .put(DEAD_LETTER_EXCHANGE, DEFAULT_EXCHANGE)
+                    .put(DEAD_LETTER_ROUTING_KEY, queue)
+                    .build())))
+            .then()
+            .block();
+    }
+
+    public Mono<Void> handle(AcknowledgableDelivery delivery, Function<AcknowledgableDelivery, Mono<Void>> handler) {
+        return Mono.defer(() -> handler.apply(delivery))
+            .onErrorResume(DelayedRetryQueues::isRetryable, error -> retry(delivery, error));
+    }
+
+    private Mono<Void> retry(AcknowledgableDelivery delivery, Throwable error) {
+        int retryCount = retryCount(delivery);
+        if (retryCount >= delays.size()) {
+            LOGGER.error("Failed to handle delivery of queue {} after {} retries, dead-lettering it", queue, retryCount, error);
+            return Mono.error(error);
+        }
+
+        Duration delay = delays.get(retryCount);
+        LOGGER.warn("Failed to handle delivery of queue {}, retrying in {} ({}/{})", queue, delay, retryCount + 1, delays.size(), error);
+        return channelPool.getSender()
+            .send(Mono.just(new OutboundMessage(DEFAULT_EXCHANGE, retryQueueName(delay), retryProperties(delivery, retryCount + 1), delivery.getBody())))
+            .onErrorResume(publishError -> {
+                LOGGER.error("Failed to schedule the retry of a delivery of queue {}", queue, publishError);
+                return Mono.error(error);
+            });
+    }
+
+    private AMQP.BasicProperties retryProperties(AcknowledgableDelivery delivery, int retryCount) {
+        AMQP.BasicProperties properties = Optional.ofNullable(delivery.getProperties())
+            .orElse(MessageProperties.PERSISTENT_TEXT_PLAIN);
+        Map<String, Object> headers = new HashMap<>(Optional.ofNullable(properties.getHeaders()).orElse(Map.of()));
+        headers.put(RETRY_COUNT_HEADER, retryCount);
+        headers.put(ORIGINAL_EXCHANGE_HEADER, originalExchange(delivery));
+        headers.putIfAbsent(FIRST_FAILURE_HEADER, clock.instant().toString());
+
+        return properties.builder()
+            .headers(headers)
+            .deliveryMode(MessageProperties.PERSISTENT_TEXT_PLAIN.getDeliveryMode())
+            .build();
+    }
+
+    String retryQueueName(Duration delay) {
+        return queue + ":retry:" + delay.toMillis() + "ms";
+    }
+}
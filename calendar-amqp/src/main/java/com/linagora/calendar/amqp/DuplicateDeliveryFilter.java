@@ -0,0 +1,67 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.amqp;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rabbitmq.client.AMQP;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Remembers the message ids of the deliveries a consumer recently handled, so that the copy of a message published
+ * again by {@link ConfirmedBatchPublisher} after its confirm got lost is handled once.
+ *
+ * <p>The ids are kept in memory, bounded in count and duration: a copy delivered to another node, or long after the
+ * original, is not recognized. Deliveries without message id are always handled.
+ */
+class DuplicateDeliveryFilter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DuplicateDeliveryFilter.class);
+    private static final long MAX_SIZE = 100_000;
+    private static final Duration RETENTION = Duration.ofHours(1);
+
+    private final Cache<String, Boolean> handledIds = Caffeine.newBuilder()
+        .maximumSize(MAX_SIZE)
+        .expireAfterWrite(RETENTION)
+        .build();
+
+    /**
+     * Runs the handling unless a delivery with the same message id was handled, or is being handled. A failed handling
+     * does not count: the message can then be handled again.
+     */
+    Mono<Void> handleOnce(AMQP.BasicProperties properties, Mono<Void> handling) {
+        Optional<String> messageId = Optional.ofNullable(properties).map(AMQP.BasicProperties::getMessageId);
+        if (messageId.isEmpty()) {
+            return handling;
+        }
+        return Mono.defer(() -> {
+            if (handledIds.asMap().putIfAbsent(messageId.get(), true) != null) {
+                LOGGER.info("Ignoring the already handled message {}", messageId.get());
+                return Mono.empty();
+            }
+            return handling.doOnError(any -> handledIds.invalidate(messageId.get()));
+        });
+    }
+}
@@ -23,6 +23,9 @@ import static org.apache.james.backends.rabbitmq.Constants.EMPTY_ROUTING_KEY;
 import static org.apache.james.util.ReactorUtils.DEFAULT_CONCURRENCY;
 
 import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
 
@@ -53,6 +56,7 @@ public class EventAlarmConsumer implements Closeable, Startable {
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().registerModule(new Jdk8Module())
         .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
     private static final Logger LOGGER = LoggerFactory.getLogger(EventAlarmConsumer.class);
+    static final String CONSUMER_NAME = "alarm";
 
     public enum Queue {
         CREATE("calendar:event:alarm:created", "tcalendar:event:alarm:created", "tcalendar:event:alarm:created:dead-letter"),
@@ -85,25 +89,35 @@ public class EventAlarmConsumer implements Closeable, Startable {
     }
 
     private final Map<Queue, ManagedRabbitMQConsumer> consumers;
+    private final List<DelayedRetryQueues> retryQueues = new ArrayList<>();
     private final EventAlarmHandler eventAlarmHandler;
+    // Shared by all the alarm consumers so that the messages of an event are applied in order
+    private final KeyedSerialLanes lanes = new KeyedSerialLanes(DEFAULT_CONCURRENCY);
+    private final SupersededRetries supersededRetries;
 
     @Inject
     @Singleton
     public EventAlarmConsumer(ReactorRabbitMQChannelPool channelPool,
                               @Named(INJECT_KEY_DAV) Supplier<QueueArguments.Builder> queueArgumentSupplier,
-                              EventAlarmHandler eventAlarmHandler) {
+                              EventAlarmHandler eventAlarmHandler,
+                              AmqpRetryConfiguration retryConfiguration) {
         this.eventAlarmHandler = eventAlarmHandler;
+        List<Duration> retryDelays = retryConfiguration.delaysFor(CONSUMER_NAME);
+        this.supersededRetries = new SupersededRetries(retryDelays);
         this.consumers = Map.of(
-            Queue.CREATE, createConsumer(channelPool, queueArgumentSupplier, Queue.CREATE, handlerAdd()),
-            Queue.REQUEST, createConsumer(channelPool, queueArgumentSupplier, Queue.REQUEST, handlerAddOrUpdate()),
-            Queue.UPDATE, createConsumer(channelPool, queueArgumentSupplier, Queue.UPDATE, handlerAddOrUpdate()),
-            Queue.DELETE, createConsumer(channelPool, queueArgumentSupplier, Queue.DELETE, handlerDelete()),
-            Queue.CANCEL, createConsumer(channelPool, queueArgumentSupplier, Queue.CANCEL, handlerDelete()));
+            Queue.CREATE, createConsumer(channelPool, queueArgumentSupplier, retryDelays, Queue.CREATE, handlerAdd()),
+            Queue.REQUEST, createConsumer(channelPool, queueArgumentSupplier, retryDelays, Queue.REQUEST, handlerAddOrUpdate()),
+            Queue.UPDATE, createConsumer(channelPool, queueArgumentSupplier, retryDelays, Queue.UPDATE, handlerAddOrUpdate()),
+            Queue.DELETE, createConsumer(channelPool, queueArgumentSupplier, retryDelays, Queue.DELETE, handlerDelete()),
+            Queue.CANCEL, createConsumer(channelPool, queueArgumentSupplier, retryDelays, Queue.CANCEL, handlerDelete()));
     }
 
     private ManagedRabbitMQConsumer createConsumer(ReactorRabbitMQChannelPool channelPool,
                                                    Supplier<QueueArguments.Builder> queueArgumentSupplier,
+                                                   List<Duration> retryDelays,
                                                    Queue queue, PersistAlarmHandler handler) {
+        DelayedRetryQueues queueRetries = new DelayedRetryQueues(channelPool, queueArgumentSupplier, queue.queueName, retryDelays);
+        retryQueues.add(queueRetries);
         return new ManagedRabbitMQConsumer.Factory(channelPool)
             .create(ManagedRabbitMQConsumer.Parameters.builder()
                 .queueDeclaration(QueueDeclaration.builder()
@@ -114,11 +128,12 @@ public class EventAlarmConsumer implements Closeable, Startable {
                 .queueArguments(queueArgumentSupplier)
                 .qos(DEFAULT_CONCURRENCY)
                 .concurrency(DEFAULT_CONCURRENCY)
-                .handleDelivery(delivery -> messageConsume(delivery, handler))
+                .handleDelivery(delivery -> messageConsume(delivery, queueRetries, handler))
                 .build());
     }
 
     public void init() {
+        retryQueues.forEach(DelayedRetryQueues::declare);
         consumers.values().forEach(ManagedRabbitMQConsumer::init);
     }
 
@@ -148,9 +163,10 @@ public class EventAlarmConsumer implements Closeable, Startable {
         return eventAlarmHandler::handleDelete;
     }
 
-    private Mono<Void> messageConsume(AcknowledgableDelivery ackDelivery, PersistAlarmHandler persistAlarmHandler) {
+    private Mono<Void> messageConsume(AcknowledgableDelivery ackDelivery, DelayedRetryQueues queueRetries, PersistAlarmHandler persistAlarmHandler) {
         return Mono.fromSupplier(Throwing.supplier(() -> OBJECT_MAPPER.readValue(ackDelivery.getBody(), CalendarAlarmMessageDTO.class)))
-            .flatMap(message -> persistAlarmHandler.handle(message)
-                .then(ReactorUtils.logAsMono(() -> LOGGER.debug("Consumed calendar alarm event successfully {} '{}'", message.getClass().getSimpleName(), message.eventPath()))));
+            .flatMap(message -> lanes.execute(message.eventPath(), supersededRetries.handle(message.eventPath(), ackDelivery, queueRetries,
+                persistAlarmHandler.handle(message)
+                    .then(ReactorUtils.logAsMono(() -> LOGGER.debug("Consumed calendar alarm event successfully {} '{}'", message.getClass().getSimpleName(), message.eventPath()))))));
     }
 }
@@ -32,7 +32,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.fge.lambdas.Throwing;
-import com.linagora.calendar.api.CalendarUtil;
 import com.linagora.calendar.dav.CalDavClient;
 import com.linagora.calendar.dav.DavCalendarObject;
 import com.linagora.calendar.smtp.EventEmailFilter;
@@ -59,6 +58,7 @@ public class EventAlarmHandler {
     private final SettingsBasedResolver settingsResolver;
     private final AlarmEventFactory alarmEventFactory;
     private final EventEmailFilter eventEmailFilter;
+    private final ParsedCalendarCache parsedCalendarCache;
 
     @Inject
     @Singleton
@@ -68,7 +68,8 @@ public class EventAlarmHandler {
                              OpenPaaSUserDAO openPaaSUserDAO,
                              @Named("alarm") SettingsBasedResolver settingsResolver,
                              AlarmEventFactory alarmEventFactory,
-                             EventEmailFilter eventEmailFilter) {
+                             EventEmailFilter eventEmailFilter,
+                             ParsedCalendarCache parsedCalendarCache) {
         this.alarmInstantFactory = alarmInstantFactory;
         this.alarmEventDAO = alarmEventDAO;
         this.calDavClient = calDavClient;
@@ -76,6 +77,7 @@ public class EventAlarmHandler {
         this.settingsResolver = settingsResolver;
         this.alarmEventFactory = alarmEventFactory;
         this.eventEmailFilter = eventEmailFilter;
+        this.parsedCalendarCache = parsedCalendarCache;
     }
 
     public Mono<Void> handleCreate(CalendarAlarmMessageDTO alarmMessageDTO) {
@@ -94,7 +96,7 @@ public class EventAlarmHandler {
     private Mono<Void> processCreateOrUpdate(Username username, CalendarAlarmMessageDTO alarmMessageDTO) {
 
         Mono<Calendar> calendarMono = alarmMessageDTO.rawEvent()
-            .map(CalendarUtil::parseIcs)
+            .map(parsedCalendarCache::parse)
             .map(Mono::just)
             .orElseGet(() -> calDavClient.fetchCalendarEvent(username, URI.create(alarmMessageDTO.eventPath()))
                 .map(DavCalendarObject::calendarData));
@@ -19,10 +19,10 @@
 package com.linagora.calendar.amqp;
 
 import static org.apache.james.backends.rabbitmq.Constants.EMPTY_ROUTING_KEY;
-import static org.apache.james.util.ReactorUtils.DEFAULT_CONCURRENCY;
 
 import java.io.Closeable;
 import java.nio.charset.StandardCharsets;
+import java.time.Clock;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -36,15 +36,13 @@ import jakarta.inject.Singleton;
 import org.apache.james.backends.rabbitmq.QueueArguments;
 import org.apache.james.backends.rabbitmq.ReactorRabbitMQChannelPool;
 import org.apache.james.lifecycle.api.Startable;
-import org.apache.james.util.AuditTrail;
 import org.apache.james.util.ReactorUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableMap;
+import com.linagora.calendar.storage.audit.AuditTrailEntry;
+import com.linagora.calendar.storage.audit.AuditTrailSink;
 import com.linagora.tmail.rabbitmq.ManagedRabbitMQConsumer;
 import com.linagora.tmail.rabbitmq.QueueDeclaration;
 import com.rabbitmq.client.BuiltinExchangeType;
@@ -56,6 +54,7 @@ public class EventAuditLogConsumer implements Closeable, Startable {
     private static final Logger LOGGER = LoggerFactory.getLogger(EventAuditLogConsumer.class);
     static final String AUDIT_QUEUE = "tcalendar:audit";
     static final String AUDIT_DEAD_LETTER = "tcalendar:audit:dead-letter";
+    static final String CONSUMER_NAME = "audit";
 
     private static final List<String> EXCHANGES = List.of(
         "sabre:contact:created",
@@ -105,29 +104,42 @@ public class EventAuditLogConsumer implements Closeable, Startable {
         Map.entry("sabre:addressbook:subscription:deleted", "Address Book subscription deleted"),
         Map.entry("sabre:addressbook:subscription:updated", "Address Book subscription updated"));
 
-    private static final ObjectMapper MAPPER = new ObjectMapper();
-
     private final ManagedRabbitMQConsumer consumer;
+    private final DelayedRetryQueues retryQueues;
+    private final AuditTrailBatcher batcher;
+    private final Clock clock;
 
     @Inject
     @Singleton
     public EventAuditLogConsumer(ReactorRabbitMQChannelPool channelPool,
-                                 @Named(CalendarAmqpModule.INJECT_KEY_DAV) Supplier<QueueArguments.Builder> queueArgumentSupplier) {
+                                 @Named(CalendarAmqpModule.INJECT_KEY_DAV) Supplier<QueueArguments.Builder> queueArgumentSupplier,
+                                 AmqpRetryConfiguration retryConfiguration,
+                                 AdaptiveConcurrencyLimiter.Factory limiterFactory,
+                                 AuditTrailSink auditTrailSink,
+                                 AuditTrailConfiguration auditTrailConfiguration,
+                                 Clock clock) {
+        this.clock = clock;
+        this.batcher = new AuditTrailBatcher(auditTrailSink, auditTrailConfiguration, limiterFactory.create(CONSUMER_NAME));
+        this.retryQueues = new DelayedRetryQueues(channelPool, queueArgumentSupplier, AUDIT_QUEUE,
+            retryConfiguration.delaysFor(CONSUMER_NAME));
         QueueDeclaration.Builder queueDeclaration = QueueDeclaration.builder()
             .queue(AUDIT_QUEUE)
             .deadLetterQueue(AUDIT_DEAD_LETTER);
         EXCHANGES.forEach(exchange -> queueDeclaration.binding(exchange, BuiltinExchangeType.FANOUT, EMPTY_ROUTING_KEY));
+        // Deliveries wait for their batch to be written: enough of them must be in flight to fill a batch
         this.consumer = new ManagedRabbitMQConsumer.Factory(channelPool)
             .create(ManagedRabbitMQConsumer.Parameters.builder()
                 .queueDeclaration(queueDeclaration.build())
                 .queueArguments(queueArgumentSupplier)
-                .qos(DEFAULT_CONCURRENCY)
-                .concurrency(DEFAULT_CONCURRENCY)
-                .handleDelivery(this::messageConsume)
+                .qos(auditTrailConfiguration.batchSize())
+                .concurrency(auditTrailConfiguration.batchSize())
+                .handleDelivery(delivery -> retryQueues.handle(delivery, this::messageConsume))
                 .build());
     }
 
     public void init() {
+        retryQueues.declare();
+        batcher.start();
         consumer.init();
     }
 
@@ -139,111 +151,70 @@ public class EventAuditLogConsumer implements Closeable, Startable {
     @PreDestroy
     public void close() {
         consumer.close();
+        batcher.stop();
     }
 
     private Mono<Void> messageConsume(AcknowledgableDelivery ackDelivery) {
-        return Mono.fromRunnable(() -> {
-                String body = new String(ackDelivery.getBody(), StandardCharsets.UTF_8);
-                String exchangeName = ackDelivery.getEnvelope().getExchange();
-                AuditTrail.entry()
-                    .action(exchangeName)
-                    .username(() -> extractOwner(body).orElse(null))
-                    .parameters(() -> {
-                        ImmutableMap.Builder<String, String> params = ImmutableMap.builder();
-                        extractPath(body).ifPresent(p -> params.put("path", p));
-                        extractConnectedUser(body).ifPresent(user -> params.put("connectedUser", user));
-                        return params.build();
-                    })
-                    .log(formatMessage(body, exchangeName));
-            })
+        return Mono.fromCallable(() -> toEntry(ackDelivery))
+            .flatMap(batcher::submit)
             .then(ReactorUtils.logAsMono(() -> LOGGER.debug("Consumed audit log event")));
     }
 
-    static String formatMessage(String body, String exchangeName) {
-        String message = MESSAGE_TEMPLATES.getOrDefault(exchangeName, "Unknown event");
-        Optional<String> uid = extractUid(body);
-        Optional<String> path = extractPath(body);
-        StringBuilder sb = new StringBuilder(message);
-        uid.ifPresent(u -> sb.append(" (uid=").append(u).append(")"));
-        path.ifPresent(p -> sb.append(" [").append(p).append("]"));
-        return sb.toString();
+    private AuditTrailEntry toEntry(AcknowledgableDelivery ackDelivery) {
+        String exchangeName = DelayedRetryQueues.originalExchange(ackDelivery);
+        AuditEventFields fields = parseFields(ackDelivery.getBody());
+
+        ImmutableMap.Builder<String, String> parameters = ImmutableMap.builder();
+        fields.path().ifPresent(path -> parameters.put("path", path));
+        fields.connectedUser().ifPresent(user -> parameters.put("connectedUser", user));
+
+        return new AuditTrailEntry(clock.instant(), exchangeName, fields.resourceOwner(), parameters.build(),
+            formatMessage(fields, exchangeName));
     }
 
-    public static Optional<String> extractOwner(String body) {
+    private static AuditEventFields parseFields(byte[] body) {
         try {
-            JsonNode root = MAPPER.readTree(body);
-            if (root.has("owner")) {
-                return Optional.ofNullable(root.get("owner").asText(null));
-            }
-            Optional<String> path = Optional.empty();
-            if (root.has("eventPath")) {
-                path = Optional.ofNullable(root.get("eventPath").asText(null));
-            } else if (root.has("calendarPath")) {
-                path = Optional.ofNullable(root.get("calendarPath").asText(null));
-            }
-            return path.flatMap(EventAuditLogConsumer::parseOwnerFromPath);
+            return AuditEventFields.parse(body);
         } catch (Exception e) {
-            return Optional.empty();
+            LOGGER.warn("Could not parse audit log event, auditing it without its resource", e);
+            return AuditEventFields.EMPTY;
         }
     }
 
-    /**
-     * The principal URI of the user who actually performed the action, as reported by Sabre.
-     * It may differ from the resource owner (delegation, admin impersonation), which is what
-     * makes it worth auditing. Older Sabre versions do not emit it: absence is not an error.
-     */
-    public static Optional<String> extractConnectedUser(String body) {
+    private static Optional<AuditEventFields> parseFields(String body) {
         try {
-            JsonNode root = MAPPER.readTree(body);
-            if (!root.has("connectedUser")) {
-                return Optional.empty();
-            }
-            return Optional.ofNullable(root.get("connectedUser").asText(null))
-                .filter(user -> !user.isBlank());
+            return Optional.of(AuditEventFields.parse(body.getBytes(StandardCharsets.UTF_8)));
         } catch (Exception e) {
-            LOGGER.error("Error when extracting connectedUser from audit log event", e);
             return Optional.empty();
         }
     }
 
-    private static Optional<String> parseOwnerFromPath(String path) {
-        try {
-            List<String> parts = Splitter.on('/')
-                .omitEmptyStrings()
-                .splitToList(path);
-            if (parts.size() >= 3 && !parts.getFirst().isEmpty()) {
-                return Optional.of(parts.get(1));
-            }
-            return Optional.empty();
-        } catch (Exception e) {
-            return Optional.empty();
-        }
+    static String formatMessage(String body, String exchangeName) {
+        return formatMessage(parseFields(body).orElse(AuditEventFields.EMPTY), exchangeName);
     }
 
-    private static Optional<String> extractUid(String body) {
-        try {
-            JsonNode root = MAPPER.readTree(body);
-            if (root.has("uid")) {
-                return Optional.ofNullable(root.get("uid").asText(null));
-            }
-            return Optional.empty();
-        } catch (Exception e) {
-            return Optional.empty();
-        }
+    private static String formatMessage(AuditEventFields fields, String exchangeName) {
+        String message = MESSAGE_TEMPLATES.getOrDefault(exchangeName, "Unknown event");
+        StringBuilder sb = new StringBuilder(message);
+        fields.uid().ifPresent(u -> sb.append(" (uid=").append(u).append(")"));
+        fields.path().ifPresent(p -> sb.append(" [").append(p).append("]"));
+        return sb.toString();
+    }
+
+    public static Optional<String> extractOwner(String body) {
+        return parseFields(body).flatMap(AuditEventFields::resourceOwner);
+    }
+
+    /**
+     * The principal URI of the user who actually performed the action, as reported by Sabre.
+     * It may differ from the resource owner (delegation, admin impersonation), which is what
+     * makes it worth auditing. Older Sabre versions do not emit it: absence is not an error.
+     */
+    public static Optional<String> extractConnectedUser(String body) {
+        return parseFields(body).flatMap(AuditEventFields::connectedUser);
     }
 
     public static Optional<String> extractPath(String body) {
-        try {
-            JsonNode root = MAPPER.readTree(body);
-            if (root.has("eventPath")) {
-                return Optional.ofNullable(root.get("eventPath").asText(null));
-            }
-            if (root.has("calendarPath")) {
-                return Optional.ofNullable(root.get("calendarPath").asText(null));
-            }
-            return Optional.empty();
-        } catch (Exception e) {
-            return Optional.empty();
-        }
+        return parseFields(body).flatMap(AuditEventFields::path);
     }
 }
@@ -44,6 +44,7 @@ import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.google.inject.name.Named;
 import com.linagora.calendar.amqp.model.CalendarEventBookingConfirmedNotificationEmail;
@@ -78,7 +79,10 @@ public class EventEmailConsumer implements Closeable, Startable {
 
     private final ManagedRabbitMQConsumer consumer;
     private final EventMailHandler eventMailHandler;
+    private final UpdateNotificationDigester updateNotificationDigester;
     private final EventEmailFilter eventEmailFilter;
+    private final ObjectReader messageReader;
+    private final DuplicateDeliveryFilter duplicateDeliveryFilter = new DuplicateDeliveryFilter();
     private final Metric inviteSentMetric;
     private final Metric updateSentMetric;
     private final Metric replySentMetric;
@@ -91,10 +95,14 @@ public class EventEmailConsumer implements Closeable, Startable {
     public EventEmailConsumer(ReactorRabbitMQChannelPool channelPool,
                               @Named(INJECT_KEY_DAV) Supplier<QueueArguments.Builder> queueArgumentSupplier,
                               EventMailHandler eventMailHandler,
+                              UpdateNotificationDigester updateNotificationDigester,
                               EventEmailFilter eventEmailFilter,
-                              MetricFactory metricFactory) {
+                              MetricFactory metricFactory,
+                              ParsedCalendarCache parsedCalendarCache) {
         this.eventMailHandler = eventMailHandler;
+        this.updateNotificationDigester = updateNotificationDigester;
         this.eventEmailFilter = eventEmailFilter;
+        this.messageReader = parsedCalendarCache.attachTo(OBJECT_MAPPER.readerFor(CalendarEventNotificationEmailDTO.class));
         this.consumer = new ManagedRabbitMQConsumer.Factory(channelPool)
             .create(ManagedRabbitMQConsumer.Parameters.builder()
                 .queueDeclaration(QueueDeclaration.builder()
@@ -133,13 +141,14 @@ public class EventEmailConsumer implements Closeable, Startable {
 
     private Mono<Void> consumeMessage(AcknowledgableDelivery ackDelivery) {
         return Mono.from(metricFactory.decoratePublisherWithTimerMetric("calendar.imip",
-            Mono.fromCallable(() -> OBJECT_MAPPER.readValue(ackDelivery.getBody(), CalendarEventNotificationEmailDTO.class))
-                .filter(dto -> eventEmailFilter.shouldProcess(dto.recipientEmail()))
-                .flatMap(message -> handleMessage(message)
-                    .then(ReactorUtils.logAsMono(() -> LOGGER.debug("Consumed calendar mail event message successfully {} '{}'", message.getClass().getSimpleName(), message.eventPath()))))));
+            duplicateDeliveryFilter.handleOnce(ackDelivery.getProperties(),
+                Mono.fromCallable(() -> messageReader.<CalendarEventNotificationEmailDTO>readValue(ackDelivery.getBody()))
+                    .filter(dto -> eventEmailFilter.shouldProcess(dto.recipientEmail()))
+                    .flatMap(message -> handleMessage(message, ackDelivery.getBody())
+                        .then(ReactorUtils.logAsMono(() -> LOGGER.debug("Consumed calendar mail event message successfully {} '{}'", message.getClass().getSimpleName(), message.eventPath())))))));
     }
 
-    private Mono<Void> handleMessage(CalendarEventNotificationEmailDTO calendarEventMessage) {
+    private Mono<Void> handleMessage(CalendarEventNotificationEmailDTO calendarEventMessage, byte[] rawMessage) {
         return switch (calendarEventMessage.method().getValue()) {
             case Method.VALUE_REQUEST -> {
                 if (publicAgendaEvent(calendarEventMessage.event())) {
@@ -152,11 +161,15 @@ public class EventEmailConsumer implements Closeable, Startable {
                 boolean isNewEvent = calendarEventMessage.isNewEvent().orElse(false);
                 if (isNewEvent) {
                     LOGGER.info("Received new calendar event message with method REQUEST and eventPath {}", calendarEventMessage.eventPath());
-                    yield eventMailHandler.handInviteEvent(CalendarEventInviteNotificationEmail.from(calendarEventMessage))
+                    yield updateNotificationDigester.discard(calendarEventMessage)
+                        .then(eventMailHandler.handInviteEvent(CalendarEventInviteNotificationEmail.from(calendarEventMessage)))
                         .doOnSuccess(any -> inviteSentMetric.increment());
                 } else {
                     if (calendarEventMessage.changes().isEmpty()) {
                         yield Mono.empty();
+                    } else if (updateNotificationDigester.enabled()) {
+                        LOGGER.info("Received updated calendar event message with method REQUEST and eventPath {}, adding it to its digest", calendarEventMessage.eventPath());
+                        yield updateNotificationDigester.submit(calendarEventMessage, rawMessage);
                     } else {
                         LOGGER.info("Received updated calendar event message with method REQUEST and eventPath {}", calendarEventMessage.eventPath());
                         yield eventMailHandler.handleUpdateEvent(CalendarEventUpdateNotificationEmail.from(calendarEventMessage))
@@ -178,7 +191,8 @@ public class EventEmailConsumer implements Closeable, Startable {
 
                 LOGGER.info("Received calendar event message with method CANCEL and eventPath {}", calendarEventMessage.eventPath());
                 CalendarEventCancelNotificationEmail calendarEventCancelNotificationEmail = CalendarEventCancelNotificationEmail.from(calendarEventMessage);
-                yield eventMailHandler.handleCancelEvent(calendarEventCancelNotificationEmail)
+                yield updateNotificationDigester.discard(calendarEventMessage)
+                    .then(eventMailHandler.handleCancelEvent(calendarEventCancelNotificationEmail))
                     .doOnSuccess(any -> cancelSentMetric.increment());
             }
             case Method.VALUE_COUNTER -> {
@@ -23,6 +23,9 @@ import static org.apache.james.backends.rabbitmq.Constants.EMPTY_ROUTING_KEY;
 import static org.apache.james.util.ReactorUtils.DEFAULT_CONCURRENCY;
 
 import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
 
@@ -50,6 +53,7 @@ import reactor.rabbitmq.AcknowledgableDelivery;
 
 public class EventIndexerConsumer implements Closeable, Startable {
     private static final Logger LOGGER = LoggerFactory.getLogger(EventIndexerConsumer.class);
+    static final String CONSUMER_NAME = "indexer";
 
     public enum Queue {
         ADD("calendar:event:created", "tcalendar:event:created:search", "tcalendar:event:created:search-dead-letter"),
@@ -83,24 +87,37 @@ public class EventIndexerConsumer implements Closeable, Startable {
     private final CalendarSearchService calendarSearchService;
     private final MetricFactory metricFactory;
     private final Map<Queue, ManagedRabbitMQConsumer> consumers;
+    private final List<DelayedRetryQueues> retryQueues = new ArrayList<>();
+    // Shared by the created/updated/deleted consumers so that the messages of an event are indexed in order
+    private final KeyedSerialLanes lanes = new KeyedSerialLanes(DEFAULT_CONCURRENCY);
+    private final SupersededRetries supersededRetries;
+    private final AdaptiveConcurrencyLimiter limiter;
 
     @Inject
     @Singleton
     public EventIndexerConsumer(ReactorRabbitMQChannelPool channelPool,
                                 CalendarSearchService calendarSearchService,
                                 @Named(INJECT_KEY_DAV) Supplier<QueueArguments.Builder> queueArgumentSupplier,
-                                MetricFactory metricFactory) {
+                                MetricFactory metricFactory,
+                                AmqpRetryConfiguration retryConfiguration,
+                                AdaptiveConcurrencyLimiter.Factory limiterFactory) {
         this.calendarSearchService = calendarSearchService;
         this.metricFactory = metricFactory;
+        this.limiter = limiterFactory.create(CONSUMER_NAME);
+        List<Duration> retryDelays = retryConfiguration.delaysFor(CONSUMER_NAME);
+        this.supersededRetries = new SupersededRetries(retryDelays);
         this.consumers = Map.of(
-            Queue.ADD, createConsumer(channelPool, queueArgumentSupplier, Queue.ADD, handlerAddOrUpdate),
-            Queue.UPDATE, createConsumer(channelPool, queueArgumentSupplier, Queue.UPDATE, handlerAddOrUpdate),
-            Queue.DELETE, createConsumer(channelPool, queueArgumentSupplier, Queue.DELETE, handlerDelete));
+            Queue.ADD, createConsumer(channelPool, queueArgumentSupplier, retryDelays, Queue.ADD, handlerAddOrUpdate),
+            Queue.UPDATE, createConsumer(channelPool, queueArgumentSupplier, retryDelays, Queue.UPDATE, handlerAddOrUpdate),
+            Queue.DELETE, createConsumer(channelPool, queueArgumentSupplier, retryDelays, Queue.DELETE, handlerDelete));
     }
 
     private ManagedRabbitMQConsumer createConsumer(ReactorRabbitMQChannelPool channelPool,
                                                    Supplier<QueueArguments.Builder> queueArgumentSupplier,
+                                                   List<Duration> retryDelays,
                                                    Queue queue, CalendarEventHandler handler) {
+        DelayedRetryQueues queueRetries = new DelayedRetryQueues(channelPool, queueArgumentSupplier, queue.queueName, retryDelays);
+        retryQueues.add(queueRetries);
         return new ManagedRabbitMQConsumer.Factory(channelPool)
             .create(ManagedRabbitMQConsumer.Parameters.builder()
                 .queueDeclaration(QueueDeclaration.builder()
@@ -109,13 +126,14 @@ public class EventIndexerConsumer implements Closeable, Startable {
                     .deadLetterQueue(queue.deadLetter)
                     .build())
                 .queueArguments(queueArgumentSupplier)
-                .qos(DEFAULT_CONCURRENCY)
-                .concurrency(DEFAULT_CONCURRENCY)
-                .handleDelivery(delivery -> messageConsume(delivery, handler.deserialize(delivery.getBody()), handler))
+                .qos(limiter.maxConcurrency())
+                .concurrency(limiter.maxConcurrency())
+                .handleDelivery(delivery -> messageConsume(delivery, queueRetries, handler))
                 .build());
     }
 
     public void init() {
+        retryQueues.forEach(DelayedRetryQueues::declare);
         consumers.values().forEach(ManagedRabbitMQConsumer::init);
     }
 
@@ -173,10 +191,11 @@ public class EventIndexerConsumer implements Closeable, Startable {
         }
     };
 
-    private Mono<Void> messageConsume(AcknowledgableDelivery ackDelivery, Mono<CalendarEventMessage> messagePublisher, CalendarEventHandler calendarEventHandler) {
-        return messagePublisher
-            .flatMap(message -> Mono.from(metricFactory.decoratePublisherWithTimerMetric("calendar.event.indexing",
-                calendarEventHandler.handle(message)
-                    .then(ReactorUtils.logAsMono(() -> LOGGER.debug("Consumed calendar event message successfully {} '{}'", message.getClass().getSimpleName(), message.eventPath))))));
+    private Mono<Void> messageConsume(AcknowledgableDelivery ackDelivery, DelayedRetryQueues queueRetries, CalendarEventHandler calendarEventHandler) {
+        return calendarEventHandler.deserialize(ackDelivery.getBody())
+            .flatMap(message -> lanes.execute(message.eventPath, supersededRetries.handle(message.eventPath, ackDelivery, queueRetries,
+                limiter.execute(Mono.from(metricFactory.decoratePublisherWithTimerMetric("calendar.event.indexing",
+                    calendarEventHandler.handle(message)
+                        .then(ReactorUtils.logAsMono(() -> LOGGER.debug("Consumed calendar event message successfully {} '{}'", message.getClass().getSimpleName(), message.eventPath)))))))));
     }
 }
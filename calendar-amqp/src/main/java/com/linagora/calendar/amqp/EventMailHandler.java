@@ -27,11 +27,13 @@ import static com.linagora.calendar.smtp.template.MimeAttachment.ATTACHMENT_DISP
 
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
+import jakarta.mail.internet.InternetAddress;
 
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -62,6 +64,7 @@ import com.linagora.calendar.api.EventParticipationActionLinkFactory;
 import com.linagora.calendar.api.EventParticipationActionLinkFactory.ActionLinks;
 import com.linagora.calendar.smtp.Mail;
 import com.linagora.calendar.smtp.MailSender;
+import com.linagora.calendar.smtp.RecipientGroupingMailSender;
 import com.linagora.calendar.smtp.template.Language;
 import com.linagora.calendar.smtp.template.MessageGenerator;
 import com.linagora.calendar.smtp.template.MimeAttachment;
@@ -108,6 +111,7 @@ public class EventMailHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(EventMailHandler.class);
     private final MailSender.Factory mailSenderFactory;
+    private final RecipientGroupingMailSender recipientGroupingMailSender;
     private final MessageGenerator.Factory messageGeneratorFactory;
     private final EventInCalendarLinkFactory eventInCalendarLinkFactory;
     private final UsersRepository usersRepository;
@@ -118,6 +122,7 @@ public class EventMailHandler {
 
     @Inject
     public EventMailHandler(MailSender.Factory mailSenderFactory,
+                            RecipientGroupingMailSender recipientGroupingMailSender,
                             MessageGenerator.Factory messageGeneratorFactory,
                             EventInCalendarLinkFactory eventInCalendarLinkFactory,
                             UsersRepository usersRepository, ResourceDAO resourceDAO,
@@ -125,6 +130,7 @@ public class EventMailHandler {
                             @Named("language_timezone") SettingsBasedResolver settingsResolver,
                             EventParticipationActionLinkFactory participationActionLinkFactory) {
         this.mailSenderFactory = mailSenderFactory;
+        this.recipientGroupingMailSender = recipientGroupingMailSender;
         this.messageGeneratorFactory = messageGeneratorFactory;
         this.eventInCalendarLinkFactory = eventInCalendarLinkFactory;
         this.usersRepository = usersRepository;
@@ -138,7 +144,7 @@ public class EventMailHandler {
         Mono<Message> generate(ResolvedSettings resolvedSettings);
 
         static List<MimeAttachment> createAttachments(Calendar calendar, Method method) {
-            byte[] calendarAsBytes = CalendarUtil.withMethod(calendar, method).toString().getBytes(StandardCharsets.UTF_8);
+            byte[] calendarAsBytes = CalendarUtil.withMethodView(calendar, method).toString().getBytes(StandardCharsets.UTF_8);
             return List.of(
                 MimeAttachment.builder()
                     .contentType(ContentType.of("text/calendar; charset=UTF-8; method=" + method.getValue()))
@@ -168,6 +174,20 @@ public class EventMailHandler {
         }
     }
 
+    /**
+     * A generator whose content does not depend on the recipient, so that recipients with equal fingerprints can be sent
+     * a single rendered message.
+     */
+    interface SharedContentMessageGenerator extends EventMessageGenerator {
+        Mono<Object> fingerprint(ResolvedSettings resolvedSettings);
+
+        Mono<Message> generate(ResolvedSettings resolvedSettings, List<Username> recipients);
+    }
+
+    record ContentFingerprint(EventType eventType, Locale locale, MailAddress from, Map<String, Object> model, String calendar) {
+
+    }
+
     class InviteEventMessageGenerator implements EventMessageGenerator {
         private final CalendarEventInviteNotificationEmail event;
         private final Username recipientUser;
@@ -227,7 +247,7 @@ public class EventMailHandler {
         }
     }
 
-    class CancelEventMessageGenerator implements EventMessageGenerator {
+    class CancelEventMessageGenerator implements SharedContentMessageGenerator {
         private final CalendarEventCancelNotificationEmail event;
         private final Username recipientUser;
         private final boolean isInternalUser;
@@ -240,17 +260,28 @@ public class EventMailHandler {
 
         @Override
         public Mono<Message> generate(ResolvedSettings resolvedSettings) {
+            return generate(resolvedSettings, List.of(recipientUser));
+        }
+
+        @Override
+        public Mono<Object> fingerprint(ResolvedSettings resolvedSettings) {
+            return Mono.fromCallable(() -> new ContentFingerprint(EventType.CANCEL, resolvedSettings.locale(), event.base().senderEmail(),
+                    toPugModel(resolvedSettings), event.base().event().toString()));
+        }
+
+        @Override
+        public Mono<Message> generate(ResolvedSettings resolvedSettings, List<Username> recipients) {
             return Mono.fromCallable(() -> messageGeneratorFactory.forLocalizedFeature(new Language(resolvedSettings.locale()), EventType.CANCEL.asTemplateType()))
                 .subscribeOn(Schedulers.boundedElastic())
-                .flatMap(messageGenerator -> generateCancelMessage(resolvedSettings, messageGenerator))
+                .flatMap(messageGenerator -> generateCancelMessage(resolvedSettings, messageGenerator, recipients))
                 .onErrorResume(error -> Mono.error(new EventMailHandlerException("Error occurred when generate cancel event message", error)));
         }
 
-        private Mono<Message> generateCancelMessage(ResolvedSettings resolvedSettings, MessageGenerator messageGenerator) {
+        private Mono<Message> generateCancelMessage(ResolvedSettings resolvedSettings, MessageGenerator messageGenerator, List<Username> recipients) {
             List<MimeAttachment> attachments = cancelAttachments();
 
             MailAddress fromAddress = event.base().senderEmail();
-            return messageGenerator.generate(recipientUser, fromAddress, toPugModel(resolvedSettings), attachments)
+            return messageGenerator.generate(recipients, fromAddress, toPugModel(resolvedSettings), attachments)
                 .map(message -> {
                     message.getHeader().addField(new RawField("Auto-Submitted", "auto-generated"));
                     return message;
@@ -329,10 +360,12 @@ public class EventMailHandler {
 
             MailAddress fromAddress = event.base().senderEmail();
 
-            return messageGenerator.resolveInternetAddress(Username.fromMailAddress(fromAddress))
-                .flatMap(fromInternetAddress -> {
+            Username fromUser = Username.fromMailAddress(fromAddress);
+            return messageGenerator.resolveInternetAddresses(List.of(fromUser, recipientUser))
+                .flatMap(addresses -> {
+                    InternetAddress fromInternetAddress = addresses.get(fromUser);
                     Map<String, Object> model = modelBuilder.senderDisplayName(fromInternetAddress.getPersonal()).buildAsMap();
-                    return messageGenerator.generate(recipientUser, fromInternetAddress, model, attachments);
+                    return messageGenerator.generate(addresses.get(recipientUser), fromInternetAddress, model, attachments);
                 })
                 .map(message -> {
                     message.getHeader().addField(new RawField("Auto-Submitted", "auto-generated"));
@@ -464,10 +497,7 @@ public class EventMailHandler {
 
     private Mono<Void> handleEvent(EventMessageGenerator eventMessageGenerator, Username recipientUser, MailAddress senderEmail, String eventPath, String eventUid) {
         return settingsResolver.resolveOrDefault(recipientUser, Username.fromMailAddress(senderEmail))
-            .flatMap(eventMessageGenerator::generate)
-            .flatMap(mailMessage -> mailSenderFactory.create()
-                .flatMap(mailSender -> mailSender.send(new Mail(MaybeSender.of(senderEmail),
-                    ImmutableList.of(Throwing.supplier(recipientUser::asMailAddress).get()), mailMessage)))
+            .flatMap(resolvedSettings -> send(eventMessageGenerator, resolvedSettings, recipientUser, senderEmail)
                 .doOnSuccess(any -> AuditTrail.entry()
                     .action("IMIP")
                     .action(eventMessageGenerator.getClass().getName())
@@ -478,4 +508,16 @@ public class EventMailHandler {
                         "eventUid", eventUid))
                     .log("IMIP mail sent")));
     }
+
+    private Mono<Void> send(EventMessageGenerator eventMessageGenerator, ResolvedSettings resolvedSettings, Username recipientUser, MailAddress senderEmail) {
+        MailAddress recipient = Throwing.supplier(recipientUser::asMailAddress).get();
+        if (eventMessageGenerator instanceof SharedContentMessageGenerator sharedContentMessageGenerator) {
+            return sharedContentMessageGenerator.fingerprint(resolvedSettings)
+                .flatMap(fingerprint -> recipientGroupingMailSender.send(fingerprint, MaybeSender.of(senderEmail), recipient,
+                    recipients -> sharedContentMessageGenerator.generate(resolvedSettings, recipients.stream().map(Username::fromMailAddress).toList())));
+        }
+        return eventMessageGenerator.generate(resolvedSettings)
+            .flatMap(mailMessage -> mailSenderFactory.create()
+                .flatMap(mailSender -> mailSender.send(new Mail(MaybeSender.of(senderEmail), ImmutableList.of(recipient), mailMessage))));
+    }
 }
@@ -39,6 +39,7 @@ import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.github.fge.lambdas.Throwing;
 import com.google.inject.name.Named;
@@ -84,13 +85,16 @@ public class EventResourceConsumer implements Closeable, Startable {
 
     private final Map<Queue, ManagedRabbitMQConsumer> consumers;
     private final EventResourceHandler eventResourceHandler;
+    private final ObjectReader messageReader;
 
     @Inject
     @Singleton
     public EventResourceConsumer(ReactorRabbitMQChannelPool channelPool,
                                  @Named(INJECT_KEY_DAV) Supplier<QueueArguments.Builder> queueArgumentSupplier,
-                                 EventResourceHandler eventResourceHandler) {
+                                 EventResourceHandler eventResourceHandler,
+                                 ParsedCalendarCache parsedCalendarCache) {
         this.eventResourceHandler = eventResourceHandler;
+        this.messageReader = parsedCalendarCache.attachTo(OBJECT_MAPPER.readerFor(CalendarResourceMessageDTO.class));
         this.consumers = Map.of(
             Queue.CREATE, createConsumer(channelPool, queueArgumentSupplier, Queue.CREATE, handleCreateEvent()),
             Queue.ACCEPT, createConsumer(channelPool, queueArgumentSupplier, Queue.ACCEPT, handleAcceptEvent()),
@@ -145,7 +149,7 @@ public class EventResourceConsumer implements Closeable, Startable {
     }
 
     private Mono<Void> messageConsume(AcknowledgableDelivery ackDelivery, EventHandler eventHandler) {
-        return Mono.fromSupplier(Throwing.supplier(() -> OBJECT_MAPPER.readValue(ackDelivery.getBody(), CalendarResourceMessageDTO.class)))
+        return Mono.fromSupplier(Throwing.supplier(() -> messageReader.<CalendarResourceMessageDTO>readValue(ackDelivery.getBody())))
             .flatMap(message -> eventHandler.handle(message)
                 .then(ReactorUtils.logAsMono(() -> LOGGER.debug("Consumed calendar resource event successfully {} '{}'", message.getClass().getSimpleName(), message.eventPath()))));
     }
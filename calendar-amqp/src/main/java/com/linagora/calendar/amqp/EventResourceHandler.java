@@ -30,6 +30,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
@@ -51,6 +52,7 @@ import com.linagora.calendar.smtp.EventEmailFilter;
 import com.linagora.calendar.smtp.Mail;
 import com.linagora.calendar.smtp.MailSender;
 import com.linagora.calendar.smtp.i18n.I18NTranslator;
+import com.linagora.calendar.smtp.template.InternetAddressResolver;
 import com.linagora.calendar.smtp.template.Language;
 import com.linagora.calendar.smtp.template.MailTemplateConfiguration;
 import com.linagora.calendar.smtp.template.MessageGenerator;
@@ -109,6 +111,7 @@ public class EventResourceHandler {
     private final String resourceReplyURL;
     private final JwtSigner jwtSigner;
     private final CalDavEventRepository calDavEventRepository;
+    private final InternetAddressResolver internetAddressResolver;
 
     @Inject
     public EventResourceHandler(ResourceService resourceService,
@@ -119,7 +122,8 @@ public class EventResourceHandler {
                                 EventEmailFilter eventEmailFilter,
                                 MailTemplateConfiguration mailTemplateConfiguration,
                                 @Named("selfUrl") URL calendarBaseUrl,
-                                JwtSigner jwtSigner, CalDavEventRepository calDavEventRepository) {
+                                JwtSigner jwtSigner, CalDavEventRepository calDavEventRepository,
+                                InternetAddressResolver internetAddressResolver) {
         this.resourceService = resourceService;
         this.mailSenderFactory = mailSenderFactory;
         this.messageGeneratorFactory = messageGeneratorFactory;
@@ -132,6 +136,7 @@ public class EventResourceHandler {
             .orElseThrow(() -> new IllegalArgumentException("Sender address must not be empty"));
         this.resourceReplyURL = calendarBaseUrl.toString() + RESOURCE_REPLY_URI;
         this.jwtSigner = jwtSigner;
+        this.internetAddressResolver = internetAddressResolver;
     }
 
     public Mono<Void> handleCreateEvent(CalendarResourceMessageDTO message) {
@@ -165,12 +170,28 @@ public class EventResourceHandler {
     }
 
     private Mono<Void> sendValidationEmailToAdministrators(CalendarResourceMessageDTO message, ResourceWithAdministration resourceWithAdministration) {
-        return Flux.fromIterable(resourceWithAdministration.administrators())
+        List<OpenPaaSUser> administrators = resourceWithAdministration.administrators().stream()
             .filter(Throwing.predicate(openPaaSUser -> eventEmailFilter.shouldProcess(openPaaSUser.username().asMailAddress())))
+            .toList();
+        return prefetchInternetAddresses(administrators)
+            .thenMany(Flux.fromIterable(administrators))
             .flatMap(Throwing.function(openPaaSUser -> sendRequestMail(message, resourceWithAdministration.resource().name(), openPaaSUser.username().asMailAddress())))
             .then();
     }
 
+    // Resolves the display names of the sender and of all the administrators in one lookup, so that generating each
+    // administrator's mail is served by the resolver memo.
+    private Mono<Void> prefetchInternetAddresses(List<OpenPaaSUser> administrators) {
+        if (administrators.isEmpty()) {
+            return Mono.empty();
+        }
+        return internetAddressResolver.resolveAll(Stream.concat(
+                    Stream.of(Username.fromMailAddress(senderAddress)),
+                    administrators.stream().map(OpenPaaSUser::username))
+                .toList())
+            .then();
+    }
+
     public Mono<Void> handleAcceptEvent(CalendarResourceMessageDTO message) {
         LOGGER.debug("Handle accept event with resource message containing resourceId {} and eventPath {}", message.resourceId(), message.eventPath());
         return handleReplyEvent(message, APPROVED);
@@ -59,33 +59,39 @@ import net.fortuna.ical4j.model.property.Status;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.rabbitmq.OutboundMessage;
-import reactor.rabbitmq.Sender;
 
 class ItipEmailNotificationPublisher {
 
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().registerModule(new Jdk8Module());
     private static final boolean MARK_AS_NEW_EVENT = true;
 
-    private final Sender sender;
+    private final ConfirmedBatchPublisher publisher;
     private final NotificationStrategy singleEventNotificationStrategy;
     private final NotificationStrategy recurringEventNotificationStrategy;
     private final Function<byte[], OutboundMessage> outboundMessageFunction;
     private final Clock clock;
+    private final ParsedCalendarCache parsedCalendarCache;
 
-    public ItipEmailNotificationPublisher(Sender sender,
+    public ItipEmailNotificationPublisher(ConfirmedBatchPublisher publisher,
                                           Function<byte[], OutboundMessage> outboundMessageFunction,
-                                          Clock clock) {
-        this.sender = sender;
-        this.singleEventNotificationStrategy = new SingleEventNotificationStrategy();
-        this.recurringEventNotificationStrategy = new RecurringEventNotificationStrategy();
+                                          Clock clock,
+                                          ParsedCalendarCache parsedCalendarCache) {
+        this.publisher = publisher;
+        CalendarDiffCache calendarDiffCache = new CalendarDiffCache();
+        this.singleEventNotificationStrategy = new SingleEventNotificationStrategy(calendarDiffCache);
+        this.recurringEventNotificationStrategy = new RecurringEventNotificationStrategy(calendarDiffCache);
         this.outboundMessageFunction = outboundMessageFunction;
         this.clock = clock;
+        this.parsedCalendarCache = parsedCalendarCache;
     }
 
     Mono<Void> send(ItipLocalDeliveryDTO localDelivery,
                     URI eventPath,
                     Optional<Calendar> oldEventCalendar) {
-        return sender.send(toOutboundMessages(localDelivery, eventPath, oldEventCalendar)).then();
+        return toOutboundMessages(localDelivery, eventPath, oldEventCalendar)
+            .collectList()
+            .filter(messages -> !messages.isEmpty())
+            .flatMap(publisher::publish);
     }
 
     private Flux<OutboundMessage> toOutboundMessages(ItipLocalDeliveryDTO localDelivery,
@@ -93,14 +99,14 @@ class ItipEmailNotificationPublisher {
                                                      Optional<Calendar> oldEventCalendar) {
         return Mono.fromCallable(() -> buildNotificationMessages(localDelivery, eventPath, oldEventCalendar))
             .flatMapMany(Flux::fromIterable)
-            .flatMap(payload -> toOutboundMessage(payload, localDelivery.uid()));
+            .concatMap(payload -> toOutboundMessage(payload, localDelivery.uid()));
     }
 
     @VisibleForTesting
     public List<NotificationEmailDTO> buildNotificationMessages(ItipLocalDeliveryDTO localDelivery,
                                                                 URI eventPath,
                                                                 Optional<Calendar> oldEventCalendar) {
-        Calendar newCalendar = CalendarUtil.parseIcs(localDelivery.message());
+        Calendar newCalendar = parsedCalendarCache.parse(localDelivery.message());
         return notificationStrategy(newCalendar)
             .handle(localDelivery, eventPath, newCalendar, oldEventCalendar)
             .stream()
@@ -115,7 +121,7 @@ class ItipEmailNotificationPublisher {
      * a future slot therefore still notifies attendees.
      */
     private boolean notExpired(NotificationEmailDTO notification) {
-        Calendar calendar = CalendarUtil.parseIcs(notification.event());
+        Calendar calendar = parsedCalendarCache.parse(notification.event());
         return !CalendarEventUtils.vEventExpired(EventParseUtils.getFirstEvent(calendar), clock);
     }
 
@@ -143,6 +149,12 @@ class ItipEmailNotificationPublisher {
     }
 
     private static class SingleEventNotificationStrategy implements NotificationStrategy {
+        private final CalendarDiffCache calendarDiffCache;
+
+        SingleEventNotificationStrategy(CalendarDiffCache calendarDiffCache) {
+            this.calendarDiffCache = calendarDiffCache;
+        }
+
         @Override
         public List<NotificationEmailDTO> handle(ItipLocalDeliveryDTO localDelivery,
                                                  URI eventPath,
@@ -164,7 +176,7 @@ class ItipEmailNotificationPublisher {
         }
 
         private List<NotificationEmailDTO> buildEventDiffNotifications(ItipLocalDeliveryDTO localDelivery, Calendar newCalendar, Calendar old, Builder builderTemplate) {
-            return CalendarDiffCalculator.calculate(localDelivery.strippedRecipient(), newCalendar, old)
+            return calendarDiffCache.diff(newCalendar, old).forRecipient(localDelivery.strippedRecipient())
                 .stream()
                 .map(diff -> builderTemplate
                     .isNewEvent(diff.isNewEvent())
@@ -174,6 +186,12 @@ class ItipEmailNotificationPublisher {
     }
 
     private static class RecurringEventNotificationStrategy implements NotificationStrategy {
+        private final CalendarDiffCache calendarDiffCache;
+
+        RecurringEventNotificationStrategy(CalendarDiffCache calendarDiffCache) {
+            this.calendarDiffCache = calendarDiffCache;
+        }
+
         @Override
         public List<NotificationEmailDTO> handle(ItipLocalDeliveryDTO localDelivery,
                                                  URI eventPath,
@@ -198,7 +216,7 @@ class ItipEmailNotificationPublisher {
                                                                       Calendar oldCalendar) {
             Map<Temporal, Calendar> cancelCalendarsByRecurrence = computeCancelledCalendars(newCalendar, oldCalendar);
 
-            List<NotificationEmailDTO> requestNotifications = CalendarDiffCalculator.calculate(localDelivery.strippedRecipient(), newCalendar, oldCalendar)
+            List<NotificationEmailDTO> requestNotifications = calendarDiffCache.diff(newCalendar, oldCalendar).forRecipient(localDelivery.strippedRecipient())
                 .stream()
                 .filter(diff -> shouldSendRequest(diff, cancelCalendarsByRecurrence.keySet()))
                 .map(diff -> buildChangedOccurrenceNotification(NotificationEmailDTO.builder(localDelivery).withEventPath(eventPath),
@@ -221,7 +239,7 @@ class ItipEmailNotificationPublisher {
                                                                        URI eventPath,
                                                                        Calendar newCalendar,
                                                                        Calendar oldCalendar) {
-            return CalendarDiffCalculator.calculate(localDelivery.strippedRecipient(), newCalendar, oldCalendar)
+            return calendarDiffCache.diff(newCalendar, oldCalendar).forRecipient(localDelivery.strippedRecipient())
                 .stream()
                 .map(diff -> buildChangedOccurrenceNotification(
                     NotificationEmailDTO.builder(localDelivery).withEventPath(eventPath), newCalendar, diff))
@@ -249,7 +267,7 @@ class ItipEmailNotificationPublisher {
 
             return vevents.stream()
                 .map(vevent -> payloadBuilderTemplate.copy()
-                    .withEvent(CalendarUtil.withSingleVEvent(newCalendar, vevent).toString())
+                    .withEvent(CalendarUtil.withSingleVEventView(newCalendar, vevent).toString())
                     .build())
                 .toList();
         }
@@ -258,7 +276,7 @@ class ItipEmailNotificationPublisher {
                                                                         Calendar newCalendar,
                                                                         EventDiff diff) {
             NotificationEmailDTO.Builder payloadBuilder = payloadBuilderTemplate
-                .withEvent(CalendarUtil.withSingleVEvent(newCalendar, diff.vevent()).toString())
+                .withEvent(CalendarUtil.withSingleVEventView(newCalendar, diff.vevent()).toString())
                 .isNewEvent(diff.isNewEvent());
             Optional<ObjectNode> serializedChanges = diff.serializeChanges();
             serializedChanges.ifPresent(payloadBuilder::withChanges);
@@ -283,10 +301,8 @@ class ItipEmailNotificationPublisher {
             cancelledEvent.removeAll(Property.STATUS);
             cancelledEvent.add(new Status(Status.VALUE_CANCELLED));
 
-            Calendar calendar = CalendarUtil.withSingleVEvent(templateCalendar, cancelledEvent);
-            calendar.removeAll(Property.METHOD);
-            calendar.add(new Method(Method.VALUE_CANCEL));
-            return calendar;
+            return CalendarUtil.withMethodView(CalendarUtil.withSingleVEventView(templateCalendar, cancelledEvent),
+                new Method(Method.VALUE_CANCEL));
         }
 
         private Set<Temporal> indexExDates(VEvent masterEvent) {
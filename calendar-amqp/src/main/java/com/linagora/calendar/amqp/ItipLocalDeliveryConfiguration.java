@@ -0,0 +1,90 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.Optional;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.james.util.DurationParser;
+
+import com.google.common.base.Preconditions;
+
+public record ItipLocalDeliveryConfiguration(FanOutMode fanOutMode,
+                                             int fanOutConcurrency,
+                                             int publishBatchSize,
+                                             Duration publishBatchWindow,
+                                             int publishRetries) {
+
+    public enum FanOutMode {
+        /**
+         * Re-publishes one message per recipient, each of them being consumed independently (ADR-0001).
+         */
+        BROKER,
+        /**
+         * Processes the recipients of a message in this consumer. Only the recipients that failed are re-published.
+         */
+        IN_PROCESS
+    }
+
+    public static final String FAN_OUT_MODE_PROPERTY = "itip.local.delivery.fanout.mode";
+    public static final FanOutMode FAN_OUT_MODE_DEFAULT = FanOutMode.BROKER;
+    public static final String FAN_OUT_CONCURRENCY_PROPERTY = "itip.local.delivery.fanout.concurrency";
+    public static final int FAN_OUT_CONCURRENCY_DEFAULT = 8;
+    public static final String PUBLISH_BATCH_SIZE_PROPERTY = "itip.local.delivery.publish.batch.size";
+    public static final int PUBLISH_BATCH_SIZE_DEFAULT = 64;
+    public static final String PUBLISH_BATCH_WINDOW_PROPERTY = "itip.local.delivery.publish.batch.window";
+    public static final Duration PUBLISH_BATCH_WINDOW_DEFAULT = Duration.ofMillis(10);
+    public static final String PUBLISH_RETRIES_PROPERTY = "itip.local.delivery.publish.retries";
+    public static final int PUBLISH_RETRIES_DEFAULT = 3;
+
+    public static final ItipLocalDeliveryConfiguration DEFAULT = new ItipLocalDeliveryConfiguration(FAN_OUT_MODE_DEFAULT, FAN_OUT_CONCURRENCY_DEFAULT,
+        PUBLISH_BATCH_SIZE_DEFAULT, PUBLISH_BATCH_WINDOW_DEFAULT, PUBLISH_RETRIES_DEFAULT);
+
+    public static ItipLocalDeliveryConfiguration parse(Configuration configuration) {
+        FanOutMode fanOutMode = Optional.ofNullable(configuration.getString(FAN_OUT_MODE_PROPERTY, null))
+            .map(value -> switch (value.trim().toLowerCase(Locale.US)) {
+                case "broker" -> FanOutMode.BROKER;
+                case "in-process" -> FanOutMode.IN_PROCESS;
+                default -> throw new IllegalArgumentException("Invalid value for '" + FAN_OUT_MODE_PROPERTY + "': " + value);
+            })
+            .orElse(FAN_OUT_MODE_DEFAULT);
+        Duration publishBatchWindow = Optional.ofNullable(configuration.getString(PUBLISH_BATCH_WINDOW_PROPERTY, null))
+            .map(value -> DurationParser.parse(value, ChronoUnit.MILLIS))
+            .orElse(PUBLISH_BATCH_WINDOW_DEFAULT);
+
+        return new ItipLocalDeliveryConfiguration(fanOutMode,
+            configuration.getInt(FAN_OUT_CONCURRENCY_PROPERTY, FAN_OUT_CONCURRENCY_DEFAULT),
+            configuration.getInt(PUBLISH_BATCH_SIZE_PROPERTY, PUBLISH_BATCH_SIZE_DEFAULT),
+            publishBatchWindow,
+            configuration.getInt(PUBLISH_RETRIES_PROPERTY, PUBLISH_RETRIES_DEFAULT));
+    }
+
+    public ItipLocalDeliveryConfiguration {
+        Preconditions.checkNotNull(fanOutMode, "'%s' must not be null", FAN_OUT_MODE_PROPERTY);
+        Preconditions.checkArgument(fanOutConcurrency > 0, "'%s' must be positive", FAN_OUT_CONCURRENCY_PROPERTY);
+        Preconditions.checkArgument(publishBatchSize > 0, "'%s' must be positive", PUBLISH_BATCH_SIZE_PROPERTY);
+        Preconditions.checkNotNull(publishBatchWindow, "'%s' must not be null", PUBLISH_BATCH_WINDOW_PROPERTY);
+        Preconditions.checkArgument(!publishBatchWindow.isNegative() && !publishBatchWindow.isZero(), "'%s' must be positive", PUBLISH_BATCH_WINDOW_PROPERTY);
+        Preconditions.checkArgument(publishRetries >= 0, "'%s' must not be negative", PUBLISH_RETRIES_PROPERTY);
+    }
+}
@@ -20,7 +20,6 @@ package com.linagora.calendar.amqp;
 
 import static com.linagora.calendar.amqp.CalendarAmqpModule.INJECT_KEY_DAV;
 import static org.apache.james.backends.rabbitmq.Constants.EMPTY_ROUTING_KEY;
-import static org.apache.james.util.ReactorUtils.DEFAULT_CONCURRENCY;
 
 import java.io.Closeable;
 import java.net.URI;
@@ -48,7 +47,6 @@ import org.slf4j.LoggerFactory;
 
 import com.github.fge.lambdas.Throwing;
 import com.google.inject.name.Named;
-import com.linagora.calendar.api.CalendarUtil;
 import com.linagora.calendar.dav.CalDavClient;
 import com.linagora.calendar.dav.CalDavClient.ItipRequest;
 import com.linagora.calendar.dav.dto.CalendarReportJsonResponse;
@@ -76,7 +74,9 @@ import reactor.rabbitmq.Sender;
  * <a href="https://github.com/linagora/esn-sabre/blob/master/adr/0001-async-scheduling.md">ADR-0001</a>.
  *
  * <p><b>Phase 1 — Fan-out</b> ({@code recipients.length > 1}): re-publishes one message per
- * recipient to the same exchange, then acks the original.
+ * recipient to the same exchange, then acks the original. With the
+ * {@link ItipLocalDeliveryConfiguration.FanOutMode#IN_PROCESS in-process} fan-out mode, recipients are
+ * processed straight away with a bounded concurrency and only the failed ones are re-published.
  *
  * <p><b>Phase 2 — Process</b> ({@code recipients.length === 1}): submits {@code POST /itip} to
  * Sabre impersonating the recipient, then publishes a {@code calendar:event:notificationEmail:send}
@@ -88,26 +88,38 @@ public class ItipLocalDeliveryConsumer implements Closeable, Startable {
     public static final String QUEUE_NAME = "tcalendar:itip:localDelivery";
     public static final String DEAD_LETTER_QUEUE = "tcalendar:itip:localDelivery:dead-letter";
     private static final boolean SKIP = true;
+    static final String CONSUMER_NAME = "itip";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ItipLocalDeliveryConsumer.class);
     private final ManagedRabbitMQConsumer consumer;
     private final Sender sender;
     private final CalDavClient calDavClient;
     private final LocalRecipientResolver localRecipientResolver;
+    private final ConfirmedBatchPublisher notificationPublisher;
     private final ItipEmailNotificationPublisher itipEmailNotificationPublisher;
+    private final ParsedCalendarCache parsedCalendarCache;
+    private final ItipLocalDeliveryConfiguration configuration;
+    private final AdaptiveConcurrencyLimiter limiter;
 
     @Inject
     public ItipLocalDeliveryConsumer(ReactorRabbitMQChannelPool channelPool,
                                      @Named(INJECT_KEY_DAV) Supplier<QueueArguments.Builder> queueArgumentSupplier,
                                      CalDavClient calDavClient,
                                      LocalRecipientResolver localRecipientResolver,
-                                     @Named("itipEventMessagesPrefetchCount") int prefetchCount,
-                                     Clock clock) {
+                                     Clock clock,
+                                     ParsedCalendarCache parsedCalendarCache,
+                                     ItipLocalDeliveryConfiguration configuration,
+                                     AdaptiveConcurrencyLimiter.Factory limiterFactory) {
         this.sender = channelPool.getSender();
+        this.limiter = limiterFactory.create(CONSUMER_NAME);
+        this.configuration = configuration;
         this.calDavClient = calDavClient;
         this.localRecipientResolver = localRecipientResolver;
-        this.itipEmailNotificationPublisher = new ItipEmailNotificationPublisher(sender,
-            bytes -> new OutboundMessage(EventEmailConsumer.EXCHANGE_NAME, EMPTY_ROUTING_KEY, bytes), clock);
+        this.parsedCalendarCache = parsedCalendarCache;
+        this.notificationPublisher = new ConfirmedBatchPublisher(sender, configuration.publishBatchSize(),
+            configuration.publishBatchWindow(), configuration.publishRetries());
+        this.itipEmailNotificationPublisher = new ItipEmailNotificationPublisher(notificationPublisher,
+            bytes -> new OutboundMessage(EventEmailConsumer.EXCHANGE_NAME, EMPTY_ROUTING_KEY, bytes), clock, parsedCalendarCache);
         this.consumer = new ManagedRabbitMQConsumer.Factory(channelPool)
             .create(ManagedRabbitMQConsumer.Parameters.builder()
                 .queueDeclaration(QueueDeclaration.builder()
@@ -116,13 +128,14 @@ public class ItipLocalDeliveryConsumer implements Closeable, Startable {
                     .deadLetterQueue(DEAD_LETTER_QUEUE)
                     .build())
                 .queueArguments(queueArgumentSupplier)
-                .qos(prefetchCount)
-                .concurrency(DEFAULT_CONCURRENCY)
-                .handleDelivery(this::consumeMessage)
+                .qos(limiter.maxConcurrency())
+                .concurrency(limiter.maxConcurrency())
+                .handleDelivery(delivery -> limiter.execute(consumeMessage(delivery)))
                 .build());
     }
 
     public void init() {
+        notificationPublisher.start();
         consumer.init();
     }
 
@@ -134,6 +147,7 @@ public class ItipLocalDeliveryConsumer implements Closeable, Startable {
     @PreDestroy
     public void close() {
         consumer.close();
+        notificationPublisher.stop();
     }
 
     private Mono<Void> consumeMessage(AcknowledgableDelivery ackDelivery) {
@@ -148,12 +162,43 @@ public class ItipLocalDeliveryConsumer implements Closeable, Startable {
 
     // ---- Fan-out phase -----------------------------------------------------------------------
 
+    private Mono<Void> fanOut(ItipLocalDeliveryDTO dto) {
+        return switch (configuration.fanOutMode()) {
+            case BROKER -> republish(dto, dto.recipients())
+                .then(ReactorUtils.logAsMono(() ->
+                    LOGGER.debug("Fanned out {} recipients for uid {}", dto.recipients().size(), dto.uid())));
+            case IN_PROCESS -> fanOutInProcess(dto);
+        };
+    }
+
     /**
-     * Splits an N-recipient message into N single-recipient messages re-published on the same
-     * exchange. Each single-recipient message is then independently retried / dead-lettered.
+     * Processes each recipient as if it had been fanned out, without the broker round trips. A failing recipient
+     * does not fail the others: it is re-published alone, to be retried and dead-lettered on its own.
      */
-    private Mono<Void> fanOut(ItipLocalDeliveryDTO dto) {
-        List<OutboundMessage> outboundMessages = dto.recipients().stream()
+    private Mono<Void> fanOutInProcess(ItipLocalDeliveryDTO dto) {
+        return Flux.fromIterable(dto.recipients())
+            .flatMap(recipient -> Mono.defer(() -> processSingleRecipient(dto.withSingleRecipient(recipient)))
+                .then(Mono.<String>empty())
+                .onErrorResume(e -> {
+                    LOGGER.warn("Failed to process iTIP local delivery for uid {} and recipient {}, re-publishing it",
+                        dto.uid(), recipient, e);
+                    return Mono.just(recipient);
+                }), configuration.fanOutConcurrency())
+            .collectList()
+            .flatMap(failedRecipients -> republish(dto, failedRecipients)
+                .then(ReactorUtils.logAsMono(() ->
+                    LOGGER.debug("Processed {} recipients for uid {}, {} re-published", dto.recipients().size(), dto.uid(), failedRecipients.size()))));
+    }
+
+    /**
+     * Splits a message into single-recipient messages re-published on the same exchange. Each
+     * single-recipient message is then independently retried / dead-lettered.
+     */
+    private Mono<Void> republish(ItipLocalDeliveryDTO dto, List<String> recipients) {
+        if (recipients.isEmpty()) {
+            return Mono.empty();
+        }
+        List<OutboundMessage> outboundMessages = recipients.stream()
             .map(recipient -> {
                 try {
                     byte[] payload = ItipLocalDeliveryDTO.serialize(dto.withSingleRecipient(recipient));
@@ -164,9 +209,7 @@ public class ItipLocalDeliveryConsumer implements Closeable, Startable {
             })
             .toList();
 
-        return sender.send(Flux.fromIterable(outboundMessages))
-            .then(ReactorUtils.logAsMono(() ->
-                LOGGER.debug("Fanned out {} recipients for uid {}", dto.recipients().size(), dto.uid())));
+        return sender.send(Flux.fromIterable(outboundMessages));
     }
 
     // ---- Processing phase --------------------------------------------------------------------
@@ -177,9 +220,9 @@ public class ItipLocalDeliveryConsumer implements Closeable, Startable {
             return Mono.empty();
         }
         Username recipientUsername = maybeRecipient.get();
-        Optional<Calendar> oldEventCalendar = localDelivery.oldMessage().map(CalendarUtil::parseIcs);
+        Optional<Calendar> oldEventCalendar = localDelivery.oldMessage().map(parsedCalendarCache::parse);
 
-        return Mono.fromCallable(() -> CalendarUtil.parseIcs(localDelivery.message()))
+        return Mono.fromCallable(() -> parsedCalendarCache.parse(localDelivery.message()))
             .filter(calendar -> !localDeliveryIgnored(localDelivery, calendar, oldEventCalendar))
             .flatMap(calendar -> localRecipientResolver.resolve(recipientUsername)
                 .flatMap(resolved -> {
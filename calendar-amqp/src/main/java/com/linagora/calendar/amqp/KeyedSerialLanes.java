@@ -0,0 +1,66 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Keyed-serial execution for AMQP deliveries: tasks sharing a key (eg an event path) run one after the other, in
+ * the order they were subscribed, while tasks of different keys run in parallel. Keys are hashed onto a fixed
+ * number of lanes, thus unrelated keys can occasionally wait for each other.
+ *
+ * <p>{@link com.linagora.tmail.rabbitmq.ManagedRabbitMQConsumer} subscribes to the delivery handlers in delivery
+ * order. The order is preserved as long as the key is computed synchronously from the delivery, before calling
+ * {@link #execute(String, Mono)}. A single instance can be shared by the consumers of several queues so that the
+ * messages of a given key are serialized across them.
+ */
+public class KeyedSerialLanes {
+    private final AtomicReferenceArray<Mono<Void>> tails;
+
+    public KeyedSerialLanes(int laneCount) {
+        Preconditions.checkArgument(laneCount > 0, "'laneCount' must be strictly positive");
+
+        this.tails = new AtomicReferenceArray<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            tails.set(i, Mono.empty());
+        }
+    }
+
+    public <T> Mono<T> execute(String key, Mono<T> task) {
+        return Mono.defer(() -> {
+            Sinks.Empty<Void> done = Sinks.empty();
+            Mono<Void> previous = tails.getAndSet(laneOf(key), done.asMono());
+            return previous.then(task)
+                .doFinally(any -> done.tryEmitEmpty());
+        });
+    }
+
+    @VisibleForTesting
+    int laneOf(String key) {
+        return Hashing.consistentHash(Hashing.murmur3_32_fixed().hashUnencodedChars(key), tails.length());
+    }
+}
@@ -0,0 +1,67 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.amqp;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.james.util.DurationParser;
+
+import com.google.common.base.Preconditions;
+
+public record NotificationDigestConfiguration(boolean enabled,
+                                              Duration window,
+                                              Duration pollInterval,
+                                              int batchSize) {
+
+    public static final String ENABLED_PROPERTY = "notification.digest.enabled";
+    public static final boolean ENABLED_DEFAULT = false;
+    public static final String WINDOW_PROPERTY = "notification.digest.window";
+    public static final Duration WINDOW_DEFAULT = Duration.ofMinutes(1);
+    public static final String POLL_INTERVAL_PROPERTY = "notification.digest.poll.interval";
+    public static final Duration POLL_INTERVAL_DEFAULT = Duration.ofSeconds(5);
+    public static final String BATCH_SIZE_PROPERTY = "notification.digest.batch.size";
+    public static final int BATCH_SIZE_DEFAULT = 100;
+
+    public static final NotificationDigestConfiguration DEFAULT = new NotificationDigestConfiguration(ENABLED_DEFAULT, WINDOW_DEFAULT,
+        POLL_INTERVAL_DEFAULT, BATCH_SIZE_DEFAULT);
+
+    public static NotificationDigestConfiguration parse(Configuration configuration) {
+        return new NotificationDigestConfiguration(configuration.getBoolean(ENABLED_PROPERTY, ENABLED_DEFAULT),
+            parseDuration(configuration, WINDOW_PROPERTY, WINDOW_DEFAULT),
+            parseDuration(configuration, POLL_INTERVAL_PROPERTY, POLL_INTERVAL_DEFAULT),
+            configuration.getInt(BATCH_SIZE_PROPERTY, BATCH_SIZE_DEFAULT));
+    }
+
+    private static Duration parseDuration(Configuration configuration, String property, Duration defaultValue) {
+        return Optional.ofNullable(configuration.getString(property, null))
+            .map(value -> DurationParser.parse(value, ChronoUnit.SECONDS))
+            .orElse(defaultValue);
+    }
+
+    public NotificationDigestConfiguration {
+        Preconditions.checkNotNull(window, "'%s' must not be null", WINDOW_PROPERTY);
+        Preconditions.checkArgument(!window.isNegative() && !window.isZero(), "'%s' must be positive", WINDOW_PROPERTY);
+        Preconditions.checkNotNull(pollInterval, "'%s' must not be null", POLL_INTERVAL_PROPERTY);
+        Preconditions.checkArgument(!pollInterval.isNegative() && !pollInterval.isZero(), "'%s' must be positive", POLL_INTERVAL_PROPERTY);
+        Preconditions.checkArgument(batchSize > 0, "'%s' must be positive", BATCH_SIZE_PROPERTY);
+    }
+}
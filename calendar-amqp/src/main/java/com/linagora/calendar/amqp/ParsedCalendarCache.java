@@ -0,0 +1,105 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.amqp;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import org.apache.james.metrics.api.Metric;
+import org.apache.james.metrics.api.MetricFactory;
+
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.linagora.calendar.api.CalendarUtil;
+
+import net.fortuna.ical4j.model.Calendar;
+
+/**
+ * A single Sabre write reaches this node through several queues, each of them carrying the same ICS. This cache keeps
+ * the calendars parsed from recently seen ICS contents, keyed by a hash of the content, so that they are parsed once.
+ *
+ * <p>Calendars returned by {@link #parse(String)} are shared between consumers and must be treated as read only.
+ * Handlers that need to modify them use {@link #parseForUpdate(String)}, which returns a private copy.
+ */
+@Singleton
+public class ParsedCalendarCache {
+    public static final String HIT_METRIC_NAME = "calendar.parsed.cache.hit";
+    public static final String MISS_METRIC_NAME = "calendar.parsed.cache.miss";
+
+    private static final HashFunction CONTENT_HASH = Hashing.murmur3_128();
+    private static final long MAX_SIZE = 1_000;
+    private static final Duration EXPIRY = Duration.ofMinutes(1);
+
+    /**
+     * Parses the ICS through the cache attached to the given Jackson context, if any.
+     */
+    public static Calendar parse(String ics, DeserializationContext context) {
+        if (context.getAttribute(ParsedCalendarCache.class) instanceof ParsedCalendarCache cache) {
+            return cache.parse(ics);
+        }
+        return CalendarUtil.parseIcs(ics);
+    }
+
+    private final Cache<HashCode, Calendar> calendars;
+    private final Metric hitMetric;
+    private final Metric missMetric;
+
+    @Inject
+    public ParsedCalendarCache(MetricFactory metricFactory) {
+        this.calendars = Caffeine.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .expireAfterAccess(EXPIRY)
+            .build();
+        this.hitMetric = metricFactory.generate(HIT_METRIC_NAME);
+        this.missMetric = metricFactory.generate(MISS_METRIC_NAME);
+    }
+
+    public Calendar parse(String ics) {
+        HashCode key = CONTENT_HASH.hashString(ics, StandardCharsets.UTF_8);
+        Calendar cached = calendars.getIfPresent(key);
+        if (cached != null) {
+            hitMetric.increment();
+            return cached;
+        }
+        missMetric.increment();
+        return calendars.get(key, any -> CalendarUtil.parseIcs(ics));
+    }
+
+    /**
+     * @return a copy of the cached calendar, that the caller is free to modify
+     */
+    public Calendar parseForUpdate(String ics) {
+        return parse(ics).copy();
+    }
+
+    /**
+     * Makes the Jackson deserializers of calendar fields read through this cache.
+     */
+    public ObjectReader attachTo(ObjectReader reader) {
+        return reader.withAttribute(ParsedCalendarCache.class, this);
+    }
+}
@@ -18,7 +18,9 @@
 
 package com.linagora.calendar.amqp;
 
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 import jakarta.inject.Inject;
 
@@ -27,23 +29,25 @@ import org.apache.james.core.healthcheck.ComponentName;
 import org.apache.james.core.healthcheck.HealthCheck;
 import org.apache.james.core.healthcheck.Result;
 
-import com.github.fge.lambdas.Throwing;
-import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.Connection;
-
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 
 public class RabbitMQCalendarQueueConsumerHealthCheck implements HealthCheck {
     public static final ComponentName COMPONENT_NAME = new ComponentName("CalendarQueueConsumers");
 
     private final Set<SimpleConnectionPool.ReconnectionHandler> reconnectionHandlers;
     private final SimpleConnectionPool connectionPool;
+    private final CalendarQueueInspector queueInspector;
+    // Snapshots are cached: consumers are restarted once per snapshot reporting them missing
+    private final AtomicReference<CalendarQueueInspector.Snapshot> lastReconnectedSnapshot = new AtomicReference<>();
 
     @Inject
-    public RabbitMQCalendarQueueConsumerHealthCheck(Set<SimpleConnectionPool.ReconnectionHandler> reconnectionHandlers, SimpleConnectionPool connectionPool) {
+    public RabbitMQCalendarQueueConsumerHealthCheck(Set<SimpleConnectionPool.ReconnectionHandler> reconnectionHandlers,
+                                                    SimpleConnectionPool connectionPool,
+                                                    CalendarQueueInspector queueInspector) {
         this.reconnectionHandlers = reconnectionHandlers;
         this.connectionPool = connectionPool;
+        this.queueInspector = queueInspector;
     }
 
     @Override
@@ -53,23 +57,29 @@ public class RabbitMQCalendarQueueConsumerHealthCheck implements HealthCheck {
 
     @Override
     public Mono<Result> check() {
-        return connectionPool.getResilientConnection()
-            .flatMap(connection -> Mono.using(connection::createChannel,
-                channel -> check(connection, channel),
-                Throwing.consumer(Channel::close)))
-            .onErrorResume(e -> Mono.just(Result.unhealthy(COMPONENT_NAME, "Error checking RabbitMQCalendarQueueConsumerHealthCheck", e)))
-            .subscribeOn(Schedulers.boundedElastic());
+        return queueInspector.snapshot()
+            .flatMap(this::check)
+            .onErrorResume(e -> Mono.just(Result.unhealthy(COMPONENT_NAME, "Error checking RabbitMQCalendarQueueConsumerHealthCheck", e)));
     }
 
-    private Mono<Result> check(Connection connection, Channel channel) {
-        boolean queueWithoutConsumers = CalendarQueueUtil.getAllQueueNames().stream()
-            .anyMatch(Throwing.predicate(queue -> channel.consumerCount(queue) == 0));
-        if (queueWithoutConsumers) {
-            return Mono.fromRunnable(() -> reconnectionHandlers.forEach(r ->
-                    Mono.from(r.handleReconnection(connection)).subscribe()))
-                .thenReturn(Result.degraded(COMPONENT_NAME, "No consumers"));
-        } else {
+    private Mono<Result> check(CalendarQueueInspector.Snapshot snapshot) {
+        List<String> queuesWithoutConsumers = snapshot.statusesOf(CalendarQueueUtil.getAllQueueNames()).stream()
+            .filter(status -> status.consumerCount() == 0)
+            .map(CalendarQueueInspector.QueueStatus::queue)
+            .toList();
+        if (queuesWithoutConsumers.isEmpty()) {
             return Mono.just(Result.healthy(COMPONENT_NAME));
         }
+        if (lastReconnectedSnapshot.getAndSet(snapshot) != snapshot) {
+            restartConsumers();
+        }
+        return Mono.just(Result.degraded(COMPONENT_NAME, "No consumers"));
+    }
+
+    private void restartConsumers() {
+        connectionPool.getResilientConnection()
+            .flatMapMany(connection -> Flux.fromIterable(reconnectionHandlers)
+                .flatMap(handler -> Mono.from(handler.handleReconnection(connection))))
+            .subscribe();
     }
 }
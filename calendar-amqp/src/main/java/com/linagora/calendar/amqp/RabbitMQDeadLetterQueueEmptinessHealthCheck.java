@@ -18,27 +18,24 @@
 
 package com.linagora.calendar.amqp;
 
+import java.util.List;
+
 import jakarta.inject.Inject;
 
-import org.apache.james.backends.rabbitmq.SimpleConnectionPool;
 import org.apache.james.core.healthcheck.ComponentName;
 import org.apache.james.core.healthcheck.HealthCheck;
 import org.apache.james.core.healthcheck.Result;
 
-import com.github.fge.lambdas.Throwing;
-import com.rabbitmq.client.Channel;
-
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 
 public class RabbitMQDeadLetterQueueEmptinessHealthCheck implements HealthCheck {
     public static final ComponentName COMPONENT_NAME = new ComponentName("RabbitMQDeadLetterQueueEmptiness");
 
-    private final SimpleConnectionPool connectionPool;
+    private final CalendarQueueInspector queueInspector;
 
     @Inject
-    public RabbitMQDeadLetterQueueEmptinessHealthCheck(SimpleConnectionPool connectionPool) {
-        this.connectionPool = connectionPool;
+    public RabbitMQDeadLetterQueueEmptinessHealthCheck(CalendarQueueInspector queueInspector) {
+        this.queueInspector = queueInspector;
     }
 
     @Override
@@ -48,21 +45,23 @@ public class RabbitMQDeadLetterQueueEmptinessHealthCheck implements HealthCheck
 
     @Override
     public Mono<Result> check() {
-        return connectionPool.getResilientConnection()
-            .flatMap(connection -> Mono.using(connection::createChannel,
-                this::check,
-                Throwing.consumer(Channel::close)))
-            .onErrorResume(e -> Mono.just(Result.unhealthy(COMPONENT_NAME, "Error checking RabbitMQDeadLetterQueueEmptinessHealthCheck", e)))
-            .subscribeOn(Schedulers.boundedElastic());
+        return queueInspector.snapshot()
+            .map(this::check)
+            .onErrorResume(e -> Mono.just(Result.unhealthy(COMPONENT_NAME, "Error checking RabbitMQDeadLetterQueueEmptinessHealthCheck", e)));
     }
 
-    private Mono<Result> check(Channel channel) {
-        boolean notEmptyQueues = CalendarQueueUtil.getAllDeadLetterQueueNames().stream()
-            .anyMatch(Throwing.predicate(queue -> channel.messageCount(queue) > 0));
-        if (notEmptyQueues) {
-            return Mono.just(Result.degraded(COMPONENT_NAME, "RabbitMQ dead letter queues contain messages. This might indicate transient failure."));
-        } else {
-            return Mono.just(Result.healthy(COMPONENT_NAME));
+    private Result check(CalendarQueueInspector.Snapshot snapshot) {
+        List<CalendarQueueInspector.QueueStatus> statuses = snapshot.statusesOf(CalendarQueueUtil.getAllDeadLetterQueueNames());
+        List<String> missingQueues = statuses.stream()
+            .filter(status -> !status.exists())
+            .map(CalendarQueueInspector.QueueStatus::queue)
+            .toList();
+        if (!missingQueues.isEmpty()) {
+            return Result.unhealthy(COMPONENT_NAME, "Missing RabbitMQ dead letter queues: " + missingQueues);
+        }
+        if (statuses.stream().anyMatch(status -> status.messageCount() > 0)) {
+            return Result.degraded(COMPONENT_NAME, "RabbitMQ dead letter queues contain messages. This might indicate transient failure.");
         }
+        return Result.healthy(COMPONENT_NAME);
     }
 }
@@ -0,0 +1,82 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.amqp;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import reactor.core.publisher.Mono;
+import reactor.rabbitmq.AcknowledgableDelivery;
+
+/**
+ * Drops the retries superseded by a later delivery of the same key.
+ *
+ * <p>{@link DelayedRetryQueues} acknowledges a failed delivery and publishes it again after a delay, while the later
+ * deliveries of its key go through the {@link KeyedSerialLanes} in the meantime. Replaying it then would apply a stale
+ * message out of order, eg re-index an event deleted since. This records per key when a delivery was last handled
+ * successfully, and drops a retried delivery whose first failure happened before. Both the failure and the success are
+ * recorded from within the lane of the key, which orders them.
+ *
+ * <p>Records are kept in memory for as long as a delivery can wait in the retry queues: a superseded retry is only
+ * detected by the node that handled the superseding delivery.
+ */
+public class SupersededRetries {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SupersededRetries.class);
+    private static final long MAX_SIZE = 100_000;
+
+    private final Cache<String, Instant> lastHandled;
+    private final Clock clock;
+
+    public SupersededRetries(List<Duration> retryDelays) {
+        this(retryDelays, Clock.systemUTC());
+    }
+
+    public SupersededRetries(List<Duration> retryDelays, Clock clock) {
+        this.lastHandled = Caffeine.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .expireAfterWrite(retryDelays.stream().reduce(Duration.ZERO, Duration::plus))
+            .build();
+        this.clock = clock;
+    }
+
+    /**
+     * To be called from within the lane of the key.
+     */
+    public Mono<Void> handle(String key, AcknowledgableDelivery delivery, DelayedRetryQueues retryQueues, Mono<?> handling) {
+        return Mono.defer(() -> {
+            Optional<Instant> firstFailure = DelayedRetryQueues.firstFailure(delivery);
+            Optional<Instant> lastSuccess = Optional.ofNullable(lastHandled.getIfPresent(key));
+            if (firstFailure.isPresent() && lastSuccess.filter(success -> success.isAfter(firstFailure.get())).isPresent()) {
+                LOGGER.info("Dropping the retry of a delivery for '{}' superseded by a later delivery", key);
+                return Mono.empty();
+            }
+            return retryQueues.handle(delivery, any -> handling
+                .then(Mono.fromRunnable(() -> lastHandled.put(key, clock.instant()))));
+        });
+    }
+}
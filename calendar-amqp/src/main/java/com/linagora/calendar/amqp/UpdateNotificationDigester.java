@@ -0,0 +1,201 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.amqp;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import jakarta.inject.Inject;
+
+import org.apache.james.metrics.api.Metric;
+import org.apache.james.metrics.api.MetricFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.linagora.calendar.amqp.CalendarEventNotificationEmailDTO.Changes;
+import com.linagora.calendar.amqp.model.CalendarEventNotificationEmail;
+import com.linagora.calendar.amqp.model.CalendarEventUpdateNotificationEmail;
+import com.linagora.calendar.storage.digest.NotificationDigestStore;
+import com.linagora.calendar.storage.digest.NotificationDigestStore.DigestKey;
+import com.linagora.calendar.storage.digest.NotificationDigestStore.PendingDigest;
+
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.RecurrenceId;
+import net.fortuna.ical4j.model.property.Uid;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Coalesces the update notifications of an event, or of one of its overridden occurrences, sent to a recipient.
+ *
+ * <p>The first update of an event for a recipient opens a digest in the {@link NotificationDigestStore}. The updates
+ * received during the following {@link NotificationDigestConfiguration#window()} are appended to it. Once the window
+ * elapsed, the changes of all the updates are folded together and a single update mail describing the latest version
+ * of the event is sent.
+ *
+ * <p>A cancellation or a new invitation makes the pending updates meaningless: the open digest of the recipient and
+ * event is then discarded, so that no update mail follows them. Cancelling one occurrence only discards the updates of
+ * that occurrence, while cancelling the whole event discards those of its occurrences too.
+ */
+public class UpdateNotificationDigester implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UpdateNotificationDigester.class);
+    private static final Duration LEASE_DURATION = Duration.ofMinutes(5);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().registerModule(new Jdk8Module())
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final NotificationDigestStore store;
+    private final EventMailHandler eventMailHandler;
+    private final NotificationDigestConfiguration configuration;
+    private final MetricFactory metricFactory;
+    private final ObjectReader messageReader;
+    private final Metric sentMetric;
+    private final Metric coalescedMetric;
+
+    private Disposable loop;
+
+    @Inject
+    public UpdateNotificationDigester(NotificationDigestStore store,
+                                      EventMailHandler eventMailHandler,
+                                      NotificationDigestConfiguration configuration,
+                                      MetricFactory metricFactory,
+                                      ParsedCalendarCache parsedCalendarCache) {
+        this.store = store;
+        this.eventMailHandler = eventMailHandler;
+        this.configuration = configuration;
+        this.metricFactory = metricFactory;
+        this.messageReader = parsedCalendarCache.attachTo(OBJECT_MAPPER.readerFor(CalendarEventNotificationEmailDTO.class));
+        this.sentMetric = metricFactory.generate("calendar.imip.digest.sent");
+        this.coalescedMetric = metricFactory.generate("calendar.imip.digest.coalesced");
+    }
+
+    public boolean enabled() {
+        return configuration.enabled();
+    }
+
+    /**
+     * @param rawMessage the AMQP message {@code notification} was read from, stored as is until the digest is sent
+     */
+    public Mono<Void> submit(CalendarEventNotificationEmailDTO notification, byte[] rawMessage) {
+        return store.append(digestKey(notification), rawMessage, configuration.window());
+    }
+
+    /**
+     * Drops the updates pending for the recipient and event of {@code notification}.
+     */
+    public Mono<Void> discard(CalendarEventNotificationEmailDTO notification) {
+        if (!configuration.enabled()) {
+            return Mono.empty();
+        }
+        return store.discard(digestKey(notification));
+    }
+
+    private DigestKey digestKey(CalendarEventNotificationEmailDTO notification) {
+        VEvent event = CalendarEventNotificationEmail.GET_FIRST_VEVENT_FUNCTION.apply(notification.event());
+        String eventUid = event.getUid()
+            .map(Uid::getValue)
+            .orElse(notification.eventPath());
+        // Overridden occurrences are digested apart: their changes must not be folded into those of the series
+        Optional<String> recurrenceId = Optional.ofNullable(event.getRecurrenceId())
+            .map(RecurrenceId::getValue);
+        return new DigestKey(notification.recipientEmail(), eventUid, recurrenceId);
+    }
+
+    public void start() {
+        if (!configuration.enabled()) {
+            return;
+        }
+
+        LOGGER.info("Starting update notification digests: window={}, pollInterval={}, batchSize={}",
+            configuration.window(), configuration.pollInterval(), configuration.batchSize());
+        loop = Flux.interval(configuration.pollInterval())
+            .onBackpressureDrop()
+            .concatMap(tick -> dispatchDue()
+                .onErrorResume(error -> {
+                    LOGGER.warn("Update notification digest dispatch failed", error);
+                    return Mono.empty();
+                }))
+            .subscribe();
+    }
+
+    @Override
+    public void close() {
+        if (loop != null && !loop.isDisposed()) {
+            loop.dispose();
+        }
+    }
+
+    /**
+     * @return the count of digests that were handled
+     */
+    @VisibleForTesting
+    Mono<Long> dispatchDue() {
+        return Mono.from(metricFactory.decoratePublisherWithTimerMetric("calendar.imip.digest.dispatch.duration",
+            store.lease(configuration.batchSize(), LEASE_DURATION)
+                .flatMap(this::dispatch, configuration.batchSize())
+                .count()));
+    }
+
+    private Mono<Void> dispatch(PendingDigest digest) {
+        // A failed digest is left leased: it is attempted again once its lease expires
+        return Flux.fromIterable(digest.notifications())
+            .concatMap(rawMessage -> Mono.fromCallable(() -> messageReader.<CalendarEventNotificationEmailDTO>readValue(rawMessage)))
+            .collectList()
+            .flatMap(notifications -> Mono.justOrEmpty(coalesce(notifications))
+                .flatMap(coalesced -> eventMailHandler.handleUpdateEvent(CalendarEventUpdateNotificationEmail.from(coalesced))
+                    .doOnSuccess(any -> {
+                        sentMetric.increment();
+                        coalescedMetric.add(notifications.size() - 1);
+                    })))
+            .then(store.acknowledge(digest.id()))
+            .onErrorResume(error -> {
+                LOGGER.warn("Failed to send the update notification digest of event {} to {}", digest.key().eventUid(),
+                    digest.key().recipient().asString(), error);
+                return Mono.empty();
+            });
+    }
+
+    /**
+     * @return the latest notification, carrying the changes of all the notifications, or nothing when these changes
+     * cancel each other out
+     */
+    @VisibleForTesting
+    static Optional<CalendarEventNotificationEmailDTO> coalesce(List<CalendarEventNotificationEmailDTO> notifications) {
+        Preconditions.checkArgument(!notifications.isEmpty(), "A digest must contain at least one notification");
+
+        CalendarEventNotificationEmailDTO first = notifications.getFirst();
+        CalendarEventNotificationEmailDTO latest = notifications.getLast();
+        Optional<Changes> changes = notifications.stream()
+            .map(CalendarEventNotificationEmailDTO::changes)
+            .flatMap(Optional::stream)
+            .reduce(Changes::andThen)
+            .filter(folded -> !folded.isEmpty());
+        return changes.map(folded -> new CalendarEventNotificationEmailDTO(latest.senderEmail(), latest.recipientEmail(),
+            latest.method(), latest.event(), latest.calendarURI(), latest.eventPath(), Optional.of(folded),
+            latest.isNewEvent(), first.oldEvent()));
+    }
+}
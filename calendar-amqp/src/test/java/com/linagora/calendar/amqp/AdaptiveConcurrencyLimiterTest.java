@@ -0,0 +1,238 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.james.backends.rabbitmq.Constants.EMPTY_ROUTING_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.james.backends.rabbitmq.DockerRabbitMQ;
+import org.apache.james.backends.rabbitmq.QueueArguments;
+import org.apache.james.backends.rabbitmq.RabbitMQConnectionFactory;
+import org.apache.james.backends.rabbitmq.RabbitMQExtension;
+import org.apache.james.backends.rabbitmq.ReactorRabbitMQChannelPool;
+import org.apache.james.backends.rabbitmq.SimpleConnectionPool;
+import org.apache.james.metrics.api.NoopGaugeRegistry;
+import org.apache.james.metrics.tests.RecordingMetricFactory;
+import org.awaitility.Awaitility;
+import org.awaitility.core.ConditionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.linagora.tmail.rabbitmq.ManagedRabbitMQConsumer;
+import com.linagora.tmail.rabbitmq.QueueDeclaration;
+import com.rabbitmq.client.BuiltinExchangeType;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.rabbitmq.ExchangeSpecification;
+import reactor.rabbitmq.OutboundMessage;
+
+class AdaptiveConcurrencyLimiterTest {
+    private static final Duration LATENCY = Duration.ofMillis(5);
+    private static final String EXCHANGE = "tcalendar:test:adaptive";
+    private static final String QUEUE = "tcalendar:test:adaptive";
+    private static final String DEAD_LETTER = "tcalendar:test:adaptive:dead-letter";
+    private static final int MESSAGE_COUNT = 300;
+    // Beyond this concurrency, every extra in-flight delivery slows the simulated downstream down
+    private static final int DOWNSTREAM_CAPACITY = 4;
+
+    @RegisterExtension
+    static RabbitMQExtension rabbitMQExtension = RabbitMQExtension.singletonRabbitMQ()
+        .isolationPolicy(RabbitMQExtension.IsolationPolicy.WEAK);
+
+    private final ConditionFactory awaitAtMost = Awaitility.with()
+        .pollInterval(Duration.ofMillis(100))
+        .await()
+        .atMost(60, TimeUnit.SECONDS);
+
+    private final RecordingMetricFactory metricFactory = new RecordingMetricFactory();
+
+    private AdaptiveConcurrencyLimiter limiter(int min, int max) {
+        return new AdaptiveConcurrencyLimiter("test", new AmqpConcurrencyConfiguration.Bounds(min, max), metricFactory);
+    }
+
+    private void runSequentially(AdaptiveConcurrencyLimiter limiter, int count, Mono<?> task) {
+        Flux.range(0, count)
+            .concatMap(i -> limiter.execute(task).onErrorResume(e -> Mono.empty()))
+            .blockLast();
+    }
+
+    @Test
+    void limitShouldStartAtTheMinimum() {
+        assertThat(limiter(2, 8).currentLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void limitShouldGrowUpToTheMaximumWhileLatencyIsStable() {
+        AdaptiveConcurrencyLimiter testee = limiter(1, 8);
+
+        runSequentially(testee, 60, Mono.delay(LATENCY));
+
+        assertThat(testee.currentLimit()).isEqualTo(8);
+    }
+
+    @Test
+    void limitShouldDecreaseOnErrors() {
+        AdaptiveConcurrencyLimiter testee = limiter(1, 8);
+        runSequentially(testee, 60, Mono.delay(LATENCY));
+
+        runSequentially(testee, 3, Mono.delay(LATENCY).then(Mono.error(new RuntimeException("boom"))));
+
+        assertThat(testee.currentLimit()).isLessThanOrEqualTo(3);
+        assertThat(metricFactory.countFor("calendar.amqp.test.errors")).isEqualTo(3);
+    }
+
+    @Test
+    void limitShouldDecreaseWhenLatencyDegrades() {
+        AdaptiveConcurrencyLimiter testee = limiter(1, 8);
+        runSequentially(testee, 60, Mono.delay(LATENCY));
+
+        runSequentially(testee, 5, Mono.delay(LATENCY.multipliedBy(10)));
+
+        assertThat(testee.currentLimit()).isLessThan(8);
+    }
+
+    @Test
+    void limitShouldNotGoBelowTheMinimum() {
+        AdaptiveConcurrencyLimiter testee = limiter(2, 8);
+
+        runSequentially(testee, 10, Mono.error(new RuntimeException("boom")));
+
+        assertThat(testee.currentLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void inFlightTasksShouldNotExceedTheLimit() {
+        AdaptiveConcurrencyLimiter testee = limiter(1, 4);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+
+        Flux.range(0, 200)
+            .flatMap(i -> testee.execute(Mono.defer(() -> {
+                maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                return Mono.delay(LATENCY).doFinally(any -> concurrent.decrementAndGet());
+            })), 64)
+            .blockLast();
+
+        assertThat(maxConcurrent.get()).isLessThanOrEqualTo(4);
+        assertThat(testee.inFlight()).isZero();
+        assertThat(testee.waiting()).isZero();
+    }
+
+    @Test
+    void cancelledWaitingTaskShouldBeForgotten() {
+        AdaptiveConcurrencyLimiter testee = limiter(1, 1);
+        Disposable running = testee.execute(Mono.never()).subscribe();
+        Disposable waiting = testee.execute(Mono.never()).subscribe();
+        assertThat(testee.waiting()).isEqualTo(1);
+
+        waiting.dispose();
+        running.dispose();
+
+        assertThat(testee.waiting()).isZero();
+        assertThat(testee.inFlight()).isZero();
+    }
+
+    @Test
+    void releasedSlotShouldBeGrantedToTheNextWaitingTask() {
+        AdaptiveConcurrencyLimiter testee = limiter(1, 1);
+        Disposable running = testee.execute(Mono.never()).subscribe();
+        AtomicInteger executed = new AtomicInteger();
+        testee.execute(Mono.fromRunnable(executed::incrementAndGet)).subscribe();
+        assertThat(executed.get()).isZero();
+
+        running.dispose();
+
+        assertThat(executed.get()).isEqualTo(1);
+        assertThat(testee.inFlight()).isZero();
+    }
+
+    @Test
+    void concurrencyShouldConvergeBelowTheMaximumWhenTheDownstreamSaturates(DockerRabbitMQ rabbitMQ) throws Exception {
+        SimpleConnectionPool connectionPool = new SimpleConnectionPool(new RabbitMQConnectionFactory(rabbitMQ.getConfiguration()),
+            SimpleConnectionPool.Configuration.builder()
+                .retries(2)
+                .initialDelay(Duration.ofMillis(5)));
+        ReactorRabbitMQChannelPool channelPool = new ReactorRabbitMQChannelPool(connectionPool.getResilientConnection(),
+            ReactorRabbitMQChannelPool.Configuration.builder()
+                .retries(2)
+                .maxBorrowDelay(Duration.ofMillis(250))
+                .maxChannel(10),
+            new RecordingMetricFactory(),
+            new NoopGaugeRegistry());
+        channelPool.start();
+        channelPool.getSender()
+            .declareExchange(ExchangeSpecification.exchange(EXCHANGE).durable(true).type(BuiltinExchangeType.FANOUT.getType()))
+            .block();
+
+        AdaptiveConcurrencyLimiter testee = limiter(1, 16);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        AtomicInteger maxWaiting = new AtomicInteger();
+        AtomicInteger consumed = new AtomicInteger();
+
+        ManagedRabbitMQConsumer consumer = new ManagedRabbitMQConsumer.Factory(channelPool)
+            .create(ManagedRabbitMQConsumer.Parameters.builder()
+                .queueDeclaration(QueueDeclaration.builder()
+                    .binding(EXCHANGE, BuiltinExchangeType.FANOUT, EMPTY_ROUTING_KEY)
+                    .queue(QUEUE)
+                    .deadLetterQueue(DEAD_LETTER)
+                    .build())
+                .queueArguments(QueueArguments.Builder::new)
+                .qos(testee.maxConcurrency())
+                .concurrency(testee.maxConcurrency())
+                .handleDelivery(delivery -> testee.execute(Mono.defer(() -> {
+                    int current = concurrent.incrementAndGet();
+                    maxConcurrent.accumulateAndGet(current, Math::max);
+                    maxWaiting.accumulateAndGet(testee.waiting(), Math::max);
+                    return Mono.delay(LATENCY.multipliedBy(1 + Math.max(0, current - DOWNSTREAM_CAPACITY)))
+                        .doFinally(any -> {
+                            concurrent.decrementAndGet();
+                            consumed.incrementAndGet();
+                        });
+                })).then())
+                .build());
+        consumer.init();
+
+        try {
+            channelPool.getSender()
+                .send(Flux.range(0, MESSAGE_COUNT)
+                    .map(i -> new OutboundMessage(EXCHANGE, EMPTY_ROUTING_KEY, ("message-" + i).getBytes(UTF_8))))
+                .block();
+
+            awaitAtMost.untilAsserted(() -> assertThat(consumed.get()).isEqualTo(MESSAGE_COUNT));
+
+            assertThat(maxConcurrent.get()).isLessThanOrEqualTo(testee.maxConcurrency());
+            assertThat(maxWaiting.get()).isLessThanOrEqualTo(testee.maxConcurrency());
+            assertThat(testee.currentLimit()).isBetween(DOWNSTREAM_CAPACITY / 2, 2 * DOWNSTREAM_CAPACITY);
+        } finally {
+            consumer.close();
+            channelPool.close();
+            connectionPool.close();
+            rabbitMQ.reset();
+        }
+    }
+}
@@ -197,11 +197,13 @@ public class AlarmEventCreateTest {
             openPaaSUserDAO,
             settingsResolver,
             new AlarmEventFactory.Default(),
-            eventEmailFilter);
+            eventEmailFilter,
+            new ParsedCalendarCache(new RecordingMetricFactory()));
 
         EventAlarmConsumer consumer = new EventAlarmConsumer(channelPool,
             QueueArguments.Builder::new,
-            eventAlarmHandler);
+            eventAlarmHandler,
+            AmqpRetryConfiguration.DEFAULT);
         consumer.init();
 
         sender = channelPool.getSender();
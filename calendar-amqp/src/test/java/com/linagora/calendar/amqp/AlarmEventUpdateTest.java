@@ -179,11 +179,13 @@ public class AlarmEventUpdateTest {
             openPaaSUserDAO,
             settingsResolver,
             new AlarmEventFactory.Default(),
-            EventEmailFilter.acceptAll());
+            EventEmailFilter.acceptAll(),
+            new ParsedCalendarCache(new RecordingMetricFactory()));
 
         EventAlarmConsumer consumer = new EventAlarmConsumer(channelPool,
             QueueArguments.Builder::new,
-            eventAlarmHandler);
+            eventAlarmHandler,
+            AmqpRetryConfiguration.DEFAULT);
         consumer.init();
 
         sender = channelPool.getSender();
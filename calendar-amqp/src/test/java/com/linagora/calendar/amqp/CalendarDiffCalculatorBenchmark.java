@@ -0,0 +1,149 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.linagora.calendar.amqp.CalendarDiffCalculator.CalendarDiff;
+import com.linagora.calendar.api.CalendarUtil;
+
+import net.fortuna.ical4j.model.Calendar;
+
+/**
+ * Computes the notification diffs of one update of a weekly meeting with 300 attendees and 50 overridden occurrences,
+ * for every attendee, as the iTIP local delivery consumer does once the message has been fanned out. The update
+ * renames the meeting and moves every override by an hour.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CalendarDiffCalculatorBenchmark {
+    private static final DateTimeFormatter ICS_DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final LocalDateTime FIRST_OCCURRENCE = LocalDateTime.of(2026, 4, 1, 10, 0);
+
+    @Param({"300"})
+    int attendees;
+
+    @Param({"50"})
+    int exceptions;
+
+    private List<String> recipients;
+    private Calendar oldCalendar;
+    private Calendar newCalendar;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        recipients = IntStream.range(0, attendees)
+            .mapToObj(i -> "attendee" + i + "@example.com")
+            .toList();
+        oldCalendar = CalendarUtil.parseIcs(ics("Sprint sync", 0));
+        newCalendar = CalendarUtil.parseIcs(ics("Sprint review", 1));
+    }
+
+    @Benchmark
+    public void diffForEveryRecipient(Blackhole blackhole) {
+        for (String recipient : recipients) {
+            blackhole.consume(CalendarDiffCalculator.diff(newCalendar, oldCalendar).forRecipient(recipient));
+        }
+    }
+
+    @Benchmark
+    public void diffOnceThenFilterPerRecipient(Blackhole blackhole) {
+        CalendarDiff diff = CalendarDiffCalculator.diff(newCalendar, oldCalendar);
+        for (String recipient : recipients) {
+            blackhole.consume(diff.forRecipient(recipient));
+        }
+    }
+
+    private String ics(String summary, int exceptionShiftInHours) {
+        String attendeeLines = recipients.stream()
+            .map(recipient -> "ATTENDEE;PARTSTAT=NEEDS-ACTION:mailto:" + recipient)
+            .collect(Collectors.joining("\n"));
+        String overrides = IntStream.range(0, exceptions)
+            .mapToObj(week -> {
+                LocalDateTime occurrence = FIRST_OCCURRENCE.plusWeeks(week);
+                LocalDateTime start = occurrence.plusHours(exceptionShiftInHours + 1);
+                return """
+                    BEGIN:VEVENT
+                    UID:benchmark@example.com
+                    RECURRENCE-ID:%sZ
+                    DTSTART:%sZ
+                    DTEND:%sZ
+                    SUMMARY:%s
+                    ORGANIZER:mailto:organizer@example.com
+                    %s
+                    END:VEVENT""".formatted(ICS_DATE_TIME.format(occurrence), ICS_DATE_TIME.format(start),
+                    ICS_DATE_TIME.format(start.plusHours(1)), summary, attendeeLines);
+            })
+            .collect(Collectors.joining("\n"));
+
+        return """
+            BEGIN:VCALENDAR
+            VERSION:2.0
+            PRODID:-//Sabre//Sabre VObject 4.5.6//EN
+            BEGIN:VEVENT
+            UID:benchmark@example.com
+            DTSTART:%sZ
+            DTEND:%sZ
+            RRULE:FREQ=WEEKLY;COUNT=100
+            SUMMARY:%s
+            ORGANIZER:mailto:organizer@example.com
+            %s
+            END:VEVENT
+            %s
+            END:VCALENDAR
+            """.formatted(ICS_DATE_TIME.format(FIRST_OCCURRENCE), ICS_DATE_TIME.format(FIRST_OCCURRENCE.plusHours(1)),
+            summary, attendeeLines, overrides);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(CalendarDiffCalculatorBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build())
+            .run();
+    }
+}
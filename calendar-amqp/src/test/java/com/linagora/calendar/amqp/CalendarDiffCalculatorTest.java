@@ -1023,4 +1023,53 @@ class CalendarDiffCalculatorTest {
         assertThat(diffs).singleElement()
             .satisfies(diff -> assertThat(diff.serializeChanges().orElseThrow().toString()).contains("summary"));
     }
+
+    @Test
+    void diffShouldBeSharedBetweenRecipients() {
+        String oldIcs = """
+            BEGIN:VCALENDAR
+            VERSION:2.0
+            PRODID:-//Test//Test//EN
+            METHOD:REQUEST
+            BEGIN:VEVENT
+            UID:uid-shared@test
+            DTSTART:20260401T100000Z
+            DTEND:20260401T110000Z
+            SUMMARY:Old summary
+            ORGANIZER:mailto:alice@example.com
+            ATTENDEE;PARTSTAT=ACCEPTED:mailto:alice@example.com
+            ATTENDEE:mailto:bob@example.com
+            END:VEVENT
+            END:VCALENDAR
+            """;
+        String newIcs = """
+            BEGIN:VCALENDAR
+            VERSION:2.0
+            PRODID:-//Test//Test//EN
+            METHOD:REQUEST
+            BEGIN:VEVENT
+            UID:uid-shared@test
+            DTSTART:20260401T100000Z
+            DTEND:20260401T110000Z
+            SUMMARY:New summary
+            ORGANIZER:mailto:alice@example.com
+            ATTENDEE;PARTSTAT=ACCEPTED:mailto:alice@example.com
+            ATTENDEE:MAILTO:Bob@Example.com
+            ATTENDEE:mailto:carol@example.com
+            END:VEVENT
+            END:VCALENDAR
+            """;
+
+        CalendarDiffCalculator.CalendarDiff diff = CalendarDiffCalculator.diff(parse(newIcs), parse(oldIcs));
+
+        assertSoftly(softly -> {
+            softly.assertThat(diff.forRecipient(RECIPIENT)).singleElement()
+                .satisfies(eventDiff -> assertThat(eventDiff.isNewEvent()).isFalse());
+            softly.assertThat(diff.forRecipient("carol@example.com")).singleElement()
+                .satisfies(eventDiff -> assertThat(eventDiff.isNewEvent()).isTrue());
+            softly.assertThat(diff.forRecipient("dave@example.com")).isEmpty();
+            softly.assertThat(diff.forRecipient(RECIPIENT))
+                .isEqualTo(CalendarDiffCalculator.calculate(RECIPIENT, parse(newIcs), parse(oldIcs)));
+        });
+    }
 }
@@ -68,6 +68,7 @@ import com.linagora.calendar.dav.dto.SubscribedCalendarRequest;
 import com.linagora.calendar.storage.CalendarListChangedEvent;
 import com.linagora.calendar.storage.CalendarListChangedEvent.ChangeType;
 import com.linagora.calendar.storage.CalendarURL;
+import com.linagora.calendar.storage.MemoryPresenceRegistry;
 import com.linagora.calendar.storage.OpenPaaSDomain;
 import com.linagora.calendar.storage.OpenPaaSId;
 import com.linagora.calendar.storage.OpenPaaSUser;
@@ -103,6 +104,7 @@ public class CalendarListNotificationConsumerTest {
     private OpenPaaSUserDAO openPaaSUserDAO;
     private ResourceDAO resourceDAO;
     private ResourceService resourceService;
+    private MemoryPresenceRegistry presenceRegistry;
 
     @BeforeAll
     static void beforeAll(DockerSabreDavSetup dockerSabreDavSetup) throws Exception {
@@ -142,7 +144,9 @@ public class CalendarListNotificationConsumerTest {
         resourceService = new ResourceService(openPaaSUserDAO, resourceDAO, calDavClient);
         TeamCalendarRepository teamCalendarRepository = new MongoDBTeamCalendarRepository(mongoDB, Clock.systemUTC());
 
-        handler = new CalendarListNotificationHandler(eventBus, openPaaSUserDAO, resourceDAO, teamCalendarRepository);
+        presenceRegistry = new MemoryPresenceRegistry();
+
+        handler = new CalendarListNotificationHandler(eventBus, openPaaSUserDAO, resourceDAO, teamCalendarRepository, presenceRegistry);
         consumer = new CalendarListNotificationConsumer(channelPool, QueueArguments.Builder::new, handler);
         consumer.init();
     }
@@ -176,6 +180,32 @@ public class CalendarListNotificationConsumerTest {
             }));
     }
 
+    @Test
+    void shouldNotDispatchWhenUserIsOffline() {
+        OpenPaaSUser offlineUser = sabreDavExtension.newTestUser();
+        OpenPaaSUser onlineUser = sabreDavExtension.newTestUser();
+        Queue<CalendarListChangedEvent> offlineUserEvents = new ConcurrentLinkedQueue<>();
+        Queue<CalendarListChangedEvent> onlineUserEvents = new ConcurrentLinkedQueue<>();
+        Mono.from(eventBus.register(event -> {
+            if (event instanceof CalendarListChangedEvent calendarListChangedEvent) {
+                offlineUserEvents.add(calendarListChangedEvent);
+            }
+        }, new UsernameRegistrationKey(offlineUser.username()))).block();
+        registerListener(onlineUser, onlineUserEvents);
+
+        calDavClient.createNewCalendar(offlineUser.username(), offlineUser.id(), new NewCalendar(UUID.randomUUID().toString(),
+            "Offline Calendar", "#97c3c1", "A test calendar")).block();
+        String onlineCalendarId = UUID.randomUUID().toString();
+        calDavClient.createNewCalendar(onlineUser.username(), onlineUser.id(), new NewCalendar(onlineCalendarId,
+            "Online Calendar", "#97c3c1", "A test calendar")).block();
+
+        CalendarURL onlineCalendarURL = new CalendarURL(onlineUser.id(), new OpenPaaSId(onlineCalendarId));
+        awaitAtMost.untilAsserted(() -> assertThat(onlineUserEvents)
+            .anySatisfy(event -> assertThat(event.calendarURL()).isEqualTo(onlineCalendarURL)));
+
+        assertThat(offlineUserEvents).isEmpty();
+    }
+
     @Test
     void shouldDispatchOnlyToRegisteredUserWhenOtherUserIsListening() {
         OpenPaaSUser user = sabreDavExtension.newTestUser();
@@ -829,6 +859,7 @@ public class CalendarListNotificationConsumerTest {
     }
 
     private void registerListener(OpenPaaSUser user, Queue<CalendarListChangedEvent> eventsReceived) {
+        presenceRegistry.connect(user.username()).block();
         Mono.from(eventBus.register(event -> {
             if (event instanceof CalendarListChangedEvent calendarListChangedEvent) {
                 eventsReceived.add(calendarListChangedEvent);
@@ -0,0 +1,178 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import static org.apache.james.backends.rabbitmq.Constants.AUTO_DELETE;
+import static org.apache.james.backends.rabbitmq.Constants.DURABLE;
+import static org.apache.james.backends.rabbitmq.Constants.EXCLUSIVE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.apache.james.backends.rabbitmq.DockerRabbitMQ;
+import org.apache.james.backends.rabbitmq.RabbitMQConnectionFactory;
+import org.apache.james.backends.rabbitmq.RabbitMQExtension;
+import org.apache.james.backends.rabbitmq.ReactorRabbitMQChannelPool;
+import org.apache.james.backends.rabbitmq.SimpleConnectionPool;
+import org.apache.james.metrics.api.NoopGaugeRegistry;
+import org.apache.james.metrics.tests.RecordingMetricFactory;
+import org.apache.james.utils.UpdatableTickingClock;
+import org.awaitility.Awaitility;
+import org.awaitility.core.ConditionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.github.fge.lambdas.Throwing;
+import com.google.common.collect.ImmutableMap;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+
+class CalendarQueueInspectorTest {
+    private static final String QUEUE = "tcalendar:test:inspected";
+    private static final String MISSING_QUEUE = "tcalendar:test:missing";
+    private static final int UNRELATED_QUEUE_COUNT = 2000;
+    private static final Duration CACHE_DURATION = Duration.ofMinutes(1);
+
+    @RegisterExtension
+    static RabbitMQExtension rabbitMQExtension = RabbitMQExtension.singletonRabbitMQ()
+        .isolationPolicy(RabbitMQExtension.IsolationPolicy.WEAK);
+
+    private final ConditionFactory awaitAtMost = Awaitility.with()
+        .pollInterval(Duration.ofMillis(100))
+        .await()
+        .atMost(30, TimeUnit.SECONDS);
+
+    private Connection connection;
+    private Channel channel;
+    private SimpleConnectionPool connectionPool;
+    private ReactorRabbitMQChannelPool channelPool;
+    private UpdatableTickingClock clock;
+    private CalendarQueueInspector testee;
+
+    @BeforeEach
+    void setUp(DockerRabbitMQ rabbitMQ) throws Exception {
+        connection = rabbitMQ.connectionFactory().newConnection();
+        channel = connection.createChannel();
+        connectionPool = new SimpleConnectionPool(new RabbitMQConnectionFactory(rabbitMQ.getConfiguration()),
+            SimpleConnectionPool.Configuration.builder()
+                .retries(2)
+                .initialDelay(Duration.ofMillis(5)));
+        channelPool = new ReactorRabbitMQChannelPool(connectionPool.getResilientConnection(),
+            ReactorRabbitMQChannelPool.Configuration.builder()
+                .retries(2)
+                .maxBorrowDelay(Duration.ofMillis(250))
+                .maxChannel(10),
+            new RecordingMetricFactory(),
+            new NoopGaugeRegistry());
+        channelPool.start();
+
+        clock = new UpdatableTickingClock(Instant.parse("2026-01-01T00:00:00Z"));
+        testee = new CalendarQueueInspector(channelPool, List.of(QUEUE, MISSING_QUEUE), CACHE_DURATION, clock);
+        channel.queueDeclare(QUEUE, DURABLE, !EXCLUSIVE, !AUTO_DELETE, ImmutableMap.of());
+    }
+
+    @AfterEach
+    void tearDown(DockerRabbitMQ rabbitMQ) throws Exception {
+        channel.close();
+        connection.close();
+        channelPool.close();
+        connectionPool.close();
+        rabbitMQ.reset();
+    }
+
+    @Test
+    void snapshotShouldOnlyInspectKnownQueuesWhateverTheNumberOfQueues() {
+        IntStream.range(0, UNRELATED_QUEUE_COUNT)
+            .forEach(Throwing.intConsumer(i -> channel.queueDeclare("unrelated-" + i, !DURABLE, !EXCLUSIVE, AUTO_DELETE, ImmutableMap.of())));
+
+        CalendarQueueInspector.Snapshot snapshot = testee.snapshot().block();
+
+        assertThat(snapshot.statuses()).containsOnlyKeys(QUEUE, MISSING_QUEUE);
+    }
+
+    @Test
+    void snapshotShouldReportMessageAndConsumerCounts() throws Exception {
+        channel.basicPublish("", QUEUE, null, "message".getBytes(StandardCharsets.UTF_8));
+        Channel consumerChannel = connection.createChannel();
+        consumerChannel.basicConsume(QUEUE, false, (consumerTag, delivery) -> { }, consumerTag -> { });
+
+        awaitAtMost.untilAsserted(() -> assertThat(new CalendarQueueInspector(channelPool, List.of(QUEUE), CACHE_DURATION, clock)
+                .snapshot().block().statuses().get(QUEUE))
+            .isEqualTo(new CalendarQueueInspector.QueueStatus(QUEUE, true, 0, 1)));
+    }
+
+    @Test
+    void snapshotShouldReportMissingQueues() {
+        assertThat(testee.snapshot().block().statuses().get(MISSING_QUEUE))
+            .isEqualTo(CalendarQueueInspector.QueueStatus.missing(MISSING_QUEUE));
+    }
+
+    @Test
+    void missingQueuesShouldNotBreakTheChannelPool() {
+        testee.snapshot().block();
+        clock.setInstant(clock.instant().plus(CACHE_DURATION.multipliedBy(2)));
+
+        awaitAtMost.untilAsserted(() -> assertThat(testee.snapshot().block().refreshedAt())
+            .isAfter(Instant.parse("2026-01-01T00:01:00Z")));
+        assertThat(testee.snapshot().block().statuses().get(QUEUE).exists()).isTrue();
+    }
+
+    @Test
+    void snapshotShouldBeCachedWithinTheCacheDuration() throws Exception {
+        CalendarQueueInspector.Snapshot first = testee.snapshot().block();
+        channel.basicPublish("", QUEUE, null, "message".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(testee.snapshot().block()).isSameAs(first);
+    }
+
+    @Test
+    void staleSnapshotShouldBeServedWhileRefreshingInTheBackground() throws Exception {
+        CalendarQueueInspector.Snapshot first = testee.snapshot().block();
+        channel.basicPublish("", QUEUE, null, "message".getBytes(StandardCharsets.UTF_8));
+        clock.setInstant(clock.instant().plus(CACHE_DURATION.multipliedBy(2)));
+
+        assertThat(testee.snapshot().block()).isSameAs(first);
+        awaitAtMost.untilAsserted(() -> assertThat(testee.snapshot().block().statuses().get(QUEUE).messageCount()).isEqualTo(1));
+    }
+
+    @Test
+    void failedRefreshShouldBeReported() {
+        testee.snapshot().block();
+        rabbitMQExtension.getRabbitMQ().stopApp();
+        clock.setInstant(clock.instant().plus(CACHE_DURATION.multipliedBy(2)));
+
+        try {
+            testee.snapshot().block();
+
+            awaitAtMost.untilAsserted(() -> assertThatThrownBy(() -> testee.snapshot().block())
+                .isInstanceOf(Exception.class));
+        } finally {
+            rabbitMQExtension.getRabbitMQ().startApp();
+        }
+    }
+}
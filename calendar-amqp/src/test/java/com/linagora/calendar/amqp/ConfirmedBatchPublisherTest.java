@@ -0,0 +1,300 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import static org.apache.james.backends.rabbitmq.Constants.AUTO_DELETE;
+import static org.apache.james.backends.rabbitmq.Constants.DURABLE;
+import static org.apache.james.backends.rabbitmq.Constants.EXCLUSIVE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import org.apache.james.backends.rabbitmq.DockerRabbitMQ;
+import org.apache.james.backends.rabbitmq.RabbitMQConnectionFactory;
+import org.apache.james.backends.rabbitmq.RabbitMQExtension;
+import org.apache.james.backends.rabbitmq.ReactorRabbitMQChannelPool;
+import org.apache.james.backends.rabbitmq.SimpleConnectionPool;
+import org.apache.james.metrics.api.NoopGaugeRegistry;
+import org.apache.james.metrics.tests.RecordingMetricFactory;
+import org.awaitility.Awaitility;
+import org.awaitility.core.ConditionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.reactivestreams.Publisher;
+
+import com.google.common.collect.ImmutableMap;
+import com.rabbitmq.client.BuiltinExchangeType;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.rabbitmq.CorrelableOutboundMessage;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.OutboundMessageResult;
+import reactor.rabbitmq.Sender;
+
+class ConfirmedBatchPublisherTest {
+    private static final String EXCHANGE = "tcalendar:test:confirmed";
+    private static final String QUEUE = "tcalendar:test:confirmed";
+    private static final String ROUTING_KEY = "";
+    private static final int BATCH_SIZE = 64;
+    private static final Duration BATCH_WINDOW = Duration.ofMillis(10);
+    private static final int RETRIES = 3;
+
+    @RegisterExtension
+    static RabbitMQExtension rabbitMQExtension = RabbitMQExtension.singletonRabbitMQ()
+        .isolationPolicy(RabbitMQExtension.IsolationPolicy.WEAK);
+
+    private final ConditionFactory awaitAtMost = Awaitility.with()
+        .pollInterval(Duration.ofMillis(100))
+        .await()
+        .atMost(30, TimeUnit.SECONDS);
+
+    private Connection connection;
+    private Channel channel;
+    private SimpleConnectionPool connectionPool;
+    private ReactorRabbitMQChannelPool channelPool;
+    private ConfirmedBatchPublisher testee;
+
+    @BeforeEach
+    void setUp(DockerRabbitMQ rabbitMQ) throws Exception {
+        connection = rabbitMQ.connectionFactory().newConnection();
+        channel = connection.createChannel();
+        channel.exchangeDeclare(EXCHANGE, BuiltinExchangeType.FANOUT);
+        channel.queueDeclare(QUEUE, DURABLE, !EXCLUSIVE, !AUTO_DELETE, ImmutableMap.of());
+        channel.queueBind(QUEUE, EXCHANGE, ROUTING_KEY);
+
+        connectionPool = new SimpleConnectionPool(new RabbitMQConnectionFactory(rabbitMQ.getConfiguration()),
+            SimpleConnectionPool.Configuration.builder()
+                .retries(2)
+                .initialDelay(Duration.ofMillis(5)));
+        channelPool = new ReactorRabbitMQChannelPool(connectionPool.getResilientConnection(),
+            ReactorRabbitMQChannelPool.Configuration.builder()
+                .retries(2)
+                .maxBorrowDelay(Duration.ofMillis(250))
+                .maxChannel(10),
+            new RecordingMetricFactory(),
+            new NoopGaugeRegistry());
+        channelPool.start();
+
+        testee = new ConfirmedBatchPublisher(channelPool.getSender(), BATCH_SIZE, BATCH_WINDOW, RETRIES);
+        testee.start();
+    }
+
+    @AfterEach
+    void tearDown(DockerRabbitMQ rabbitMQ) throws Exception {
+        testee.stop();
+        channel.close();
+        connection.close();
+        channelPool.close();
+        connectionPool.close();
+        rabbitMQ.reset();
+    }
+
+    @Test
+    void publishShouldKeepTheOrderOfTheMessages() throws Exception {
+        List<OutboundMessage> messages = IntStream.range(0, 500)
+            .mapToObj(i -> message("message-" + i))
+            .toList();
+
+        testee.publish(messages).block();
+
+        List<String> received = consume(500);
+        assertThat(received).containsExactlyElementsOf(IntStream.range(0, 500).mapToObj(i -> "message-" + i).toList());
+    }
+
+    @Test
+    void concurrentPublishersShouldNotProduceDuplicates() throws Exception {
+        int publishers = 20;
+        int messagesPerPublisher = 100;
+
+        Flux.range(0, publishers)
+            .flatMap(publisher -> testee.publish(IntStream.range(0, messagesPerPublisher)
+                .mapToObj(i -> message(publisher + ":" + i))
+                .toList()), publishers)
+            .then()
+            .block(Duration.ofSeconds(30));
+
+        List<String> received = consume(publishers * messagesPerPublisher);
+        assertThat(received).doesNotHaveDuplicates()
+            .hasSize(publishers * messagesPerPublisher);
+        IntStream.range(0, publishers).forEach(publisher -> assertThat(received.stream()
+                .filter(body -> body.startsWith(publisher + ":")))
+            .containsExactlyElementsOf(IntStream.range(0, messagesPerPublisher).mapToObj(i -> publisher + ":" + i).toList()));
+    }
+
+    @Test
+    void publishShouldSustainManySmallSubmissions() {
+        int submissions = 5_000;
+
+        long start = System.nanoTime();
+        Flux.range(0, submissions)
+            .flatMap(i -> testee.publish(List.of(message("message-" + i))), 256)
+            .then()
+            .block(Duration.ofSeconds(60));
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        awaitAtMost.untilAsserted(() -> assertThat(messageCount()).isEqualTo(submissions));
+        assertThat(elapsed).isLessThan(Duration.ofSeconds(30));
+    }
+
+    @Test
+    void publishShouldOnlyRetryTheMessagesTheBrokerDidNotConfirm() {
+        Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        Sender sender = senderConfirming(body -> attempts.computeIfAbsent(body, any -> new AtomicInteger()).incrementAndGet() > 1
+            || !body.equals("nacked"));
+        ConfirmedBatchPublisher publisher = new ConfirmedBatchPublisher(sender, BATCH_SIZE, BATCH_WINDOW, RETRIES);
+        publisher.start();
+
+        try {
+            publisher.publish(List.of(message("first"), message("nacked"), message("last"))).block(Duration.ofSeconds(10));
+        } finally {
+            publisher.stop();
+        }
+
+        assertThat(attempts).containsOnlyKeys("first", "nacked", "last");
+        assertThat(attempts.get("first")).hasValue(1);
+        assertThat(attempts.get("nacked")).hasValue(2);
+        assertThat(attempts.get("last")).hasValue(1);
+    }
+
+    @Test
+    void publishShouldFailWhenRetriesAreExhausted() {
+        ConcurrentLinkedQueue<String> attempts = new ConcurrentLinkedQueue<>();
+        Sender sender = senderConfirming(body -> {
+            attempts.add(body);
+            return !body.equals("nacked");
+        });
+        ConfirmedBatchPublisher publisher = new ConfirmedBatchPublisher(sender, BATCH_SIZE, BATCH_WINDOW, RETRIES);
+        publisher.start();
+
+        try {
+            assertThatThrownBy(() -> publisher.publish(List.of(message("acked"), message("nacked"))).block(Duration.ofSeconds(10)))
+                .isInstanceOf(IllegalStateException.class);
+        } finally {
+            publisher.stop();
+        }
+
+        assertThat(attempts).filteredOn("nacked"::equals).hasSize(RETRIES + 1);
+        assertThat(attempts).filteredOn("acked"::equals).hasSize(1);
+    }
+
+    @Test
+    void publishShouldFailWhenThePublisherIsNotStarted() {
+        ConfirmedBatchPublisher publisher = new ConfirmedBatchPublisher(channelPool.getSender(), BATCH_SIZE, BATCH_WINDOW, RETRIES);
+
+        assertThatThrownBy(() -> publisher.publish(List.of(message("message"))).block(Duration.ofSeconds(10)))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void publishShouldFailWhenThePublisherIsStopped() {
+        ConfirmedBatchPublisher publisher = new ConfirmedBatchPublisher(channelPool.getSender(), BATCH_SIZE, BATCH_WINDOW, RETRIES);
+        publisher.start();
+        publisher.stop();
+
+        assertThatThrownBy(() -> publisher.publish(List.of(message("message"))).block(Duration.ofSeconds(10)))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void copyPublishedAgainAfterALostConfirmShouldBeHandledOnce() throws Exception {
+        Sender brokerSender = channelPool.getSender();
+        AtomicInteger sendings = new AtomicInteger();
+        Sender sender = mock(Sender.class);
+        when(sender.sendWithTypedPublishConfirms(any(Publisher.class))).thenAnswer(invocation -> {
+            // The broker gets the first sending, but its confirms are lost
+            boolean confirmsLost = sendings.getAndIncrement() == 0;
+            Publisher<CorrelableOutboundMessage<String>> messages = invocation.getArgument(0);
+            return brokerSender.sendWithTypedPublishConfirms(messages)
+                .map(result -> new OutboundMessageResult<>(result.getOutboundMessage(), result.isAck() && !confirmsLost, result.isReturned()));
+        });
+        ConfirmedBatchPublisher publisher = new ConfirmedBatchPublisher(sender, BATCH_SIZE, BATCH_WINDOW, RETRIES);
+        publisher.start();
+
+        try {
+            publisher.publish(List.of(message("invite"))).block(Duration.ofSeconds(10));
+        } finally {
+            publisher.stop();
+        }
+
+        DuplicateDeliveryFilter filter = new DuplicateDeliveryFilter();
+        ConcurrentLinkedQueue<String> delivered = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<String> handled = new ConcurrentLinkedQueue<>();
+        channel.basicConsume(QUEUE, true,
+            (tag, delivery) -> {
+                String body = new String(delivery.getBody(), StandardCharsets.UTF_8);
+                delivered.add(body);
+                filter.handleOnce(delivery.getProperties(), Mono.fromRunnable(() -> handled.add(body))).block();
+            },
+            tag -> { });
+
+        awaitAtMost.untilAsserted(() -> assertThat(delivered).containsExactly("invite", "invite"));
+        assertThat(handled).containsExactly("invite");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Sender senderConfirming(Predicate<String> confirmed) {
+        Sender sender = mock(Sender.class);
+        when(sender.sendWithTypedPublishConfirms(any(Publisher.class))).thenAnswer(invocation -> {
+            Publisher<CorrelableOutboundMessage<String>> messages = invocation.getArgument(0);
+            return Flux.from(messages)
+                .map(message -> new OutboundMessageResult<>(message,
+                    confirmed.test(new String(message.getBody(), StandardCharsets.UTF_8)), false));
+        });
+        return sender;
+    }
+
+    private OutboundMessage message(String body) {
+        return new OutboundMessage(EXCHANGE, ROUTING_KEY, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int messageCount() throws Exception {
+        return channel.queueDeclarePassive(QUEUE).getMessageCount();
+    }
+
+    private List<String> consume(int expectedCount) throws Exception {
+        ConcurrentLinkedQueue<String> received = new ConcurrentLinkedQueue<>();
+        channel.basicConsume(QUEUE, true,
+            (tag, delivery) -> received.add(new String(delivery.getBody(), StandardCharsets.UTF_8)),
+            tag -> { });
+        awaitAtMost.untilAsserted(() -> assertThat(received).hasSizeGreaterThanOrEqualTo(expectedCount));
+        // Leaves a chance to duplicates to show up
+        Thread.sleep(200);
+        return List.copyOf(received);
+    }
+}
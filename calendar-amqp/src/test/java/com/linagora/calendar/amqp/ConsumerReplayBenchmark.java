@@ -0,0 +1,150 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.amqp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.james.metrics.tests.RecordingMetricFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.linagora.calendar.api.CalendarUtil;
+
+import net.fortuna.ical4j.model.Calendar;
+
+/**
+ * Replays the parses a single Sabre write triggers on this node once it has been fanned out to its recipients: for each
+ * of them the iTIP local delivery consumer, its notification publisher and the email consumer each parse the new and
+ * the old event. Every invocation is a new write, hence new contents. The benchmark is single threaded, so its average
+ * time is the CPU time spent per write.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsumerReplayBenchmark {
+    private static final String ICS_TEMPLATE = """
+        BEGIN:VCALENDAR
+        VERSION:2.0
+        PRODID:-//Sabre//Sabre VObject 4.5.6//EN
+        BEGIN:VTIMEZONE
+        TZID:Europe/Paris
+        BEGIN:DAYLIGHT
+        TZOFFSETFROM:+0100
+        TZOFFSETTO:+0200
+        TZNAME:CEST
+        DTSTART:19700329T020000
+        RRULE:FREQ=YEARLY;BYMONTH=3;BYDAY=-1SU
+        END:DAYLIGHT
+        BEGIN:STANDARD
+        TZOFFSETFROM:+0200
+        TZOFFSETTO:+0100
+        TZNAME:CET
+        DTSTART:19701025T030000
+        RRULE:FREQ=YEARLY;BYMONTH=10;BYDAY=-1SU
+        END:STANDARD
+        END:VTIMEZONE
+        BEGIN:VEVENT
+        UID:%s
+        DTSTAMP:20260301T090000Z
+        SEQUENCE:%d
+        DTSTART;TZID=Europe/Paris:20260401T100000
+        DTEND;TZID=Europe/Paris:20260401T110000
+        RRULE:FREQ=WEEKLY;COUNT=20
+        SUMMARY:Sprint sync
+        LOCATION:Room 42
+        DESCRIPTION:Weekly synchronisation of the team
+        ORGANIZER;CN=Bob:mailto:bob@example.com
+        ATTENDEE;PARTSTAT=ACCEPTED;CN=Bob:mailto:bob@example.com
+        ATTENDEE;PARTSTAT=NEEDS-ACTION;CN=Alice:mailto:alice@example.com
+        ATTENDEE;PARTSTAT=NEEDS-ACTION;CN=Cedric:mailto:cedric@example.com
+        ATTENDEE;PARTSTAT=NEEDS-ACTION;CN=Dave:mailto:dave@example.com
+        BEGIN:VALARM
+        ACTION:DISPLAY
+        TRIGGER:-PT15M
+        END:VALARM
+        END:VEVENT
+        END:VCALENDAR
+        """;
+
+    @Param({"1", "10"})
+    int recipients;
+
+    private ParsedCalendarCache parsedCalendarCache;
+    private long writes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parsedCalendarCache = new ParsedCalendarCache(new RecordingMetricFactory());
+    }
+
+    @Benchmark
+    public void parseInEveryConsumer(Blackhole blackhole) {
+        replayWrite(CalendarUtil::parseIcs, blackhole);
+    }
+
+    @Benchmark
+    public void parseOnceThroughCache(Blackhole blackhole) {
+        replayWrite(parsedCalendarCache::parse, blackhole);
+    }
+
+    private void replayWrite(Function<String, Calendar> parser, Blackhole blackhole) {
+        String uid = "event-" + writes++;
+        String oldEvent = ICS_TEMPLATE.formatted(uid, 1);
+        String newEvent = ICS_TEMPLATE.formatted(uid, 2);
+
+        for (int i = 0; i < recipients; i++) {
+            // ItipLocalDeliveryConsumer
+            blackhole.consume(parser.apply(oldEvent));
+            blackhole.consume(parser.apply(newEvent));
+            // ItipEmailNotificationPublisher
+            blackhole.consume(parser.apply(newEvent));
+            blackhole.consume(parser.apply(newEvent));
+            // EventEmailConsumer
+            blackhole.consume(parser.apply(newEvent));
+            blackhole.consume(parser.apply(oldEvent));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(ConsumerReplayBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build())
+            .run();
+    }
+}
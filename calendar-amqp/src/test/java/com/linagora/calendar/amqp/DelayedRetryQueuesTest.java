@@ -0,0 +1,253 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.james.backends.rabbitmq.Constants.EMPTY_ROUTING_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.james.backends.rabbitmq.DockerRabbitMQ;
+import org.apache.james.backends.rabbitmq.QueueArguments;
+import org.apache.james.backends.rabbitmq.RabbitMQConnectionFactory;
+import org.apache.james.backends.rabbitmq.RabbitMQExtension;
+import org.apache.james.backends.rabbitmq.ReactorRabbitMQChannelPool;
+import org.apache.james.backends.rabbitmq.SimpleConnectionPool;
+import org.apache.james.metrics.api.NoopGaugeRegistry;
+import org.apache.james.metrics.tests.RecordingMetricFactory;
+import org.awaitility.Awaitility;
+import org.awaitility.core.ConditionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.linagora.tmail.rabbitmq.ManagedRabbitMQConsumer;
+import com.linagora.tmail.rabbitmq.QueueDeclaration;
+import com.rabbitmq.client.BuiltinExchangeType;
+
+import reactor.core.publisher.Mono;
+import reactor.rabbitmq.AcknowledgableDelivery;
+import reactor.rabbitmq.ExchangeSpecification;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.QueueSpecification;
+
+class DelayedRetryQueuesTest {
+    private static final String EXCHANGE = "tcalendar:test:retry";
+    private static final String QUEUE = "tcalendar:test:retry";
+    private static final String DEAD_LETTER = "tcalendar:test:retry:dead-letter";
+    private static final List<Duration> DELAYS = List.of(Duration.ofSeconds(1), Duration.ofSeconds(2));
+    private static final Duration TOLERANCE = Duration.ofMillis(100);
+
+    @RegisterExtension
+    static RabbitMQExtension rabbitMQExtension = RabbitMQExtension.singletonRabbitMQ()
+        .isolationPolicy(RabbitMQExtension.IsolationPolicy.WEAK);
+
+    private final ConditionFactory awaitAtMost = Awaitility.with()
+        .pollInterval(Duration.ofMillis(100))
+        .await()
+        .atMost(30, TimeUnit.SECONDS);
+
+    private SimpleConnectionPool connectionPool;
+    private ReactorRabbitMQChannelPool channelPool;
+    private ManagedRabbitMQConsumer consumer;
+    private DelayedRetryQueues testee;
+    private ConcurrentLinkedQueue<Attempt> attempts;
+
+    record Attempt(long atNanos, int retryCount, String originalExchange) {
+    }
+
+    @BeforeEach
+    void setUp(DockerRabbitMQ rabbitMQ) throws Exception {
+        connectionPool = new SimpleConnectionPool(new RabbitMQConnectionFactory(rabbitMQ.getConfiguration()),
+            SimpleConnectionPool.Configuration.builder()
+                .retries(2)
+                .initialDelay(Duration.ofMillis(5)));
+        channelPool = new ReactorRabbitMQChannelPool(connectionPool.getResilientConnection(),
+            ReactorRabbitMQChannelPool.Configuration.builder()
+                .retries(2)
+                .maxBorrowDelay(Duration.ofMillis(250))
+                .maxChannel(10),
+            new RecordingMetricFactory(),
+            new NoopGaugeRegistry());
+        channelPool.start();
+        channelPool.getSender()
+            .declareExchange(ExchangeSpecification.exchange(EXCHANGE).durable(true).type(BuiltinExchangeType.FANOUT.getType()))
+            .block();
+
+        attempts = new ConcurrentLinkedQueue<>();
+    }
+
+    @AfterEach
+    void tearDown(DockerRabbitMQ rabbitMQ) throws Exception {
+        consumer.close();
+        channelPool.close();
+        connectionPool.close();
+        rabbitMQ.reset();
+    }
+
+    @Test
+    void failingDeliveryShouldBeRetriedWithBackoffThenDeadLettered() {
+        startConsumer(delivery -> Mono.error(new RuntimeException("boom")));
+
+        publish("payload");
+
+        awaitAtMost.untilAsserted(() -> assertThat(deadLetterCount()).isEqualTo(1));
+        List<Attempt> recorded = List.copyOf(attempts);
+        assertThat(recorded).extracting(Attempt::retryCount).containsExactly(0, 1, 2);
+        assertThat(recorded).extracting(Attempt::originalExchange).containsOnly(EXCHANGE);
+        assertThat(Duration.ofNanos(recorded.get(1).atNanos() - recorded.get(0).atNanos()))
+            .isGreaterThanOrEqualTo(DELAYS.get(0).minus(TOLERANCE));
+        assertThat(Duration.ofNanos(recorded.get(2).atNanos() - recorded.get(1).atNanos()))
+            .isGreaterThanOrEqualTo(DELAYS.get(1).minus(TOLERANCE));
+    }
+
+    @Test
+    void deliveryShouldSucceedOnceTheHandlerRecovers() throws Exception {
+        AtomicInteger failures = new AtomicInteger(1);
+        startConsumer(delivery -> {
+            if (failures.getAndDecrement() > 0) {
+                return Mono.error(new RuntimeException("boom"));
+            }
+            return Mono.empty();
+        });
+
+        publish("payload");
+
+        awaitAtMost.untilAsserted(() -> assertThat(attempts).hasSize(2));
+        Thread.sleep(DELAYS.get(1).toMillis());
+        assertThat(attempts).hasSize(2);
+        assertThat(deadLetterCount()).isZero();
+    }
+
+    @Test
+    void undeserializableDeliveryShouldBeDeadLetteredWithoutRetry() throws Exception {
+        startConsumer(delivery -> Mono.error(new CalendarEventDeserializeException("bad payload", null)));
+
+        publish("BAD_PAYLOAD");
+
+        awaitAtMost.untilAsserted(() -> assertThat(deadLetterCount()).isEqualTo(1));
+        assertThat(attempts).hasSize(1);
+    }
+
+    @Test
+    void retryOfADeliverySupersededByALaterOneShouldBeDropped() throws Exception {
+        ConcurrentLinkedQueue<String> applied = new ConcurrentLinkedQueue<>();
+        AtomicInteger failures = new AtomicInteger(1);
+        startOrderedConsumer(operation -> {
+            attempts.add(new Attempt(System.nanoTime(), 0, EXCHANGE));
+            if (operation.equals("event-1:update") && failures.getAndDecrement() > 0) {
+                return Mono.error(new RuntimeException("boom"));
+            }
+            return Mono.fromRunnable(() -> applied.add(operation));
+        });
+
+        publish("event-1:update");
+        awaitAtMost.untilAsserted(() -> assertThat(attempts).hasSize(1));
+        publish("event-1:delete");
+
+        awaitAtMost.untilAsserted(() -> assertThat(applied).containsExactly("event-1:delete"));
+        Thread.sleep(DELAYS.get(0).multipliedBy(2).toMillis());
+        assertThat(applied).containsExactly("event-1:delete");
+        assertThat(attempts).hasSize(2);
+        assertThat(deadLetterCount()).isZero();
+    }
+
+    @Test
+    void retryOfADeliveryShouldBeReplayedWhenNotSuperseded() {
+        ConcurrentLinkedQueue<String> applied = new ConcurrentLinkedQueue<>();
+        AtomicInteger failures = new AtomicInteger(1);
+        startOrderedConsumer(operation -> {
+            if (operation.equals("event-1:update") && failures.getAndDecrement() > 0) {
+                return Mono.error(new RuntimeException("boom"));
+            }
+            return Mono.fromRunnable(() -> applied.add(operation));
+        });
+
+        publish("event-1:update");
+        publish("event-2:delete");
+
+        awaitAtMost.untilAsserted(() -> assertThat(applied).containsExactlyInAnyOrder("event-2:delete", "event-1:update"));
+    }
+
+    private void startConsumer(Function<AcknowledgableDelivery, Mono<Void>> handler) {
+        testee = new DelayedRetryQueues(channelPool, QueueArguments.Builder::new, QUEUE, DELAYS);
+        consumer = new ManagedRabbitMQConsumer.Factory(channelPool)
+            .create(ManagedRabbitMQConsumer.Parameters.builder()
+                .queueDeclaration(QueueDeclaration.builder()
+                    .binding(EXCHANGE, BuiltinExchangeType.FANOUT, EMPTY_ROUTING_KEY)
+                    .queue(QUEUE)
+                    .deadLetterQueue(DEAD_LETTER)
+                    .build())
+                .queueArguments(QueueArguments.Builder::new)
+                .qos(1)
+                .concurrency(1)
+                .handleDelivery(delivery -> testee.handle(delivery, retried -> {
+                    attempts.add(new Attempt(System.nanoTime(), DelayedRetryQueues.retryCount(retried), DelayedRetryQueues.originalExchange(retried)));
+                    return handler.apply(retried);
+                }))
+                .build());
+        testee.declare();
+        consumer.init();
+    }
+
+    private void startOrderedConsumer(Function<String, Mono<Void>> handler) {
+        KeyedSerialLanes lanes = new KeyedSerialLanes(4);
+        SupersededRetries supersededRetries = new SupersededRetries(DELAYS);
+        testee = new DelayedRetryQueues(channelPool, QueueArguments.Builder::new, QUEUE, DELAYS);
+        consumer = new ManagedRabbitMQConsumer.Factory(channelPool)
+            .create(ManagedRabbitMQConsumer.Parameters.builder()
+                .queueDeclaration(QueueDeclaration.builder()
+                    .binding(EXCHANGE, BuiltinExchangeType.FANOUT, EMPTY_ROUTING_KEY)
+                    .queue(QUEUE)
+                    .deadLetterQueue(DEAD_LETTER)
+                    .build())
+                .queueArguments(QueueArguments.Builder::new)
+                .qos(1)
+                .concurrency(1)
+                .handleDelivery(delivery -> {
+                    String operation = new String(delivery.getBody(), UTF_8);
+                    String key = operation.split(":")[0];
+                    return lanes.execute(key, supersededRetries.handle(key, delivery, testee, Mono.defer(() -> handler.apply(operation))));
+                })
+                .build());
+        testee.declare();
+        consumer.init();
+    }
+
+    private void publish(String payload) {
+        channelPool.getSender()
+            .send(Mono.just(new OutboundMessage(EXCHANGE, EMPTY_ROUTING_KEY, payload.getBytes(UTF_8))))
+            .block();
+    }
+
+    private int deadLetterCount() {
+        return channelPool.getSender()
+            .declareQueue(QueueSpecification.queue(DEAD_LETTER).passive(true))
+            .map(declareOk -> declareOk.getMessageCount())
+            .block();
+    }
+}
@@ -0,0 +1,77 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.amqp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.rabbitmq.client.AMQP;
+
+import reactor.core.publisher.Mono;
+
+class DuplicateDeliveryFilterTest {
+    private final DuplicateDeliveryFilter testee = new DuplicateDeliveryFilter();
+    private final AtomicInteger handlings = new AtomicInteger();
+
+    @Test
+    void deliveriesSharingAMessageIdShouldBeHandledOnce() {
+        testee.handleOnce(properties("id-1"), handling()).block();
+        testee.handleOnce(properties("id-1"), handling()).block();
+
+        assertThat(handlings).hasValue(1);
+    }
+
+    @Test
+    void deliveriesWithDistinctMessageIdsShouldAllBeHandled() {
+        testee.handleOnce(properties("id-1"), handling()).block();
+        testee.handleOnce(properties("id-2"), handling()).block();
+
+        assertThat(handlings).hasValue(2);
+    }
+
+    @Test
+    void deliveriesWithoutMessageIdShouldAllBeHandled() {
+        testee.handleOnce(new AMQP.BasicProperties(), handling()).block();
+        testee.handleOnce(null, handling()).block();
+
+        assertThat(handlings).hasValue(2);
+    }
+
+    @Test
+    void failedHandlingShouldNotPreventTheNextDelivery() {
+        assertThatThrownBy(() -> testee.handleOnce(properties("id-1"), Mono.error(new RuntimeException("boom"))).block())
+            .hasMessage("boom");
+
+        testee.handleOnce(properties("id-1"), handling()).block();
+
+        assertThat(handlings).hasValue(1);
+    }
+
+    private Mono<Void> handling() {
+        return Mono.fromRunnable(handlings::incrementAndGet);
+    }
+
+    private AMQP.BasicProperties properties(String messageId) {
+        return new AMQP.BasicProperties.Builder().messageId(messageId).build();
+    }
+}
@@ -0,0 +1,190 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.amqp;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.james.backends.rabbitmq.Constants.EMPTY_ROUTING_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.james.backends.rabbitmq.DockerRabbitMQ;
+import org.apache.james.backends.rabbitmq.QueueArguments;
+import org.apache.james.backends.rabbitmq.RabbitMQConnectionFactory;
+import org.apache.james.backends.rabbitmq.RabbitMQExtension;
+import org.apache.james.backends.rabbitmq.ReactorRabbitMQChannelPool;
+import org.apache.james.backends.rabbitmq.SimpleConnectionPool;
+import org.apache.james.metrics.api.NoopGaugeRegistry;
+import org.apache.james.metrics.tests.RecordingMetricFactory;
+import org.awaitility.Awaitility;
+import org.awaitility.core.ConditionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linagora.calendar.storage.audit.AuditTrailEntry;
+import com.linagora.calendar.storage.audit.AuditTrailSink;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.QueueSpecification;
+
+class EventAuditLogConsumerBatchingTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventAuditLogConsumerBatchingTest.class);
+    private static final String EXCHANGE = "calendar:event:created";
+    private static final int BATCH_SIZE = 64;
+    private static final AuditTrailConfiguration CONFIGURATION = new AuditTrailConfiguration("recording", BATCH_SIZE, Duration.ofMillis(50));
+
+    @RegisterExtension
+    static RabbitMQExtension rabbitMQExtension = RabbitMQExtension.singletonRabbitMQ()
+        .isolationPolicy(RabbitMQExtension.IsolationPolicy.WEAK);
+
+    private final ConditionFactory awaitAtMost = Awaitility.with()
+        .pollInterval(Duration.ofMillis(100))
+        .await()
+        .atMost(60, TimeUnit.SECONDS);
+
+    private SimpleConnectionPool connectionPool;
+    private ReactorRabbitMQChannelPool channelPool;
+    private EventAuditLogConsumer consumer;
+    private ConcurrentLinkedQueue<List<AuditTrailEntry>> batches;
+
+    @BeforeEach
+    void setUp(DockerRabbitMQ rabbitMQ) throws Exception {
+        connectionPool = new SimpleConnectionPool(new RabbitMQConnectionFactory(rabbitMQ.getConfiguration()),
+            SimpleConnectionPool.Configuration.builder()
+                .retries(2)
+                .initialDelay(Duration.ofMillis(5)));
+        channelPool = new ReactorRabbitMQChannelPool(connectionPool.getResilientConnection(),
+            ReactorRabbitMQChannelPool.Configuration.builder()
+                .retries(2)
+                .maxBorrowDelay(Duration.ofMillis(250))
+                .maxChannel(10),
+            new RecordingMetricFactory(),
+            new NoopGaugeRegistry());
+        channelPool.start();
+
+        batches = new ConcurrentLinkedQueue<>();
+    }
+
+    @AfterEach
+    void tearDown(DockerRabbitMQ rabbitMQ) throws Exception {
+        consumer.close();
+        channelPool.close();
+        connectionPool.close();
+        rabbitMQ.reset();
+    }
+
+    @Test
+    void entriesShouldBeWrittenInBatches() {
+        int messageCount = 2000;
+        startConsumer(entries -> Mono.fromRunnable(() -> batches.add(entries)));
+
+        long start = System.nanoTime();
+        publish(messageCount);
+        awaitAtMost.untilAsserted(() -> assertThat(writtenEntries()).hasSize(messageCount));
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        LOGGER.info("Audited {} events in {} batches within {} ms ({} events/s)", messageCount, batches.size(),
+            elapsed.toMillis(), messageCount * 1000L / Math.max(1, elapsed.toMillis()));
+
+        assertThat(batches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(BATCH_SIZE));
+        assertThat(batches.size()).isLessThan(messageCount / 4);
+        assertThat(writtenEntries())
+            .allSatisfy(entry -> {
+                assertThat(entry.action()).isEqualTo(EXCHANGE);
+                assertThat(entry.username()).contains("owner");
+                assertThat(entry.message()).startsWith("Calendar event created [/calendars/owner/calendar/");
+            });
+    }
+
+    @Test
+    void deliveriesShouldBeAcknowledgedOnceTheirBatchIsWritten() {
+        int messageCount = 200;
+        startConsumer(entries -> Mono.fromRunnable(() -> batches.add(entries)));
+
+        publish(messageCount);
+        awaitAtMost.untilAsserted(() -> assertThat(writtenEntries()).hasSize(messageCount));
+        consumer.close();
+
+        assertThat(messageCount(EventAuditLogConsumer.AUDIT_QUEUE)).isZero();
+    }
+
+    @Test
+    void entriesOfAFailedBatchShouldBeRetried() {
+        int messageCount = 20;
+        AtomicInteger failures = new AtomicInteger(1);
+        startConsumer(entries -> {
+            if (failures.getAndDecrement() > 0) {
+                return Mono.error(new RuntimeException("sink unavailable"));
+            }
+            return Mono.fromRunnable(() -> batches.add(entries));
+        });
+
+        publish(messageCount);
+
+        awaitAtMost.untilAsserted(() -> assertThat(writtenEntries())
+            .extracting(entry -> entry.parameters().get("path"))
+            .doesNotHaveDuplicates()
+            .hasSize(messageCount));
+        assertThat(messageCount(EventAuditLogConsumer.AUDIT_DEAD_LETTER)).isZero();
+    }
+
+    private void startConsumer(AuditTrailSink sink) {
+        consumer = new EventAuditLogConsumer(channelPool, QueueArguments.Builder::new, AmqpRetryConfiguration.DEFAULT,
+            new AdaptiveConcurrencyLimiter.Factory(new RecordingMetricFactory(), AmqpConcurrencyConfiguration.DEFAULT),
+            sink, CONFIGURATION, Clock.systemUTC());
+        consumer.init();
+    }
+
+    private void publish(int messageCount) {
+        channelPool.getSender()
+            .send(Flux.range(0, messageCount)
+                .map(i -> new OutboundMessage(EXCHANGE, EMPTY_ROUTING_KEY, """
+                    {
+                      "eventPath": "/calendars/owner/calendar/%d.ics",
+                      "event": ["vcalendar", [], [["vevent", [["uid", {}, "text", "%d"], ["summary", {}, "text", "Meeting"]], []]]]
+                    }
+                    """.formatted(i, i).getBytes(UTF_8))))
+            .block();
+    }
+
+    private List<AuditTrailEntry> writtenEntries() {
+        return batches.stream()
+            .flatMap(Collection::stream)
+            .toList();
+    }
+
+    private int messageCount(String queue) {
+        return channelPool.getSender()
+            .declareQueue(QueueSpecification.queue(queue).passive(true))
+            .map(declareOk -> declareOk.getMessageCount())
+            .block();
+    }
+}
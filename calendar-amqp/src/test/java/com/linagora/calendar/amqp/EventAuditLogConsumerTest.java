@@ -152,6 +152,28 @@ class EventAuditLogConsumerTest {
             .isEqualTo("Calendar event updated [/calendars/base1/calendar1/3423434.ics]");
     }
 
+    @Test
+    void extractionShouldIgnoreFieldsNestedInTheEmbeddedPayload() {
+        String amqpMessage = """
+            {
+              "event": {"owner": "nested-owner", "uid": "nested-uid", "eventPath": "/calendars/nested/calendar/nested.ics"},
+              "calendarPath": "/calendars/base1/calendar1",
+              "import": [["vcalendar", [], [["vevent", [["uid", {}, "text", "jcal-uid"]], []]]]]
+            }
+            """;
+
+        assertThat(EventAuditLogConsumer.extractOwner(amqpMessage)).contains("base1");
+        assertThat(EventAuditLogConsumer.extractPath(amqpMessage)).contains("/calendars/base1/calendar1");
+        assertThat(EventAuditLogConsumer.formatMessage(amqpMessage, "calendar:calendar:updated"))
+            .isEqualTo("Calendar updated [/calendars/base1/calendar1]");
+    }
+
+    @Test
+    void extractOwnerShouldBeEmptyWhenPayloadIsNotAJsonObject() {
+        assertThat(EventAuditLogConsumer.extractOwner("[\"/calendars/base1/calendar1/3423434.ics\"]"))
+            .isEmpty();
+    }
+
     private static Stream<EventAmqpMessageSample> eventAmqpMessageSamplesFromExistingConsumerTests() {
         // Only use AMQP payload literals already present in focused consumer/message tests.
         return Stream.of(
@@ -80,6 +80,8 @@ import com.linagora.calendar.dav.DockerSabreDavSetup;
 import com.linagora.calendar.smtp.MailSender;
 import com.linagora.calendar.smtp.MailSenderConfiguration;
 import com.linagora.calendar.smtp.MockSmtpServerExtension;
+import com.linagora.calendar.smtp.RecipientGroupingMailSender;
+import com.linagora.calendar.smtp.SmtpGroupingConfiguration;
 import com.linagora.calendar.smtp.template.MailTemplateConfiguration;
 import com.linagora.calendar.smtp.template.MessageGenerator;
 import com.linagora.calendar.smtp.template.content.model.EventInCalendarLinkFactory;
@@ -87,6 +89,7 @@ import com.linagora.calendar.storage.OpenPaaSUser;
 import com.linagora.calendar.storage.OpenPaaSUserDAO;
 import com.linagora.calendar.storage.ResourceDAO;
 import com.linagora.calendar.storage.configuration.resolver.SettingsBasedResolver;
+import com.linagora.calendar.storage.digest.MemoryNotificationDigestStore;
 import com.linagora.calendar.storage.mongodb.MongoDBOpenPaaSDomainDAO;
 import com.linagora.calendar.storage.mongodb.MongoDBOpenPaaSUserDAO;
 import com.linagora.calendar.storage.mongodb.MongoDBResourceDAO;
@@ -164,7 +167,7 @@ public class EventCancelEmailConsumerTest {
                     TIMEZONE_IDENTIFIER, ZoneId.of("Asia/Ho_Chi_Minh")))));
 
         sabreDavExtension.deleteRabbitMQQueues(EventEmailConsumer.QUEUE_NAME, EventEmailConsumer.DEAD_LETTER_QUEUE);
-        setupEventEmailConsumer();
+        setupEventEmailConsumer(SmtpGroupingConfiguration.DISABLED);
     }
 
     @AfterEach
@@ -176,7 +179,7 @@ public class EventCancelEmailConsumerTest {
         Mockito.reset(eventEmailFilter);
     }
 
-    private void setupEventEmailConsumer() throws Exception {
+    private void setupEventEmailConsumer(SmtpGroupingConfiguration groupingConfiguration) throws Exception {
         MailSenderConfiguration mailSenderConfiguration = new MailSenderConfiguration(
             "localhost",
             Port.of(mockSmtpExtension.getMockSmtp().getSmtpPort()),
@@ -217,13 +220,17 @@ public class EventCancelEmailConsumerTest {
             URI.create("http://localhost:8888/").toURL());
 
         EventMailHandler mailHandler = new EventMailHandler(mailSenderFactory,
+            new RecipientGroupingMailSender(mailSenderFactory, groupingConfiguration),
             messageFactory,
             linkFactory,
             usersRepository, resourceDAO, domainDAO,
             settingsResolver, actionLinkFactory);
 
-        consumer = new EventEmailConsumer(channelPool, QueueArguments.Builder::new, mailHandler,
-            eventEmailFilter, new RecordingMetricFactory());
+        ParsedCalendarCache parsedCalendarCache = new ParsedCalendarCache(new RecordingMetricFactory());
+        UpdateNotificationDigester updateNotificationDigester = new UpdateNotificationDigester(new MemoryNotificationDigestStore(Clock.systemUTC()),
+            mailHandler, NotificationDigestConfiguration.DEFAULT, new RecordingMetricFactory(), parsedCalendarCache);
+        consumer = new EventEmailConsumer(channelPool, QueueArguments.Builder::new, mailHandler, updateNotificationDigester,
+            eventEmailFilter, new RecordingMetricFactory(), parsedCalendarCache);
         consumer.init();
 
     }
@@ -310,6 +317,37 @@ public class EventCancelEmailConsumerTest {
             .contains("Auto-Submitted: auto-generated");
     }
 
+    @Test
+    void groupedCancelEmailShouldNotDiscloseTheOtherRecipients() throws Exception {
+        consumer.close();
+        setupEventEmailConsumer(new SmtpGroupingConfiguration(50, Duration.ofSeconds(1)));
+        OpenPaaSUser otherAttendee = sabreDavExtension.newTestUser();
+
+        String eventUid = UUID.randomUUID().toString();
+        String calendarData = generateCalendarData(eventUid, organizer.username().asString(), attendee.username().asString(), PartStat.NEEDS_ACTION)
+            .replace("END:VEVENT", "ATTENDEE;PARTSTAT=NEEDS-ACTION;CN=Other attendee:mailto:" + otherAttendee.username().asString() + "\nEND:VEVENT");
+        davTestHelper.upsertCalendar(organizer, calendarData, eventUid);
+
+        awaitAtMost.atMost(Duration.ofSeconds(20))
+            .untilAsserted(() -> assertThat(smtpMailsResponseSupplier.get().getList("")).hasSize(2));
+        mockSmtpExtension.clear();
+
+        davTestHelper.deleteCalendar(organizer, eventUid);
+
+        awaitAtMost.atMost(Duration.ofSeconds(20))
+            .untilAsserted(() -> assertThat(smtpMailsResponseSupplier.get().<String>getList("recipients.address.flatten()"))
+                .containsExactlyInAnyOrder(attendee.username().asString(), otherAttendee.username().asString()));
+
+        JsonPath smtpMailsResponse = smtpMailsResponseSupplier.get();
+        assertSoftly(softly -> {
+            softly.assertThat(smtpMailsResponse.getList("")).hasSize(1);
+            softly.assertThat(smtpMailsResponse.getString("[0].message"))
+                .contains("To: undisclosed-recipients:;")
+                .doesNotContain("To: " + attendee.username().asString())
+                .doesNotContain("To: " + otherAttendee.username().asString());
+        });
+    }
+
     private String getHtml(String message) {
         Pattern htmlPattern = Pattern.compile(
             "Content-Transfer-Encoding: base64\r?\nContent-Type: text/html; charset=UTF-8\r?\nContent-Language: [^\r\n]+\r?\n\r?\n([A-Za-z0-9+/=\r\n]+)\r?\n---=Part",
@@ -77,6 +77,8 @@ import com.linagora.calendar.dav.SabreDavExtension;
 import com.linagora.calendar.smtp.MailSender;
 import com.linagora.calendar.smtp.MailSenderConfiguration;
 import com.linagora.calendar.smtp.MockSmtpServerExtension;
+import com.linagora.calendar.smtp.RecipientGroupingMailSender;
+import com.linagora.calendar.smtp.SmtpGroupingConfiguration;
 import com.linagora.calendar.smtp.template.MailTemplateConfiguration;
 import com.linagora.calendar.smtp.template.MessageGenerator;
 import com.linagora.calendar.smtp.template.content.model.EventInCalendarLinkFactory;
@@ -84,6 +86,7 @@ import com.linagora.calendar.storage.OpenPaaSUser;
 import com.linagora.calendar.storage.OpenPaaSUserDAO;
 import com.linagora.calendar.storage.ResourceDAO;
 import com.linagora.calendar.storage.configuration.resolver.SettingsBasedResolver;
+import com.linagora.calendar.storage.digest.MemoryNotificationDigestStore;
 import com.linagora.calendar.storage.mongodb.MongoDBOpenPaaSDomainDAO;
 import com.linagora.calendar.storage.mongodb.MongoDBOpenPaaSUserDAO;
 import com.linagora.calendar.storage.mongodb.MongoDBResourceDAO;
@@ -204,14 +207,18 @@ public class EventCounterEmailConsumerTest {
             URI.create("http://localhost:8888/").toURL());
 
         EventMailHandler mailHandler = new EventMailHandler(mailSenderFactory,
+            new RecipientGroupingMailSender(mailSenderFactory, SmtpGroupingConfiguration.DISABLED),
             messageFactory,
             linkFactory,
             usersRepository, resourceDAO, domainDAO,
             settingsResolver,
             actionLinkFactory);
 
-        consumer = new EventEmailConsumer(channelPool, QueueArguments.Builder::new, mailHandler,
-            eventEmailFilter, new RecordingMetricFactory());
+        ParsedCalendarCache parsedCalendarCache = new ParsedCalendarCache(new RecordingMetricFactory());
+        UpdateNotificationDigester updateNotificationDigester = new UpdateNotificationDigester(new MemoryNotificationDigestStore(Clock.systemUTC()),
+            mailHandler, NotificationDigestConfiguration.DEFAULT, new RecordingMetricFactory(), parsedCalendarCache);
+        consumer = new EventEmailConsumer(channelPool, QueueArguments.Builder::new, mailHandler, updateNotificationDigester,
+            eventEmailFilter, new RecordingMetricFactory(), parsedCalendarCache);
         consumer.init();
 
     }
@@ -33,9 +33,12 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import jakarta.mail.internet.AddressException;
 
@@ -141,7 +144,8 @@ public class EventIndexerConsumerTest {
         calendarSearchService = Mockito.spy(new MemoryCalendarSearchService());
 
         eventIndexerConsumer = new EventIndexerConsumer(channelPool, calendarSearchService,
-            QueueArguments.Builder::new, new RecordingMetricFactory());
+            QueueArguments.Builder::new, new RecordingMetricFactory(), AmqpRetryConfiguration.DEFAULT,
+            new AdaptiveConcurrencyLimiter.Factory(new RecordingMetricFactory(), AmqpConcurrencyConfiguration.DEFAULT));
         eventIndexerConsumer.init();
 
         sender = channelPool.getSender();
@@ -894,6 +898,33 @@ public class EventIndexerConsumerTest {
         assertEventExistsInSearch(openPaasUser.username(), updatedSummary, eventUid);
     }
 
+    @Test
+    void shouldApplyInterleavedUpdatesOfAnEventInDeliveryOrder() {
+        Mockito.doAnswer(invocation -> Mono.delay(Duration.ofMillis(ThreadLocalRandom.current().nextInt(50)))
+                .then((Mono<?>) invocation.callRealMethod()))
+            .when(calendarSearchService).index(any());
+
+        List<String> eventUids = IntStream.range(0, 3)
+            .mapToObj(i -> UUID.randomUUID().toString())
+            .toList();
+        int versions = 10;
+
+        Flux.range(0, versions)
+            .flatMapIterable(version -> eventUids.stream()
+                .map(eventUid -> updatedEventMessage(eventUid, "Version " + version))
+                .toList())
+            .concatMap(message -> sender.send(Mono.just(new OutboundMessage("calendar:event:updated",
+                EMPTY_ROUTING_KEY, message.getBytes(UTF_8)))))
+            .blockLast();
+
+        awaitAtMost.untilAsserted(() -> Mockito.verify(calendarSearchService, Mockito.times(versions * eventUids.size())).index(any()));
+        assertThat(Flux.from(calendarSearchService.search(simpleQuery("", CalendarURL.from(openPaasUser.id()))))
+            .collectMap(event -> event.uid().value(), EventFields::summary)
+            .block())
+            .isEqualTo(eventUids.stream()
+                .collect(Collectors.toMap(Function.identity(), eventUid -> "Version " + (versions - 1))));
+    }
+
     @Test
     void shouldIndexEventInSearchEngineForAttendeeWhenInvited() {
         String eventUid = UUID.randomUUID().toString();
@@ -1163,6 +1194,13 @@ public class EventIndexerConsumerTest {
             EventSearchQuery.MAX_LIMIT, 0);
     }
 
+    private String updatedEventMessage(String eventUid, String summary) {
+        String userId = openPaasUser.id().value();
+        return """
+            {"eventPath":"/calendars/%s/%s/%s.ics","event":["vcalendar",[["version",{},"text","2.0"],["prodid",{},"text","-//Sabre//Sabre VObject 4.2.2//EN"]],[["vevent",[["uid",{},"text","%s"],["dtstart",{},"date-time","2025-04-19T11:00:00Z"],["dtend",{},"date-time","2025-04-19T11:30:00Z"],["summary",{},"text","%s"],["organizer",{"cn":"John1 Doe1"},"cal-address","mailto:%s"],["dtstamp",{},"date-time","2025-04-18T07:47:48Z"]],[]]]],"import":false,"etag":"\\"f066260d3a4fca51ae0de0618e9555cc\\""}"""
+            .formatted(userId, userId, eventUid, eventUid, summary, openPaasUser.username().asString());
+    }
+
     private String getSampleCalendar(String eventUid) {
         return """
             BEGIN:VCALENDAR
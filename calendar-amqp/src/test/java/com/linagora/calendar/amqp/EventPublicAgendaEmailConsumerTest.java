@@ -82,6 +82,8 @@ import com.linagora.calendar.smtp.EventEmailFilter;
 import com.linagora.calendar.smtp.MailSender;
 import com.linagora.calendar.smtp.MailSenderConfiguration;
 import com.linagora.calendar.smtp.MockSmtpServerExtension;
+import com.linagora.calendar.smtp.RecipientGroupingMailSender;
+import com.linagora.calendar.smtp.SmtpGroupingConfiguration;
 import com.linagora.calendar.smtp.template.MailTemplateConfiguration;
 import com.linagora.calendar.smtp.template.MessageGenerator;
 import com.linagora.calendar.smtp.template.content.model.EventInCalendarLinkFactory;
@@ -89,6 +91,7 @@ import com.linagora.calendar.storage.OpenPaaSUser;
 import com.linagora.calendar.storage.OpenPaaSUserDAO;
 import com.linagora.calendar.storage.ResourceDAO;
 import com.linagora.calendar.storage.configuration.resolver.SettingsBasedResolver;
+import com.linagora.calendar.storage.digest.MemoryNotificationDigestStore;
 import com.linagora.calendar.storage.mongodb.MongoDBOpenPaaSDomainDAO;
 import com.linagora.calendar.storage.mongodb.MongoDBOpenPaaSUserDAO;
 import com.linagora.calendar.storage.mongodb.MongoDBResourceDAO;
@@ -227,14 +230,18 @@ public class EventPublicAgendaEmailConsumerTest {
             participationTokenSigner,
             URI.create("http://localhost:8888/").toURL());
         EventMailHandler mailHandler = new EventMailHandler(mailSenderFactory,
+            new RecipientGroupingMailSender(mailSenderFactory, SmtpGroupingConfiguration.DISABLED),
             messageFactory,
             linkFactory,
             usersRepository, resourceDAO, domainDAO,
             settingsResolver,
             actionLinkFactory);
 
-        consumer = new EventEmailConsumer(channelPool, QueueArguments.Builder::new, mailHandler,
-            eventEmailFilter, new RecordingMetricFactory());
+        ParsedCalendarCache parsedCalendarCache = new ParsedCalendarCache(new RecordingMetricFactory());
+        UpdateNotificationDigester updateNotificationDigester = new UpdateNotificationDigester(new MemoryNotificationDigestStore(Clock.systemUTC()),
+            mailHandler, NotificationDigestConfiguration.DEFAULT, new RecordingMetricFactory(), parsedCalendarCache);
+        consumer = new EventEmailConsumer(channelPool, QueueArguments.Builder::new, mailHandler, updateNotificationDigester,
+            eventEmailFilter, new RecordingMetricFactory(), parsedCalendarCache);
         consumer.init();
     }
 
@@ -89,6 +89,8 @@ import com.linagora.calendar.smtp.EventEmailFilter;
 import com.linagora.calendar.smtp.MailSender;
 import com.linagora.calendar.smtp.MailSenderConfiguration;
 import com.linagora.calendar.smtp.MockSmtpServerExtension;
+import com.linagora.calendar.smtp.RecipientGroupingMailSender;
+import com.linagora.calendar.smtp.SmtpGroupingConfiguration;
 import com.linagora.calendar.smtp.template.MailTemplateConfiguration;
 import com.linagora.calendar.smtp.template.MessageGenerator;
 import com.linagora.calendar.smtp.template.content.model.EventInCalendarLinkFactory;
@@ -97,6 +99,7 @@ import com.linagora.calendar.storage.OpenPaaSUser;
 import com.linagora.calendar.storage.OpenPaaSUserDAO;
 import com.linagora.calendar.storage.ResourceInsertRequest;
 import com.linagora.calendar.storage.configuration.resolver.SettingsBasedResolver;
+import com.linagora.calendar.storage.digest.MemoryNotificationDigestStore;
 import com.linagora.calendar.storage.eventsearch.EventUid;
 import com.linagora.calendar.storage.model.ResourceId;
 import com.linagora.calendar.storage.mongodb.MongoDBOpenPaaSDomainDAO;
@@ -231,14 +234,18 @@ public class EventReplyEmailConsumerTest {
             participationTokenSigner,
             URI.create("http://localhost:8888/").toURL());
         EventMailHandler mailHandler = new EventMailHandler(mailSenderFactory,
+            new RecipientGroupingMailSender(mailSenderFactory, SmtpGroupingConfiguration.DISABLED),
             messageFactory,
             linkFactory,
             usersRepository, resourceDAO, domainDAO,
             settingsResolver,
             actionLinkFactory);
 
-        consumer = new EventEmailConsumer(channelPool, QueueArguments.Builder::new, mailHandler,
-            eventEmailFilter, new RecordingMetricFactory());
+        ParsedCalendarCache parsedCalendarCache = new ParsedCalendarCache(new RecordingMetricFactory());
+        UpdateNotificationDigester updateNotificationDigester = new UpdateNotificationDigester(new MemoryNotificationDigestStore(Clock.systemUTC()),
+            mailHandler, NotificationDigestConfiguration.DEFAULT, new RecordingMetricFactory(), parsedCalendarCache);
+        consumer = new EventEmailConsumer(channelPool, QueueArguments.Builder::new, mailHandler, updateNotificationDigester,
+            eventEmailFilter, new RecordingMetricFactory(), parsedCalendarCache);
         consumer.init();
 
     }
@@ -88,6 +88,7 @@ import com.linagora.calendar.dav.ResourceService.ResourceAdministrator;
 import com.linagora.calendar.smtp.MailSender;
 import com.linagora.calendar.smtp.MailSenderConfiguration;
 import com.linagora.calendar.smtp.MockSmtpServerExtension;
+import com.linagora.calendar.smtp.template.InternetAddressResolver;
 import com.linagora.calendar.smtp.template.MailTemplateConfiguration;
 import com.linagora.calendar.smtp.template.MessageGenerator;
 import com.linagora.calendar.storage.OpenPaaSDomain;
@@ -232,7 +233,8 @@ public class EventResourceConsumerTest {
         ResourceDAO resourceDAO = new MongoDBResourceDAO(mongoDB, Clock.systemUTC());
         resourceService = new ResourceService(openPaaSUserDAO, resourceDAO, calDavClient);
 
-        MessageGenerator.Factory messageFactory = MessageGenerator.factory(mailTemplateConfig, fileSystem, openPaaSUserDAO);
+        InternetAddressResolver internetAddressResolver = new InternetAddressResolver(openPaaSUserDAO);
+        MessageGenerator.Factory messageFactory = MessageGenerator.factory(mailTemplateConfig, fileSystem, internetAddressResolver);
 
         JwtSigner jwtSigner = mock(JwtSigner.class);
         when(jwtSigner.generate(anyMap()))
@@ -247,9 +249,10 @@ public class EventResourceConsumerTest {
             mailTemplateConfig,
             URI.create("https://calendar.linagora.local").toURL(),
             jwtSigner,
-            calDavEventRepository);
+            calDavEventRepository,
+            internetAddressResolver);
 
-        consumer = new EventResourceConsumer(channelPool, QueueArguments.Builder::new, eventResourceHandler);
+        consumer = new EventResourceConsumer(channelPool, QueueArguments.Builder::new, eventResourceHandler, new ParsedCalendarCache(new RecordingMetricFactory()));
         consumer.init();
 
         sender = channelPool.getSender();
@@ -80,6 +80,8 @@ import com.linagora.calendar.dav.DockerSabreDavSetup;
 import com.linagora.calendar.smtp.MailSender;
 import com.linagora.calendar.smtp.MailSenderConfiguration;
 import com.linagora.calendar.smtp.MockSmtpServerExtension;
+import com.linagora.calendar.smtp.RecipientGroupingMailSender;
+import com.linagora.calendar.smtp.SmtpGroupingConfiguration;
 import com.linagora.calendar.smtp.template.MailTemplateConfiguration;
 import com.linagora.calendar.smtp.template.MessageGenerator;
 import com.linagora.calendar.smtp.template.content.model.EventInCalendarLinkFactory;
@@ -87,6 +89,7 @@ import com.linagora.calendar.storage.OpenPaaSUser;
 import com.linagora.calendar.storage.OpenPaaSUserDAO;
 import com.linagora.calendar.storage.ResourceDAO;
 import com.linagora.calendar.storage.configuration.resolver.SettingsBasedResolver;
+import com.linagora.calendar.storage.digest.MemoryNotificationDigestStore;
 import com.linagora.calendar.storage.mongodb.MongoDBOpenPaaSDomainDAO;
 import com.linagora.calendar.storage.mongodb.MongoDBOpenPaaSUserDAO;
 import com.linagora.calendar.storage.mongodb.MongoDBResourceDAO;
@@ -150,6 +153,7 @@ public class EventUpdateEmailConsumerTest {
     private OpenPaaSUser organizer;
     private OpenPaaSUser attendee;
     private EventEmailConsumer consumer;
+    private UpdateNotificationDigester updateNotificationDigester;
 
     @BeforeEach
     public void setUp() throws Exception {
@@ -163,7 +167,7 @@ public class EventUpdateEmailConsumerTest {
                     TIMEZONE_IDENTIFIER, ZoneId.of("Asia/Ho_Chi_Minh")))));
 
         sabreDavExtension.deleteRabbitMQQueues(EventEmailConsumer.QUEUE_NAME, EventEmailConsumer.DEAD_LETTER_QUEUE);
-        setupEventEmailConsumer();
+        setupEventEmailConsumer(NotificationDigestConfiguration.DEFAULT);
     }
 
     @AfterEach
@@ -171,11 +175,14 @@ public class EventUpdateEmailConsumerTest {
         if (consumer != null) {
             consumer.close();
         }
+        if (updateNotificationDigester != null) {
+            updateNotificationDigester.close();
+        }
         Mockito.reset(settingsResolver);
         Mockito.reset(eventEmailFilter);
     }
 
-    private void setupEventEmailConsumer() throws Exception {
+    private void setupEventEmailConsumer(NotificationDigestConfiguration digestConfiguration) throws Exception {
         MailSenderConfiguration mailSenderConfiguration = new MailSenderConfiguration(
             "localhost",
             Port.of(mockSmtpExtension.getMockSmtp().getSmtpPort()),
@@ -217,14 +224,19 @@ public class EventUpdateEmailConsumerTest {
             participationTokenSigner,
             URI.create("http://localhost:8888/").toURL());
         EventMailHandler mailHandler = new EventMailHandler(mailSenderFactory,
+            new RecipientGroupingMailSender(mailSenderFactory, SmtpGroupingConfiguration.DISABLED),
             messageFactory,
             linkFactory,
             usersRepository, resourceDAO, domainDAO,
             settingsResolver,
             actionLinkFactory);
 
-        consumer = new EventEmailConsumer(channelPool, QueueArguments.Builder::new, mailHandler,
-            eventEmailFilter, new RecordingMetricFactory());
+        ParsedCalendarCache parsedCalendarCache = new ParsedCalendarCache(new RecordingMetricFactory());
+        updateNotificationDigester = new UpdateNotificationDigester(new MemoryNotificationDigestStore(Clock.systemUTC()),
+            mailHandler, digestConfiguration, new RecordingMetricFactory(), parsedCalendarCache);
+        updateNotificationDigester.start();
+        consumer = new EventEmailConsumer(channelPool, QueueArguments.Builder::new, mailHandler, updateNotificationDigester,
+            eventEmailFilter, new RecordingMetricFactory(), parsedCalendarCache);
         consumer.init();
 
     }
@@ -316,6 +328,66 @@ public class EventUpdateEmailConsumerTest {
         }));
     }
 
+    @Test
+    void updatesWithinTheDigestWindowShouldBeSentAsASingleMail() throws Exception {
+        consumer.close();
+        updateNotificationDigester.close();
+        setupEventEmailConsumer(new NotificationDigestConfiguration(true, Duration.ofSeconds(10), Duration.ofSeconds(1), 100));
+
+        String eventUid = UUID.randomUUID().toString();
+        davTestHelper.upsertCalendar(organizer, generateCalendarData(
+            eventUid,
+            organizer.username().asString(),
+            attendee.username().asString(),
+            "Sprint planning #01",
+            "Twake Meeting Room",
+            "This is a meeting to discuss the sprint planning for the next week.",
+            "30250411T100000",
+            "30250411T110000"), eventUid);
+
+        // The invitation is not digested
+        awaitAtMost.atMost(Duration.ofSeconds(20))
+            .untilAsserted(() -> assertThat(smtpMailsResponseSupplier.get().getList("")).hasSize(1));
+
+        mockSmtpExtension.clear();
+
+        davTestHelper.upsertCalendar(organizer, generateCalendarData(
+            eventUid,
+            organizer.username().asString(),
+            attendee.username().asString(),
+            "Sprint planning #02",
+            "Twake Meeting Room 2",
+            "This is a meeting to discuss the sprint planning for the next week.",
+            "30250411T100000",
+            "30250411T110000"), eventUid);
+        davTestHelper.upsertCalendar(organizer, generateCalendarData(
+            eventUid,
+            organizer.username().asString(),
+            attendee.username().asString(),
+            "Sprint planning #03",
+            "Twake Meeting Room 2",
+            "This is a meeting to discuss the sprint planning for the next week.",
+            "30250411T150000",
+            "30250411T160000"), eventUid);
+
+        awaitAtMost.atMost(Duration.ofSeconds(30))
+            .untilAsserted(() -> assertThat(smtpMailsResponseSupplier.get().getList("")).hasSize(1));
+        calmlyAwait.during(Duration.ofSeconds(3))
+            .atMost(Duration.ofSeconds(10))
+            .untilAsserted(() -> assertThat(smtpMailsResponseSupplier.get().getList("")).hasSize(1));
+
+        JsonPath smtpMailsResponse = smtpMailsResponseSupplier.get();
+        assertThat(smtpMailsResponse.getString("[0].recipients[0].address")).isEqualTo(attendee.username().asString());
+        assertThat(getHtml(smtpMailsResponse.getString("[0].message")))
+            .contains("has updated an event")
+            .contains("Sprint planning #01")
+            .contains("Sprint planning #03")
+            .doesNotContain("Sprint planning #02")
+            .contains("Twake Meeting Room 2")
+            .contains("Monday, 11 April 3025 10:00 - 11:00")
+            .contains("Monday, 11 April 3025 15:00 - 16:00");
+    }
+
     private String getHtml(String message) {
         Pattern htmlPattern = Pattern.compile(
             "Content-Transfer-Encoding: base64\r?\nContent-Type: text/html; charset=UTF-8\r?\nContent-Language: [^\r\n]+\r?\n\r?\n([A-Za-z0-9+/=\r\n]+)\r?\n---=Part",
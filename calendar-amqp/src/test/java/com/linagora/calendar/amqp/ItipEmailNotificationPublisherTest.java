@@ -30,6 +30,7 @@ import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Optional;
 
+import org.apache.james.metrics.tests.RecordingMetricFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -39,7 +40,6 @@ import com.linagora.calendar.amqp.ItipEmailNotificationPublisher.NotificationEma
 import net.fortuna.ical4j.model.Component;
 import net.fortuna.ical4j.model.property.Method;
 import reactor.rabbitmq.OutboundMessage;
-import reactor.rabbitmq.Sender;
 
 class ItipEmailNotificationPublisherTest {
 
@@ -59,9 +59,10 @@ class ItipEmailNotificationPublisherTest {
 
     private static ItipEmailNotificationPublisher publisherWithClock(Clock clock) {
         return new ItipEmailNotificationPublisher(
-            mock(Sender.class),
+            mock(ConfirmedBatchPublisher.class),
             body -> new OutboundMessage("exchange", "routingKey", body),
-            clock);
+            clock,
+            new ParsedCalendarCache(new RecordingMetricFactory()));
     }
 
     @Nested
@@ -18,7 +18,6 @@
 
 package com.linagora.calendar.amqp;
 
-import static com.linagora.calendar.amqp.CalendarAmqpModule.DEFAULT_ITIP_EVENT_MESSAGES_PREFETCH_COUNT;
 import static com.linagora.calendar.storage.TestFixture.TECHNICAL_TOKEN_SERVICE_TESTING;
 import static org.apache.james.backends.rabbitmq.Constants.DURABLE;
 import static org.apache.james.backends.rabbitmq.Constants.EMPTY_ROUTING_KEY;
@@ -37,6 +36,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.james.backends.rabbitmq.QueueArguments;
@@ -52,9 +53,12 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.mockito.ArgumentMatchers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.awaitility.Awaitility;
 import org.awaitility.core.ConditionFactory;
 
@@ -79,6 +83,7 @@ import reactor.rabbitmq.QueueSpecification;
 import reactor.rabbitmq.Sender;
 
 public class ItipLocalDeliveryConsumerTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ItipLocalDeliveryConsumerTest.class);
 
     private static final ConditionFactory AWAIT_AT_MOST = Awaitility.with()
         .pollInterval(Duration.ofMillis(200))
@@ -123,6 +128,7 @@ public class ItipLocalDeliveryConsumerTest {
 
     private ItipLocalDeliveryConsumer consumer;
     private LocalRecipientResolver localRecipientResolver;
+    private CalDavClient calDavClient;
     private Channel channel;
 
     private String testFanoutQueue;
@@ -175,16 +181,9 @@ public class ItipLocalDeliveryConsumerTest {
             Optional.empty(),
             Optional.empty());
 
-        CalDavClient calDavClient = new CalDavClient(davConfiguration, TECHNICAL_TOKEN_SERVICE_TESTING);
-
-        consumer = new ItipLocalDeliveryConsumer(
-            channelPool,
-            QueueArguments.Builder::new,
-            calDavClient,
-            localRecipientResolver,
-            DEFAULT_ITIP_EVENT_MESSAGES_PREFETCH_COUNT,
-            Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC));
+        calDavClient = new CalDavClient(davConfiguration, TECHNICAL_TOKEN_SERVICE_TESTING);
 
+        consumer = createConsumer(ItipLocalDeliveryConfiguration.DEFAULT);
         consumer.init();
         declareExchange(EventEmailConsumer.EXCHANGE_NAME);
 
@@ -976,6 +975,131 @@ public class ItipLocalDeliveryConsumerTest {
         });
     }
 
+    @Nested
+    class InProcessFanOut {
+        private static final int RECIPIENT_COUNT = 20;
+
+        @BeforeEach
+        void setUp() {
+            consumer.close();
+            consumer = createConsumer(new ItipLocalDeliveryConfiguration(ItipLocalDeliveryConfiguration.FanOutMode.IN_PROCESS, 4,
+                ItipLocalDeliveryConfiguration.PUBLISH_BATCH_SIZE_DEFAULT, ItipLocalDeliveryConfiguration.PUBLISH_BATCH_WINDOW_DEFAULT,
+                ItipLocalDeliveryConfiguration.PUBLISH_RETRIES_DEFAULT));
+            consumer.init();
+
+            when(localRecipientResolver.resolve(ArgumentMatchers.any(Username.class)))
+                .thenReturn(Mono.just(Optional.of(new LocalRecipientResolver.ResolvedRecipient.LocalUser(new OpenPaaSId(LOCAL_USER_ID)))));
+        }
+
+        @Test
+        void shouldProcessEveryRecipientWithoutRepublishing() throws Exception {
+            declareQueueBoundToExchange(ItipLocalDeliveryConsumer.EXCHANGE_NAME, testFanoutQueue);
+            List<JsonNode> receivedMessages = consumeJsonMessages(testFanoutQueue);
+            stubItipNoContent();
+
+            publishToConsumer(payloadWithRecipients(recipients(RECIPIENT_COUNT)));
+
+            AWAIT_AT_MOST.untilAsserted(() ->
+                WireMock.verify(RECIPIENT_COUNT, WireMock.postRequestedFor(WireMock.urlEqualTo("/itip"))));
+            Thread.sleep(500);
+            assertThat(receivedMessages)
+                .as("Only the original message goes through the broker")
+                .hasSize(1);
+        }
+
+        @Test
+        void shouldRepublishOnlyFailedRecipients() {
+            declareQueueBoundToExchange(ItipLocalDeliveryConsumer.EXCHANGE_NAME, testFanoutQueue);
+            List<JsonNode> receivedMessages = consumeJsonMessages(testFanoutQueue);
+            stubItipNoContent();
+            wireMockServer.stubFor(WireMock.post(WireMock.urlEqualTo("/itip"))
+                .withRequestBody(WireMock.matchingJsonPath("$.recipient", WireMock.equalTo(CEDRIC)))
+                .willReturn(WireMock.aResponse().withStatus(500)));
+
+            publishToConsumer(payloadWithRecipients(List.of(ALICE, CEDRIC)));
+
+            AWAIT_AT_MOST.untilAsserted(() -> {
+                List<String> republishedRecipients = receivedMessages.stream()
+                    .filter(node -> node.at("/recipients").size() == 1)
+                    .map(node -> node.at("/recipients/0").asText())
+                    .toList();
+
+                assertThat(republishedRecipients).containsExactly("mailto:" + CEDRIC);
+            });
+            WireMock.verify(1, WireMock.postRequestedFor(WireMock.urlEqualTo("/itip"))
+                .withRequestBody(WireMock.matchingJsonPath("$.recipient", WireMock.equalTo(ALICE))));
+        }
+
+        @Test
+        void shouldUseFewerBrokerMessagesThanBrokerFanOut() throws Exception {
+            declareQueueBoundToExchange(ItipLocalDeliveryConsumer.EXCHANGE_NAME, testFanoutQueue);
+            List<JsonNode> receivedMessages = consumeJsonMessages(testFanoutQueue);
+            stubItipNoContent();
+
+            Duration inProcessLatency = timeUntilItipCalls(RECIPIENT_COUNT);
+            Thread.sleep(500);
+            int inProcessMessages = receivedMessages.size();
+
+            receivedMessages.clear();
+            wireMockServer.resetRequests();
+            consumer.close();
+            consumer = createConsumer(ItipLocalDeliveryConfiguration.DEFAULT);
+            consumer.init();
+
+            Duration brokerLatency = timeUntilItipCalls(RECIPIENT_COUNT);
+            Thread.sleep(500);
+            int brokerMessages = receivedMessages.size();
+
+            LOGGER.info("iTIP local delivery of {} recipients: in-process {} ({} broker messages), broker {} ({} broker messages)",
+                RECIPIENT_COUNT, inProcessLatency, inProcessMessages, brokerLatency, brokerMessages);
+            assertThat(inProcessMessages).isEqualTo(1);
+            assertThat(brokerMessages).isEqualTo(RECIPIENT_COUNT + 1);
+        }
+
+        private Duration timeUntilItipCalls(int count) {
+            long start = System.nanoTime();
+            publishToConsumer(payloadWithRecipients(recipients(count)));
+            AWAIT_AT_MOST.untilAsserted(() ->
+                WireMock.verify(count, WireMock.postRequestedFor(WireMock.urlEqualTo("/itip"))));
+            return Duration.ofNanos(System.nanoTime() - start);
+        }
+
+        private List<String> recipients(int count) {
+            return IntStream.range(0, count)
+                .mapToObj(i -> "user" + i + "@example.com")
+                .toList();
+        }
+
+        private String payloadWithRecipients(List<String> recipients) {
+            String recipientsJson = recipients.stream()
+                .map(recipient -> "\"mailto:" + recipient + "\"")
+                .collect(Collectors.joining(", "));
+            return """
+                {
+                  "sender": "mailto:%s",
+                  "method": "REQUEST",
+                  "uid": "%s",
+                  "calendarId": "%s",
+                  "message": %s,
+                  "hasChange": true,
+                  "recipients": [%s]
+                }
+                """.formatted(BOB, EVENT_UID, CALENDAR_ID, jsonString(SIMPLE_ICAL), recipientsJson);
+        }
+    }
+
+    private ItipLocalDeliveryConsumer createConsumer(ItipLocalDeliveryConfiguration configuration) {
+        return new ItipLocalDeliveryConsumer(
+            channelPool,
+            QueueArguments.Builder::new,
+            calDavClient,
+            localRecipientResolver,
+            Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC),
+            new ParsedCalendarCache(new RecordingMetricFactory()),
+            configuration,
+            new AdaptiveConcurrencyLimiter.Factory(new RecordingMetricFactory(), AmqpConcurrencyConfiguration.DEFAULT));
+    }
+
     private List<JsonNode> consumeJsonMessages(String queueName) {
         List<JsonNode> messages = new ArrayList<>();
         try {
@@ -0,0 +1,143 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.amqp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+class KeyedSerialLanesTest {
+    private final KeyedSerialLanes testee = new KeyedSerialLanes(16);
+
+    @Test
+    void tasksOfTheSameKeyShouldRunInSubscriptionOrder() {
+        ConcurrentLinkedQueue<Integer> completed = new ConcurrentLinkedQueue<>();
+
+        Flux.range(0, 20)
+            .flatMap(i -> testee.execute("event-1", Mono.delay(Duration.ofMillis(20 - i))
+                .then(Mono.fromRunnable(() -> completed.add(i)))), 20)
+            .blockLast(Duration.ofSeconds(10));
+
+        assertThat(completed).containsExactlyElementsOf(IntStream.range(0, 20).boxed().toList());
+    }
+
+    @Test
+    void tasksOfDifferentKeysShouldRunInParallel() {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        Mono<Boolean> waitForOther = Mono.fromCallable(() -> {
+                bothStarted.countDown();
+                return bothStarted.await(5, TimeUnit.SECONDS);
+            })
+            .subscribeOn(Schedulers.boundedElastic());
+
+        List<Boolean> results = Flux.merge(
+                testee.execute("event-1", waitForOther),
+                testee.execute(keyOnAnotherLane("event-1"), waitForOther))
+            .collectList()
+            .block(Duration.ofSeconds(10));
+
+        assertThat(results).containsExactly(true, true);
+    }
+
+    @Test
+    void failingTaskShouldNotBlockItsLane() {
+        assertThatThrownBy(() -> testee.execute("event-1", Mono.error(new RuntimeException("boom"))).block())
+            .hasMessage("boom");
+
+        assertThat(testee.execute("event-1", Mono.just("next")).block(Duration.ofSeconds(5)))
+            .isEqualTo("next");
+    }
+
+    @Test
+    void cancelledTaskShouldReleaseItsLane() {
+        Sinks.Empty<Void> never = Sinks.empty();
+        testee.execute("event-1", never.asMono())
+            .subscribe()
+            .dispose();
+
+        assertThat(testee.execute("event-1", Mono.just("next")).block(Duration.ofSeconds(5)))
+            .isEqualTo("next");
+    }
+
+    @Test
+    void taskShouldWaitForThePreviousTaskOfItsKey() {
+        Sinks.Empty<Void> first = Sinks.empty();
+        ConcurrentLinkedQueue<String> order = new ConcurrentLinkedQueue<>();
+
+        testee.execute("event-1", first.asMono().doOnTerminate(() -> order.add("first"))).subscribe();
+        Mono<Void> second = testee.execute("event-1", Mono.fromRunnable(() -> order.add("second")));
+        second.subscribe();
+
+        assertThat(order).isEmpty();
+        first.tryEmitEmpty();
+        assertThat(order).containsExactly("first", "second");
+    }
+
+    @Test
+    void interleavedCreateUpdateDeleteReplayShouldApplyTheOperationsOfEachEventInOrder() {
+        Map<String, String> index = new ConcurrentHashMap<>();
+        List<Operation> replay = List.of(
+            new Operation("event-1", "create", 40),
+            new Operation("event-2", "create", 5),
+            new Operation("event-1", "update", 20),
+            new Operation("event-2", "update", 30),
+            new Operation("event-1", "delete", 1),
+            new Operation("event-2", "update-2", 1));
+
+        Flux.fromIterable(replay)
+            .flatMap(operation -> testee.execute(operation.eventPath(), Mono.delay(Duration.ofMillis(operation.latencyMillis()))
+                .then(Mono.fromRunnable(() -> operation.applyTo(index)))), replay.size())
+            .blockLast(Duration.ofSeconds(10));
+
+        assertThat(index).containsExactly(Map.entry("event-2", "update-2"));
+    }
+
+    private record Operation(String eventPath, String name, long latencyMillis) {
+        void applyTo(Map<String, String> index) {
+            if (name.equals("delete")) {
+                index.remove(eventPath);
+            } else {
+                index.put(eventPath, name);
+            }
+        }
+    }
+
+    private String keyOnAnotherLane(String key) {
+        return IntStream.range(0, 1000)
+            .mapToObj(i -> "other-" + i)
+            .filter(other -> testee.laneOf(other) != testee.laneOf(key))
+            .findFirst()
+            .orElseThrow();
+    }
+}
@@ -0,0 +1,151 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.amqp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.apache.james.metrics.tests.RecordingMetricFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.property.Summary;
+
+class ParsedCalendarCacheTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().registerModule(new Jdk8Module())
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private static final String ICS = """
+        BEGIN:VCALENDAR
+        VERSION:2.0
+        PRODID:-//Test//Calendar//EN
+        BEGIN:VEVENT
+        UID:event-uid@test
+        DTSTART:20260401T100000Z
+        DTEND:20260401T110000Z
+        SUMMARY:Sprint sync
+        ORGANIZER:mailto:bob@example.com
+        END:VEVENT
+        END:VCALENDAR
+        """;
+
+    private static final String OTHER_ICS = ICS.replace("Sprint sync", "Sprint review");
+
+    private RecordingMetricFactory metricFactory;
+    private ParsedCalendarCache testee;
+
+    @BeforeEach
+    void setUp() {
+        metricFactory = new RecordingMetricFactory();
+        testee = new ParsedCalendarCache(metricFactory);
+    }
+
+    private String summary(Calendar calendar) {
+        return calendar.getComponent(Component.VEVENT)
+            .flatMap(vEvent -> vEvent.getProperty(Property.SUMMARY))
+            .map(Property::getValue)
+            .orElseThrow();
+    }
+
+    @Test
+    void parseShouldReturnParsedCalendar() {
+        assertThat(summary(testee.parse(ICS))).isEqualTo("Sprint sync");
+    }
+
+    @Test
+    void parseShouldShareTheCalendarOfEqualContents() {
+        Calendar first = testee.parse(ICS);
+        Calendar second = testee.parse(new String(ICS.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    void parseShouldNotShareTheCalendarOfDifferentContents() {
+        Calendar first = testee.parse(ICS);
+        Calendar second = testee.parse(OTHER_ICS);
+
+        assertThat(summary(second)).isEqualTo("Sprint review");
+        assertThat(second).isNotSameAs(first);
+    }
+
+    @Test
+    void parseShouldRecordHitsAndMisses() {
+        testee.parse(ICS);
+        testee.parse(ICS);
+        testee.parse(ICS);
+        testee.parse(OTHER_ICS);
+
+        assertThat(metricFactory.countFor(ParsedCalendarCache.HIT_METRIC_NAME)).isEqualTo(2);
+        assertThat(metricFactory.countFor(ParsedCalendarCache.MISS_METRIC_NAME)).isEqualTo(2);
+    }
+
+    @Test
+    void parseForUpdateShouldReturnAPrivateCopy() {
+        Calendar shared = testee.parse(ICS);
+        Calendar copy = testee.parseForUpdate(ICS);
+
+        copy.getComponent(Component.VEVENT).orElseThrow()
+            .replace(new Summary("Updated"));
+
+        assertThat(copy).isNotSameAs(shared);
+        assertThat(summary(copy)).isEqualTo("Updated");
+        assertThat(summary(testee.parse(ICS))).isEqualTo("Sprint sync");
+    }
+
+    @Test
+    void deserializationShouldReadThroughAttachedCache() throws Exception {
+        ObjectReader reader = testee.attachTo(OBJECT_MAPPER.readerFor(CalendarResourceMessageDTO.class));
+        byte[] message = OBJECT_MAPPER.writeValueAsBytes(Map.of(
+            "resourceId", "resource-id",
+            "eventId", "event-id.ics",
+            "eventPath", "/calendars/resource-id/resource-id/event-id.ics",
+            "ics", ICS));
+
+        CalendarResourceMessageDTO first = reader.readValue(message);
+        CalendarResourceMessageDTO second = reader.readValue(message);
+
+        assertThat(second.ics()).isSameAs(first.ics());
+        assertThat(second.ics()).isSameAs(testee.parse(ICS));
+    }
+
+    @Test
+    void deserializationWithoutCacheShouldStillParse() throws Exception {
+        byte[] message = OBJECT_MAPPER.writeValueAsBytes(Map.of(
+            "resourceId", "resource-id",
+            "eventId", "event-id.ics",
+            "eventPath", "/calendars/resource-id/resource-id/event-id.ics",
+            "ics", ICS));
+
+        CalendarResourceMessageDTO dto = OBJECT_MAPPER.readValue(message, CalendarResourceMessageDTO.class);
+
+        assertThat(summary(dto.ics())).isEqualTo("Sprint sync");
+        assertThat(metricFactory.countFor(ParsedCalendarCache.MISS_METRIC_NAME)).isZero();
+    }
+}
@@ -34,7 +34,10 @@ import java.util.concurrent.TimeoutException;
 import org.apache.james.backends.rabbitmq.DockerRabbitMQ;
 import org.apache.james.backends.rabbitmq.RabbitMQConnectionFactory;
 import org.apache.james.backends.rabbitmq.RabbitMQExtension;
+import org.apache.james.backends.rabbitmq.ReactorRabbitMQChannelPool;
 import org.apache.james.backends.rabbitmq.SimpleConnectionPool;
+import org.apache.james.metrics.api.NoopGaugeRegistry;
+import org.apache.james.metrics.tests.RecordingMetricFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -55,6 +58,8 @@ public class RabbitMQCalendarQueueConsumerHealthCheckTest {
 
     private Connection connection;
     private Channel channel;
+    private SimpleConnectionPool connectionPool;
+    private ReactorRabbitMQChannelPool channelPool;
     private RabbitMQCalendarQueueConsumerHealthCheck testee;
 
     @BeforeEach
@@ -64,14 +69,26 @@ public class RabbitMQCalendarQueueConsumerHealthCheckTest {
         connection = connectionFactory.newConnection();
         channel = connection.createChannel();
 
-        testee = new RabbitMQCalendarQueueConsumerHealthCheck(ImmutableSet.of(),
-            new SimpleConnectionPool(new RabbitMQConnectionFactory(rabbitMQ.getConfiguration()), SimpleConnectionPool.Configuration.builder().retries(1).initialDelay(Duration.ofMillis(100))));
+        connectionPool = new SimpleConnectionPool(new RabbitMQConnectionFactory(rabbitMQ.getConfiguration()),
+            SimpleConnectionPool.Configuration.builder().retries(1).initialDelay(Duration.ofMillis(100)));
+        channelPool = new ReactorRabbitMQChannelPool(connectionPool.getResilientConnection(),
+            ReactorRabbitMQChannelPool.Configuration.builder()
+                .retries(1)
+                .maxBorrowDelay(Duration.ofMillis(250))
+                .maxChannel(10),
+            new RecordingMetricFactory(),
+            new NoopGaugeRegistry());
+        channelPool.start();
+
+        testee = new RabbitMQCalendarQueueConsumerHealthCheck(ImmutableSet.of(), connectionPool, new CalendarQueueInspector(channelPool));
     }
 
     @AfterEach
     void tearDown(DockerRabbitMQ rabbitMQ) throws Exception {
         closeQuietly(channel);
         closeQuietly(connection);
+        closeQuietly(channelPool);
+        closeQuietly(connectionPool);
         rabbitMQ.reset();
     }
 
@@ -38,7 +38,10 @@ import java.util.concurrent.TimeoutException;
 import org.apache.james.backends.rabbitmq.DockerRabbitMQ;
 import org.apache.james.backends.rabbitmq.RabbitMQConnectionFactory;
 import org.apache.james.backends.rabbitmq.RabbitMQExtension;
+import org.apache.james.backends.rabbitmq.ReactorRabbitMQChannelPool;
 import org.apache.james.backends.rabbitmq.SimpleConnectionPool;
+import org.apache.james.metrics.api.NoopGaugeRegistry;
+import org.apache.james.metrics.tests.RecordingMetricFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -59,6 +62,8 @@ public class RabbitMQDeadLetterQueueEmptinessHealthCheckTest {
 
     private Connection connection;
     private Channel channel;
+    private SimpleConnectionPool connectionPool;
+    private ReactorRabbitMQChannelPool channelPool;
     private RabbitMQDeadLetterQueueEmptinessHealthCheck testee;
 
     @BeforeEach
@@ -68,14 +73,26 @@ public class RabbitMQDeadLetterQueueEmptinessHealthCheckTest {
         connection = connectionFactory.newConnection();
         channel = connection.createChannel();
 
-        testee = new RabbitMQDeadLetterQueueEmptinessHealthCheck(
-            new SimpleConnectionPool(new RabbitMQConnectionFactory(rabbitMQ.getConfiguration()), SimpleConnectionPool.Configuration.builder().retries(1).initialDelay(Duration.ofMillis(100))));
+        connectionPool = new SimpleConnectionPool(new RabbitMQConnectionFactory(rabbitMQ.getConfiguration()),
+            SimpleConnectionPool.Configuration.builder().retries(1).initialDelay(Duration.ofMillis(100)));
+        channelPool = new ReactorRabbitMQChannelPool(connectionPool.getResilientConnection(),
+            ReactorRabbitMQChannelPool.Configuration.builder()
+                .retries(1)
+                .maxBorrowDelay(Duration.ofMillis(250))
+                .maxChannel(10),
+            new RecordingMetricFactory(),
+            new NoopGaugeRegistry());
+        channelPool.start();
+
+        testee = new RabbitMQDeadLetterQueueEmptinessHealthCheck(new CalendarQueueInspector(channelPool));
     }
 
     @AfterEach
     void tearDown(DockerRabbitMQ rabbitMQ) throws Exception {
         closeQuietly(channel);
         closeQuietly(connection);
+        closeQuietly(channelPool);
+        closeQuietly(connectionPool);
         rabbitMQ.reset();
     }
 
@@ -18,7 +18,6 @@
 
 package com.linagora.calendar.amqp;
 
-import static com.linagora.calendar.amqp.CalendarAmqpModule.DEFAULT_ITIP_EVENT_MESSAGES_PREFETCH_COUNT;
 import static com.linagora.calendar.storage.TestFixture.TECHNICAL_TOKEN_SERVICE_TESTING;
 
 import java.time.Clock;
@@ -83,8 +82,10 @@ public class SabreAsyncSchedulingExtension implements BeforeAllCallback, BeforeE
             QueueArguments.Builder::new,
             new CalDavClient(sabreDavExtension.dockerSabreDavSetup().davConfiguration(), TECHNICAL_TOKEN_SERVICE_TESTING),
             localRecipientResolver(),
-            DEFAULT_ITIP_EVENT_MESSAGES_PREFETCH_COUNT,
-            Clock.systemUTC());
+            Clock.systemUTC(),
+            new ParsedCalendarCache(new RecordingMetricFactory()),
+            ItipLocalDeliveryConfiguration.DEFAULT,
+            new AdaptiveConcurrencyLimiter.Factory(new RecordingMetricFactory(), AmqpConcurrencyConfiguration.DEFAULT));
         itipLocalDeliveryConsumer.init();
     }
 
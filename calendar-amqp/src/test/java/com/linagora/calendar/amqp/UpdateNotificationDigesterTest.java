@@ -0,0 +1,329 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.amqp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.james.metrics.tests.RecordingMetricFactory;
+import org.apache.james.utils.UpdatableTickingClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.linagora.calendar.amqp.CalendarEventNotificationEmailDTO.Changes;
+import com.linagora.calendar.amqp.CalendarEventNotificationEmailDTO.StringChange;
+import com.linagora.calendar.amqp.model.CalendarEventUpdateNotificationEmail;
+import com.linagora.calendar.storage.digest.MemoryNotificationDigestStore;
+import com.linagora.calendar.storage.event.EventParseUtils;
+
+import reactor.core.publisher.Mono;
+
+class UpdateNotificationDigesterTest {
+    private static final Duration WINDOW = Duration.ofMinutes(1);
+    private static final String FIRST_OCCURRENCE = "20250628T073000";
+    private static final String SECOND_OCCURRENCE = "20250705T073000";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().registerModule(new Jdk8Module())
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private UpdatableTickingClock clock;
+    private MemoryNotificationDigestStore store;
+    private EventMailHandler eventMailHandler;
+    private UpdateNotificationDigester testee;
+
+    @BeforeEach
+    void setUp() {
+        clock = new UpdatableTickingClock(Instant.parse("2026-01-01T10:00:00Z"));
+        store = new MemoryNotificationDigestStore(clock);
+        eventMailHandler = mock(EventMailHandler.class);
+        when(eventMailHandler.handleUpdateEvent(any())).thenReturn(Mono.empty());
+        testee = new UpdateNotificationDigester(store, eventMailHandler,
+            new NotificationDigestConfiguration(true, WINDOW, Duration.ofSeconds(1), 100),
+            new RecordingMetricFactory(), new ParsedCalendarCache(new RecordingMetricFactory()));
+    }
+
+    @Test
+    void nothingShouldBeSentBeforeTheWindowElapsed() throws Exception {
+        submit("bob@domain.tld", "uid-1", "Second", summaryChange("First", "Second"));
+
+        clock.setInstant(clock.instant().plus(WINDOW).minusSeconds(1));
+        testee.dispatchDue().block();
+
+        verify(eventMailHandler, never()).handleUpdateEvent(any());
+    }
+
+    @Test
+    void updatesWithinTheWindowShouldBeSentAsASingleMail() throws Exception {
+        submit("bob@domain.tld", "uid-1", "Second", summaryChange("First", "Second"));
+        submit("bob@domain.tld", "uid-1", "Third", summaryChange("Second", "Third"));
+        submit("bob@domain.tld", "uid-1", "Third", locationChange("Office", "Remote"));
+
+        clock.setInstant(clock.instant().plus(WINDOW));
+        testee.dispatchDue().block();
+
+        CalendarEventUpdateNotificationEmail sent = sentUpdates().getFirst();
+        assertThat(sentUpdates()).hasSize(1);
+        assertThat(sent.maybeChanges()).contains(new Changes(Optional.empty(), Optional.empty(),
+            Optional.of(new StringChange("First", "Third")),
+            Optional.of(new StringChange("Office", "Remote")),
+            Optional.empty()));
+        assertThat(EventParseUtils.getSummary(sent.base().getFirstVEvent())).contains("Third");
+    }
+
+    @Test
+    void updatesOfDistinctRecipientsShouldBeSentSeparately() throws Exception {
+        submit("bob@domain.tld", "uid-1", "Second", summaryChange("First", "Second"));
+        submit("alice@domain.tld", "uid-1", "Second", summaryChange("First", "Second"));
+
+        clock.setInstant(clock.instant().plus(WINDOW));
+        testee.dispatchDue().block();
+
+        assertThat(sentUpdates())
+            .extracting(update -> update.base().recipientEmail().asString())
+            .containsExactlyInAnyOrder("bob@domain.tld", "alice@domain.tld");
+    }
+
+    @Test
+    void updatesOfDistinctEventsShouldBeSentSeparately() throws Exception {
+        submit("bob@domain.tld", "uid-1", "Second", summaryChange("First", "Second"));
+        submit("bob@domain.tld", "uid-2", "Second", summaryChange("First", "Second"));
+
+        clock.setInstant(clock.instant().plus(WINDOW));
+        testee.dispatchDue().block();
+
+        assertThat(sentUpdates()).hasSize(2);
+    }
+
+    @Test
+    void updatesCancellingEachOtherShouldNotBeSent() throws Exception {
+        submit("bob@domain.tld", "uid-1", "Second", summaryChange("First", "Second"));
+        submit("bob@domain.tld", "uid-1", "First", summaryChange("Second", "First"));
+
+        clock.setInstant(clock.instant().plus(WINDOW));
+        testee.dispatchDue().block();
+
+        verify(eventMailHandler, never()).handleUpdateEvent(any());
+        assertThat(store.depth().block()).isZero();
+    }
+
+    @Test
+    void updateFollowedByACancelWithinTheWindowShouldNotBeSent() throws Exception {
+        submit("bob@domain.tld", "uid-1", "Second", summaryChange("First", "Second"));
+        testee.discard(notification("CANCEL", "bob@domain.tld", "uid-1", "Second", "")).block();
+
+        clock.setInstant(clock.instant().plus(WINDOW));
+        testee.dispatchDue().block();
+
+        verify(eventMailHandler, never()).handleUpdateEvent(any());
+        assertThat(store.depth().block()).isZero();
+    }
+
+    @Test
+    void cancelShouldNotDiscardTheUpdatesOfOtherRecipients() throws Exception {
+        submit("bob@domain.tld", "uid-1", "Second", summaryChange("First", "Second"));
+        submit("alice@domain.tld", "uid-1", "Second", summaryChange("First", "Second"));
+        testee.discard(notification("CANCEL", "bob@domain.tld", "uid-1", "Second", "")).block();
+
+        clock.setInstant(clock.instant().plus(WINDOW));
+        testee.dispatchDue().block();
+
+        assertThat(sentUpdates())
+            .extracting(update -> update.base().recipientEmail().asString())
+            .containsExactly("alice@domain.tld");
+    }
+
+    @Test
+    void updatesOfDistinctOccurrencesShouldBeSentSeparately() throws Exception {
+        submit(occurrenceMessage("REQUEST", FIRST_OCCURRENCE, "First occurrence", summaryChange("Weekly", "First occurrence")));
+        submit(occurrenceMessage("REQUEST", SECOND_OCCURRENCE, "Weekly", locationChange("Office", "Remote")));
+
+        clock.setInstant(clock.instant().plus(WINDOW));
+        testee.dispatchDue().block();
+
+        assertThat(sentUpdates())
+            .extracting(this::recurrenceId, CalendarEventUpdateNotificationEmail::maybeChanges)
+            .containsExactlyInAnyOrder(
+                tuple(FIRST_OCCURRENCE, Optional.of(new Changes(Optional.empty(), Optional.empty(),
+                    Optional.of(new StringChange("Weekly", "First occurrence")), Optional.empty(), Optional.empty()))),
+                tuple(SECOND_OCCURRENCE, Optional.of(new Changes(Optional.empty(), Optional.empty(),
+                    Optional.empty(), Optional.of(new StringChange("Office", "Remote")), Optional.empty()))));
+    }
+
+    @Test
+    void cancelOfAnOccurrenceShouldNotDiscardTheUpdatesOfAnotherOccurrence() throws Exception {
+        submit(occurrenceMessage("REQUEST", FIRST_OCCURRENCE, "First occurrence", summaryChange("Weekly", "First occurrence")));
+        submit(occurrenceMessage("REQUEST", SECOND_OCCURRENCE, "Weekly", locationChange("Office", "Remote")));
+        testee.discard(OBJECT_MAPPER.readValue(occurrenceMessage("CANCEL", FIRST_OCCURRENCE, "First occurrence", ""),
+            CalendarEventNotificationEmailDTO.class)).block();
+
+        clock.setInstant(clock.instant().plus(WINDOW));
+        testee.dispatchDue().block();
+
+        assertThat(sentUpdates())
+            .extracting(this::recurrenceId)
+            .containsExactly(SECOND_OCCURRENCE);
+    }
+
+    @Test
+    void cancelOfTheEventShouldDiscardTheUpdatesOfItsOccurrences() throws Exception {
+        submit(occurrenceMessage("REQUEST", FIRST_OCCURRENCE, "First occurrence", summaryChange("Weekly", "First occurrence")));
+        submit(occurrenceMessage("REQUEST", SECOND_OCCURRENCE, "Weekly", locationChange("Office", "Remote")));
+        testee.discard(notification("CANCEL", "bob@domain.tld", "uid-1", "Weekly", "")).block();
+
+        clock.setInstant(clock.instant().plus(WINDOW));
+        testee.dispatchDue().block();
+
+        verify(eventMailHandler, never()).handleUpdateEvent(any());
+        assertThat(store.depth().block()).isZero();
+    }
+
+    @Test
+    void updateAfterTheWindowShouldOpenANewDigest() throws Exception {
+        submit("bob@domain.tld", "uid-1", "Second", summaryChange("First", "Second"));
+        clock.setInstant(clock.instant().plus(WINDOW));
+        testee.dispatchDue().block();
+
+        submit("bob@domain.tld", "uid-1", "Third", summaryChange("Second", "Third"));
+        clock.setInstant(clock.instant().plus(WINDOW));
+        testee.dispatchDue().block();
+
+        assertThat(sentUpdates())
+            .extracting(update -> update.maybeChanges().flatMap(Changes::summary).orElseThrow())
+            .containsExactly(new StringChange("First", "Second"), new StringChange("Second", "Third"));
+    }
+
+    @Test
+    void sentDigestShouldBeRemovedFromTheStore() throws Exception {
+        submit("bob@domain.tld", "uid-1", "Second", summaryChange("First", "Second"));
+
+        clock.setInstant(clock.instant().plus(WINDOW));
+        testee.dispatchDue().block();
+
+        assertThat(store.depth().block()).isZero();
+    }
+
+    @Test
+    void failedDigestShouldBeSentAgainOnceItsLeaseExpires() throws Exception {
+        when(eventMailHandler.handleUpdateEvent(any()))
+            .thenReturn(Mono.error(new RuntimeException("SMTP down")))
+            .thenReturn(Mono.empty());
+        submit("bob@domain.tld", "uid-1", "Second", summaryChange("First", "Second"));
+
+        clock.setInstant(clock.instant().plus(WINDOW));
+        testee.dispatchDue().block();
+        clock.setInstant(clock.instant().plus(Duration.ofMinutes(6)));
+        testee.dispatchDue().block();
+
+        verify(eventMailHandler, times(2)).handleUpdateEvent(any());
+        assertThat(store.depth().block()).isZero();
+    }
+
+    private void submit(String recipient, String uid, String summary, String changes) throws Exception {
+        submit(message("REQUEST", recipient, uid, summary, changes));
+    }
+
+    private void submit(String message) throws Exception {
+        byte[] rawMessage = message.getBytes(StandardCharsets.UTF_8);
+        testee.submit(OBJECT_MAPPER.readValue(rawMessage, CalendarEventNotificationEmailDTO.class), rawMessage).block();
+    }
+
+    private CalendarEventNotificationEmailDTO notification(String method, String recipient, String uid, String summary, String changes) throws Exception {
+        return OBJECT_MAPPER.readValue(message(method, recipient, uid, summary, changes), CalendarEventNotificationEmailDTO.class);
+    }
+
+    private List<CalendarEventUpdateNotificationEmail> sentUpdates() {
+        ArgumentCaptor<CalendarEventUpdateNotificationEmail> captor = ArgumentCaptor.forClass(CalendarEventUpdateNotificationEmail.class);
+        verify(eventMailHandler, atLeast(0)).handleUpdateEvent(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private String recurrenceId(CalendarEventUpdateNotificationEmail update) {
+        return update.base().getFirstVEvent().getRecurrenceId().getValue();
+    }
+
+    private String summaryChange(String previous, String current) {
+        return """
+            "summary": { "previous": "%s", "current": "%s" }""".formatted(previous, current);
+    }
+
+    private String locationChange(String previous, String current) {
+        return """
+            "location": { "previous": "%s", "current": "%s" }""".formatted(previous, current);
+    }
+
+    private String occurrenceMessage(String method, String recurrenceId, String summary, String changes) {
+        String dates = """
+            RECURRENCE-ID;TZID=Europe/Paris:%s
+            DTSTART;TZID=Europe/Paris:%s
+            DTEND;TZID=Europe/Paris:%s""".formatted(recurrenceId, recurrenceId, recurrenceId.replace("T073000", "T080000"));
+        return message(method, "bob@domain.tld", "uid-1", summary, dates, changes);
+    }
+
+    private String message(String method, String recipient, String uid, String summary, String changes) {
+        String dates = """
+            DTSTART;TZID=Europe/Paris:20250621T073000
+            DTEND;TZID=Europe/Paris:20250621T080000""";
+        return message(method, recipient, uid, summary, dates, changes);
+    }
+
+    private String message(String method, String recipient, String uid, String summary, String dates, String changes) {
+        String eventIcs = """
+            BEGIN:VCALENDAR
+            VERSION:2.0
+            PRODID:-//Sabre//Sabre VObject 4.2.2//EN
+            CALSCALE:GREGORIAN
+            METHOD:%s
+            BEGIN:VEVENT
+            UID:%s
+            SUMMARY:%s
+            %s
+            ORGANIZER:mailto:organizer@domain.tld
+            ATTENDEE:mailto:%s
+            END:VEVENT
+            END:VCALENDAR
+            """.formatted(method, uid, summary, dates, recipient);
+        return """
+            {
+                "senderEmail": "organizer@domain.tld",
+                "recipientEmail": "%s",
+                "method": "%s",
+                "event": "%s",
+                "calendarURI": "calendar",
+                "eventPath": "/calendars/calendar/%s.ics",
+                "changes": { %s }
+            }
+            """.formatted(recipient, method, eventIcs.replace("\n", "\\r\\n"), uid, changes);
+    }
+}
@@ -31,16 +31,22 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.DateTimeException;
 import java.time.ZoneId;
+import java.util.List;
+import java.util.stream.Stream;
 
 import net.fortuna.ical4j.data.CalendarBuilder;
+import net.fortuna.ical4j.data.CalendarParser;
 import net.fortuna.ical4j.data.CalendarParserFactory;
 import net.fortuna.ical4j.data.ContentHandlerContext;
 import net.fortuna.ical4j.data.ParserException;
 import net.fortuna.ical4j.model.Calendar;
 import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.ComponentList;
 import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.PropertyList;
 import net.fortuna.ical4j.model.TimeZoneRegistry;
 import net.fortuna.ical4j.model.TimeZoneRegistryImpl;
+import net.fortuna.ical4j.model.component.CalendarComponent;
 import net.fortuna.ical4j.model.component.VEvent;
 import net.fortuna.ical4j.model.property.Method;
 import net.fortuna.ical4j.util.CompatibilityHints;
@@ -80,11 +86,17 @@ public class CalendarUtil {
         return parseIcs(icsContent.getBytes(StandardCharsets.UTF_8));
     }
 
+    /**
+     * Parsers are not thread safe but hold no state between parses. Reactor schedulers run on a fixed set of threads,
+     * so one parser per thread avoids re-creating it on every parse. The timezone registry, which records the VTIMEZONE
+     * definitions of the parsed calendar, is created for each parse: definitions must not leak from a calendar to the
+     * next one.
+     */
+    private static final ThreadLocal<CalendarParser> PARSERS = ThreadLocal.withInitial(() -> CalendarParserFactory.getInstance().get());
+    private static final ContentHandlerContext CONTENT_HANDLER_CONTEXT = new ContentHandlerContext().withSuppressInvalidProperties(true);
+
     public static Calendar parseIcs(byte[] icsContent) {
-        CalendarBuilder builder = new CalendarBuilder(
-            CalendarParserFactory.getInstance().get(),
-            new ContentHandlerContext().withSuppressInvalidProperties(true),
-            new CustomizedTimeZoneRegistry());
+        CalendarBuilder builder = new CalendarBuilder(PARSERS.get(), CONTENT_HANDLER_CONTEXT, new CustomizedTimeZoneRegistry());
         try {
             ByteArrayInputStream inputStream = new ByteArrayInputStream(icsContent);
             return builder.build(inputStream);
@@ -109,6 +121,20 @@ public class CalendarUtil {
         return copiedCalendar;
     }
 
+    /**
+     * Same as {@link #withMethod(Calendar, Method)} without copying the calendar.
+     *
+     * <p>The returned calendar shares its components with the supplied one: it is meant to be serialized, not mutated.
+     */
+    public static Calendar withMethodView(Calendar calendar, Method method) {
+        List<Property> properties = Stream.concat(
+                calendar.getProperties().stream()
+                    .filter(property -> !Property.METHOD.equalsIgnoreCase(property.getName())),
+                Stream.of(method))
+            .toList();
+        return new Calendar(new PropertyList(properties), calendar.getComponentList());
+    }
+
     public static Calendar withSingleVEvent(Calendar template, VEvent vevent) {
         Calendar copiedCalendar = template.copy();
         copiedCalendar.getComponents(Component.VEVENT).stream()
@@ -118,4 +144,19 @@ public class CalendarUtil {
         copiedCalendar.add(vevent.copy());
         return copiedCalendar;
     }
+
+    /**
+     * Same as {@link #withSingleVEvent(Calendar, VEvent)} without copying the template nor the event.
+     *
+     * <p>The returned calendar shares its properties and components with the supplied ones: it is meant to be
+     * serialized, not mutated.
+     */
+    public static Calendar withSingleVEventView(Calendar template, VEvent vevent) {
+        List<CalendarComponent> components = Stream.concat(
+                template.getComponentList().getAll().stream()
+                    .filter(component -> !Component.VEVENT.equalsIgnoreCase(component.getName())),
+                Stream.of(vevent))
+            .toList();
+        return new Calendar(template.getPropertyList(), new ComponentList<>(components));
+    }
 }
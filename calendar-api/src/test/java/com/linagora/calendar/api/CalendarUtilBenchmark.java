@@ -0,0 +1,208 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.api;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.fortuna.ical4j.data.CalendarBuilder;
+import net.fortuna.ical4j.data.CalendarParserFactory;
+import net.fortuna.ical4j.data.ContentHandlerContext;
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.immutable.ImmutableMethod;
+
+/**
+ * Compares a builder per parse with the per thread builders of {@link CalendarUtil#parseIcs(byte[])}, and the copying
+ * {@link CalendarUtil#withMethod} / {@link CalendarUtil#withSingleVEvent} with their read-only views, when the result
+ * is only serialized as the iTIP publishers do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CalendarUtilBenchmark {
+    private static final String VTIMEZONE = """
+        BEGIN:VTIMEZONE
+        TZID:Europe/Paris
+        BEGIN:DAYLIGHT
+        TZOFFSETFROM:+0100
+        TZOFFSETTO:+0200
+        TZNAME:CEST
+        DTSTART:19700329T020000
+        RRULE:FREQ=YEARLY;BYMONTH=3;BYDAY=-1SU
+        END:DAYLIGHT
+        BEGIN:STANDARD
+        TZOFFSETFROM:+0200
+        TZOFFSETTO:+0100
+        TZNAME:CET
+        DTSTART:19701025T030000
+        RRULE:FREQ=YEARLY;BYMONTH=10;BYDAY=-1SU
+        END:STANDARD
+        END:VTIMEZONE
+        """;
+
+    private static final String SINGLE_EVENT = """
+        BEGIN:VEVENT
+        UID:single-event
+        DTSTAMP:20260301T090000Z
+        DTSTART;TZID=Europe/Paris:20260401T100000
+        DTEND;TZID=Europe/Paris:20260401T110000
+        SUMMARY:Sprint sync
+        LOCATION:Room 42
+        ORGANIZER;CN=Bob:mailto:bob@example.com
+        ATTENDEE;PARTSTAT=ACCEPTED;CN=Bob:mailto:bob@example.com
+        ATTENDEE;PARTSTAT=NEEDS-ACTION;CN=Alice:mailto:alice@example.com
+        BEGIN:VALARM
+        ACTION:DISPLAY
+        TRIGGER:-PT15M
+        END:VALARM
+        END:VEVENT
+        """;
+
+    private static final String RECURRING_EVENT = """
+        BEGIN:VEVENT
+        UID:recurring-event
+        DTSTAMP:20260301T090000Z
+        DTSTART;TZID=Europe/Paris:20260401T100000
+        DTEND;TZID=Europe/Paris:20260401T110000
+        RRULE:FREQ=WEEKLY;COUNT=52
+        EXDATE;TZID=Europe/Paris:20260415T100000,20260422T100000
+        SUMMARY:Sprint sync
+        ORGANIZER;CN=Bob:mailto:bob@example.com
+        ATTENDEE;PARTSTAT=ACCEPTED;CN=Bob:mailto:bob@example.com
+        ATTENDEE;PARTSTAT=NEEDS-ACTION;CN=Alice:mailto:alice@example.com
+        END:VEVENT
+        BEGIN:VEVENT
+        UID:recurring-event
+        DTSTAMP:20260301T090000Z
+        RECURRENCE-ID;TZID=Europe/Paris:20260408T100000
+        DTSTART;TZID=Europe/Paris:20260408T140000
+        DTEND;TZID=Europe/Paris:20260408T150000
+        SUMMARY:Sprint sync (moved)
+        ORGANIZER;CN=Bob:mailto:bob@example.com
+        ATTENDEE;PARTSTAT=ACCEPTED;CN=Bob:mailto:bob@example.com
+        ATTENDEE;PARTSTAT=NEEDS-ACTION;CN=Alice:mailto:alice@example.com
+        END:VEVENT
+        BEGIN:VEVENT
+        UID:recurring-event
+        DTSTAMP:20260301T090000Z
+        RECURRENCE-ID;TZID=Europe/Paris:20260506T100000
+        DTSTART;TZID=Europe/Paris:20260506T100000
+        DTEND;TZID=Europe/Paris:20260506T120000
+        SUMMARY:Sprint review
+        ORGANIZER;CN=Bob:mailto:bob@example.com
+        ATTENDEE;PARTSTAT=ACCEPTED;CN=Bob:mailto:bob@example.com
+        END:VEVENT
+        """;
+
+    public enum Sample {
+        SINGLE(SINGLE_EVENT),
+        RECURRING(RECURRING_EVENT),
+        ATTENDEES_200(SINGLE_EVENT.replace("ATTENDEE;PARTSTAT=NEEDS-ACTION;CN=Alice:mailto:alice@example.com\n",
+            IntStream.range(0, 199)
+                .mapToObj(i -> "ATTENDEE;PARTSTAT=NEEDS-ACTION;ROLE=REQ-PARTICIPANT;CN=User " + i + ":mailto:user" + i + "@example.com\n")
+                .collect(Collectors.joining())));
+
+        private final byte[] ics;
+
+        Sample(String vevents) {
+            this.ics = ("BEGIN:VCALENDAR\nVERSION:2.0\nPRODID:-//Sabre//Sabre VObject 4.5.6//EN\n" + VTIMEZONE + vevents + "END:VCALENDAR\n")
+                .getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Param
+    Sample sample;
+
+    private Calendar calendar;
+    private VEvent firstVEvent;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        calendar = CalendarUtil.parseIcs(sample.ics);
+        firstVEvent = (VEvent) calendar.getComponents(Component.VEVENT).getFirst();
+    }
+
+    @Benchmark
+    public Calendar parseWithNewBuilder() throws Exception {
+        return new CalendarBuilder(
+            CalendarParserFactory.getInstance().get(),
+            new ContentHandlerContext().withSuppressInvalidProperties(true),
+            new CalendarUtil.CustomizedTimeZoneRegistry())
+            .build(new ByteArrayInputStream(sample.ics));
+    }
+
+    @Benchmark
+    public Calendar parseWithPooledBuilder() {
+        return CalendarUtil.parseIcs(sample.ics);
+    }
+
+    @Benchmark
+    public String serializeWithMethodCopy() {
+        return CalendarUtil.withMethod(calendar, ImmutableMethod.REQUEST).toString();
+    }
+
+    @Benchmark
+    public String serializeWithMethodView() {
+        return CalendarUtil.withMethodView(calendar, ImmutableMethod.REQUEST).toString();
+    }
+
+    @Benchmark
+    public String serializeSingleVEventCopy() {
+        return CalendarUtil.withSingleVEvent(calendar, firstVEvent).toString();
+    }
+
+    @Benchmark
+    public String serializeSingleVEventView() {
+        return CalendarUtil.withSingleVEventView(calendar, firstVEvent).toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(CalendarUtilBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build())
+            .run();
+    }
+}
@@ -19,12 +19,21 @@
 package com.linagora.calendar.api;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
 import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.component.VEvent;
 import net.fortuna.ical4j.model.property.immutable.ImmutableMethod;
 
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
 class CalendarUtilTest {
 
     private static final String ICS_WITHOUT_METHOD = """
@@ -40,6 +49,38 @@ class CalendarUtilTest {
         END:VCALENDAR
         """;
 
+    private static final String RECURRING_ICS = """
+        BEGIN:VCALENDAR
+        VERSION:2.0
+        PRODID:-//Sabre//Sabre VObject 4.1.3//EN
+        BEGIN:VTIMEZONE
+        TZID:Asia/Ho_Chi_Minh
+        BEGIN:STANDARD
+        TZOFFSETFROM:+0700
+        TZOFFSETTO:+0700
+        TZNAME:ICT
+        DTSTART:19700101T000000
+        END:STANDARD
+        END:VTIMEZONE
+        BEGIN:VEVENT
+        UID:recurring-uid
+        DTSTAMP:20260707T094407Z
+        DTSTART;TZID=Asia/Ho_Chi_Minh:20260710T150000
+        DTEND;TZID=Asia/Ho_Chi_Minh:20260710T160000
+        RRULE:FREQ=WEEKLY;COUNT=10
+        SUMMARY:Weekly
+        END:VEVENT
+        BEGIN:VEVENT
+        UID:recurring-uid
+        DTSTAMP:20260707T094407Z
+        RECURRENCE-ID;TZID=Asia/Ho_Chi_Minh:20260717T150000
+        DTSTART;TZID=Asia/Ho_Chi_Minh:20260717T170000
+        DTEND;TZID=Asia/Ho_Chi_Minh:20260717T180000
+        SUMMARY:Weekly moved
+        END:VEVENT
+        END:VCALENDAR
+        """;
+
     @Test
     void withMethodShouldAddMethodWhenMissing() {
         Calendar calendar = CalendarUtil.parseIcs(ICS_WITHOUT_METHOD);
@@ -66,4 +107,70 @@ class CalendarUtilTest {
         assertThat(calendar.toString())
             .doesNotContain("METHOD:");
     }
+
+    @Test
+    void withMethodViewShouldSerializeLikeWithMethod() {
+        Calendar calendar = CalendarUtil.withMethod(CalendarUtil.parseIcs(RECURRING_ICS), ImmutableMethod.REQUEST);
+
+        assertThat(CalendarUtil.withMethodView(calendar, ImmutableMethod.CANCEL).toString())
+            .isEqualTo(CalendarUtil.withMethod(calendar, ImmutableMethod.CANCEL).toString());
+    }
+
+    @Test
+    void withMethodViewShouldNotMutateSuppliedCalendar() {
+        Calendar calendar = CalendarUtil.parseIcs(ICS_WITHOUT_METHOD);
+
+        CalendarUtil.withMethodView(calendar, ImmutableMethod.REQUEST);
+
+        assertThat(calendar.toString())
+            .doesNotContain("METHOD:");
+    }
+
+    @Test
+    void withSingleVEventViewShouldSerializeLikeWithSingleVEvent() {
+        Calendar calendar = CalendarUtil.parseIcs(RECURRING_ICS);
+        VEvent exception = (VEvent) calendar.getComponents(Component.VEVENT).getLast();
+
+        assertThat(CalendarUtil.withSingleVEventView(calendar, exception).toString())
+            .isEqualTo(CalendarUtil.withSingleVEvent(calendar, exception).toString())
+            .contains("BEGIN:VTIMEZONE", "SUMMARY:Weekly moved")
+            .doesNotContain("RRULE");
+    }
+
+    @Test
+    void withSingleVEventViewShouldNotMutateSuppliedCalendar() {
+        Calendar calendar = CalendarUtil.parseIcs(RECURRING_ICS);
+        String before = calendar.toString();
+
+        CalendarUtil.withSingleVEventView(calendar, (VEvent) calendar.getComponents(Component.VEVENT).getLast());
+
+        assertThat(calendar.toString()).isEqualTo(before);
+    }
+
+    @Test
+    void parseIcsShouldSucceedAfterAFailedParse() {
+        assertThatThrownBy(() -> CalendarUtil.parseIcs("BEGIN:VCALENDAR\nBEGIN:VEVENT\nUID:broken"))
+            .isInstanceOf(RuntimeException.class);
+
+        assertThat(CalendarUtil.parseIcs(ICS_WITHOUT_METHOD).getComponents(Component.VEVENT))
+            .hasSize(1);
+    }
+
+    @Test
+    void parseIcsShouldBeThreadSafe() {
+        String expected = CalendarUtil.parseIcs(RECURRING_ICS).toString();
+
+        List<String> parsed = Flux.range(0, 1000)
+            .parallel(8)
+            .runOn(Schedulers.parallel())
+            .map(i -> CalendarUtil.parseIcs(i % 2 == 0 ? RECURRING_ICS : ICS_WITHOUT_METHOD).toString())
+            .sequential()
+            .filter(ics -> ics.contains("recurring-uid"))
+            .collectList()
+            .block(Duration.ofSeconds(30));
+
+        assertThat(parsed)
+            .hasSize(500)
+            .allMatch(expected::equals);
+    }
 }
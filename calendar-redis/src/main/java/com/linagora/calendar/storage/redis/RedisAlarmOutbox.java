@@ -0,0 +1,120 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage.redis;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Map;
+
+import org.apache.james.core.Username;
+import org.apache.james.events.Event;
+
+import com.google.common.collect.ImmutableMap;
+import com.linagora.calendar.storage.AlarmOutbox;
+import com.linagora.calendar.storage.AlarmOutboxCursor;
+import com.linagora.calendar.storage.EventBusAlarmEvent;
+import com.linagora.calendar.storage.configuration.AlarmOutboxConfiguration;
+
+import io.lettuce.core.Limit;
+import io.lettuce.core.Range;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XAddArgs;
+import io.lettuce.core.api.reactive.RedisKeyReactiveCommands;
+import io.lettuce.core.api.reactive.RedisStreamReactiveCommands;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * One Redis stream per user, the stream entry ID being the outbox cursor. Streams are capped in length upon append and
+ * expire once the user stopped receiving alarms for the retention duration. Entries older than the retention are
+ * filtered upon read, before limiting the replay size: stream entry IDs carry the Redis server time, not the appending
+ * time, hence the retention can not be part of the range query.
+ */
+public class RedisAlarmOutbox implements AlarmOutbox {
+    private static final String OUTBOX_PREFIX = "tcal_alarm_outbox_";
+    private static final long MAX_STREAM_LENGTH = 10L * MAX_REPLAY_SIZE;
+
+    public interface Fields {
+        String EVENT_ID = "eventId";
+        String EVENT_SUMMARY = "eventSummary";
+        String EVENT_URL = "eventURL";
+        String EVENT_START_TIME = "eventStartTime";
+        String APPENDED_AT = "appendedAt";
+    }
+
+    private final RedisStreamReactiveCommands<String, String> streamCommands;
+    private final RedisKeyReactiveCommands<String, String> keyCommands;
+    private final Clock clock;
+    private final AlarmOutboxConfiguration configuration;
+
+    public RedisAlarmOutbox(RedisStreamReactiveCommands<String, String> streamCommands,
+                            RedisKeyReactiveCommands<String, String> keyCommands,
+                            Clock clock,
+                            AlarmOutboxConfiguration configuration) {
+        this.streamCommands = streamCommands;
+        this.keyCommands = keyCommands;
+        this.clock = clock;
+        this.configuration = configuration;
+    }
+
+    @Override
+    public Mono<EventBusAlarmEvent> append(EventBusAlarmEvent event) {
+        String key = outboxKey(event.username());
+        Map<String, String> body = ImmutableMap.of(
+            Fields.EVENT_ID, event.getEventId().getId().toString(),
+            Fields.EVENT_SUMMARY, event.eventSummary(),
+            Fields.EVENT_URL, event.eventURL(),
+            Fields.EVENT_START_TIME, event.eventStartTime().toString(),
+            Fields.APPENDED_AT, clock.instant().toString());
+        XAddArgs capLength = new XAddArgs()
+            .maxlen(MAX_STREAM_LENGTH)
+            .approximateTrimming();
+
+        return streamCommands.xadd(key, capLength, body)
+            .flatMap(id -> keyCommands.expire(key, configuration.retention())
+                .thenReturn(event.withOutboxCursor(AlarmOutboxCursor.parse(id))));
+    }
+
+    @Override
+    public Flux<Entry> readAfter(Username username, AlarmOutboxCursor cursor) {
+        Instant oldestRetained = clock.instant().minus(configuration.retention());
+        Range<String> range = Range.from(Range.Boundary.excluding(cursor.asString()), Range.Boundary.unbounded());
+
+        return streamCommands.xrange(outboxKey(username), range, Limit.from(MAX_STREAM_LENGTH))
+            .filter(message -> !Instant.parse(message.getBody().get(Fields.APPENDED_AT)).isBefore(oldestRetained))
+            .take(MAX_REPLAY_SIZE)
+            .map(message -> toEntry(username, message));
+    }
+
+    private Entry toEntry(Username username, StreamMessage<String, String> message) {
+        Map<String, String> body = message.getBody();
+        AlarmOutboxCursor cursor = AlarmOutboxCursor.parse(message.getId());
+        EventBusAlarmEvent event = new EventBusAlarmEvent(Event.EventId.of(body.get(Fields.EVENT_ID)),
+            username,
+            body.get(Fields.EVENT_SUMMARY),
+            body.get(Fields.EVENT_URL),
+            Instant.parse(body.get(Fields.EVENT_START_TIME)))
+            .withOutboxCursor(cursor);
+        return new Entry(cursor, event);
+    }
+
+    private String outboxKey(Username username) {
+        return OUTBOX_PREFIX + username.asString();
+    }
+}
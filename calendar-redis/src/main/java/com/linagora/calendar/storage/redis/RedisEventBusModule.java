@@ -27,6 +27,7 @@ import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.apache.james.events.AddressBookURLRegistrationKeyFactory;
 import org.apache.james.events.CalendarEventSerializer;
 import org.apache.james.events.CalendarRedisEventBus;
+import org.apache.james.events.CalendarRedisPubSubConfiguration;
 import org.apache.james.events.CalendarURLRegistrationKeyFactory;
 import org.apache.james.events.EventBus;
 import org.apache.james.events.EventBusId;
@@ -86,4 +87,16 @@ public class RedisEventBusModule extends AbstractModule {
             return RedisEventBusConfiguration.DEFAULT;
         }
     }
+
+    @Provides
+    @Singleton
+    CalendarRedisPubSubConfiguration calendarRedisPubSubConfiguration(PropertiesProvider propertiesProvider) throws ConfigurationException {
+        try {
+            Configuration config = propertiesProvider.getConfiguration("redis");
+            return CalendarRedisPubSubConfiguration.from(config);
+        } catch (FileNotFoundException e) {
+            LOGGER.info("Missing `redis.properties` configuration file -> using classic Redis pub/sub for the event bus");
+            return CalendarRedisPubSubConfiguration.DEFAULT;
+        }
+    }
 }
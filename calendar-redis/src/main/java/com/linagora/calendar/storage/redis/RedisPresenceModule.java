@@ -0,0 +1,52 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage.redis;
+
+import java.time.Clock;
+
+import org.apache.james.backends.redis.RedisClientFactory;
+import org.apache.james.backends.redis.RedisConfiguration;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Scopes;
+import com.google.inject.Singleton;
+import com.linagora.calendar.storage.PresenceConfigurationModule;
+import com.linagora.calendar.storage.PresenceRegistry;
+import com.linagora.calendar.storage.configuration.PresenceConfiguration;
+
+public class RedisPresenceModule extends AbstractModule {
+
+    @Override
+    protected void configure() {
+        install(new PresenceConfigurationModule());
+        bind(PresenceRegistry.class).to(RedisPresenceRegistry.class)
+            .in(Scopes.SINGLETON);
+    }
+
+    @Provides
+    @Singleton
+    public RedisPresenceRegistry provideRedisPresenceRegistry(RedisClientFactory redisClientFactory,
+                                                              RedisConfiguration redisConfiguration,
+                                                              PresenceConfiguration presenceConfiguration,
+                                                              Clock clock) {
+        return new RedisPresenceRegistry(RedisReactiveConnections.connect(redisClientFactory, redisConfiguration), clock, presenceConfiguration)
+            .start();
+    }
+}
@@ -0,0 +1,175 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage.redis;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.annotation.PreDestroy;
+
+import org.apache.james.core.Username;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.annotations.VisibleForTesting;
+import com.linagora.calendar.storage.PresenceRegistry;
+import com.linagora.calendar.storage.configuration.PresenceConfiguration;
+
+import io.lettuce.core.Range;
+import io.lettuce.core.cluster.api.reactive.RedisClusterReactiveCommands;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Presence of a user is a Redis sorted set whose members are the IDs of the nodes the user is connected to, scored by
+ * the expiry of that membership. Every node periodically refreshes the memberships of its connected users, so that
+ * the users of a node that died without disconnecting them are considered offline once their memberships expire.
+ *
+ * Lookups are answered locally for users connected to this node, and from a near cache otherwise.
+ */
+public class RedisPresenceRegistry implements PresenceRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisPresenceRegistry.class);
+    private static final String PRESENCE_PREFIX = "tcal_presence_";
+    private static final int HEARTBEAT_CONCURRENCY = 16;
+    private static final long NEAR_CACHE_MAX_SIZE = 100_000;
+
+    private final RedisClusterReactiveCommands<String, String> commands;
+    private final Clock clock;
+    private final PresenceConfiguration configuration;
+    private final String nodeId;
+    private final Map<Username, Integer> localConnections = new ConcurrentHashMap<>();
+    private final Cache<Username, Boolean> nearCache;
+    private Disposable heartbeat;
+
+    public RedisPresenceRegistry(RedisClusterReactiveCommands<String, String> commands,
+                                 Clock clock,
+                                 PresenceConfiguration configuration) {
+        this.commands = commands;
+        this.clock = clock;
+        this.configuration = configuration;
+        this.nodeId = UUID.randomUUID().toString();
+        this.nearCache = Caffeine.newBuilder()
+            .expireAfterWrite(configuration.nearCacheTtl())
+            .maximumSize(NEAR_CACHE_MAX_SIZE)
+            .build();
+    }
+
+    public RedisPresenceRegistry start() {
+        heartbeat = Flux.interval(configuration.heartbeatInterval())
+            .concatMap(any -> refreshLocalConnections()
+                .onErrorResume(error -> {
+                    LOGGER.warn("Failed to refresh the presence of the users connected to node {}", nodeId, error);
+                    return Mono.empty();
+                }))
+            .subscribe();
+        return this;
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopHeartbeat();
+        Flux.fromIterable(localConnections.keySet())
+            .flatMap(this::removeMembership, HEARTBEAT_CONCURRENCY)
+            .then()
+            .onErrorResume(error -> {
+                LOGGER.warn("Failed to clear the presence of the users connected to node {}", nodeId, error);
+                return Mono.empty();
+            })
+            .block();
+        localConnections.clear();
+    }
+
+    @VisibleForTesting
+    void stopHeartbeat() {
+        if (heartbeat != null) {
+            heartbeat.dispose();
+        }
+    }
+
+    @Override
+    public Mono<Void> connect(Username username) {
+        return Mono.defer(() -> {
+            int count = localConnections.merge(username, 1, Integer::sum);
+            if (count == 1) {
+                return addMembership(username);
+            }
+            return Mono.empty();
+        });
+    }
+
+    @Override
+    public Mono<Void> disconnect(Username username) {
+        return Mono.defer(() -> {
+            Integer remaining = localConnections.computeIfPresent(username, (key, count) -> count > 1 ? count - 1 : null);
+            if (remaining == null) {
+                nearCache.invalidate(username);
+                return removeMembership(username);
+            }
+            return Mono.empty();
+        });
+    }
+
+    @Override
+    public Mono<Boolean> isOnline(Username username) {
+        if (localConnections.containsKey(username)) {
+            return Mono.just(true);
+        }
+        Boolean cached = nearCache.getIfPresent(username);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        Range<Long> unexpired = Range.from(Range.Boundary.excluding(clock.millis()), Range.Boundary.unbounded());
+        return commands.zcount(presenceKey(username), unexpired)
+            .map(count -> count > 0)
+            .doOnNext(online -> nearCache.put(username, online));
+    }
+
+    @VisibleForTesting
+    Mono<Void> refreshLocalConnections() {
+        return Flux.fromIterable(localConnections.keySet())
+            .flatMap(this::addMembership, HEARTBEAT_CONCURRENCY)
+            .then();
+    }
+
+    private Mono<Void> addMembership(Username username) {
+        String key = presenceKey(username);
+        long now = clock.millis();
+        long expiry = now + configuration.expiry().toMillis();
+        Range<Long> expired = Range.create(0L, now);
+
+        return commands.zadd(key, expiry, nodeId)
+            .then(commands.zremrangebyscore(key, expired))
+            .then(commands.pexpire(key, configuration.expiry()))
+            .then();
+    }
+
+    private Mono<Void> removeMembership(Username username) {
+        return commands.zrem(presenceKey(username), nodeId)
+            .then();
+    }
+
+    private String presenceKey(Username username) {
+        return PRESENCE_PREFIX + username.asString();
+    }
+}
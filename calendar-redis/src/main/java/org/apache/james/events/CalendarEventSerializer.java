@@ -26,6 +26,7 @@ import java.util.Optional;
 
 import org.apache.james.core.Username;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -34,6 +35,7 @@ import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.github.fge.lambdas.Throwing;
 import com.linagora.calendar.storage.AddressBookChangeEvent;
 import com.linagora.calendar.storage.AddressBookURL;
+import com.linagora.calendar.storage.AlarmOutboxCursor;
 import com.linagora.calendar.storage.BookingLinkStateChangedEvent;
 import com.linagora.calendar.storage.CalendarChangeEvent;
 import com.linagora.calendar.storage.CalendarListChangedEvent;
@@ -148,14 +150,16 @@ public class CalendarEventSerializer implements EventSerializer {
         this.objectMapper.registerModule(new Jdk8Module());
     }
 
-    record AlarmEventDTO(String eventId, String username, String eventSummary, String eventURL, String eventStartTime) implements EventDTO {
+    record AlarmEventDTO(String eventId, String username, String eventSummary, String eventURL, String eventStartTime,
+                         @JsonInclude(JsonInclude.Include.NON_NULL) String outboxCursor) implements EventDTO {
         public static AlarmEventDTO from(EventBusAlarmEvent event) {
             return new AlarmEventDTO(
                 event.getEventId().getId().toString(),
                 event.getUsername().asString(),
                 event.eventSummary(),
                 event.eventURL(),
-                event.eventStartTime().toString());
+                event.eventStartTime().toString(),
+                event.outboxCursor().map(AlarmOutboxCursor::asString).orElse(null));
         }
 
         public EventBusAlarmEvent asEvent() {
@@ -164,7 +168,8 @@ public class CalendarEventSerializer implements EventSerializer {
                 Username.of(this.username()),
                 this.eventSummary(),
                 this.eventURL(),
-                Instant.parse(this.eventStartTime()));
+                Instant.parse(this.eventStartTime()),
+                Optional.ofNullable(this.outboxCursor()).map(AlarmOutboxCursor::parse));
         }
     }
 
@@ -24,6 +24,7 @@ import java.util.Set;
 import jakarta.annotation.PreDestroy;
 import jakarta.inject.Inject;
 
+import org.apache.james.backends.redis.RedisClientFactory;
 import org.apache.james.events.EventListener.ReactiveEventListener;
 import org.apache.james.lifecycle.api.Startable;
 import org.apache.james.metrics.api.MetricFactory;
@@ -43,6 +44,9 @@ import reactor.core.publisher.Mono;
  * However, this implementation has been simplified:
  * - Only KEY-based event delivery is supported
  * - GROUP registration and RabbitMQ dispatching are intentionally not implemented
+ *
+ * Key-based delivery relies either on classic Redis pub/sub, or on Redis 7 sharded pub/sub
+ * (see {@link CalendarRedisPubSubConfiguration}).
  */
 public class CalendarRedisEventBus implements EventBus, Startable {
     public static final EventBusName EVENT_BUS_NAME = new EventBusName("tcalendarEvents");
@@ -61,12 +65,17 @@ public class CalendarRedisEventBus implements EventBus, Startable {
     private final RedisPubSubReactiveCommands<String, String> redisPublisher;
     private final RedisEventBusConfiguration redisEventBusConfiguration;
     private final NamingStrategy namingStrategy;
+    private final RedisClientFactory redisClientFactory;
+    private final CalendarRedisPubSubConfiguration pubSubConfiguration;
 
     private volatile boolean isRunning;
     private volatile boolean isStopping;
     private RedisKeyRegistrationHandler keyRegistrationHandler;
     private LocalKeyListenerExecutor localKeyListenerExecutor;
     private RedisKeyEventDispatcher redisKeyEventDispatcher;
+    private ShardedRedisPubSubClient shardedRedisPubSubClient;
+    private ShardedRedisKeyRegistrationHandler shardedKeyRegistrationHandler;
+    private ShardedRedisKeyEventDispatcher shardedKeyEventDispatcher;
 
     @Inject
     public CalendarRedisEventBus(EventSerializer eventSerializer,
@@ -75,7 +84,9 @@ public class CalendarRedisEventBus implements EventBus, Startable {
                                  MetricFactory metricFactory,
                                  EventBusId eventBusId,
                                  RedisEventBusClientFactory redisEventBusClientFactory,
-                                 RedisEventBusConfiguration redisEventBusConfiguration) {
+                                 RedisEventBusConfiguration redisEventBusConfiguration,
+                                 RedisClientFactory redisClientFactory,
+                                 CalendarRedisPubSubConfiguration pubSubConfiguration) {
         this.eventSerializer = eventSerializer;
         this.routingKeyConverter = routingKeyConverter;
         this.retryBackoff = retryBackoff;
@@ -87,6 +98,8 @@ public class CalendarRedisEventBus implements EventBus, Startable {
         this.redisPublisher = redisEventBusClientFactory.createRedisPubSubCommand();
         this.redisEventBusConfiguration = redisEventBusConfiguration;
         this.namingStrategy = new DefaultNamingStrategy(EVENT_BUS_NAME);
+        this.redisClientFactory = redisClientFactory;
+        this.pubSubConfiguration = pubSubConfiguration;
         this.isRunning = false;
         this.isStopping = false;
     }
@@ -96,10 +109,11 @@ public class CalendarRedisEventBus implements EventBus, Startable {
         if (!isRunning && !isStopping) {
             LocalListenerRegistry localListenerRegistry = new LocalListenerRegistry();
             localKeyListenerExecutor = new LocalKeyListenerExecutor(localListenerRegistry, listenerExecutor);
-            redisKeyEventDispatcher = new RedisKeyEventDispatcher(eventBusId, namingStrategy, eventSerializer, redisPublisher, redisSetReactiveCommands, redisEventBusConfiguration);
-            keyRegistrationHandler = new RedisKeyRegistrationHandler(namingStrategy, eventBusId, eventSerializer, routingKeyConverter,
-                localListenerRegistry, listenerExecutor, retryBackoff, metricFactory, redisEventBusClientFactory, redisSetReactiveCommands, redisEventBusConfiguration);
-            keyRegistrationHandler.start();
+            if (pubSubConfiguration.sharded()) {
+                startSharded(localListenerRegistry);
+            } else {
+                startClassic(localListenerRegistry);
+            }
             isRunning = true;
         }
     }
@@ -109,14 +123,37 @@ public class CalendarRedisEventBus implements EventBus, Startable {
         if (isRunning && !isStopping) {
             isStopping = true;
             isRunning = false;
-            keyRegistrationHandler.stop();
+            if (pubSubConfiguration.sharded()) {
+                shardedKeyRegistrationHandler.stop();
+                shardedRedisPubSubClient.close();
+            } else {
+                keyRegistrationHandler.stop();
+            }
         }
     }
 
+    private void startClassic(LocalListenerRegistry localListenerRegistry) {
+        redisKeyEventDispatcher = new RedisKeyEventDispatcher(eventBusId, namingStrategy, eventSerializer, redisPublisher, redisSetReactiveCommands, redisEventBusConfiguration);
+        keyRegistrationHandler = new RedisKeyRegistrationHandler(namingStrategy, eventBusId, eventSerializer, routingKeyConverter,
+            localListenerRegistry, listenerExecutor, retryBackoff, metricFactory, redisEventBusClientFactory, redisSetReactiveCommands, redisEventBusConfiguration);
+        keyRegistrationHandler.start();
+    }
+
+    private void startSharded(LocalListenerRegistry localListenerRegistry) {
+        ShardedChannelNamingStrategy shardedNamingStrategy = new ShardedChannelNamingStrategy(EVENT_BUS_NAME);
+        shardedRedisPubSubClient = ShardedRedisPubSubClient.create(redisClientFactory);
+        shardedKeyEventDispatcher = new ShardedRedisKeyEventDispatcher(eventBusId, eventSerializer, shardedNamingStrategy,
+            shardedRedisPubSubClient.publisherConnection().reactive(), redisEventBusConfiguration);
+        shardedKeyRegistrationHandler = new ShardedRedisKeyRegistrationHandler(eventBusId, eventSerializer, routingKeyConverter,
+            localListenerRegistry, listenerExecutor, retryBackoff, shardedNamingStrategy,
+            shardedRedisPubSubClient.subscriberConnection(), redisEventBusConfiguration);
+        shardedKeyRegistrationHandler.start();
+    }
+
     @Override
     public Mono<Registration> register(EventListener.ReactiveEventListener listener, RegistrationKey key) {
         Preconditions.checkState(isRunning, NOT_RUNNING_ERROR_MESSAGE);
-        return Mono.from(metricFactory.decoratePublisherWithTimerMetric("redis-register", keyRegistrationHandler.register(listener, key)));
+        return Mono.from(metricFactory.decoratePublisherWithTimerMetric("redis-register", registerKey(listener, key)));
     }
 
     @Override
@@ -156,18 +193,39 @@ public class CalendarRedisEventBus implements EventBus, Startable {
         return EVENT_BUS_NAME;
     }
 
+    private Mono<Registration> registerKey(EventListener.ReactiveEventListener listener, RegistrationKey key) {
+        if (pubSubConfiguration.sharded()) {
+            return shardedKeyRegistrationHandler.register(listener, key);
+        }
+        return Mono.from(keyRegistrationHandler.register(listener, key));
+    }
+
     private Mono<Void> dispatchEvent(Event event, Set<RegistrationKey> keys) {
         return Flux.concat(localKeyListenerExecutor.execute(event, keys),
-                redisKeyEventDispatcher.dispatch(event, keys))
+                remoteDispatch(event, keys))
             .doOnError(err -> LOGGER.error("Error while dispatching event {}", event.getEventId(), err))
             .then();
     }
 
     private Mono<Void> dispatchEvent(Collection<EventBus.EventWithRegistrationKey> events) {
         return Flux.concat(localKeyListenerExecutor.execute(events),
-                redisKeyEventDispatcher.dispatch(events))
+                remoteDispatch(events))
             .doOnError(err -> LOGGER.error("Error while dispatching events batch", err))
             .then();
     }
 
+    private Mono<Void> remoteDispatch(Event event, Set<RegistrationKey> keys) {
+        if (pubSubConfiguration.sharded()) {
+            return shardedKeyEventDispatcher.dispatch(event, keys);
+        }
+        return Mono.from(redisKeyEventDispatcher.dispatch(event, keys));
+    }
+
+    private Mono<Void> remoteDispatch(Collection<EventBus.EventWithRegistrationKey> events) {
+        if (pubSubConfiguration.sharded()) {
+            return shardedKeyEventDispatcher.dispatch(events);
+        }
+        return Mono.from(redisKeyEventDispatcher.dispatch(events));
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package org.apache.james.events;
+
+import java.util.Optional;
+
+import org.apache.commons.configuration2.Configuration;
+
+import com.google.common.base.Preconditions;
+
+public record CalendarRedisPubSubConfiguration(Mode mode) {
+    public enum Mode {
+        CLASSIC, SHARDED
+    }
+
+    public static final String MODE_PROPERTY = "eventBus.redis.pubsub.mode";
+    public static final Mode MODE_DEFAULT = Mode.CLASSIC;
+
+    public static final CalendarRedisPubSubConfiguration DEFAULT = new CalendarRedisPubSubConfiguration(MODE_DEFAULT);
+
+    public static CalendarRedisPubSubConfiguration from(Configuration configuration) {
+        Optional<Mode> modeConfiguration = Optional.ofNullable(configuration.getString(MODE_PROPERTY, null))
+            .map(String::trim)
+            .map(String::toLowerCase)
+            .map(value -> switch (value) {
+                case "classic" -> Mode.CLASSIC;
+                case "sharded" -> Mode.SHARDED;
+                default -> throw new IllegalArgumentException("Invalid value for '" + MODE_PROPERTY + "': " + value);
+            });
+
+        return new CalendarRedisPubSubConfiguration(modeConfiguration.orElse(MODE_DEFAULT));
+    }
+
+    public CalendarRedisPubSubConfiguration {
+        Preconditions.checkNotNull(mode, "mode must not be null");
+    }
+
+    public boolean sharded() {
+        return mode == Mode.SHARDED;
+    }
+}
@@ -0,0 +1,48 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package org.apache.james.events;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Payload published on a sharded channel: the emitting event bus, the routing key and the serialized event.
+ *
+ * Format: {@code <eventBusId>|<routingKey length>|<routingKey><eventAsJson>}. The routing key length prefix avoids
+ * any assumption on the characters used by registration keys.
+ */
+record ShardedChannelMessage(EventBusId eventBusId, String routingKey, String eventAsJson) {
+    private static final char SEPARATOR = '|';
+
+    static ShardedChannelMessage parse(String payload) {
+        int firstSeparator = payload.indexOf(SEPARATOR);
+        int secondSeparator = payload.indexOf(SEPARATOR, firstSeparator + 1);
+        Preconditions.checkArgument(firstSeparator > 0 && secondSeparator > firstSeparator, "Invalid sharded channel message");
+
+        EventBusId eventBusId = EventBusId.of(payload.substring(0, firstSeparator));
+        int routingKeyLength = Integer.parseInt(payload.substring(firstSeparator + 1, secondSeparator));
+        int routingKeyEnd = secondSeparator + 1 + routingKeyLength;
+        return new ShardedChannelMessage(eventBusId,
+            payload.substring(secondSeparator + 1, routingKeyEnd),
+            payload.substring(routingKeyEnd));
+    }
+
+    String serialize() {
+        return eventBusId.asString() + SEPARATOR + routingKey.length() + SEPARATOR + routingKey + eventAsJson;
+    }
+}
@@ -0,0 +1,31 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package org.apache.james.events;
+
+/**
+ * One sharded channel per registration key. The routing key is wrapped into a hash tag so that the channel
+ * slot only depends on the registration key: messages for a key are only handled by the shard owning that slot
+ * (and its replicas) instead of being broadcast on the whole cluster bus.
+ */
+record ShardedChannelNamingStrategy(EventBusName eventBusName) {
+
+    String channel(String routingKey) {
+        return eventBusName.value() + ":sharded:{" + routingKey + "}";
+    }
+}
@@ -0,0 +1,86 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package org.apache.james.events;
+
+import static org.apache.james.util.ReactorUtils.DEFAULT_CONCURRENCY;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.lettuce.core.pubsub.api.reactive.RedisPubSubReactiveCommands;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Publishes each (event, key) pair with a single SPUBLISH to the sharded channel of the key.
+ *
+ * Unlike classic pub/sub, the message is only propagated within the shard owning the channel slot.
+ */
+class ShardedRedisKeyEventDispatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedRedisKeyEventDispatcher.class);
+
+    private final EventBusId eventBusId;
+    private final EventSerializer eventSerializer;
+    private final ShardedChannelNamingStrategy namingStrategy;
+    private final RedisPubSubReactiveCommands<String, String> redisPublisher;
+    private final RedisEventBusConfiguration redisEventBusConfiguration;
+
+    ShardedRedisKeyEventDispatcher(EventBusId eventBusId, EventSerializer eventSerializer, ShardedChannelNamingStrategy namingStrategy,
+                                   RedisPubSubReactiveCommands<String, String> redisPublisher,
+                                   RedisEventBusConfiguration redisEventBusConfiguration) {
+        this.eventBusId = eventBusId;
+        this.eventSerializer = eventSerializer;
+        this.namingStrategy = namingStrategy;
+        this.redisPublisher = redisPublisher;
+        this.redisEventBusConfiguration = redisEventBusConfiguration;
+    }
+
+    Mono<Void> dispatch(Event event, Set<RegistrationKey> keys) {
+        String eventAsJson = eventSerializer.toJson(event).json();
+        return Flux.fromIterable(keys)
+            .flatMap(key -> publish(key, eventAsJson), DEFAULT_CONCURRENCY)
+            .then();
+    }
+
+    Mono<Void> dispatch(Collection<EventBus.EventWithRegistrationKey> events) {
+        return Flux.fromIterable(events)
+            .filter(eventWithKeys -> !eventWithKeys.event().isNoop())
+            .concatMap(eventWithKeys -> dispatch(eventWithKeys.event(), eventWithKeys.keys()))
+            .then();
+    }
+
+    private Mono<Void> publish(RegistrationKey key, String eventAsJson) {
+        String routingKey = RoutingKeyConverter.RoutingKey.of(key).asString();
+        String payload = new ShardedChannelMessage(eventBusId, routingKey, eventAsJson).serialize();
+
+        return redisPublisher.spublish(namingStrategy.channel(routingKey), payload)
+            .timeout(redisEventBusConfiguration.durationTimeout())
+            .onErrorResume(e -> {
+                if (redisEventBusConfiguration.failureIgnore()) {
+                    LOGGER.warn("Error while publishing event on sharded channel for key {}", routingKey, e);
+                    return Mono.empty();
+                }
+                return Mono.error(e);
+            })
+            .then();
+    }
+}
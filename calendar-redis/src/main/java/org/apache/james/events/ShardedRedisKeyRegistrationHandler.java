@@ -0,0 +1,154 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package org.apache.james.events;
+
+import static org.apache.james.util.ReactorUtils.DEFAULT_CONCURRENCY;
+
+import java.util.List;
+
+import org.apache.james.events.EventListener.ReactiveEventListener;
+import org.apache.james.util.MDCBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+/**
+ * Key registration relying on Redis 7 sharded pub/sub.
+ *
+ * Each node SSUBSCRIBEs to the sharded channel of the keys it holds local listeners for, and unsubscribes once the
+ * last local listener of a key is removed. Publishers SPUBLISH directly to the channel of the key: no registration
+ * set lookup is needed and only the shard owning the key slot carries the message.
+ */
+class ShardedRedisKeyRegistrationHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedRedisKeyRegistrationHandler.class);
+
+    private final EventBusId eventBusId;
+    private final EventSerializer eventSerializer;
+    private final RoutingKeyConverter routingKeyConverter;
+    private final LocalListenerRegistry localListenerRegistry;
+    private final ListenerExecutor listenerExecutor;
+    private final RetryBackoffConfiguration retryBackoff;
+    private final ShardedChannelNamingStrategy namingStrategy;
+    private final StatefulRedisPubSubConnection<String, String> subscriberConnection;
+    private final RedisEventBusConfiguration redisEventBusConfiguration;
+
+    private Disposable receiver;
+
+    ShardedRedisKeyRegistrationHandler(EventBusId eventBusId, EventSerializer eventSerializer, RoutingKeyConverter routingKeyConverter,
+                                       LocalListenerRegistry localListenerRegistry, ListenerExecutor listenerExecutor,
+                                       RetryBackoffConfiguration retryBackoff, ShardedChannelNamingStrategy namingStrategy,
+                                       StatefulRedisPubSubConnection<String, String> subscriberConnection,
+                                       RedisEventBusConfiguration redisEventBusConfiguration) {
+        this.eventBusId = eventBusId;
+        this.eventSerializer = eventSerializer;
+        this.routingKeyConverter = routingKeyConverter;
+        this.localListenerRegistry = localListenerRegistry;
+        this.listenerExecutor = listenerExecutor;
+        this.retryBackoff = retryBackoff;
+        this.namingStrategy = namingStrategy;
+        this.subscriberConnection = subscriberConnection;
+        this.redisEventBusConfiguration = redisEventBusConfiguration;
+    }
+
+    void start() {
+        receiver = Flux.<ShardedChannelMessage>create(sink -> subscriberConnection.addListener(new ShardedMessageListener(sink)))
+            .flatMap(message -> handle(message)
+                .onErrorResume(e -> {
+                    LOGGER.error("Failed to handle sharded message for routing key {}", message.routingKey(), e);
+                    return Mono.empty();
+                }), DEFAULT_CONCURRENCY)
+            .subscribeOn(Schedulers.boundedElastic())
+            .subscribe();
+    }
+
+    void stop() {
+        if (receiver != null) {
+            receiver.dispose();
+        }
+    }
+
+    Mono<Registration> register(ReactiveEventListener listener, RegistrationKey key) {
+        LocalListenerRegistry.LocalRegistration localRegistration = localListenerRegistry.addListener(key, listener);
+        String channel = namingStrategy.channel(RoutingKeyConverter.RoutingKey.of(key).asString());
+
+        Registration registration = () -> Mono.fromCallable(localRegistration::unregister)
+            .filter(LocalListenerRegistry.RemovalStatus::lastListenerRemoved)
+            .flatMap(any -> subscriberConnection.reactive().sunsubscribe(channel)
+                .timeout(redisEventBusConfiguration.durationTimeout()))
+            .then();
+
+        if (localRegistration.isFirstListener()) {
+            return subscriberConnection.reactive().ssubscribe(channel)
+                .timeout(redisEventBusConfiguration.durationTimeout())
+                .retryWhen(Retry.backoff(retryBackoff.getMaxRetries(), retryBackoff.getFirstBackoff())
+                    .jitter(retryBackoff.getJitterFactor())
+                    .scheduler(Schedulers.boundedElastic()))
+                .thenReturn(registration);
+        }
+        return Mono.just(registration);
+    }
+
+    private Mono<Void> handle(ShardedChannelMessage message) {
+        if (message.eventBusId().equals(eventBusId)) {
+            // Local listeners were already executed by the LocalKeyListenerExecutor upon dispatch
+            return Mono.empty();
+        }
+        RegistrationKey key = routingKeyConverter.toRegistrationKey(message.routingKey());
+        List<ReactiveEventListener> listeners = localListenerRegistry.getLocalListeners(key);
+        if (listeners.isEmpty()) {
+            return Mono.empty();
+        }
+        Event event = eventSerializer.asEvent(message.eventAsJson()).event();
+        return Flux.fromIterable(listeners)
+            .concatMap(listener -> listenerExecutor.execute(listener,
+                    MDCBuilder.create()
+                        .addToContext(EventBus.StructuredLoggingFields.REGISTRATION_KEY, key.asString()),
+                    event)
+                .onErrorResume(e -> {
+                    LOGGER.error("Exception happens when handling event {} for key {}", event.getEventId(), key.asString(), e);
+                    return Mono.empty();
+                }))
+            .then();
+    }
+
+    private static class ShardedMessageListener extends RedisPubSubAdapter<String, String> {
+        private final FluxSink<ShardedChannelMessage> sink;
+
+        ShardedMessageListener(FluxSink<ShardedChannelMessage> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void smessage(String shardChannel, String message) {
+            try {
+                sink.next(ShardedChannelMessage.parse(message));
+            } catch (Exception e) {
+                LOGGER.warn("Dropping malformed message received on sharded channel {}", shardChannel, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package org.apache.james.events;
+
+import org.apache.james.backends.redis.RedisClientFactory;
+
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+
+/**
+ * Holds the dedicated connections used for Redis 7 sharded pub/sub (SSUBSCRIBE / SPUBLISH).
+ *
+ * A subscribed connection can not issue regular commands, hence publishing relies on a distinct connection.
+ * On a Redis Cluster, Lettuce routes both commands to the shard owning the slot of the channel.
+ */
+public class ShardedRedisPubSubClient implements AutoCloseable {
+
+    public static ShardedRedisPubSubClient create(RedisClientFactory redisClientFactory) {
+        AbstractRedisClient rawClient = redisClientFactory.rawRedisClient();
+        return switch (rawClient) {
+            case RedisClusterClient clusterClient -> new ShardedRedisPubSubClient(
+                clusterClient.connectPubSub(StringCodec.UTF8),
+                clusterClient.connectPubSub(StringCodec.UTF8));
+            case RedisClient client -> new ShardedRedisPubSubClient(
+                client.connectPubSub(StringCodec.UTF8),
+                client.connectPubSub(StringCodec.UTF8));
+            default -> throw new IllegalStateException("Sharded pub/sub is not supported by redis client " + rawClient.getClass().getName());
+        };
+    }
+
+    private final StatefulRedisPubSubConnection<String, String> subscriberConnection;
+    private final StatefulRedisPubSubConnection<String, String> publisherConnection;
+
+    public ShardedRedisPubSubClient(StatefulRedisPubSubConnection<String, String> subscriberConnection,
+                                    StatefulRedisPubSubConnection<String, String> publisherConnection) {
+        this.subscriberConnection = subscriberConnection;
+        this.publisherConnection = publisherConnection;
+    }
+
+    public StatefulRedisPubSubConnection<String, String> subscriberConnection() {
+        return subscriberConnection;
+    }
+
+    public StatefulRedisPubSubConnection<String, String> publisherConnection() {
+        return publisherConnection;
+    }
+
+    @Override
+    public void close() {
+        subscriberConnection.close();
+        publisherConnection.close();
+    }
+}
@@ -0,0 +1,166 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.apache.james.backends.redis.RedisClientFactory;
+import org.apache.james.backends.redis.RedisConfiguration;
+import org.apache.james.backends.redis.StandaloneRedisConfiguration;
+import org.apache.james.server.core.filesystem.FileSystemImpl;
+import org.apache.james.utils.UpdatableTickingClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.linagora.calendar.storage.PresenceRegistry;
+import com.linagora.calendar.storage.PresenceRegistryContract;
+import com.linagora.calendar.storage.configuration.PresenceConfiguration;
+
+public class RedisPresenceRegistryTest implements PresenceRegistryContract {
+    private static final PresenceConfiguration WITHOUT_NEAR_CACHE = new PresenceConfiguration(
+        Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ZERO);
+
+    @RegisterExtension
+    static DockerRedisExtension redisExtension = new DockerRedisExtension();
+
+    private RedisClientFactory redisClientFactory;
+    private RedisConfiguration redisConfiguration;
+    private UpdatableTickingClock clock;
+    private RedisPresenceRegistry nodeA;
+    private RedisPresenceRegistry nodeB;
+
+    @BeforeEach
+    void setUp() {
+        redisConfiguration = StandaloneRedisConfiguration.from(redisExtension.redisURI().toString());
+        redisClientFactory = new RedisClientFactory(FileSystemImpl.forTesting(), redisConfiguration);
+        clock = new UpdatableTickingClock(Instant.now());
+        nodeA = node(WITHOUT_NEAR_CACHE);
+        nodeB = node(WITHOUT_NEAR_CACHE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.stop();
+        nodeB.stop();
+    }
+
+    private RedisPresenceRegistry node(PresenceConfiguration configuration) {
+        return new RedisPresenceModule().provideRedisPresenceRegistry(redisClientFactory, redisConfiguration, configuration, clock);
+    }
+
+    @Override
+    public PresenceRegistry testee() {
+        return nodeA;
+    }
+
+    @Nested
+    class MultiNode {
+        @Test
+        void userConnectedToANodeShouldBeOnlineForOtherNodes() {
+            nodeB.connect(BOB).block();
+
+            assertThat(nodeA.isOnline(BOB).block()).isTrue();
+        }
+
+        @Test
+        void userShouldBeOfflineForOtherNodesAfterDisconnect() {
+            nodeB.connect(BOB).block();
+            nodeB.disconnect(BOB).block();
+
+            assertThat(nodeA.isOnline(BOB).block()).isFalse();
+        }
+
+        @Test
+        void userShouldStayOnlineWhileConnectedToAnotherNode() {
+            nodeA.connect(BOB).block();
+            nodeB.connect(BOB).block();
+            nodeA.disconnect(BOB).block();
+
+            assertThat(nodeA.isOnline(BOB).block()).isTrue();
+        }
+
+        @Test
+        void gracefulShutdownShouldClearPresenceOfLocalUsers() {
+            nodeB.connect(BOB).block();
+            nodeB.connect(ALICE).block();
+
+            nodeB.stop();
+
+            assertThat(nodeA.isOnline(BOB).block()).isFalse();
+            assertThat(nodeA.isOnline(ALICE).block()).isFalse();
+        }
+
+        @Test
+        void presenceShouldExpireAfterUngracefulShutdown() {
+            nodeB.connect(BOB).block();
+            nodeB.stopHeartbeat();
+
+            clock.setInstant(clock.instant().plus(WITHOUT_NEAR_CACHE.expiry()).plusSeconds(1));
+
+            assertThat(nodeA.isOnline(BOB).block()).isFalse();
+        }
+
+        @Test
+        void heartbeatShouldKeepPresenceAlive() {
+            nodeB.connect(BOB).block();
+
+            clock.setInstant(clock.instant().plusSeconds(20));
+            nodeB.refreshLocalConnections().block();
+            clock.setInstant(clock.instant().plusSeconds(20));
+
+            assertThat(nodeA.isOnline(BOB).block()).isTrue();
+        }
+
+        @Test
+        void nearCacheShouldServeRepeatedLookups() {
+            RedisPresenceRegistry nodeWithNearCache = node(new PresenceConfiguration(
+                Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofHours(1)));
+            try {
+                assertThat(nodeWithNearCache.isOnline(BOB).block()).isFalse();
+
+                nodeB.connect(BOB).block();
+
+                assertThat(nodeWithNearCache.isOnline(BOB).block()).isFalse();
+            } finally {
+                nodeWithNearCache.stop();
+            }
+        }
+
+        @Test
+        void localConnectionShouldTakePrecedenceOverNearCache() {
+            RedisPresenceRegistry nodeWithNearCache = node(new PresenceConfiguration(
+                Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofHours(1)));
+            try {
+                assertThat(nodeWithNearCache.isOnline(BOB).block()).isFalse();
+
+                nodeWithNearCache.connect(BOB).block();
+
+                assertThat(nodeWithNearCache.isOnline(BOB).block()).isTrue();
+            } finally {
+                nodeWithNearCache.stop();
+            }
+        }
+    }
+}
@@ -29,6 +29,7 @@ import org.junit.jupiter.api.Test;
 
 import com.linagora.calendar.storage.AddressBookChangeEvent;
 import com.linagora.calendar.storage.AddressBookURL;
+import com.linagora.calendar.storage.AlarmOutboxCursor;
 import com.linagora.calendar.storage.BookingLinkStateChangedEvent;
 import com.linagora.calendar.storage.CalendarChangeEvent;
 import com.linagora.calendar.storage.CalendarListChangedEvent;
@@ -105,6 +106,20 @@ public class CalendarEventSerializerTest {
         Instant.parse("2020-01-01T00:00:00Z")
     );
 
+    public static final String ALARM_EVENT_WITH_OUTBOX_CURSOR_JSON = """
+        {
+            "type": "CalendarEventSerializer$AlarmEventDTO",
+            "eventId": "22222222-3333-4444-5555-666666666666",
+            "username": "alarmuser",
+            "eventSummary": "Meeting",
+            "eventURL": "/calendars/baseId/calendarId/event.ics",
+            "eventStartTime": "2020-01-01T00:00:00Z",
+            "outboxCursor": "1577836800000-3"
+        }
+        """;
+
+    public static final EventBusAlarmEvent ALARM_EVENT_WITH_OUTBOX_CURSOR = ALARM_EVENT.withOutboxCursor(new AlarmOutboxCursor(1577836800000L, 3));
+
     public static final String CALENDAR_LIST_CHANGED_JSON = """
         {
             "type": "CalendarEventSerializer$CalendarListChangedDTO",
@@ -183,6 +198,18 @@ public class CalendarEventSerializerTest {
         assertThat(event).isEqualTo(ALARM_EVENT);
     }
 
+    @Test
+    void shouldSerializeAlarmEventWithOutboxCursor() {
+        String json = serializer.toJson(ALARM_EVENT_WITH_OUTBOX_CURSOR).json();
+        assertThatJson(json).isEqualTo(ALARM_EVENT_WITH_OUTBOX_CURSOR_JSON);
+    }
+
+    @Test
+    void shouldDeserializeJsonToAlarmEventWithOutboxCursor() {
+        Event event = serializer.asEvent(ALARM_EVENT_WITH_OUTBOX_CURSOR_JSON).event();
+        assertThat(event).isEqualTo(ALARM_EVENT_WITH_OUTBOX_CURSOR);
+    }
+
     @Test
     void shouldSerializeCalendarListChangedEvent() {
         String json = serializer.toJson(CALENDAR_LIST_CHANGED_EVENT).json();
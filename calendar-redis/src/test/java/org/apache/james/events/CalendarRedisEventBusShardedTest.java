@@ -0,0 +1,203 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package org.apache.james.events;
+
+import static org.apache.james.events.EventBusTestFixture.EVENT;
+import static org.apache.james.events.RedisEventBusConfiguration.FAILURE_IGNORE_DEFAULT;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.awaitility.Durations.ONE_HUNDRED_MILLISECONDS;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.james.backends.redis.RedisClientFactory;
+import org.apache.james.backends.redis.RedisClusterExtension;
+import org.apache.james.backends.redis.RedisConfiguration;
+import org.apache.james.events.KeyContract.MultipleEventBusKeyContract;
+import org.apache.james.events.KeyContract.SingleEventBusKeyContract;
+import org.apache.james.metrics.tests.RecordingMetricFactory;
+import org.apache.james.server.core.filesystem.FileSystemImpl;
+import org.awaitility.Awaitility;
+import org.awaitility.core.ConditionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.Container;
+import org.testcontainers.containers.GenericContainer;
+
+import com.google.common.collect.ImmutableSet;
+
+import reactor.core.publisher.Flux;
+
+public class CalendarRedisEventBusShardedTest implements SingleEventBusKeyContract, MultipleEventBusKeyContract {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CalendarRedisEventBusShardedTest.class);
+    private static final int KEY_COUNT = 10_000;
+
+    @RegisterExtension
+    static RedisClusterExtension redisClusterExtension = new RedisClusterExtension();
+
+    private static RedisClusterExtension.RedisClusterContainer redisClusterContainer;
+
+    ConditionFactory calmlyAwait = Awaitility.with()
+        .pollInterval(ONE_HUNDRED_MILLISECONDS)
+        .and()
+        .with()
+        .pollDelay(ONE_HUNDRED_MILLISECONDS)
+        .await();
+
+    private RedisEventBusClientFactory redisEventBusClientFactory;
+    private RedisClientFactory redisClientFactory;
+    private EventSerializer eventSerializer;
+    private RoutingKeyConverter routingKeyConverter;
+    private CalendarRedisEventBus eventBus;
+    private CalendarRedisEventBus eventBus2;
+
+    @BeforeAll
+    static void setUpCluster(RedisClusterExtension.RedisClusterContainer container) {
+        redisClusterContainer = container;
+        container.forEach(genericContainer -> waitUntilClusterReady(genericContainer, Duration.ofSeconds(10)));
+    }
+
+    private static void waitUntilClusterReady(GenericContainer<?> container, Duration timeout) {
+        await().atMost(timeout)
+            .pollInterval(Duration.ofMillis(500))
+            .ignoreExceptions()
+            .until(() -> {
+                Container.ExecResult result = container.execInContainer("redis-cli", "cluster", "info");
+                return result.getExitCode() == 0 && result.getStdout().contains("cluster_state:ok");
+            });
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        RedisConfiguration redisConfiguration = redisClusterContainer.getRedisConfiguration();
+        redisClientFactory = new RedisClientFactory(FileSystemImpl.forTesting(), redisConfiguration);
+        redisEventBusClientFactory = new RedisEventBusClientFactory(redisConfiguration, redisClientFactory);
+
+        eventSerializer = new EventBusTestFixture.TestEventSerializer();
+        routingKeyConverter = RoutingKeyConverter.forFactories(new EventBusTestFixture.TestRegistrationKeyFactory());
+
+        eventBus = newEventBus(CalendarRedisPubSubConfiguration.Mode.SHARDED);
+        eventBus2 = newEventBus(CalendarRedisPubSubConfiguration.Mode.SHARDED);
+
+        eventBus.start();
+        eventBus2.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventBus.stop();
+        eventBus2.stop();
+    }
+
+    @Override
+    public EventBus eventBus() {
+        return eventBus;
+    }
+
+    @Override
+    public EventBus eventBus2() {
+        return eventBus2;
+    }
+
+    @Override
+    public EnvironmentSpeedProfile getSpeedProfile() {
+        return EnvironmentSpeedProfile.SLOW;
+    }
+
+    @Override
+    @Test
+    @Disabled("This test is failing by design as the different registration keys are handled by distinct messages")
+    public void dispatchShouldCallListenerOnceWhenSeveralKeysMatching() {
+
+    }
+
+    @Test
+    void shardedPubSubShouldGenerateLessClusterBusTrafficThanClassicPubSub() {
+        long classicTraffic = measureClusterBusTraffic(CalendarRedisPubSubConfiguration.Mode.CLASSIC, "classic-");
+        long shardedTraffic = measureClusterBusTraffic(CalendarRedisPubSubConfiguration.Mode.SHARDED, "sharded-");
+
+        LOGGER.info("Cluster bus publish messages for {} keys: classic={} sharded={}", KEY_COUNT, classicTraffic, shardedTraffic);
+
+        assertThat(shardedTraffic).isLessThan(classicTraffic);
+    }
+
+    private long measureClusterBusTraffic(CalendarRedisPubSubConfiguration.Mode mode, String keyPrefix) {
+        CalendarRedisEventBus publisher = newEventBus(mode);
+        CalendarRedisEventBus subscriber = newEventBus(mode);
+        publisher.start();
+        subscriber.start();
+        try {
+            EventCollector collector = new EventCollector();
+            Flux.range(0, KEY_COUNT)
+                .flatMap(i -> subscriber.register(collector, new EventBusTestFixture.TestRegistrationKey(keyPrefix + i)), 64)
+                .blockLast();
+
+            long before = clusterBusPublishMessages();
+            Flux.range(0, KEY_COUNT)
+                .flatMap(i -> publisher.dispatch(EVENT, ImmutableSet.of(new EventBusTestFixture.TestRegistrationKey(keyPrefix + i))), 64)
+                .blockLast();
+
+            calmlyAwait.atMost(Duration.ofMinutes(1))
+                .untilAsserted(() -> assertThat(collector.getEvents()).hasSize(KEY_COUNT));
+            return clusterBusPublishMessages() - before;
+        } finally {
+            publisher.stop();
+            subscriber.stop();
+        }
+    }
+
+    private long clusterBusPublishMessages() {
+        AtomicLong total = new AtomicLong();
+        redisClusterContainer.forEach(container -> total.addAndGet(clusterBusPublishMessages(container)));
+        return total.get();
+    }
+
+    private long clusterBusPublishMessages(GenericContainer<?> container) {
+        try {
+            Container.ExecResult result = container.execInContainer("redis-cli", "cluster", "info");
+            return Arrays.stream(result.getStdout().split("\r?\n"))
+                .filter(line -> line.startsWith("cluster_stats_messages_publish_sent:")
+                    || line.startsWith("cluster_stats_messages_publishshard_sent:"))
+                .mapToLong(line -> Long.parseLong(line.substring(line.indexOf(':') + 1).trim()))
+                .sum();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private CalendarRedisEventBus newEventBus(CalendarRedisPubSubConfiguration.Mode mode) {
+        return new CalendarRedisEventBus(eventSerializer,
+            EventBusTestFixture.RETRY_BACKOFF_CONFIGURATION, routingKeyConverter,
+            new RecordingMetricFactory(),
+            EventBusId.random(),
+            redisEventBusClientFactory,
+            new RedisEventBusConfiguration(FAILURE_IGNORE_DEFAULT,
+                Duration.ofSeconds(2)),
+            redisClientFactory,
+            new CalendarRedisPubSubConfiguration(mode));
+    }
+}
@@ -119,7 +119,9 @@ public class CalendarRedisEventBusTest implements SingleEventBusKeyContract, Mul
             EventBusId.random(),
             redisEventBusClientFactory,
             new RedisEventBusConfiguration(FAILURE_IGNORE_DEFAULT,
-                Duration.ofSeconds(2)));
+                Duration.ofSeconds(2)),
+            redisClientFactory,
+            CalendarRedisPubSubConfiguration.DEFAULT);
     }
 
     @Override
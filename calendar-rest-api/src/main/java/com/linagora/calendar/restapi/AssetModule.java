@@ -19,6 +19,7 @@
 package com.linagora.calendar.restapi;
 
 import jakarta.inject.Named;
+import jakarta.inject.Singleton;
 
 import org.apache.james.util.ClassLoaderUtils;
 
@@ -27,12 +28,14 @@ import com.google.inject.Provides;
 
 public class AssetModule extends AbstractModule {
     @Provides
+    @Singleton
     @Named("calendar-logo")
     byte[] calendarLogo() {
         return ClassLoaderUtils.getSystemResourceAsByteArray("assets/calendar/logo.png");
     }
 
     @Provides
+    @Singleton
     @Named("contacts-logo")
     byte[] contactsLogo() {
         return ClassLoaderUtils.getSystemResourceAsByteArray("assets/contacts/logo.png");
@@ -108,6 +108,7 @@ import com.linagora.calendar.restapi.routes.ResourceIconRoute;
 import com.linagora.calendar.restapi.routes.ResourceParticipationRoute;
 import com.linagora.calendar.restapi.routes.ResourceRoute;
 import com.linagora.calendar.restapi.routes.SecretLinkRoute;
+import com.linagora.calendar.restapi.routes.ServerSentEventsRoute;
 import com.linagora.calendar.restapi.routes.TeamCalendarRoute;
 import com.linagora.calendar.restapi.routes.ThemeRoute;
 import com.linagora.calendar.restapi.routes.UserConfigurationPatchRoute;
@@ -197,6 +198,7 @@ public class RestApiModule extends AbstractModule {
         routes.addBinding().to(TeamCalendarRoute.class);
         routes.addBinding().to(CalendarTicketRoutes.class);
         routes.addBinding().to(WebsocketRoute.class);
+        routes.addBinding().to(ServerSentEventsRoute.class);
 
         Multibinder<AuthenticationStrategy> authenticationStrategies = Multibinder.newSetBinder(binder(), AuthenticationStrategy.class);
         authenticationStrategies.addBinding().to(BasicAuthenticationStrategy.class);
@@ -74,8 +74,13 @@ public record DefaultWebSocketNotificationListener(Sinks.Many<WebsocketRoute.Web
         static final String PAYLOAD = "{\"bookingLinkStateChanged\":true}";
 
         @Override
-        public WebSocketFrame asWebSocketFrame() {
-            return new TextWebSocketFrame(PAYLOAD);
+        public boolean shareable() {
+            return true;
+        }
+
+        @Override
+        public String serialize() {
+            return PAYLOAD;
         }
     }
 
@@ -87,6 +92,11 @@ public record DefaultWebSocketNotificationListener(Sinks.Many<WebsocketRoute.Web
 
         static final String CALENDAR_LIST_PROPERTY = "calendarList";
 
+        @Override
+        public boolean shareable() {
+            return true;
+        }
+
         @Override
         public WebSocketFrame asWebSocketFrame() throws JsonProcessingException {
             return new TextWebSocketFrame(serialize());
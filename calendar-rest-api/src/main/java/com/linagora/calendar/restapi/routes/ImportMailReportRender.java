@@ -49,8 +49,8 @@ public class ImportMailReportRender {
     private final MailTemplateConfiguration templateConfiguration;
     private final MessageGenerator.Factory messageGeneratorFactory;
     private final RestApiConfiguration configuration;
-    private final byte[] calendarLogo;
-    private final byte[] contactsLogo;
+    private final MimeAttachment calendarLogo;
+    private final MimeAttachment contactsLogo;
     private final MailAddress fromMailAddress;
 
     @Inject
@@ -63,8 +63,8 @@ public class ImportMailReportRender {
         this.templateConfiguration = templateConfiguration;
         this.messageGeneratorFactory = factory;
         this.configuration = configuration;
-        this.calendarLogo = calendarLogo;
-        this.contactsLogo = contactLogo;
+        this.calendarLogo = logoAttachment(calendarLogo);
+        this.contactsLogo = logoAttachment(contactLogo);
         this.fromMailAddress = templateConfiguration.sender().asOptional()
             .orElseThrow(() -> new IllegalArgumentException("Sender address must not be empty"));
     }
@@ -74,7 +74,7 @@ public class ImportMailReportRender {
             case ICS -> configuration.getCalendarSpaUrl().toString();
             case VCARD -> configuration.getContactSpaUrl().toString();
         };
-        byte[] logoBytes = switch (importType) {
+        MimeAttachment logoAttachment = switch (importType) {
             case ICS -> calendarLogo;
             case VCARD -> contactsLogo;
         };
@@ -85,18 +85,20 @@ public class ImportMailReportRender {
                 "jobFailedList", importResult.failed(),
                 "jobSucceedCount", importResult.succeedCount(),
                 "jobFailedCount", importResult.failed().size()));
-        MimeAttachment logoAttachment = MimeAttachment.builder()
-            .contentType(ContentType.of("image/png"))
-            .cid(Cid.from("logo"))
-            .inline()
-            .content(logoBytes)
-            .fileName("logo.png")
-            .build();
 
         return Mono.fromCallable(() -> messageGeneratorFactory.forLocalizedFeature(language, importType.getTemplateType()))
             .flatMap(messageGenerator -> messageGenerator.generate(username, fromMailAddress, model, ImmutableList.of(logoAttachment)))
             .map(Throwing.function(message -> new Mail(templateConfiguration.sender(), List.of(username.asMailAddress()), message)))
             .subscribeOn(Schedulers.boundedElastic());
     }
-}
 
+    private static MimeAttachment logoAttachment(byte[] logo) {
+        return MimeAttachment.builder()
+            .contentType(ContentType.of("image/png"))
+            .cid(Cid.from("logo"))
+            .inline()
+            .content(logo)
+            .fileName("logo.png")
+            .build();
+    }
+}
@@ -0,0 +1,149 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.restapi.routes;
+
+import static com.linagora.calendar.dav.CardDavClient.LIMIT_PARAM;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import jakarta.inject.Inject;
+
+import org.apache.james.core.Username;
+import org.apache.james.events.EventBus;
+import org.apache.james.events.EventListener.ReactiveEventListener;
+import org.apache.james.events.Registration;
+import org.apache.james.events.RegistrationKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.linagora.calendar.dav.AddressBookNotFoundException;
+import com.linagora.calendar.dav.CalDavClient;
+import com.linagora.calendar.dav.CardDavClient;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.AddressBookSubscriptionKey;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.AlarmSubscriptionKey;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.CalendarListSubscriptionKey;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.CalendarSubscriptionKey;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.ForbiddenSubscribeException;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.SubscriptionKey;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.WebsocketMessage;
+import com.linagora.calendar.storage.AddressBookURL;
+import com.linagora.calendar.storage.AddressBookURLRegistrationKey;
+import com.linagora.calendar.storage.AlarmOutbox;
+import com.linagora.calendar.storage.AlarmOutboxCursor;
+import com.linagora.calendar.storage.CalendarURL;
+import com.linagora.calendar.storage.CalendarURLRegistrationKey;
+import com.linagora.calendar.storage.UsernameRegistrationKey;
+import com.linagora.calendar.storage.configuration.AlarmOutboxConfiguration;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Registers the event bus listeners backing a realtime notification channel, be it a websocket or a server-sent
+ * events stream. Notifications are emitted into the outbound sink of the channel.
+ */
+public class NotificationSubscriptionRegistrar {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotificationSubscriptionRegistrar.class);
+
+    private final EventBus eventBus;
+    private final CalDavClient calDavClient;
+    private final CardDavClient cardDavClient;
+    private final AlarmOutbox alarmOutbox;
+    private final AlarmOutboxConfiguration alarmOutboxConfiguration;
+
+    @Inject
+    public NotificationSubscriptionRegistrar(EventBus eventBus,
+                                             CalDavClient calDavClient,
+                                             CardDavClient cardDavClient,
+                                             AlarmOutbox alarmOutbox,
+                                             AlarmOutboxConfiguration alarmOutboxConfiguration) {
+        this.eventBus = eventBus;
+        this.calDavClient = calDavClient;
+        this.cardDavClient = cardDavClient;
+        this.alarmOutbox = alarmOutbox;
+        this.alarmOutboxConfiguration = alarmOutboxConfiguration;
+    }
+
+    /**
+     * @return the set recording the alarms delivered through a channel, so that an alarm both replayed from the outbox
+     * and received live is delivered once. An alarm is forgotten once the outbox no longer retains it, as it can then
+     * not be replayed anymore.
+     */
+    Set<AlarmOutboxCursor> newDeliveredAlarms() {
+        return Collections.newSetFromMap(Caffeine.newBuilder()
+            .expireAfterWrite(alarmOutboxConfiguration.retention())
+            .<AlarmOutboxCursor, Boolean>build()
+            .asMap());
+    }
+
+    Mono<Registration> register(SubscriptionKey subscriptionKey,
+                                Username username,
+                                Sinks.Many<WebsocketMessage> outbound,
+                                Set<AlarmOutboxCursor> deliveredAlarms) {
+        return switch (subscriptionKey) {
+            case CalendarSubscriptionKey calendarKey -> validateAccessRights(username, calendarKey.calendarURL())
+                .then(register(new WebSocketNotificationListener(outbound, calDavClient, cardDavClient, username, deliveredAlarms),
+                    new CalendarURLRegistrationKey(calendarKey.calendarURL())));
+            case AddressBookSubscriptionKey addressBookKey -> validateAccessRights(username, addressBookKey.addressBookURL())
+                .then(register(new WebSocketNotificationListener(outbound, calDavClient, cardDavClient, username, deliveredAlarms),
+                    new AddressBookURLRegistrationKey(addressBookKey.addressBookURL())));
+            case AlarmSubscriptionKey alarmKey ->
+                register(new WebSocketNotificationListener(outbound, calDavClient, cardDavClient, alarmKey.username(), deliveredAlarms),
+                    new UsernameRegistrationKey(alarmKey.username()));
+            case CalendarListSubscriptionKey calendarListKey ->
+                register(new DefaultWebSocketNotificationListener(outbound), new UsernameRegistrationKey(calendarListKey.username()));
+        };
+    }
+
+    Flux<WebsocketMessage> missedAlarms(Username username, AlarmOutboxCursor cursor, Set<AlarmOutboxCursor> deliveredAlarms) {
+        return alarmOutbox.readAfter(username, cursor)
+            .filter(entry -> deliveredAlarms.add(entry.cursor()))
+            .<WebsocketMessage>map(entry -> WebSocketNotificationListener.AlarmMessage.from(entry.event().withOutboxCursor(entry.cursor())))
+            .onErrorResume(error -> {
+                LOGGER.warn("Failed to replay missed alarms of {} after {}", username.asString(), cursor.asString(), error);
+                return Flux.empty();
+            });
+    }
+
+    private Mono<Registration> register(ReactiveEventListener listener, RegistrationKey registrationKey) {
+        return Mono.from(eventBus.register(listener, registrationKey));
+    }
+
+    private Mono<Void> validateAccessRights(Username user, CalendarURL url) {
+        return calDavClient.retrieveSyncToken(user, url)
+            .switchIfEmpty(Mono.error(ForbiddenSubscribeException::new))
+            .then();
+    }
+
+    private Mono<Void> validateAccessRights(Username user, AddressBookURL addressBookURL) {
+        return cardDavClient
+            .exportAddressBook(user, addressBookURL, Map.of(LIMIT_PARAM, "1"))
+            .then()
+            .onErrorMap(CardDavClient.CardDavExportException.class, exportException ->
+                switch (exportException.statusCode()) {
+                    case 403 -> new ForbiddenSubscribeException();
+                    case 404 -> new AddressBookNotFoundException(addressBookURL);
+                    default -> exportException;
+                });
+    }
+}
@@ -0,0 +1,205 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.restapi.routes;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.james.core.Username;
+import org.apache.james.events.Registration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.WebsocketMessage;
+import com.linagora.calendar.storage.AlarmOutboxCursor;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+/**
+ * A server-sent events stream outlives the HTTP connection it is served on: its event bus registrations are kept
+ * while the client reconnects, the notifications being numbered and retained in a bounded buffer so that a client
+ * reconnecting with a Last-Event-ID only receives what it missed.
+ */
+class ServerSentEventStream {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerSentEventStream.class);
+    private static final String ID_SEPARATOR = ":";
+
+    record EventId(String streamId, long sequence) {
+        static Optional<EventId> parse(String value) {
+            List<String> parts = Splitter.on(ID_SEPARATOR).splitToList(value.trim());
+            if (parts.size() != 2) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(new EventId(parts.get(0), Long.parseLong(parts.get(1))));
+            } catch (NumberFormatException e) {
+                return Optional.empty();
+            }
+        }
+
+        String asString() {
+            return streamId + ID_SEPARATOR + sequence;
+        }
+    }
+
+    record ServerSentEvent(EventId id, String data) {
+        ByteBuf asByteBuf() {
+            return Unpooled.wrappedBuffer(("id: " + id.asString() + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    static ServerSentEventStream create(Username username, int bufferSize, Set<AlarmOutboxCursor> deliveredAlarms) {
+        return new ServerSentEventStream(UUID.randomUUID().toString(), username, bufferSize, deliveredAlarms);
+    }
+
+    private final String id;
+    private final Username username;
+    private final int bufferSize;
+    private final Sinks.Many<WebsocketMessage> outbound = Sinks.many().unicast().onBackpressureBuffer();
+    private final Set<AlarmOutboxCursor> deliveredAlarms;
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+    private final Deque<ServerSentEvent> buffer = new ArrayDeque<>();
+    private final Disposable outboundSubscription;
+    private long lastSequence = 0;
+    private long connectionGeneration = 0;
+    private Sinks.Many<ServerSentEvent> connection = null;
+
+    private ServerSentEventStream(String id, Username username, int bufferSize, Set<AlarmOutboxCursor> deliveredAlarms) {
+        this.id = id;
+        this.username = username;
+        this.bufferSize = bufferSize;
+        this.deliveredAlarms = deliveredAlarms;
+        this.outboundSubscription = outbound.asFlux()
+            .subscribe(this::onMessage);
+    }
+
+    String id() {
+        return id;
+    }
+
+    Username username() {
+        return username;
+    }
+
+    Sinks.Many<WebsocketMessage> outbound() {
+        return outbound;
+    }
+
+    Set<AlarmOutboxCursor> deliveredAlarms() {
+        return deliveredAlarms;
+    }
+
+    void addRegistration(Registration registration) {
+        registrations.add(registration);
+    }
+
+    void push(WebsocketMessage message) {
+        synchronized (outbound) {
+            outbound.emitNext(message, Sinks.EmitFailureHandler.FAIL_FAST);
+        }
+    }
+
+    private void onMessage(WebsocketMessage message) {
+        try {
+            append(message.serialize());
+        } catch (Exception e) {
+            LOGGER.warn("Failed to serialize server-sent event of {}", username.asString(), e);
+        }
+    }
+
+    private synchronized void append(String data) {
+        lastSequence++;
+        ServerSentEvent event = new ServerSentEvent(new EventId(id, lastSequence), data);
+        buffer.addLast(event);
+        if (buffer.size() > bufferSize) {
+            buffer.removeFirst();
+        }
+        if (connection != null && connection.tryEmitNext(event).isFailure()) {
+            // The client does not keep up: closing the connection, it will resume from the buffer upon reconnection
+            LOGGER.info("Closing slow server-sent events connection of {}", username.asString());
+            connection.tryEmitComplete();
+            connection = null;
+        }
+    }
+
+    /**
+     * Replaces the current connection, if any.
+     *
+     * @return empty when the events following {@code lastReceivedSequence} are no longer buffered
+     */
+    synchronized Optional<Attachment> attach(long lastReceivedSequence) {
+        long oldestBufferedSequence = Optional.ofNullable(buffer.peekFirst())
+            .map(event -> event.id().sequence())
+            .orElse(lastSequence + 1);
+        if (lastReceivedSequence + 1 < oldestBufferedSequence) {
+            return Optional.empty();
+        }
+        List<ServerSentEvent> missed = buffer.stream()
+            .filter(event -> event.id().sequence() > lastReceivedSequence)
+            .collect(ImmutableList.toImmutableList());
+
+        if (connection != null) {
+            connection.tryEmitComplete();
+        }
+        connection = Sinks.many().unicast().onBackpressureBuffer(Queues.<ServerSentEvent>get(bufferSize).get());
+        connectionGeneration++;
+        return Optional.of(new Attachment(connectionGeneration, Flux.concat(Flux.fromIterable(missed), connection.asFlux())));
+    }
+
+    record Attachment(long generation, Flux<ServerSentEvent> events) {
+    }
+
+    synchronized void detach(long generation) {
+        if (generation == connectionGeneration && connection != null) {
+            connection.tryEmitComplete();
+            connection = null;
+        }
+    }
+
+    synchronized boolean isDetachedSince(long generation) {
+        return connection == null && connectionGeneration == generation;
+    }
+
+    Mono<Void> close() {
+        outboundSubscription.dispose();
+        synchronized (this) {
+            if (connection != null) {
+                connection.tryEmitComplete();
+                connection = null;
+            }
+        }
+        return Flux.fromIterable(registrations)
+            .flatMap(Registration::unregister)
+            .then();
+    }
+}
@@ -0,0 +1,124 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.restapi.routes;
+
+import java.io.FileNotFoundException;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.james.core.Username;
+import org.apache.james.util.DurationParser;
+import org.apache.james.utils.PropertiesProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.linagora.calendar.storage.PresenceRegistry;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Server-sent event streams of this node, kept for {@code sse.resume.timeout} after their client disconnected.
+ * Their owner is reported online for as long as they are kept.
+ */
+@Singleton
+public class ServerSentEventStreams {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerSentEventStreams.class);
+    private static final String BUFFER_SIZE_PROPERTY = "sse.buffer.size";
+    private static final int BUFFER_SIZE_DEFAULT = 256;
+    private static final String RESUME_TIMEOUT_PROPERTY = "sse.resume.timeout";
+    private static final Duration RESUME_TIMEOUT_DEFAULT = Duration.ofSeconds(30);
+
+    private final int bufferSize;
+    private final Duration resumeTimeout;
+    private final PresenceRegistry presenceRegistry;
+    private final NotificationSubscriptionRegistrar subscriptionRegistrar;
+    private final Map<String, ServerSentEventStream> streams = new ConcurrentHashMap<>();
+
+    @Inject
+    public ServerSentEventStreams(PropertiesProvider propertiesProvider,
+                                  PresenceRegistry presenceRegistry,
+                                  NotificationSubscriptionRegistrar subscriptionRegistrar) throws ConfigurationException, FileNotFoundException {
+        this.presenceRegistry = presenceRegistry;
+        this.subscriptionRegistrar = subscriptionRegistrar;
+        Configuration configuration = propertiesProvider.getConfiguration("configuration");
+        this.bufferSize = configuration.getInt(BUFFER_SIZE_PROPERTY, BUFFER_SIZE_DEFAULT);
+        this.resumeTimeout = Optional.ofNullable(configuration.getString(RESUME_TIMEOUT_PROPERTY))
+            .map(rawValue -> DurationParser.parse(rawValue, ChronoUnit.SECONDS))
+            .orElse(RESUME_TIMEOUT_DEFAULT);
+        Preconditions.checkArgument(bufferSize > 0, "`" + BUFFER_SIZE_PROPERTY + "` must be positive");
+        Preconditions.checkArgument(!resumeTimeout.isNegative(), "`" + RESUME_TIMEOUT_PROPERTY + "` must not be negative");
+    }
+
+    Mono<ServerSentEventStream> create(Username username) {
+        return Mono.defer(() -> {
+            ServerSentEventStream stream = ServerSentEventStream.create(username, bufferSize, subscriptionRegistrar.newDeliveredAlarms());
+            streams.put(stream.id(), stream);
+            return presenceRegistry.connect(username)
+                .onErrorResume(error -> {
+                    LOGGER.warn("Failed to record the presence of {}", username.asString(), error);
+                    return Mono.empty();
+                })
+                .thenReturn(stream);
+        });
+    }
+
+    /**
+     * Streams are only resumable by the user owning them.
+     */
+    Optional<ServerSentEventStream> retrieve(String streamId, Username username) {
+        return Optional.ofNullable(streams.get(streamId))
+            .filter(stream -> stream.username().equals(username));
+    }
+
+    void detach(ServerSentEventStream stream, long generation) {
+        stream.detach(generation);
+        Mono.delay(resumeTimeout, Schedulers.parallel())
+            .filter(any -> stream.isDetachedSince(generation))
+            .flatMap(any -> close(stream))
+            .subscribe();
+    }
+
+    Mono<Void> close(ServerSentEventStream stream) {
+        boolean removed = streams.remove(stream.id(), stream);
+        return stream.close()
+            .onErrorResume(error -> {
+                LOGGER.warn("Error while closing server-sent events stream of {}", stream.username().asString(), error);
+                return Mono.empty();
+            })
+            .then(Mono.defer(() -> removed ? clearPresence(stream.username()) : Mono.<Void>empty()));
+    }
+
+    private Mono<Void> clearPresence(Username username) {
+        return presenceRegistry.disconnect(username)
+            .onErrorResume(error -> {
+                LOGGER.warn("Failed to clear the presence of {}", username.asString(), error);
+                return Mono.empty();
+            });
+    }
+}
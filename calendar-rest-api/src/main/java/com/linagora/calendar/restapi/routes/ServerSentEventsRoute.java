@@ -0,0 +1,233 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.restapi.routes;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import jakarta.inject.Inject;
+
+import org.apache.james.core.Username;
+import org.apache.james.jmap.Endpoint;
+import org.apache.james.jmap.http.AuthenticationStrategy;
+import org.apache.james.jmap.http.Authenticator;
+import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.metrics.api.MetricFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableSet;
+import com.linagora.calendar.restapi.routes.ServerSentEventStream.Attachment;
+import com.linagora.calendar.restapi.routes.ServerSentEventStream.EventId;
+import com.linagora.calendar.restapi.routes.ServerSentEventStream.ServerSentEvent;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.AlarmSubscriptionKey;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.CalendarListSubscriptionKey;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.CalendarSubscribeException;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.ClientSubscribeRequest;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.ClientSubscribeResult;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.EnableAlarmDisplayNotificationResponse;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.ResponseMessage;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.SubscriptionKey;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.TextMessage;
+import com.linagora.calendar.storage.AlarmOutboxCursor;
+import com.linagora.tmail.james.jmap.ticket.TicketAuthenticationStrategy;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+/**
+ * Server-sent events alternative to {@link WebsocketRoute} for clients that cannot keep a websocket opened.
+ *
+ * Subscriptions are given as query parameters, the stream then pushes the same messages as the websocket. Every event
+ * carries an ID: reconnecting with it as Last-Event-ID resumes the stream, replaying the buffered events the client
+ * missed. When they are no longer available, a new stream is opened starting with a {@code streamReset} event.
+ */
+public class ServerSentEventsRoute extends CalendarRoute {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerSentEventsRoute.class);
+    private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+    private static final String LAST_EVENT_ID_PARAM = "lastEventId";
+    private static final String REGISTER_PARAM = "register";
+    private static final String ENABLE_DISPLAY_NOTIFICATION_PARAM = "enableDisplayNotification";
+    private static final String ALARM_CURSOR_PARAM = "alarmCursor";
+    private static final String TEXT_EVENT_STREAM = "text/event-stream";
+    private static final String MESSAGE_STREAM_RESET = "{\"streamReset\":true}";
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    record StreamRequest(Set<SubscriptionKey> register,
+                         boolean enableDisplayNotification,
+                         Optional<AlarmOutboxCursor> alarmCursor) {
+
+        static StreamRequest parse(QueryStringDecoder queryStringDecoder) {
+            try {
+                Set<SubscriptionKey> register = queryParams(queryStringDecoder, REGISTER_PARAM).stream()
+                    .map(ClientSubscribeRequest::toSubscriptionKey)
+                    .collect(ImmutableSet.toImmutableSet());
+                boolean enableDisplayNotification = queryParam(queryStringDecoder, ENABLE_DISPLAY_NOTIFICATION_PARAM)
+                    .map(Boolean::parseBoolean)
+                    .orElse(false);
+                Optional<AlarmOutboxCursor> alarmCursor = queryParam(queryStringDecoder, ALARM_CURSOR_PARAM)
+                    .map(AlarmOutboxCursor::parse);
+                return new StreamRequest(register, enableDisplayNotification, alarmCursor);
+            } catch (CalendarSubscribeException e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+        }
+    }
+
+    private record AttachedStream(ServerSentEventStream stream, Attachment attachment) {
+    }
+
+    private final NotificationSubscriptionRegistrar subscriptionRegistrar;
+    private final ServerSentEventStreams streams;
+
+    @Inject
+    public ServerSentEventsRoute(Set<AuthenticationStrategy> authenticationStrategies,
+                                 TicketAuthenticationStrategy ticketAuthenticationStrategy,
+                                 MetricFactory metricFactory,
+                                 NotificationSubscriptionRegistrar subscriptionRegistrar,
+                                 ServerSentEventStreams streams) {
+        super(Authenticator.of(metricFactory, ImmutableSet.<AuthenticationStrategy>builder()
+            .addAll(authenticationStrategies)
+            .add(ticketAuthenticationStrategy)
+            .build()), metricFactory);
+        this.subscriptionRegistrar = subscriptionRegistrar;
+        this.streams = streams;
+    }
+
+    @Override
+    Endpoint endpoint() {
+        return new Endpoint(HttpMethod.GET, "/sse");
+    }
+
+    @Override
+    Mono<Void> handleRequest(HttpServerRequest request, HttpServerResponse response, MailboxSession session) {
+        QueryStringDecoder queryStringDecoder = new QueryStringDecoder(request.uri());
+        StreamRequest streamRequest = StreamRequest.parse(queryStringDecoder);
+        Username username = session.getUser();
+        Optional<EventId> lastEventId = Optional.ofNullable(request.requestHeaders().get(LAST_EVENT_ID_HEADER))
+            .or(() -> queryParam(queryStringDecoder, LAST_EVENT_ID_PARAM))
+            .flatMap(EventId::parse);
+
+        Mono<AttachedStream> attachedStream = lastEventId
+            .flatMap(eventId -> streams.retrieve(eventId.streamId(), username)
+                .map(stream -> resume(stream, eventId, streamRequest)))
+            .orElseGet(() -> open(username, streamRequest, lastEventId.isPresent()));
+
+        return attachedStream.flatMap(attached -> response.status(HttpResponseStatus.OK)
+            .header(HttpHeaderNames.CONTENT_TYPE, TEXT_EVENT_STREAM)
+            .header(HttpHeaderNames.CACHE_CONTROL, "no-cache")
+            .header("X-Accel-Buffering", "no")
+            .send(attached.attachment().events()
+                .publish(events -> Flux.merge(
+                    events.map(ServerSentEvent::asByteBuf),
+                    heartbeat().takeUntilOther(events.then()))), any -> true)
+            .then()
+            .doFinally(signal -> streams.detach(attached.stream(), attached.attachment().generation())));
+    }
+
+    private Mono<AttachedStream> resume(ServerSentEventStream stream, EventId lastEventId, StreamRequest streamRequest) {
+        return stream.attach(lastEventId.sequence())
+            .map(attachment -> Mono.just(new AttachedStream(stream, attachment)))
+            .orElseGet(() -> streams.close(stream)
+                .then(open(stream.username(), streamRequest, true)));
+    }
+
+    private Mono<AttachedStream> open(Username username, StreamRequest streamRequest, boolean reset) {
+        return streams.create(username)
+            .flatMap(stream -> {
+                Attachment attachment = stream.attach(0).orElseThrow();
+                if (reset) {
+                    stream.push(new TextMessage(MESSAGE_STREAM_RESET));
+                }
+
+                return registerDefaultSubscriptions(stream)
+                    .then(registerRequestedSubscriptions(stream, streamRequest.register()))
+                    .then(enableDisplayNotification(stream, streamRequest))
+                    .thenReturn(new AttachedStream(stream, attachment))
+                    .onErrorResume(error -> streams.close(stream)
+                        .then(Mono.error(error)));
+            });
+    }
+
+    private Mono<Void> registerDefaultSubscriptions(ServerSentEventStream stream) {
+        return register(stream, new CalendarListSubscriptionKey(stream.username()))
+            .then(Mono.fromRunnable(() -> stream.push(new TextMessage(ResponseMessage.MESSAGE_CALENDAR_LIST_REGISTERED))))
+            .onErrorResume(error -> {
+                LOGGER.warn("Failed to register default subscriptions for {}", stream.username().asString(), error);
+                return Mono.fromRunnable(() -> stream.push(new TextMessage(ResponseMessage.MESSAGE_DEFAULT_SUBSCRIPTIONS_FAILED)));
+            })
+            .then();
+    }
+
+    private Mono<Void> registerRequestedSubscriptions(ServerSentEventStream stream, Set<SubscriptionKey> subscriptionKeys) {
+        return Flux.fromIterable(subscriptionKeys)
+            .flatMap(subscriptionKey -> register(stream, subscriptionKey)
+                .thenReturn(ClientSubscribeResult.registered(subscriptionKey))
+                .onErrorResume(error -> {
+                    LOGGER.error("Error registering {}", subscriptionKey.asString(), error);
+                    return Mono.just(ClientSubscribeResult.notRegistered(subscriptionKey, error));
+                }))
+            .reduce(ClientSubscribeResult::merge)
+            .doOnNext(result -> stream.push(new TextMessage(result.serialize())))
+            .then();
+    }
+
+    private Mono<Void> enableDisplayNotification(ServerSentEventStream stream, StreamRequest streamRequest) {
+        if (!streamRequest.enableDisplayNotification()) {
+            return Mono.empty();
+        }
+        return register(stream, new AlarmSubscriptionKey(stream.username()))
+            .then(Mono.fromRunnable(() -> stream.push(new TextMessage(EnableAlarmDisplayNotificationResponse.ENABLED_RESPONSE))))
+            .then(Mono.justOrEmpty(streamRequest.alarmCursor())
+                .flatMapMany(cursor -> subscriptionRegistrar.missedAlarms(stream.username(), cursor, stream.deliveredAlarms()))
+                .doOnNext(stream::push)
+                .then());
+    }
+
+    private Mono<Void> register(ServerSentEventStream stream, SubscriptionKey subscriptionKey) {
+        return subscriptionRegistrar.register(subscriptionKey, stream.username(), stream.outbound(), stream.deliveredAlarms())
+            .doOnNext(stream::addRegistration)
+            .then();
+    }
+
+    private Flux<ByteBuf> heartbeat() {
+        return Flux.interval(HEARTBEAT_INTERVAL)
+            .map(any -> Unpooled.wrappedBuffer(HEARTBEAT));
+    }
+
+    private static List<String> queryParams(QueryStringDecoder queryStringDecoder, String name) {
+        return queryStringDecoder.parameters().getOrDefault(name, List.of());
+    }
+
+    private static Optional<String> queryParam(QueryStringDecoder queryStringDecoder, String name) {
+        return queryParams(queryStringDecoder, name).stream().findFirst();
+    }
+}
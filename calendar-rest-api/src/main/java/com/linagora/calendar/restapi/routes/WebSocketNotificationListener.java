@@ -23,6 +23,9 @@ import static com.linagora.calendar.restapi.routes.WebsocketRoute.MAPPER;
 import java.net.URI;
 import java.time.Instant;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.apache.james.core.Username;
@@ -35,11 +38,13 @@ import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.annotation.JsonAnyGetter;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.linagora.calendar.dav.CalDavClient;
 import com.linagora.calendar.dav.CardDavClient;
 import com.linagora.calendar.dav.SyncToken;
 import com.linagora.calendar.storage.AddressBookChangeEvent;
 import com.linagora.calendar.storage.AddressBookURL;
+import com.linagora.calendar.storage.AlarmOutboxCursor;
 import com.linagora.calendar.storage.CalendarChangeEvent;
 import com.linagora.calendar.storage.CalendarURL;
 import com.linagora.calendar.storage.EventBusAlarmEvent;
@@ -54,10 +59,18 @@ import reactor.core.publisher.Sinks;
 public record WebSocketNotificationListener(Sinks.Many<WebsocketRoute.WebsocketMessage> outbound,
                                             CalDavClient calDavClient,
                                             CardDavClient cardDavClient,
-                                            Username username) implements EventListener.ReactiveEventListener {
+                                            Username username,
+                                            Set<AlarmOutboxCursor> deliveredAlarms) implements EventListener.ReactiveEventListener {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WebSocketNotificationListener.class);
 
+    public WebSocketNotificationListener(Sinks.Many<WebsocketRoute.WebsocketMessage> outbound,
+                                         CalDavClient calDavClient,
+                                         CardDavClient cardDavClient,
+                                         Username username) {
+        this(outbound, calDavClient, cardDavClient, username, ConcurrentHashMap.newKeySet());
+    }
+
 
     @Override
     public boolean isHandling(Event event) {
@@ -85,6 +98,12 @@ public record WebSocketNotificationListener(Sinks.Many<WebsocketRoute.WebsocketM
     }
 
     private Mono<Void> handleAlarmEvent(EventBusAlarmEvent event) {
+        boolean alreadyDelivered = event.outboxCursor()
+            .map(cursor -> !deliveredAlarms.add(cursor))
+            .orElse(false);
+        if (alreadyDelivered) {
+            return Mono.empty();
+        }
         return Mono.fromRunnable(() -> emit(AlarmMessage.from(event)))
             .then();
     }
@@ -150,6 +169,11 @@ public record WebSocketNotificationListener(Sinks.Many<WebsocketRoute.WebsocketM
             return new ImportWebSocketMessage(event.importURI(), Map.of(event.importId(), resultMessage));
         }
 
+        @Override
+        public boolean shareable() {
+            return true;
+        }
+
         @Override
         public WebSocketFrame asWebSocketFrame() throws Exception {
             return new TextWebSocketFrame(serialize());
@@ -173,6 +197,11 @@ public record WebSocketNotificationListener(Sinks.Many<WebsocketRoute.WebsocketM
                                         SyncToken syncToken) implements WebsocketRoute.WebsocketMessage {
         static final String SYNC_TOKEN_PROPERTY = "syncToken";
 
+        @Override
+        public boolean shareable() {
+            return true;
+        }
+
         @Override
         public WebSocketFrame asWebSocketFrame() throws JsonProcessingException {
             return new TextWebSocketFrame(serialize());
@@ -189,6 +218,11 @@ public record WebSocketNotificationListener(Sinks.Many<WebsocketRoute.WebsocketM
                                            SyncToken syncToken) implements WebsocketRoute.WebsocketMessage {
         static final String SYNC_TOKEN_PROPERTY = "syncToken";
 
+        @Override
+        public boolean shareable() {
+            return true;
+        }
+
         @Override
         public WebSocketFrame asWebSocketFrame() throws JsonProcessingException {
             return new TextWebSocketFrame(serialize());
@@ -203,10 +237,20 @@ public record WebSocketNotificationListener(Sinks.Many<WebsocketRoute.WebsocketM
 
     public record AlarmMessage(String eventSummary,
                                String eventURL,
-                               Instant eventStartTime) implements WebsocketRoute.WebsocketMessage {
+                               Instant eventStartTime,
+                               Optional<AlarmOutboxCursor> cursor) implements WebsocketRoute.WebsocketMessage {
 
         public static AlarmMessage from(EventBusAlarmEvent event) {
-            return new AlarmMessage(event.eventSummary(), event.eventURL(), event.eventStartTime());
+            return new AlarmMessage(event.eventSummary(), event.eventURL(), event.eventStartTime(), event.outboxCursor());
+        }
+
+        public AlarmMessage(String eventSummary, String eventURL, Instant eventStartTime) {
+            this(eventSummary, eventURL, eventStartTime, Optional.empty());
+        }
+
+        @Override
+        public boolean shareable() {
+            return true;
         }
 
         @Override
@@ -215,13 +259,14 @@ public record WebSocketNotificationListener(Sinks.Many<WebsocketRoute.WebsocketM
         }
 
         public String serialize() throws JsonProcessingException {
+            ObjectNode alarm = MAPPER.createObjectNode()
+                .put("eventSummary", eventSummary)
+                .put("eventURL", eventURL)
+                .put("eventStartTime", eventStartTime.toString());
+            cursor.ifPresent(value -> alarm.put("cursor", value.asString()));
             return MAPPER.writeValueAsString(
                 MAPPER.createObjectNode()
-                    .set("alarms", MAPPER.createArrayNode()
-                        .add(MAPPER.createObjectNode()
-                            .put("eventSummary", eventSummary)
-                            .put("eventURL", eventURL)
-                            .put("eventStartTime", eventStartTime.toString()))));
+                    .set("alarms", MAPPER.createArrayNode().add(alarm)));
         }
     }
 
@@ -0,0 +1,94 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.restapi.routes;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.common.annotations.VisibleForTesting;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.WebsocketMessage;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.IllegalReferenceCountException;
+
+/**
+ * An event dispatched to many connections is turned into equal messages by each of their listeners. This cache
+ * serializes a {@link WebsocketMessage#shareable() shareable} message once into a buffer it holds a reference on, and
+ * hands out frames over retained duplicates of it: connections then only write, and release, their own view.
+ *
+ * <p>The shared buffer is an unpooled heap buffer: once released it is never recycled for another allocation, hence a
+ * retain racing with its eviction reliably fails instead of retaining an unrelated buffer.
+ */
+@Singleton
+public class WebsocketFrameCache {
+    private static final Duration EXPIRY = Duration.ofSeconds(10);
+    private static final long MAX_SIZE = 10_000;
+
+    private final Cache<WebsocketMessage, ByteBuf> frames;
+
+    @Inject
+    public WebsocketFrameCache() {
+        this.frames = Caffeine.newBuilder()
+            .expireAfterWrite(EXPIRY)
+            .maximumSize(MAX_SIZE)
+            .executor(Runnable::run)
+            .removalListener((WebsocketMessage message, ByteBuf content, RemovalCause cause) -> {
+                if (content != null) {
+                    content.release();
+                }
+            })
+            .build();
+    }
+
+    public WebSocketFrame frameOf(WebsocketMessage message) throws Exception {
+        if (!message.shareable()) {
+            return message.asWebSocketFrame();
+        }
+        ByteBuf content = frames.get(message, this::encode);
+        try {
+            return new TextWebSocketFrame(content.retainedDuplicate());
+        } catch (IllegalReferenceCountException e) {
+            // Evicted and released between the lookup and the retain
+            return message.asWebSocketFrame();
+        }
+    }
+
+    private ByteBuf encode(WebsocketMessage message) {
+        try {
+            return Unpooled.wrappedBuffer(message.serialize().getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to serialize " + message.getClass().getSimpleName(), e);
+        }
+    }
+
+    @VisibleForTesting
+    void invalidateAll() {
+        frames.invalidateAll();
+        frames.cleanUp();
+    }
+}
@@ -18,7 +18,6 @@
 
 package com.linagora.calendar.restapi.routes;
 
-import static com.linagora.calendar.dav.CardDavClient.LIMIT_PARAM;
 import static com.linagora.calendar.storage.AddressBookURL.ADDRESS_BOOK_URL_PATH_PREFIX;
 import static com.linagora.calendar.storage.CalendarURL.CALENDAR_URL_PATH_PREFIX;
 
@@ -41,10 +40,7 @@ import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.apache.commons.lang3.Strings;
 import org.apache.james.core.Username;
-import org.apache.james.events.EventBus;
-import org.apache.james.events.EventListener.ReactiveEventListener;
 import org.apache.james.events.Registration;
-import org.apache.james.events.RegistrationKey;
 import org.apache.james.jmap.Endpoint;
 import org.apache.james.jmap.http.Authenticator;
 import org.apache.james.mailbox.MailboxSession;
@@ -68,14 +64,11 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
 import com.linagora.calendar.dav.AddressBookNotFoundException;
-import com.linagora.calendar.dav.CalDavClient;
 import com.linagora.calendar.dav.CalendarNotFoundException;
-import com.linagora.calendar.dav.CardDavClient;
 import com.linagora.calendar.storage.AddressBookURL;
-import com.linagora.calendar.storage.AddressBookURLRegistrationKey;
+import com.linagora.calendar.storage.AlarmOutboxCursor;
 import com.linagora.calendar.storage.CalendarURL;
-import com.linagora.calendar.storage.CalendarURLRegistrationKey;
-import com.linagora.calendar.storage.UsernameRegistrationKey;
+import com.linagora.calendar.storage.PresenceRegistry;
 import com.linagora.tmail.james.jmap.ticket.TicketAuthenticationStrategy;
 
 import io.netty.handler.codec.http.HttpMethod;
@@ -97,7 +90,7 @@ public class WebsocketRoute extends CalendarRoute {
     private static final String WEBSOCKET_PING_INTERVAL_PROPERTY = "websocket.ping.interval";
     private static final Duration WEBSOCKET_PING_INTERVAL_DEFAULT = Duration.ofSeconds(5);
 
-    private interface ResponseMessage {
+    interface ResponseMessage {
         String MESSAGE_CALENDAR_LIST_REGISTERED = "{\"calendarListRegistered\":true}";
         String MESSAGE_DEFAULT_SUBSCRIPTIONS_FAILED = "{\"error\":\"default-subscriptions-failed\"}";
 
@@ -112,22 +105,22 @@ public class WebsocketRoute extends CalendarRoute {
     }
 
     private final Duration websocketPingInterval;
-    private final EventBus eventBus;
-    private final CalDavClient calDavClient;
-    private final CardDavClient cardDavClient;
+    private final NotificationSubscriptionRegistrar subscriptionRegistrar;
+    private final PresenceRegistry presenceRegistry;
+    private final WebsocketFrameCache frameCache;
     private final Set<ClientContext> connectedClients = ConcurrentHashMap.newKeySet();
 
     @Inject
     protected WebsocketRoute(TicketAuthenticationStrategy ticketAuthenticationStrategy,
                              MetricFactory metricFactory,
-                             EventBus eventBus,
-                             CalDavClient calDavClient,
-                             CardDavClient cardDavClient,
+                             NotificationSubscriptionRegistrar subscriptionRegistrar,
+                             PresenceRegistry presenceRegistry,
+                             WebsocketFrameCache frameCache,
                              PropertiesProvider propertiesProvider) throws ConfigurationException, FileNotFoundException {
         super(Authenticator.of(metricFactory, ticketAuthenticationStrategy), metricFactory);
-        this.eventBus = eventBus;
-        this.calDavClient = calDavClient;
-        this.cardDavClient = cardDavClient;
+        this.subscriptionRegistrar = subscriptionRegistrar;
+        this.presenceRegistry = presenceRegistry;
+        this.frameCache = frameCache;
 
         Configuration configuration = propertiesProvider.getConfiguration("configuration");
         this.websocketPingInterval = Optional.ofNullable(configuration.getString(WEBSOCKET_PING_INTERVAL_PROPERTY))
@@ -147,7 +140,7 @@ public class WebsocketRoute extends CalendarRoute {
     @Override
     Mono<Void> handleRequest(HttpServerRequest request, HttpServerResponse response, MailboxSession session) {
         Sinks.Many<WebsocketMessage> outboundSink = Sinks.many().unicast().onBackpressureBuffer();
-        ClientContext context = ClientContext.create(outboundSink, session);
+        ClientContext context = ClientContext.create(outboundSink, subscriptionRegistrar.newDeliveredAlarms(), session);
 
         return response.sendWebsocket((in, out) -> {
             connectedClients.add(context);
@@ -157,9 +150,10 @@ public class WebsocketRoute extends CalendarRoute {
                 .flatMap(message -> handleClientMessage(((TextWebSocketFrame) message).text(), context)
                     .map(TextWebSocketFrame::new));
 
-            Flux<WebSocketFrame> outboundFlux = outboundSink.asFlux().map(Throwing.function(WebsocketMessage::asWebSocketFrame));
+            Flux<WebSocketFrame> outboundFlux = outboundSink.asFlux().map(Throwing.function(frameCache::frameOf));
 
-            return registerDefaultSubscriptions(context)
+            return markOnline(context)
+                .then(registerDefaultSubscriptions(context))
                 .then(out.sendObject(Flux.merge(outboundFlux, inboundFlux, pingInterval())).then())
                 .doFinally(signal -> cleanupWebsocketSession(context));
         });
@@ -205,15 +199,13 @@ public class WebsocketRoute extends CalendarRoute {
         AlarmSubscriptionKey alarmSubscriptionKey = new AlarmSubscriptionKey(username);
 
         if (request.enableDisplayNotification()) {
-            return Mono.justOrEmpty(context.subscriptionMap().get(alarmSubscriptionKey))
-                .map(existing -> EnableAlarmDisplayNotificationResponse.ENABLED_RESPONSE)
-                .switchIfEmpty(Mono.defer(() -> {
-                    WebSocketNotificationListener listener = new WebSocketNotificationListener(context.outbound(), calDavClient, cardDavClient, username);
-                    UsernameRegistrationKey registrationKey = new UsernameRegistrationKey(username);
-                    return Mono.from(eventBus.register(listener, registrationKey))
-                        .doOnNext(registration -> context.subscriptionMap().put(alarmSubscriptionKey, registration))
-                        .thenReturn(EnableAlarmDisplayNotificationResponse.ENABLED_RESPONSE);
-                }));
+            Optional<AlarmOutboxCursor> alarmCursor = request.parseAlarmCursor();
+            return doRegisterSubscription(alarmSubscriptionKey, context)
+                .then(Mono.justOrEmpty(alarmCursor)
+                    .flatMapMany(cursor -> subscriptionRegistrar.missedAlarms(username, cursor, context.deliveredAlarms()))
+                    .concatMap(message -> pushMessageToClient(context, message))
+                    .then())
+                .thenReturn(EnableAlarmDisplayNotificationResponse.ENABLED_RESPONSE);
         } else {
             return context.unregister(alarmSubscriptionKey)
                 .thenReturn(EnableAlarmDisplayNotificationResponse.DISABLED_RESPONSE);
@@ -248,34 +240,12 @@ public class WebsocketRoute extends CalendarRoute {
     private Mono<Registration> registerSubscription(SubscriptionKey subscriptionKey,
                                                     ClientContext context) {
         return switch (subscriptionKey) {
-            case CalendarSubscriptionKey calendarKey -> registerCalendar(calendarKey, context);
-            case AddressBookSubscriptionKey addressBookKey -> registerAddressBook(addressBookKey, context);
+            case CalendarSubscriptionKey calendarKey -> doRegisterSubscription(calendarKey, context);
+            case AddressBookSubscriptionKey addressBookKey -> doRegisterSubscription(addressBookKey, context);
             default -> Mono.error(new CalendarSubscribeException(ResponseMessage.ERROR_UNSUPPORTED_SUBSCRIPTION_KEY_TYPE));
         };
     }
 
-    private Mono<Registration> registerAddressBook(AddressBookSubscriptionKey subscriptionKey,
-                                                   ClientContext context) {
-        Username username = context.session().getUser();
-        WebSocketNotificationListener listener = new WebSocketNotificationListener(context.outbound(), calDavClient, cardDavClient, username);
-        AddressBookURL addressBookURL = subscriptionKey.addressBookURL();
-        RegistrationKey registrationKey = new AddressBookURLRegistrationKey(addressBookURL);
-        Mono<Void> accessValidation = validateAccessRights(username, addressBookURL);
-
-        return doRegisterSubscription(subscriptionKey, registrationKey, listener, accessValidation, context);
-    }
-
-    private Mono<Registration> registerCalendar(CalendarSubscriptionKey subscriptionKey,
-                                                ClientContext context) {
-        Username username = context.session().getUser();
-        WebSocketNotificationListener listener = new WebSocketNotificationListener(context.outbound(), calDavClient, cardDavClient, username);
-        CalendarURL calendarURL = subscriptionKey.calendarURL();
-        RegistrationKey registrationKey = new CalendarURLRegistrationKey(calendarURL);
-        Mono<Void> accessValidation = validateAccessRights(username, calendarURL);
-
-        return doRegisterSubscription(subscriptionKey, registrationKey, listener, accessValidation, context);
-    }
-
     private Mono<Void> registerDefaultSubscriptions(ClientContext context) {
         return registerCalendarListSubscription(context)
             .doOnError(error -> LOGGER.warn("Failed to register default subscriptions for {}", context.session().getUser(), error))
@@ -283,11 +253,8 @@ public class WebsocketRoute extends CalendarRoute {
     }
 
     private Mono<Void> registerCalendarListSubscription(ClientContext context) {
-        Username username = context.session().getUser();
-        CalendarListSubscriptionKey subscriptionKey = new CalendarListSubscriptionKey(username);
-        RegistrationKey registrationKey = new UsernameRegistrationKey(username);
-        DefaultWebSocketNotificationListener listener = new DefaultWebSocketNotificationListener(context.outbound());
-        return doRegisterSubscription(subscriptionKey, registrationKey, listener, Mono.empty(), context)
+        CalendarListSubscriptionKey subscriptionKey = new CalendarListSubscriptionKey(context.session().getUser());
+        return doRegisterSubscription(subscriptionKey, context)
             .then(pushMessageToClient(context, new TextMessage(ResponseMessage.MESSAGE_CALENDAR_LIST_REGISTERED)));
     }
 
@@ -300,15 +267,11 @@ public class WebsocketRoute extends CalendarRoute {
     }
 
     private Mono<Registration> doRegisterSubscription(SubscriptionKey subscriptionKey,
-                                                      RegistrationKey registrationKey,
-                                                      ReactiveEventListener listener,
-                                                      Mono<Void> accessValidation,
                                                       ClientContext context) {
 
         return Mono.justOrEmpty(context.subscriptionMap().get(subscriptionKey))
             .switchIfEmpty(Mono.defer(() ->
-                accessValidation
-                    .then(Mono.from(eventBus.register(listener, registrationKey)))
+                subscriptionRegistrar.register(subscriptionKey, context.session().getUser(), context.outbound(), context.deliveredAlarms())
                     .flatMap(registration -> {
                         Registration old = context.subscriptionMap().putIfAbsent(subscriptionKey, registration);
                         if (old != null) {
@@ -320,32 +283,25 @@ public class WebsocketRoute extends CalendarRoute {
             ));
     }
 
-    private Mono<Void> validateAccessRights(Username user, CalendarURL url) {
-        return calDavClient.retrieveSyncToken(user, url)
-            .switchIfEmpty(Mono.error(ForbiddenSubscribeException::new))
-            .then();
-    }
-
-    private Mono<Void> validateAccessRights(Username user, AddressBookURL addressBookURL) {
-        return cardDavClient
-            .exportAddressBook(user, addressBookURL, Map.of(LIMIT_PARAM, "1"))
-            .then()
-            .onErrorMap(CardDavClient.CardDavExportException.class, exportException ->
-                switch (exportException.statusCode()) {
-                    case 403 -> new ForbiddenSubscribeException();
-                    case 404 -> new AddressBookNotFoundException(addressBookURL);
-                    default -> exportException;
-                });
-    }
-
     private Flux<WebSocketFrame> pingInterval() {
         return Flux.interval(websocketPingInterval)
             .map(any -> new PingWebSocketFrame());
     }
 
+    private Mono<Void> markOnline(ClientContext context) {
+        return presenceRegistry.connect(context.session().getUser())
+            .onErrorResume(error -> {
+                LOGGER.warn("Failed to record the presence of {}", context.session().getUser(), error);
+                return Mono.empty();
+            });
+    }
+
     private void cleanupWebsocketSession(ClientContext context) {
         context.clean();
         connectedClients.remove(context);
+        presenceRegistry.disconnect(context.session().getUser())
+            .doOnError(error -> LOGGER.warn("Failed to clear the presence of {}", context.session().getUser(), error))
+            .subscribe();
     }
 
     sealed interface SubscriptionKey permits CalendarSubscriptionKey, AddressBookSubscriptionKey,
@@ -388,11 +344,13 @@ public class WebsocketRoute extends CalendarRoute {
 
     private record ClientContext(Sinks.Many<WebsocketMessage> outbound,
                                  Map<SubscriptionKey, Registration> subscriptionMap,
+                                 Set<AlarmOutboxCursor> deliveredAlarms,
                                  MailboxSession session) {
 
         static ClientContext create(Sinks.Many<WebsocketMessage> outbound,
+                                   Set<AlarmOutboxCursor> deliveredAlarms,
                                    MailboxSession session) {
-            return new ClientContext(outbound, new ConcurrentHashMap<>(), session);
+            return new ClientContext(outbound, new ConcurrentHashMap<>(), deliveredAlarms, session);
         }
 
         Mono<Void> unregister(SubscriptionKey subscriptionKey) {
@@ -436,8 +394,18 @@ public class WebsocketRoute extends CalendarRoute {
     sealed interface ClientRequest permits EnableAlarmDisplayNotificationRequest, ClientSubscribeRequest {
     }
 
-    record EnableAlarmDisplayNotificationRequest(boolean enableDisplayNotification) implements ClientRequest {
+    record EnableAlarmDisplayNotificationRequest(boolean enableDisplayNotification,
+                                                 String alarmCursor) implements ClientRequest {
         static final String ENABLE_DISPLAY_NOTIFICATION_PROPERTY = "enableDisplayNotification";
+
+        Optional<AlarmOutboxCursor> parseAlarmCursor() {
+            try {
+                return Optional.ofNullable(alarmCursor)
+                    .map(AlarmOutboxCursor::parse);
+            } catch (IllegalArgumentException e) {
+                throw new CalendarSubscribeException(ResponseMessage.ERROR_INVALID_REQUEST, e);
+            }
+        }
     }
 
     record EnableAlarmDisplayNotificationResponse(boolean displayNotificationEnabled) {
@@ -583,13 +551,25 @@ public class WebsocketRoute extends CalendarRoute {
     }
 
     public interface WebsocketMessage {
-        WebSocketFrame asWebSocketFrame() throws Exception;
+        String serialize() throws Exception;
+
+        default WebSocketFrame asWebSocketFrame() throws Exception {
+            return new TextWebSocketFrame(serialize());
+        }
+
+        /**
+         * Whether this message serializes the same for every connection it is sent to, allowing its frame to be
+         * shared through the {@link WebsocketFrameCache}. Equal shareable messages must serialize identically.
+         */
+        default boolean shareable() {
+            return false;
+        }
     }
 
-    private record TextMessage(String payload) implements WebsocketMessage {
+    record TextMessage(String payload) implements WebsocketMessage {
         @Override
-        public WebSocketFrame asWebSocketFrame() {
-            return new TextWebSocketFrame(payload);
+        public String serialize() {
+            return payload;
         }
     }
 
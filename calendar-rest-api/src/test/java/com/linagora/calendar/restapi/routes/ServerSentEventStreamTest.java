@@ -0,0 +1,149 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.restapi.routes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.james.core.Username;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.linagora.calendar.restapi.routes.ServerSentEventStream.Attachment;
+import com.linagora.calendar.restapi.routes.ServerSentEventStream.EventId;
+import com.linagora.calendar.restapi.routes.ServerSentEventStream.ServerSentEvent;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.TextMessage;
+
+import reactor.core.publisher.Flux;
+
+class ServerSentEventStreamTest {
+    private static final Username BOB = Username.of("bob@linagora.com");
+    private static final int BUFFER_SIZE = 3;
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private ServerSentEventStream testee;
+
+    @BeforeEach
+    void setUp() {
+        testee = ServerSentEventStream.create(BOB, BUFFER_SIZE, ConcurrentHashMap.newKeySet());
+    }
+
+    private List<String> receive(Flux<ServerSentEvent> events, int count) {
+        return events.take(count)
+            .map(ServerSentEvent::data)
+            .collectList()
+            .block(TIMEOUT);
+    }
+
+    @Test
+    void eventIdShouldRoundTrip() {
+        EventId eventId = new EventId("7f0c5b52-0bd4-4c56-a9df-5e8a4f4a3c3e", 12);
+
+        assertThat(EventId.parse(eventId.asString())).contains(eventId);
+    }
+
+    @Test
+    void eventIdParsingShouldRejectInvalidValues() {
+        assertThat(EventId.parse("abc")).isEmpty();
+        assertThat(EventId.parse("abc:def")).isEmpty();
+    }
+
+    @Test
+    void attachedConnectionShouldReceivePushedMessages() {
+        Attachment attachment = testee.attach(0).orElseThrow();
+
+        testee.push(new TextMessage("{\"a\":1}"));
+        testee.push(new TextMessage("{\"b\":2}"));
+
+        assertThat(receive(attachment.events(), 2)).containsExactly("{\"a\":1}", "{\"b\":2}");
+    }
+
+    @Test
+    void eventsShouldBeNumberedSequentially() {
+        Attachment attachment = testee.attach(0).orElseThrow();
+
+        testee.push(new TextMessage("{\"a\":1}"));
+        testee.push(new TextMessage("{\"b\":2}"));
+
+        assertThat(attachment.events().take(2).map(ServerSentEvent::id).collectList().block(TIMEOUT))
+            .containsExactly(new EventId(testee.id(), 1), new EventId(testee.id(), 2));
+    }
+
+    @Test
+    void resumingShouldReplayEventsMissedWhileDetached() {
+        Attachment first = testee.attach(0).orElseThrow();
+        testee.push(new TextMessage("{\"a\":1}"));
+        testee.detach(first.generation());
+
+        testee.push(new TextMessage("{\"b\":2}"));
+        testee.push(new TextMessage("{\"c\":3}"));
+
+        Attachment resumed = testee.attach(1).orElseThrow();
+
+        assertThat(receive(resumed.events(), 2)).containsExactly("{\"b\":2}", "{\"c\":3}");
+    }
+
+    @Test
+    void resumingShouldFailWhenMissedEventsAreNoLongerBuffered() {
+        Attachment first = testee.attach(0).orElseThrow();
+        testee.push(new TextMessage("{\"a\":1}"));
+        testee.detach(first.generation());
+
+        for (int i = 0; i < BUFFER_SIZE + 1; i++) {
+            testee.push(new TextMessage("{\"i\":" + i + "}"));
+        }
+
+        assertThat(testee.attach(1)).isEmpty();
+    }
+
+    @Test
+    void resumingShouldSucceedWhenTheLastReceivedEventWasEvicted() {
+        for (int i = 0; i < BUFFER_SIZE + 1; i++) {
+            testee.push(new TextMessage("{\"i\":" + i + "}"));
+        }
+
+        Attachment resumed = testee.attach(1).orElseThrow();
+
+        assertThat(receive(resumed.events(), BUFFER_SIZE)).containsExactly("{\"i\":1}", "{\"i\":2}", "{\"i\":3}");
+    }
+
+    @Test
+    void attachingShouldCompleteThePreviousConnection() {
+        Attachment first = testee.attach(0).orElseThrow();
+        testee.attach(0).orElseThrow();
+
+        assertThat(first.events().collectList().block(TIMEOUT)).isEmpty();
+    }
+
+    @Test
+    void streamShouldBeDetachedSinceTheLastGenerationOnly() {
+        Attachment first = testee.attach(0).orElseThrow();
+        testee.detach(first.generation());
+
+        assertThat(testee.isDetachedSince(first.generation())).isTrue();
+
+        Attachment second = testee.attach(0).orElseThrow();
+
+        assertThat(testee.isDetachedSince(first.generation())).isFalse();
+        assertThat(testee.isDetachedSince(second.generation())).isFalse();
+    }
+}
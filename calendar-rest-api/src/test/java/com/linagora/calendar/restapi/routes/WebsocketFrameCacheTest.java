@@ -0,0 +1,184 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.restapi.routes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.linagora.calendar.dav.SyncToken;
+import com.linagora.calendar.restapi.routes.WebSocketNotificationListener.AlarmMessage;
+import com.linagora.calendar.restapi.routes.WebSocketNotificationListener.CalendarChangeMessage;
+import com.linagora.calendar.restapi.routes.WebsocketRoute.TextMessage;
+import com.linagora.calendar.storage.CalendarURL;
+import com.linagora.calendar.storage.OpenPaaSId;
+
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.ResourceLeakDetector;
+
+class WebsocketFrameCacheTest {
+    private static final CalendarURL CALENDAR_URL = new CalendarURL(new OpenPaaSId("base-id"), new OpenPaaSId("calendar-id"));
+    private static final CalendarChangeMessage CALENDAR_CHANGE = new CalendarChangeMessage(CALENDAR_URL, new SyncToken("2"));
+
+    private static ResourceLeakDetector.Level previousLevel;
+
+    @BeforeAll
+    static void enableLeakDetection() {
+        previousLevel = ResourceLeakDetector.getLevel();
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+    }
+
+    @AfterAll
+    static void restoreLeakDetection() {
+        ResourceLeakDetector.setLevel(previousLevel);
+    }
+
+    private WebsocketFrameCache testee;
+
+    @BeforeEach
+    void setUp() {
+        testee = new WebsocketFrameCache();
+    }
+
+    @AfterEach
+    void tearDown() {
+        testee.invalidateAll();
+    }
+
+    private String text(WebSocketFrame frame) {
+        return ((TextWebSocketFrame) frame).text();
+    }
+
+    @Test
+    void frameShouldHoldSerializedMessage() throws Exception {
+        WebSocketFrame frame = testee.frameOf(CALENDAR_CHANGE);
+        try {
+            assertThat(text(frame)).isEqualTo(CALENDAR_CHANGE.serialize());
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    void equalMessagesShouldShareTheSameContent() throws Exception {
+        WebSocketFrame first = testee.frameOf(CALENDAR_CHANGE);
+        WebSocketFrame second = testee.frameOf(new CalendarChangeMessage(CALENDAR_URL, new SyncToken("2")));
+        try {
+            assertThat(first.content().unwrap()).isSameAs(second.content().unwrap());
+            assertThat(text(second)).isEqualTo(CALENDAR_CHANGE.serialize());
+        } finally {
+            first.release();
+            second.release();
+        }
+    }
+
+    @Test
+    void framesShouldHaveIndependentReaderIndexes() throws Exception {
+        WebSocketFrame first = testee.frameOf(CALENDAR_CHANGE);
+        WebSocketFrame second = testee.frameOf(CALENDAR_CHANGE);
+        try {
+            first.content().skipBytes(first.content().readableBytes());
+
+            assertThat(text(second)).isEqualTo(CALENDAR_CHANGE.serialize());
+        } finally {
+            first.release();
+            second.release();
+        }
+    }
+
+    @Test
+    void differentMessagesShouldNotShareContent() throws Exception {
+        WebSocketFrame first = testee.frameOf(CALENDAR_CHANGE);
+        WebSocketFrame second = testee.frameOf(new CalendarChangeMessage(CALENDAR_URL, new SyncToken("3")));
+        try {
+            assertThat(text(first)).isNotEqualTo(text(second));
+        } finally {
+            first.release();
+            second.release();
+        }
+    }
+
+    @Test
+    void nonShareableMessagesShouldNotBeCached() throws Exception {
+        TextMessage message = new TextMessage("{\"calendarListRegistered\":true}");
+        WebSocketFrame first = testee.frameOf(message);
+        WebSocketFrame second = testee.frameOf(message);
+        try {
+            assertThat(first.refCnt()).isEqualTo(1);
+            assertThat(second.refCnt()).isEqualTo(1);
+        } finally {
+            first.release();
+            second.release();
+        }
+    }
+
+    @Test
+    void cacheShouldHoldASingleReferenceOnceFramesAreReleased() {
+        List<WebSocketFrame> frames = IntStream.range(0, 100)
+            .mapToObj(any -> frameOf(CALENDAR_CHANGE))
+            .toList();
+        WebSocketFrame probe = frames.getFirst();
+
+        assertThat(probe.refCnt()).isEqualTo(101);
+
+        frames.forEach(WebSocketFrame::release);
+
+        assertThat(probe.refCnt()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidationShouldReleaseContent() throws Exception {
+        WebSocketFrame frame = testee.frameOf(CALENDAR_CHANGE);
+        frame.release();
+
+        testee.invalidateAll();
+
+        assertThat(frame.refCnt()).isZero();
+    }
+
+    @Test
+    void contentShouldOutliveInvalidationWhileFramesAreInFlight() throws Exception {
+        WebSocketFrame frame = testee.frameOf(new AlarmMessage("standup", "/calendars/base-id/calendar-id/standup.ics",
+            Instant.parse("2026-01-01T10:00:00Z")));
+
+        testee.invalidateAll();
+
+        assertThat(frame.refCnt()).isEqualTo(1);
+        assertThat(text(frame)).contains("standup");
+        frame.release();
+        assertThat(frame.refCnt()).isZero();
+    }
+
+    private WebSocketFrame frameOf(WebsocketRoute.WebsocketMessage message) {
+        try {
+            return testee.frameOf(message);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.restapi.routes;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.linagora.calendar.dav.SyncToken;
+import com.linagora.calendar.restapi.routes.WebSocketNotificationListener.CalendarChangeMessage;
+import com.linagora.calendar.storage.CalendarURL;
+import com.linagora.calendar.storage.OpenPaaSId;
+
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+/**
+ * Fans one calendar change out to every connection subscribed to the calendar, as each of their listeners would.
+ * Run with {@link #main(String[])}: the GC profiler reports the allocations per fan-out ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebsocketFrameFanOutBenchmark {
+    private static final CalendarURL CALENDAR_URL = new CalendarURL(new OpenPaaSId("659387b9d486dc0046aeff21"), new OpenPaaSId("659387b9d486dc0046aeff21"));
+
+    @Param({"10000"})
+    int connections;
+
+    private WebsocketFrameCache frameCache;
+    private long syncToken;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        frameCache = new WebsocketFrameCache();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        frameCache.invalidateAll();
+    }
+
+    private CalendarChangeMessage nextEvent() {
+        return new CalendarChangeMessage(CALENDAR_URL, new SyncToken("http://sabre.io/ns/sync/" + syncToken++));
+    }
+
+    @Benchmark
+    public void serializePerConnection(Blackhole blackhole) throws Exception {
+        CalendarChangeMessage event = nextEvent();
+        for (int i = 0; i < connections; i++) {
+            CalendarChangeMessage message = new CalendarChangeMessage(event.calendarURL(), event.syncToken());
+            WebSocketFrame frame = message.asWebSocketFrame();
+            blackhole.consume(frame);
+            frame.release();
+        }
+    }
+
+    @Benchmark
+    public void shareFrame(Blackhole blackhole) throws Exception {
+        CalendarChangeMessage event = nextEvent();
+        for (int i = 0; i < connections; i++) {
+            CalendarChangeMessage message = new CalendarChangeMessage(event.calendarURL(), event.syncToken());
+            WebSocketFrame frame = frameCache.frameOf(message);
+            blackhole.consume(frame);
+            frame.release();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(WebsocketFrameFanOutBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build())
+            .run();
+    }
+}
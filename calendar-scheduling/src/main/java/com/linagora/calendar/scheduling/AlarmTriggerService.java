@@ -48,6 +48,7 @@ import org.slf4j.LoggerFactory;
 import com.linagora.calendar.api.CalendarUtil;
 import com.linagora.calendar.smtp.Mail;
 import com.linagora.calendar.smtp.MailSender;
+import com.linagora.calendar.smtp.SmtpModule;
 import com.linagora.calendar.smtp.template.Language;
 import com.linagora.calendar.smtp.template.MailTemplateConfiguration;
 import com.linagora.calendar.smtp.template.MessageGenerator;
@@ -56,7 +57,9 @@ import com.linagora.calendar.smtp.template.content.model.AlarmContentModelBuilde
 import com.linagora.calendar.smtp.template.content.model.PersonModel;
 import com.linagora.calendar.storage.AlarmEvent;
 import com.linagora.calendar.storage.AlarmEventDAO;
+import com.linagora.calendar.storage.AlarmOutbox;
 import com.linagora.calendar.storage.EventBusAlarmEvent;
+import com.linagora.calendar.storage.PresenceRegistry;
 import com.linagora.calendar.storage.UsernameRegistrationKey;
 import com.linagora.calendar.storage.configuration.resolver.SettingsBasedResolver;
 import com.linagora.calendar.storage.event.AlarmAction;
@@ -90,17 +93,21 @@ public class AlarmTriggerService {
     private final MaybeSender maybeSender;
     private final MailAddress senderAddress;
     private final EventBus eventBus;
+    private final AlarmOutbox alarmOutbox;
+    private final PresenceRegistry presenceRegistry;
 
     @Inject
     @Singleton
     public AlarmTriggerService(AlarmEventDAO alarmEventDAO,
                                Clock clock,
-                               MailSender.Factory mailSenderFactory,
+                               @Named(SmtpModule.PRIORITY) MailSender.Factory mailSenderFactory,
                                @Named("alarm") SettingsBasedResolver settingsResolver,
                                MessageGenerator.Factory messageGeneratorFactory,
                                AlarmInstantFactory alarmInstantFactory,
                                MailTemplateConfiguration mailTemplateConfiguration,
-                               EventBus eventBus) {
+                               EventBus eventBus,
+                               AlarmOutbox alarmOutbox,
+                               PresenceRegistry presenceRegistry) {
         this.alarmEventDAO = alarmEventDAO;
         this.clock = clock;
         this.mailSenderFactory = mailSenderFactory;
@@ -111,6 +118,8 @@ public class AlarmTriggerService {
         this.senderAddress = maybeSender.asOptional()
             .orElseThrow(() -> new IllegalArgumentException("Sender address must not be empty"));
         this.eventBus = eventBus;
+        this.alarmOutbox = alarmOutbox;
+        this.presenceRegistry = presenceRegistry;
     }
 
     public Mono<Void> sendAlarmAndCleanup(AlarmEvent alarmEvent) {
@@ -147,7 +156,23 @@ public class AlarmTriggerService {
             alarmEvent.eventStartTime());
 
         UsernameRegistrationKey registrationKey = new UsernameRegistrationKey(recipientUser);
-        return Mono.from(eventBus.dispatch(eventBusAlarmEvent, registrationKey));
+        return alarmOutbox.append(eventBusAlarmEvent)
+            .onErrorResume(error -> {
+                LOGGER.warn("Failed to append display alarm of event {} to the outbox of {}, it will not be replayable",
+                    alarmEvent.eventUid().value(), recipientUser.asString(), error);
+                return Mono.just(eventBusAlarmEvent);
+            })
+            .filterWhen(any -> isOnline(recipientUser))
+            .flatMap(event -> Mono.from(eventBus.dispatch(event, registrationKey)));
+    }
+
+    // Offline users will get the alarm replayed from the outbox once they reconnect
+    private Mono<Boolean> isOnline(Username username) {
+        return presenceRegistry.isOnline(username)
+            .onErrorResume(error -> {
+                LOGGER.warn("Failed to check the presence of {}, dispatching the display alarm anyway", username.asString(), error);
+                return Mono.just(true);
+            });
     }
 
     private Mono<Void> cleanup(AlarmEvent alarmEvent) {
@@ -75,7 +75,10 @@ import com.linagora.calendar.smtp.template.MailTemplateConfiguration;
 import com.linagora.calendar.smtp.template.MessageGenerator;
 import com.linagora.calendar.storage.AlarmEvent;
 import com.linagora.calendar.storage.MemoryAlarmEventDAO;
+import com.linagora.calendar.storage.MemoryAlarmOutbox;
 import com.linagora.calendar.storage.MemoryOpenPaaSUserDAO;
+import com.linagora.calendar.storage.MemoryPresenceRegistry;
+import com.linagora.calendar.storage.configuration.AlarmOutboxConfiguration;
 import com.linagora.calendar.storage.configuration.resolver.SettingsBasedResolver;
 import com.linagora.calendar.storage.event.AlarmAction;
 import com.linagora.calendar.storage.event.AlarmInstantFactory;
@@ -149,7 +152,9 @@ public class AlarmTriggerServiceTest {
             messageGeneratorFactory,
             new AlarmInstantFactory.Default(clock),
             mailTemplateConfig,
-            new InVMEventBus(new InVmEventDelivery(new RecordingMetricFactory()), RETRY_BACKOFF_CONFIGURATION, new MemoryEventDeadLetters())
+            new InVMEventBus(new InVmEventDelivery(new RecordingMetricFactory()), RETRY_BACKOFF_CONFIGURATION, new MemoryEventDeadLetters()),
+            new MemoryAlarmOutbox(clock, AlarmOutboxConfiguration.DEFAULT),
+            new MemoryPresenceRegistry()
         );
 
         requestSpecification = new RequestSpecBuilder()
@@ -53,7 +53,10 @@ import com.linagora.calendar.smtp.template.MessageGenerator;
 import com.linagora.calendar.storage.AlarmEventDAO;
 import com.linagora.calendar.storage.AlarmEventLeaseProvider;
 import com.linagora.calendar.storage.MemoryAlarmEventDAO;
+import com.linagora.calendar.storage.MemoryAlarmOutbox;
 import com.linagora.calendar.storage.MemoryOpenPaaSUserDAO;
+import com.linagora.calendar.storage.MemoryPresenceRegistry;
+import com.linagora.calendar.storage.configuration.AlarmOutboxConfiguration;
 import com.linagora.calendar.storage.configuration.resolver.SettingsBasedResolver;
 import com.linagora.calendar.storage.event.AlarmInstantFactory;
 
@@ -110,7 +113,9 @@ public class MemoryAlarmEventSchedulerTest implements AlarmEventSchedulerContrac
             messageGeneratorFactory,
             new AlarmInstantFactory.Default(clock),
             mailTemplateConfig,
-            new InVMEventBus(new InVmEventDelivery(new RecordingMetricFactory()), RETRY_BACKOFF_CONFIGURATION, new MemoryEventDeadLetters()));
+            new InVMEventBus(new InVmEventDelivery(new RecordingMetricFactory()), RETRY_BACKOFF_CONFIGURATION, new MemoryEventDeadLetters()),
+            new MemoryAlarmOutbox(clock, AlarmOutboxConfiguration.DEFAULT),
+            new MemoryPresenceRegistry());
 
         AlarmEventSchedulerConfiguration alarmEventSchedulerConfiguration = new AlarmEventSchedulerConfiguration(
             Duration.ofSeconds(1),
@@ -52,7 +52,10 @@ import com.linagora.calendar.smtp.template.MailTemplateConfiguration;
 import com.linagora.calendar.smtp.template.MessageGenerator;
 import com.linagora.calendar.storage.AlarmEventDAO;
 import com.linagora.calendar.storage.AlarmEventLeaseProvider;
+import com.linagora.calendar.storage.MemoryAlarmOutbox;
+import com.linagora.calendar.storage.MemoryPresenceRegistry;
 import com.linagora.calendar.storage.OpenPaaSUserDAO;
+import com.linagora.calendar.storage.configuration.AlarmOutboxConfiguration;
 import com.linagora.calendar.storage.configuration.resolver.SettingsBasedResolver;
 import com.linagora.calendar.storage.event.AlarmInstantFactory;
 import com.linagora.calendar.storage.mongodb.DockerMongoDBExtension;
@@ -121,7 +124,9 @@ public class MongoDBAlarmEventSchedulerTest implements AlarmEventSchedulerContra
             messageGeneratorFactory,
             new AlarmInstantFactory.Default(clock),
             mailTemplateConfig,
-            new InVMEventBus(new InVmEventDelivery(new RecordingMetricFactory()), RETRY_BACKOFF_CONFIGURATION, new MemoryEventDeadLetters()));
+            new InVMEventBus(new InVmEventDelivery(new RecordingMetricFactory()), RETRY_BACKOFF_CONFIGURATION, new MemoryEventDeadLetters()),
+            new MemoryAlarmOutbox(clock, AlarmOutboxConfiguration.DEFAULT),
+            new MemoryPresenceRegistry());
 
         AlarmEventSchedulerConfiguration alarmEventSchedulerConfiguration = new AlarmEventSchedulerConfiguration(
             Duration.ofSeconds(1),
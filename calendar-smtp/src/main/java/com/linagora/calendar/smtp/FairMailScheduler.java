@@ -0,0 +1,309 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.james.core.Domain;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Schedules the outbound mails of the tenants so that one of them can not starve the others.
+ *
+ * <p>At most {@link MailSenderConfiguration.FairQueueing#concurrency()} mails are sent at once. When a sending slot
+ * frees up, it goes to the {@link Lane#PRIORITY} lane if a mail waits there. Otherwise the tenants with waiting mails
+ * are served in a weighted round robin: each turn a tenant sends up to its weight mails. A tenant also holds a token
+ * bucket refilled at {@link MailSenderConfiguration.FairQueueing#domainRate()}: a tenant out of tokens is skipped until
+ * its bucket refills, which bounds the rate at which its mass import or booking campaign reaches the relay. The
+ * priority lane is not subject to the tenant buckets.
+ *
+ * <p>A tenant whose queue is empty and whose bucket is full is forgotten: it would be recreated in the same state.
+ */
+public class FairMailScheduler {
+    public enum Lane {
+        PRIORITY,
+        NORMAL
+    }
+
+    private static class Task {
+        private final Sinks.Empty<Void> permit = Sinks.empty();
+        // Empty for the priority lane
+        private final Optional<TenantQueue> tenant;
+        private boolean granted;
+        private boolean done;
+
+        Task(Optional<TenantQueue> tenant) {
+            this.tenant = tenant;
+        }
+    }
+
+    private static class TokenBucket {
+        private final double rate;
+        private final int capacity;
+        private double tokens;
+        private long lastRefillNanos;
+
+        TokenBucket(double rate, int capacity, long nowNanos) {
+            this.rate = rate;
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.lastRefillNanos = nowNanos;
+        }
+
+        boolean tryAcquire(long nowNanos) {
+            refill(nowNanos);
+            if (tokens >= 1) {
+                tokens--;
+                return true;
+            }
+            return false;
+        }
+
+        boolean full(long nowNanos) {
+            refill(nowNanos);
+            return tokens >= capacity;
+        }
+
+        Duration untilNextToken(long nowNanos) {
+            refill(nowNanos);
+            if (tokens >= 1) {
+                return Duration.ZERO;
+            }
+            return Duration.ofNanos((long) Math.ceil((1 - tokens) / rate * 1_000_000_000));
+        }
+
+        private void refill(long nowNanos) {
+            tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) * rate / 1_000_000_000);
+            lastRefillNanos = nowNanos;
+        }
+    }
+
+    private static class TenantQueue {
+        private final Domain domain;
+        private final int weight;
+        private final TokenBucket bucket;
+        private final Deque<Task> tasks = new ArrayDeque<>();
+        private int credit;
+
+        TenantQueue(Domain domain, int weight, TokenBucket bucket) {
+            this.domain = domain;
+            this.weight = weight;
+            this.bucket = bucket;
+        }
+    }
+
+    private record IdleTenant(TenantQueue tenant, long idleSinceNanos) {
+    }
+
+    private final MailSenderConfiguration.FairQueueing configuration;
+    private final Clock clock;
+    private final long bucketRefillNanos;
+    private final Deque<Task> priorityLane = new ArrayDeque<>();
+    private final Map<Domain, TenantQueue> tenants = new HashMap<>();
+    private final Deque<TenantQueue> roundRobin = new ArrayDeque<>();
+    // Tenants whose queue emptied, oldest first
+    private final Deque<IdleTenant> idleTenants = new ArrayDeque<>();
+    private int inFlight;
+    private boolean wakeUpScheduled;
+
+    public FairMailScheduler(MailSenderConfiguration.FairQueueing configuration, Clock clock) {
+        this.configuration = configuration;
+        this.clock = clock;
+        this.bucketRefillNanos = (long) Math.ceil(configuration.domainBurst() / configuration.domainRate() * 1_000_000_000);
+    }
+
+    /**
+     * @param domain the tenant the mail is sent on behalf of, empty for the mails of no tenant, which are not rate limited
+     * @return the result of {@code send}, subscribed once a sending slot was granted to it
+     */
+    public <T> Mono<T> schedule(Lane lane, Optional<Domain> domain, Mono<T> send) {
+        return Mono.defer(() -> {
+            Task task = enqueue(lane, domain);
+            drain();
+            return task.permit.asMono()
+                .then(send)
+                .doFinally(signal -> release(task));
+        });
+    }
+
+    @VisibleForTesting
+    synchronized int pending() {
+        return priorityLane.size() + roundRobin.stream().mapToInt(tenant -> tenant.tasks.size()).sum();
+    }
+
+    @VisibleForTesting
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    @VisibleForTesting
+    synchronized int tenantCount() {
+        return tenants.size();
+    }
+
+    private synchronized Task enqueue(Lane lane, Optional<Domain> domain) {
+        if (lane == Lane.PRIORITY) {
+            Task task = new Task(Optional.empty());
+            priorityLane.addLast(task);
+            return task;
+        }
+        forgetIdleTenants();
+        TenantQueue tenant = tenants.computeIfAbsent(domain.orElse(null), this::newTenant);
+        Task task = new Task(Optional.of(tenant));
+        if (tenant.tasks.isEmpty()) {
+            tenant.credit = tenant.weight;
+            roundRobin.addLast(tenant);
+        }
+        tenant.tasks.addLast(task);
+        return task;
+    }
+
+    /**
+     * A tenant idle for the time its bucket takes to refill has a full bucket, unless it sent mails since, in which case
+     * it was marked idle again later.
+     */
+    private void forgetIdleTenants() {
+        long now = nanoTime();
+        while (!idleTenants.isEmpty() && now - idleTenants.peekFirst().idleSinceNanos() >= bucketRefillNanos) {
+            TenantQueue tenant = idleTenants.pollFirst().tenant();
+            if (tenant.tasks.isEmpty() && tenant.bucket.full(now)) {
+                tenants.remove(tenant.domain, tenant);
+            }
+        }
+    }
+
+    private void markIdle(TenantQueue tenant) {
+        idleTenants.addLast(new IdleTenant(tenant, nanoTime()));
+    }
+
+    private TenantQueue newTenant(Domain domain) {
+        int weight = Optional.ofNullable(domain).map(configuration::weight).orElse(MailSenderConfiguration.FairQueueing.WEIGHT_DEFAULT);
+        return new TenantQueue(domain, weight, new TokenBucket(configuration.domainRate(), configuration.domainBurst(), nanoTime()));
+    }
+
+    private void release(Task task) {
+        synchronized (this) {
+            if (task.done) {
+                return;
+            }
+            task.done = true;
+            if (task.granted) {
+                inFlight--;
+            } else {
+                // Cancelled while waiting
+                priorityLane.remove(task);
+                task.tenant.ifPresent(tenant -> {
+                    tenant.tasks.remove(task);
+                    if (tenant.tasks.isEmpty()) {
+                        roundRobin.remove(tenant);
+                        markIdle(tenant);
+                    }
+                });
+            }
+        }
+        drain();
+    }
+
+    private void drain() {
+        List<Task> granted = grant();
+        granted.forEach(task -> task.permit.tryEmitEmpty());
+    }
+
+    private synchronized List<Task> grant() {
+        ImmutableList.Builder<Task> granted = ImmutableList.builder();
+        while (inFlight < configuration.concurrency()) {
+            Optional<Task> next = Optional.ofNullable(priorityLane.pollFirst())
+                .or(this::nextFairTask);
+            if (next.isEmpty()) {
+                break;
+            }
+            next.get().granted = true;
+            inFlight++;
+            granted.add(next.get());
+        }
+        if (inFlight < configuration.concurrency() && !roundRobin.isEmpty()) {
+            scheduleWakeUp();
+        }
+        return granted.build();
+    }
+
+    /**
+     * Serves the tenant at the head of the round robin while it has credit and tokens left, then moves on to the next.
+     */
+    private Optional<Task> nextFairTask() {
+        long now = nanoTime();
+        for (int visited = 0; visited < roundRobin.size(); visited++) {
+            TenantQueue head = roundRobin.peekFirst();
+            if (head.credit > 0 && (head.domain == null || head.bucket.tryAcquire(now))) {
+                head.credit--;
+                Task task = head.tasks.pollFirst();
+                if (head.tasks.isEmpty()) {
+                    roundRobin.pollFirst();
+                    markIdle(head);
+                } else if (head.credit == 0) {
+                    rotate();
+                }
+                return Optional.of(task);
+            }
+            rotate();
+        }
+        return Optional.empty();
+    }
+
+    private void rotate() {
+        TenantQueue head = roundRobin.pollFirst();
+        head.credit = head.weight;
+        roundRobin.addLast(head);
+    }
+
+    private void scheduleWakeUp() {
+        if (wakeUpScheduled) {
+            return;
+        }
+        wakeUpScheduled = true;
+        long now = nanoTime();
+        Duration delay = roundRobin.stream()
+            .map(tenant -> tenant.bucket.untilNextToken(now))
+            .min(Duration::compareTo)
+            .orElse(Duration.ZERO);
+        Mono.delay(delay.plusMillis(1))
+            .subscribe(any -> {
+                synchronized (this) {
+                    wakeUpScheduled = false;
+                }
+                drain();
+            });
+    }
+
+    private long nanoTime() {
+        return clock.millis() * 1_000_000;
+    }
+}
@@ -18,29 +18,35 @@
 
 package com.linagora.calendar.smtp;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.Writer;
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
 import java.security.cert.X509Certificate;
 import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 import javax.net.ssl.X509TrustManager;
 
 import jakarta.inject.Inject;
 
 import org.apache.commons.net.smtp.AuthenticatingSMTPClient;
-import org.apache.commons.net.smtp.SMTPClient;
+import org.apache.commons.net.smtp.SMTPCommand;
 import org.apache.commons.net.smtp.SMTPReply;
+import org.apache.james.core.Domain;
 import org.apache.james.core.MailAddress;
-import org.apache.james.mime4j.message.DefaultMessageWriter;
+import org.apache.james.mime4j.dom.address.Mailbox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.fge.lambdas.Throwing;
 import com.google.common.collect.ImmutableList;
+import com.linagora.calendar.smtp.template.PreEncodedMessageWriter;
+import com.linagora.calendar.storage.spool.OutboundMailSpool;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 import reactor.util.retry.Retry;
@@ -52,6 +58,22 @@ public interface MailSender {
 
     Mono<Void> send(Collection<Mail> mails);
 
+    /**
+     * Sends a single mail transaction and reports the recipients the server rejected at 'rcpt to' time. The mail is
+     * still delivered to the accepted ones; a transaction in which every recipient is rejected fails as {@link #send(Mail)}.
+     */
+    Mono<List<MailAddress>> sendReportingRejectedRecipients(Mail mail);
+
+    /**
+     * A batch fails, with its first failure, only when every mail it sent failed. Otherwise the failures were logged and
+     * the batch succeeds.
+     */
+    private static void throwIfAllFailed(List<Exception> exceptions, int sentCount) throws Exception {
+        if (sentCount > 0 && exceptions.size() == sentCount) {
+            throw exceptions.getFirst();
+        }
+    }
+
     interface Factory {
         Mono<MailSender> create();
 
@@ -92,47 +114,108 @@ public interface MailSender {
             }
 
             public Mono<MailSender> create() {
-                return Mono.<MailSender>fromCallable(() -> {
-                    AuthenticatingSMTPClient authClient = new AuthenticatingSMTPClient(DEFAULT_PROTOCOL,
-                        configuration.sslEnabled(),
-                        UTF_8_ENCODING);
+                return Mono.<MailSender>fromCallable(() -> new MailSender.Default(connect(configuration), configuration, eventEmailFilter))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .retryWhen(RETRY_CONNECT);
+            }
 
-                    if (configuration.trustAllCerts()) {
-                        authClient.setTrustManager(TRUST_ALL);
-                    }
+            static StreamingSmtpClient connect(MailSenderConfiguration configuration) throws IOException {
+                StreamingSmtpClient authClient = new StreamingSmtpClient(DEFAULT_PROTOCOL,
+                    configuration.sslEnabled(),
+                    UTF_8_ENCODING);
 
-                    // Connect
-                    authClient.connect(configuration.host(), configuration.port().getValue());
+                if (configuration.trustAllCerts()) {
+                    authClient.setTrustManager(TRUST_ALL);
+                }
+
+                // Connect
+                authClient.connect(configuration.host(), configuration.port().getValue());
 
-                    // StartTLS if needed
-                    if (configuration.startTlsEnabled()) {
-                        authClient.execTLS();
-                        if (!SMTPReply.isPositiveCompletion(authClient.getReplyCode())) {
-                            throw new SmtpSendingFailedException("'starttls' failed: " + authClient.getReplyString());
-                        }
+                // StartTLS if needed
+                if (configuration.startTlsEnabled()) {
+                    authClient.execTLS();
+                    if (!SMTPReply.isPositiveCompletion(authClient.getReplyCode())) {
+                        throw new SmtpSendingFailedException("'starttls' failed: " + authClient.getReplyString());
+                    }
+                }
+                // AUTH
+                configuration.username().ifPresent(Throwing.consumer(username -> {
+                    String password = configuration.password().get();
+                    authClient.auth(AuthenticatingSMTPClient.AUTH_METHOD.PLAIN, username.asString(), password);
+                    if (!SMTPReply.isPositiveCompletion(authClient.getReplyCode())) {
+                        throw new SmtpSendingFailedException("'auth' failed: " + authClient.getReplyString());
                     }
-                    // AUTH
-                    configuration.username().ifPresent(Throwing.consumer(username -> {
-                        String password = configuration.password().get();
-                        authClient.auth(AuthenticatingSMTPClient.AUTH_METHOD.PLAIN, username.asString(), password);
-                        if (!SMTPReply.isPositiveCompletion(authClient.getReplyCode())) {
-                            throw new SmtpSendingFailedException("'auth' failed: " + authClient.getReplyString());
-                        }
-                    }));
-                    return new MailSender.Default(authClient, configuration, eventEmailFilter);
-                })
-                .subscribeOn(Schedulers.boundedElastic())
-                .retryWhen(RETRY_CONNECT);
+                }));
+                return authClient;
+            }
+        }
+
+        /**
+         * Sends through the long lived connections of a {@link SmtpConnectionPool}.
+         */
+        class Pooled implements Factory {
+            private final MailSender sender;
+
+            public Pooled(SmtpConnectionPool pool, EventEmailFilter eventEmailFilter) {
+                this.sender = new MailSender.Pooled(pool, eventEmailFilter);
+            }
+
+            @Override
+            public Mono<MailSender> create() {
+                return Mono.just(sender);
+            }
+        }
+
+        /**
+         * Sends through the given factory once the {@link FairMailScheduler} grants the mail a sending slot.
+         */
+        class FairQueued implements Factory {
+            private final MailSender sender;
+
+            public FairQueued(Factory delegate, FairMailScheduler scheduler, FairMailScheduler.Lane lane) {
+                this.sender = new MailSender.FairQueued(delegate, scheduler, lane);
+            }
+
+            @Override
+            public Mono<MailSender> create() {
+                return Mono.just(sender);
+            }
+        }
+
+        /**
+         * Enqueues mails in the {@link OutboundMailSpool} instead of sending them: delivery is left to the
+         * {@link SmtpSpoolDispatcher}.
+         */
+        class Spooled implements Factory {
+            private final MailSender sender;
+
+            public Spooled(OutboundMailSpool spool) {
+                this.sender = new MailSender.Spooled(spool);
+            }
+
+            @Override
+            public Mono<MailSender> create() {
+                return Mono.just(sender);
             }
         }
     }
 
+    /**
+     * Sends over a single SMTP connection.
+     *
+     * <p>The message is serialized straight into the connection rather than into an intermediate buffer: with 'bdat'
+     * chunks when the server advertises CHUNKING, otherwise with a dot-stuffed 'data' command. It is declared 8 bit
+     * ('BODY=8BITMIME') when the server advertises 8BITMIME.
+     */
     class Default implements MailSender {
-        private final SMTPClient client;
+        static final int CHUNK_SIZE = 64 * 1024;
+        private static final int BUFFER_SIZE = 8 * 1024;
+
+        private final StreamingSmtpClient client;
         private final MailSenderConfiguration configuration;
         private final EventEmailFilter eventEmailFilter;
 
-        public Default(SMTPClient client, MailSenderConfiguration configuration, EventEmailFilter eventEmailFilter) {
+        public Default(StreamingSmtpClient client, MailSenderConfiguration configuration, EventEmailFilter eventEmailFilter) {
             this.client = client;
             this.configuration = configuration;
             this.eventEmailFilter = eventEmailFilter;
@@ -140,37 +223,44 @@ public interface MailSender {
 
         @Override
         public Mono<Void> send(Mail mail) {
-            return Mono.<Void>fromRunnable(Throwing.runnable(() -> {
+            return sendReportingRejectedRecipients(mail).then();
+        }
+
+        @Override
+        public Mono<List<MailAddress>> sendReportingRejectedRecipients(Mail mail) {
+            return Mono.fromCallable(() -> {
                 try {
-                    eventEmailFilter.filterRecipients(mail).ifPresent(Throwing.consumer(this::sendMailTransaction));
+                    return eventEmailFilter.filterRecipients(mail)
+                        .map(Throwing.function(this::sendMailTransaction))
+                        .orElse(ImmutableList.of());
                 } finally {
                     disconnect();
                 }
-            })).subscribeOn(Schedulers.boundedElastic());
+            }).subscribeOn(Schedulers.boundedElastic());
         }
 
         @Override
         public Mono<Void> send(Collection<Mail> mails) {
             return Mono.<Void>fromRunnable(Throwing.runnable(() -> {
+                List<Mail> updatedMails = mails.stream()
+                    .flatMap(mail -> eventEmailFilter.filterRecipients(mail).stream())
+                    .toList();
                 ImmutableList.Builder<Exception> exceptionBuilder = new ImmutableList.Builder<>();
-                mails.forEach(mail -> eventEmailFilter.filterRecipients(mail).ifPresent(Throwing.consumer(updatedMail -> {
+                for (Mail updatedMail : updatedMails) {
                     try {
                         sendMailTransaction(updatedMail);
                     } catch (Exception e) {
                         LOGGER.warn("Sending email failed", e);
                         exceptionBuilder.add(e);
                     }
-                    boolean reset = client.reset();
+                    boolean reset = client.isConnected() && client.reset();
                     if (!reset) {
                         throw new SmtpSendingFailedException("Failure to reset SMTP client: " + client.getReplyString());
                     }
-                })));
+                }
                 disconnect();
 
-                List<Exception> exceptions = exceptionBuilder.build();
-                if (exceptions.size() == mails.size()) {
-                    throw exceptions.getFirst();
-                }
+                throwIfAllFailed(exceptionBuilder.build(), updatedMails.size());
             })).subscribeOn(Schedulers.boundedElastic());
         }
 
@@ -181,48 +271,283 @@ public interface MailSender {
             }
         }
 
-        private void sendMailTransaction(Mail mail) throws IOException {
-            int heloCode = client.helo(configuration.ehlo());
-            if (!SMTPReply.isPositiveCompletion(heloCode)) {
-                throw new SmtpSendingFailedException("'helo' failed: " + client.getReplyString());
+        List<MailAddress> sendMailTransaction(Mail mail) throws IOException {
+            StreamingSmtpClient.Extensions extensions = client.hello(configuration.ehlo());
+
+            String reversePath = "<" + mail.sender().asString("") + ">";
+            if (extensions.eightBitMime()) {
+                reversePath += " BODY=8BITMIME";
+            }
+            if (extensions.pipelining()) {
+                return sendPipelinedTransaction(mail, reversePath, extensions);
+            }
+            if (!SMTPReply.isPositiveCompletion(client.mail(reversePath))) {
+                throw new SmtpSendingFailedException("'mail from' failed: " + client.getReplyString(), client.getReplyCode());
             }
 
-            client.setSender(mail.sender().asString(""));
-            if (!SMTPReply.isPositiveCompletion(client.getReplyCode())) {
-                throw new SmtpSendingFailedException("'mail from' failed: " + client.getReplyString());
+            List<MailAddress> rejectedRecipients = addRecipients(mail);
+            if (extensions.chunking()) {
+                sendMessageChunks(mail);
+            } else {
+                sendMessageData(mail);
             }
+            return rejectedRecipients;
+        }
 
-            addRecipients(mail);
-            sendMessageData(mail);
+        /**
+         * Sends 'mail from', every 'rcpt to' and 'data' (unless the message is sent in chunks) in a single write, instead
+         * of a network round trip per command, then maps their replies.
+         */
+        private List<MailAddress> sendPipelinedTransaction(Mail mail, String reversePath, StreamingSmtpClient.Extensions extensions) throws IOException {
+            ImmutableList.Builder<String> commands = ImmutableList.builder();
+            commands.add("MAIL FROM:" + reversePath);
+            mail.recipients().forEach(recipient -> commands.add("RCPT TO:<" + recipient.asString() + ">"));
+            if (!extensions.chunking()) {
+                commands.add("DATA");
+            }
+            List<StreamingSmtpClient.Reply> replies = client.pipeline(commands.build());
+            Optional<StreamingSmtpClient.Reply> dataReply = Optional.of(replies.getLast())
+                .filter(any -> !extensions.chunking());
+
+            StreamingSmtpClient.Reply mailReply = replies.getFirst();
+            if (!mailReply.positiveCompletion()) {
+                abortData(dataReply);
+                throw new SmtpSendingFailedException("'mail from' failed: " + mailReply.text(), mailReply.code());
+            }
 
-            if (!client.completePendingCommand()) {
-                throw new SmtpSendingFailedException("'data' command failed: " + client.getReplyString());
+            ImmutableList.Builder<MailAddress> rejectedRecipients = ImmutableList.builder();
+            int successfullRecipientCount = 0;
+            for (int i = 0; i < mail.recipients().size(); i++) {
+                MailAddress recipient = mail.recipients().get(i);
+                StreamingSmtpClient.Reply recipientReply = replies.get(i + 1);
+                if (!recipientReply.positiveCompletion()) {
+                    LOGGER.warn("'rcpr to' command failed for {}: {}", recipient.asString(), recipientReply.text());
+                    rejectedRecipients.add(recipient);
+                } else {
+                    successfullRecipientCount++;
+                }
+            }
+            if (successfullRecipientCount == 0) {
+                abortData(dataReply);
+                StreamingSmtpClient.Reply lastRecipientReply = replies.get(mail.recipients().size());
+                throw new SmtpSendingFailedException("All 'rcpt to' commands failed: " + lastRecipientReply.text(), lastRecipientReply.code());
+            }
+
+            if (dataReply.isEmpty()) {
+                sendMessageChunks(mail);
+            } else if (dataReply.get().positiveIntermediate()) {
+                writeMessageData(mail);
+            } else {
+                throw new SmtpSendingFailedException("'data' command failed: " + dataReply.get().text(), dataReply.get().code());
+            }
+            return rejectedRecipients.build();
+        }
+
+        // A server accepting 'data' despite the transaction failure expects a message: send an empty one, which it rejects
+        private void abortData(Optional<StreamingSmtpClient.Reply> dataReply) throws IOException {
+            if (dataReply.map(StreamingSmtpClient.Reply::positiveIntermediate).orElse(false)) {
+                new SmtpDataOutputStream(client.rawOutputStream()).close();
+                client.getReply();
             }
         }
 
         private void sendMessageData(Mail mail) throws IOException {
-            DefaultMessageWriter defaultMessageWriter = new DefaultMessageWriter();
-            try (java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream()) {
-                defaultMessageWriter.writeMessage(mail.message(), baos);
-                try (Writer writer = client.sendMessageData()) {
-                    writer.write(baos.toString(StandardCharsets.UTF_8));
-                }
+            if (!SMTPReply.isPositiveIntermediate(client.sendCommand(SMTPCommand.DATA))) {
+                throw new SmtpSendingFailedException("'data' command failed: " + client.getReplyString(), client.getReplyCode());
+            }
+            writeMessageData(mail);
+        }
+
+        private void writeMessageData(Mail mail) throws IOException {
+            writeMessage(mail, new SmtpDataOutputStream(new BufferedOutputStream(client.rawOutputStream(), BUFFER_SIZE)));
+            if (!SMTPReply.isPositiveCompletion(client.getReply())) {
+                throw new SmtpSendingFailedException("'data' command failed: " + client.getReplyString(), client.getReplyCode());
             }
         }
 
-        private void addRecipients(Mail mail) throws IOException {
+        private void sendMessageChunks(Mail mail) throws IOException {
+            writeMessage(mail, new SmtpChunkingOutputStream(client.rawOutputStream(), CHUNK_SIZE, this::awaitChunkAcknowledgement));
+        }
+
+        /**
+         * Closing the framing stream terminates the message, with "CRLF.CRLF" or with the 'last' chunk. When writing the
+         * message fails, the stream is not closed: the connection is dropped instead, so that the server discards the
+         * truncated message rather than accepting it.
+         */
+        private void writeMessage(Mail mail, OutputStream framing) throws IOException {
+            try {
+                new PreEncodedMessageWriter().writeMessage(mail.message(), framing);
+            } catch (SmtpSendingFailedException e) {
+                // A rejected chunk: the server ended the transaction itself, the connection remains usable
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                client.disconnect();
+                throw e;
+            }
+            framing.close();
+        }
+
+        private void awaitChunkAcknowledgement() throws IOException {
+            if (!SMTPReply.isPositiveCompletion(client.getReply())) {
+                throw new SmtpSendingFailedException("'bdat' command failed: " + client.getReplyString(), client.getReplyCode());
+            }
+        }
+
+        private List<MailAddress> addRecipients(Mail mail) throws IOException {
+            ImmutableList.Builder<MailAddress> rejectedRecipients = ImmutableList.builder();
             int successfullRecipientCount = 0;
             for (MailAddress recipient : mail.recipients()) {
                 client.addRecipient(recipient.asString());
                 if (!SMTPReply.isPositiveCompletion(client.getReplyCode())) {
                     LOGGER.warn("'rcpr to' command failed for {}: {}", recipient.asString(), client.getReplyString());
+                    rejectedRecipients.add(recipient);
                 } else {
                     successfullRecipientCount++;
                 }
             }
             if (successfullRecipientCount == 0) {
-                throw new SmtpSendingFailedException("All 'rcpt to' commands failed: " + client.getReplyString());
+                throw new SmtpSendingFailedException("All 'rcpt to' commands failed: " + client.getReplyString(), client.getReplyCode());
+            }
+            return rejectedRecipients.build();
+        }
+    }
+
+    class Pooled implements MailSender {
+        private final SmtpConnectionPool pool;
+        private final EventEmailFilter eventEmailFilter;
+
+        public Pooled(SmtpConnectionPool pool, EventEmailFilter eventEmailFilter) {
+            this.pool = pool;
+            this.eventEmailFilter = eventEmailFilter;
+        }
+
+        @Override
+        public Mono<Void> send(Mail mail) {
+            return sendReportingRejectedRecipients(mail).then();
+        }
+
+        @Override
+        public Mono<List<MailAddress>> sendReportingRejectedRecipients(Mail mail) {
+            return Mono.defer(() -> Mono.justOrEmpty(eventEmailFilter.filterRecipients(mail)))
+                .flatMap(updatedMail -> pool.withConnection(connection -> connection.send(updatedMail)))
+                .defaultIfEmpty(ImmutableList.of());
+        }
+
+        @Override
+        public Mono<Void> send(Collection<Mail> mails) {
+            return Mono.defer(() -> sendAll(mails));
+        }
+
+        private Mono<Void> sendAll(Collection<Mail> mails) {
+            List<Mail> updatedMails = mails.stream()
+                .flatMap(mail -> eventEmailFilter.filterRecipients(mail).stream())
+                .toList();
+            if (updatedMails.isEmpty()) {
+                return Mono.empty();
+            }
+            return pool.<Void>withConnection(connection -> {
+                ImmutableList.Builder<Exception> exceptionBuilder = new ImmutableList.Builder<>();
+                for (Mail updatedMail : updatedMails) {
+                    try {
+                        connection.send(updatedMail);
+                    } catch (Exception e) {
+                        LOGGER.warn("Sending email failed", e);
+                        exceptionBuilder.add(e);
+                    }
+                    if (!connection.client().isConnected() || !connection.client().reset()) {
+                        throw new SmtpSendingFailedException("Failure to reset SMTP client: " + connection.client().getReplyString());
+                    }
+                }
+
+                Throwing.runnable(() -> throwIfAllFailed(exceptionBuilder.build(), updatedMails.size())).run();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Sends each mail on behalf of the tenant owning the domain of its 'From' header, falling back to the domain of its
+     * envelope sender.
+     */
+    class FairQueued implements MailSender {
+        static Optional<Domain> tenantOf(Mail mail) {
+            return Optional.ofNullable(mail.message().getFrom())
+                .flatMap(from -> from.stream().findFirst())
+                .map(Mailbox::getDomain)
+                .filter(domain -> !domain.isBlank())
+                .map(Domain::of)
+                .or(() -> mail.sender().asOptional().map(MailAddress::getDomain));
+        }
+
+        private final Factory delegate;
+        private final FairMailScheduler scheduler;
+        private final FairMailScheduler.Lane lane;
+
+        public FairQueued(Factory delegate, FairMailScheduler scheduler, FairMailScheduler.Lane lane) {
+            this.delegate = delegate;
+            this.scheduler = scheduler;
+            this.lane = lane;
+        }
+
+        @Override
+        public Mono<Void> send(Mail mail) {
+            return sendReportingRejectedRecipients(mail).then();
+        }
+
+        @Override
+        public Mono<List<MailAddress>> sendReportingRejectedRecipients(Mail mail) {
+            return scheduler.schedule(lane, tenantOf(mail), delegate.create()
+                .flatMap(sender -> sender.sendReportingRejectedRecipients(mail)));
+        }
+
+        @Override
+        public Mono<Void> send(Collection<Mail> mails) {
+            return Flux.fromIterable(mails)
+                .flatMap(mail -> send(mail)
+                    .then(Mono.<Exception>empty())
+                    .onErrorResume(Exception.class, e -> {
+                        LOGGER.warn("Sending email failed", e);
+                        return Mono.just(e);
+                    }))
+                .collectList()
+                .flatMap(exceptions -> Mono.<Void>fromRunnable(Throwing.runnable(() -> throwIfAllFailed(exceptions, mails.size()))));
+        }
+    }
+
+    class Spooled implements MailSender {
+        private final OutboundMailSpool spool;
+
+        public Spooled(OutboundMailSpool spool) {
+            this.spool = spool;
+        }
+
+        @Override
+        public Mono<Void> send(Mail mail) {
+            return Mono.fromCallable(() -> serialize(mail))
+                .flatMap(message -> spool.enqueue(mail.sender(), mail.recipients(), message))
+                .then();
+        }
+
+        @Override
+        public Mono<Void> send(Collection<Mail> mails) {
+            return Flux.fromIterable(mails)
+                .concatMap(this::send)
+                .then();
+        }
+
+        /**
+         * Recipients are only rejected at delivery time, hence a spooled mail never reports any.
+         */
+        @Override
+        public Mono<List<MailAddress>> sendReportingRejectedRecipients(Mail mail) {
+            return send(mail).thenReturn(ImmutableList.of());
+        }
+
+        private byte[] serialize(Mail mail) throws IOException {
+            try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+                new PreEncodedMessageWriter().writeMessage(mail.message(), outputStream);
+                return outputStream.toByteArray();
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -18,13 +18,18 @@
 
 package com.linagora.calendar.smtp;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.apache.commons.configuration2.Configuration;
+import org.apache.james.core.Domain;
 import org.apache.james.core.Username;
 import org.apache.james.util.Port;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
 
 public record MailSenderConfiguration(String host,
                                       Port port,
@@ -33,7 +38,79 @@ public record MailSenderConfiguration(String host,
                                       Optional<String> password,
                                       boolean sslEnabled,
                                       boolean trustAllCerts,
-                                      boolean startTlsEnabled) {
+                                      boolean startTlsEnabled,
+                                      FairQueueing fairQueueing) {
+
+    /**
+     * Scheduling of the outbound mails among the tenants, identified by the domain of the 'From' header of their mails.
+     *
+     * @param concurrency count of mails being sent at once, all tenants considered
+     * @param domainRate mails per second a tenant may send once its burst is exhausted
+     * @param domainBurst mails a tenant may send at once after having been idle
+     * @param weights count of mails a tenant sends per round robin turn, 1 for the tenants not listed
+     */
+    public record FairQueueing(boolean enabled,
+                               int concurrency,
+                               double domainRate,
+                               int domainBurst,
+                               Map<Domain, Integer> weights) {
+        public static final String ENABLED_PROPERTY = "smtp.fairqueue.enabled";
+        public static final boolean ENABLED_DEFAULT = false;
+        public static final String CONCURRENCY_PROPERTY = "smtp.fairqueue.concurrency";
+        public static final int CONCURRENCY_DEFAULT = 8;
+        public static final String DOMAIN_RATE_PROPERTY = "smtp.fairqueue.domain.rate";
+        public static final double DOMAIN_RATE_DEFAULT = 10;
+        public static final String DOMAIN_BURST_PROPERTY = "smtp.fairqueue.domain.burst";
+        public static final int DOMAIN_BURST_DEFAULT = 50;
+        public static final String WEIGHTS_PROPERTY = "smtp.fairqueue.domain.weights";
+        public static final int WEIGHT_DEFAULT = 1;
+
+        public static final FairQueueing DISABLED = new FairQueueing(ENABLED_DEFAULT, CONCURRENCY_DEFAULT, DOMAIN_RATE_DEFAULT,
+            DOMAIN_BURST_DEFAULT, ImmutableMap.of());
+
+        public static FairQueueing parse(Configuration configuration) {
+            return new FairQueueing(configuration.getBoolean(ENABLED_PROPERTY, ENABLED_DEFAULT),
+                configuration.getInt(CONCURRENCY_PROPERTY, CONCURRENCY_DEFAULT),
+                configuration.getDouble(DOMAIN_RATE_PROPERTY, DOMAIN_RATE_DEFAULT),
+                configuration.getInt(DOMAIN_BURST_PROPERTY, DOMAIN_BURST_DEFAULT),
+                parseWeights(configuration.getString(WEIGHTS_PROPERTY, "")));
+        }
+
+        // domain-a.tld:3,domain-b.tld:2
+        private static Map<Domain, Integer> parseWeights(String value) {
+            return Splitter.on(',').trimResults().omitEmptyStrings().splitToStream(value)
+                .map(entry -> {
+                    List<String> parts = Splitter.on(':').trimResults().splitToList(entry);
+                    Preconditions.checkArgument(parts.size() == 2, "'%s' entries must be formatted as 'domain:weight', got '%s'", WEIGHTS_PROPERTY, entry);
+                    return Map.entry(Domain.of(parts.get(0)), Integer.parseInt(parts.get(1)));
+                })
+                .collect(ImmutableMap.toImmutableMap(Map.Entry::getKey, Map.Entry::getValue));
+        }
+
+        public FairQueueing {
+            Preconditions.checkArgument(concurrency > 0, "'%s' must be positive", CONCURRENCY_PROPERTY);
+            Preconditions.checkArgument(domainRate > 0, "'%s' must be positive", DOMAIN_RATE_PROPERTY);
+            Preconditions.checkArgument(domainBurst > 0, "'%s' must be positive", DOMAIN_BURST_PROPERTY);
+            Preconditions.checkNotNull(weights, "'%s' must not be null", WEIGHTS_PROPERTY);
+            Preconditions.checkArgument(weights.values().stream().allMatch(weight -> weight > 0), "'%s' must be positive", WEIGHTS_PROPERTY);
+            weights = ImmutableMap.copyOf(weights);
+        }
+
+        public int weight(Domain domain) {
+            return weights.getOrDefault(domain, WEIGHT_DEFAULT);
+        }
+    }
+
+    public MailSenderConfiguration(String host,
+                                   Port port,
+                                   String ehlo,
+                                   Optional<Username> username,
+                                   Optional<String> password,
+                                   boolean sslEnabled,
+                                   boolean trustAllCerts,
+                                   boolean startTlsEnabled) {
+        this(host, port, ehlo, username, password, sslEnabled, trustAllCerts, startTlsEnabled, FairQueueing.DISABLED);
+    }
 
     public MailSenderConfiguration {
         Preconditions.checkArgument(username.isPresent() == password.isPresent(), "'smtp.username' and 'smtp.password' must be simultaneously set.");
@@ -55,6 +132,7 @@ public record MailSenderConfiguration(String host,
         boolean trustAllCerts = configuration.getBoolean("smtp.ssl.trustAllCerts", false);
         boolean startTlsEnabled = configuration.getBoolean("smtp.starttls.enabled", false);
 
-        return new MailSenderConfiguration(host, port, helo, user, password, sslEnabled, trustAllCerts, startTlsEnabled);
+        return new MailSenderConfiguration(host, port, helo, user, password, sslEnabled, trustAllCerts, startTlsEnabled,
+            FairQueueing.parse(configuration));
     }
 }
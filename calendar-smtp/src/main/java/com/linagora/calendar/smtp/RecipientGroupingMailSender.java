@@ -0,0 +1,156 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.inject.Inject;
+
+import org.apache.james.core.MailAddress;
+import org.apache.james.core.MaybeSender;
+import org.apache.james.mime4j.dom.Message;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Sends the notifications sharing the same rendered content in a single SMTP transaction.
+ *
+ * <p>Callers submit one recipient at a time along with a fingerprint of everything the rendering depends on. Recipients
+ * with equal fingerprints (and the same envelope sender) are collected in a bucket for up to
+ * {@link SmtpGroupingConfiguration#window()}, or until {@link SmtpGroupingConfiguration#maxRecipients()} is reached.
+ * The bucket is then rendered once, addressed to all its recipients, and sent with one 'rcpt to' per recipient. Each
+ * caller completes with the outcome of its own recipient: a recipient rejected by the server fails while the others
+ * succeed.
+ */
+public class RecipientGroupingMailSender {
+    public interface Renderer {
+        Mono<Message> render(List<MailAddress> recipients);
+    }
+
+    private record BucketKey(MaybeSender sender, Object fingerprint) {
+
+    }
+
+    private static class Bucket {
+        private final BucketKey key;
+        private final Renderer renderer;
+        private final Map<MailAddress, Sinks.Empty<Void>> recipients = new LinkedHashMap<>();
+        private boolean closed;
+
+        Bucket(BucketKey key, Renderer renderer) {
+            this.key = key;
+            this.renderer = renderer;
+        }
+
+        synchronized Optional<Sinks.Empty<Void>> add(MailAddress recipient) {
+            if (closed) {
+                return Optional.empty();
+            }
+            return Optional.of(recipients.computeIfAbsent(recipient, any -> Sinks.empty()));
+        }
+
+        synchronized int size() {
+            return recipients.size();
+        }
+
+        synchronized Optional<Map<MailAddress, Sinks.Empty<Void>>> close() {
+            if (closed) {
+                return Optional.empty();
+            }
+            closed = true;
+            return Optional.of(ImmutableMap.copyOf(recipients));
+        }
+    }
+
+    private final MailSender.Factory mailSenderFactory;
+    private final SmtpGroupingConfiguration configuration;
+    private final Map<BucketKey, Bucket> buckets = new ConcurrentHashMap<>();
+
+    @Inject
+    public RecipientGroupingMailSender(MailSender.Factory mailSenderFactory, SmtpGroupingConfiguration configuration) {
+        this.mailSenderFactory = mailSenderFactory;
+        this.configuration = configuration;
+    }
+
+    public Mono<Void> send(Object fingerprint, MaybeSender sender, MailAddress recipient, Renderer renderer) {
+        if (!configuration.enabled()) {
+            return renderer.render(ImmutableList.of(recipient))
+                .flatMap(message -> mailSenderFactory.create()
+                    .flatMap(mailSender -> mailSender.send(new Mail(sender, ImmutableList.of(recipient), message))));
+        }
+        return Mono.defer(() -> enqueue(new BucketKey(sender, fingerprint), recipient, renderer));
+    }
+
+    private Mono<Void> enqueue(BucketKey key, MailAddress recipient, Renderer renderer) {
+        while (true) {
+            Bucket bucket = buckets.computeIfAbsent(key, any -> open(key, renderer));
+            Optional<Sinks.Empty<Void>> sink = bucket.add(recipient);
+            if (sink.isPresent()) {
+                if (bucket.size() >= configuration.maxRecipients()) {
+                    flush(bucket);
+                }
+                return sink.get().asMono();
+            }
+            // The bucket was flushed in between: open a new one
+            buckets.remove(key, bucket);
+        }
+    }
+
+    private Bucket open(BucketKey key, Renderer renderer) {
+        Bucket bucket = new Bucket(key, renderer);
+        Mono.delay(configuration.window())
+            .subscribe(any -> flush(bucket));
+        return bucket;
+    }
+
+    private void flush(Bucket bucket) {
+        buckets.remove(bucket.key, bucket);
+        bucket.close().ifPresent(recipients -> send(bucket, recipients));
+    }
+
+    private void send(Bucket bucket, Map<MailAddress, Sinks.Empty<Void>> recipients) {
+        List<MailAddress> addresses = ImmutableList.copyOf(recipients.keySet());
+        bucket.renderer.render(addresses)
+            .flatMap(message -> mailSenderFactory.create()
+                .flatMap(mailSender -> mailSender.sendReportingRejectedRecipients(new Mail(bucket.key.sender(), addresses, message))))
+            .defaultIfEmpty(ImmutableList.of())
+            .subscribe(rejectedRecipients -> recipients.forEach((recipient, sink) -> {
+                    if (rejectedRecipients.contains(recipient)) {
+                        sink.tryEmitError(new SmtpSendingFailedException("'rcpt to' command failed for " + recipient.asString()));
+                    } else {
+                        sink.tryEmitEmpty();
+                    }
+                }),
+                error -> recipients.values().forEach(sink -> sink.tryEmitError(error)));
+    }
+
+    @VisibleForTesting
+    int pendingBuckets() {
+        return buckets.size();
+    }
+}
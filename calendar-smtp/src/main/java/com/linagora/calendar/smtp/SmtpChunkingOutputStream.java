@@ -0,0 +1,105 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Sends a message with the 'bdat' command of the SMTP CHUNKING extension (RFC 3030) as it is written: bytes are
+ * buffered up to the chunk size, then sent as one 'bdat' chunk, and closing the stream sends the remaining bytes as the
+ * 'last' chunk. Unlike with 'data', the message is sent as is: neither dot-stuffed nor terminated.
+ *
+ * <p>Closing flushes but does not close the underlying stream, which is the connection to the SMTP server.
+ */
+class SmtpChunkingOutputStream extends OutputStream {
+    interface ChunkAcknowledgement {
+        /**
+         * Reads the server reply to the chunk just sent, and throws if the chunk was rejected.
+         */
+        void await() throws IOException;
+    }
+
+    private final OutputStream out;
+    private final ChunkAcknowledgement acknowledgement;
+    private final byte[] chunk;
+    private int count = 0;
+    private boolean closed = false;
+
+    SmtpChunkingOutputStream(OutputStream out, int chunkSize, ChunkAcknowledgement acknowledgement) {
+        Preconditions.checkArgument(chunkSize > 0, "'chunkSize' must be strictly positive");
+        this.out = out;
+        this.acknowledgement = acknowledgement;
+        this.chunk = new byte[chunkSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        chunk[count++] = (byte) b;
+        if (count == chunk.length) {
+            sendChunk(false);
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        while (length > 0) {
+            int copied = Math.min(length, chunk.length - count);
+            System.arraycopy(bytes, offset, chunk, count, copied);
+            count += copied;
+            offset += copied;
+            length -= copied;
+            if (count == chunk.length) {
+                sendChunk(false);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        sendChunk(true);
+        closed = true;
+    }
+
+    private void sendChunk(boolean last) throws IOException {
+        // Once a chunk failed the transaction is aborted: never send the following ones, not even on close
+        closed = true;
+        String command = "BDAT " + count + (last ? " LAST" : "") + "\r\n";
+        out.write(command.getBytes(StandardCharsets.US_ASCII));
+        out.write(chunk, 0, count);
+        out.flush();
+        count = 0;
+        acknowledgement.await();
+        closed = last;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.smtp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+
+import org.apache.james.core.MailAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+/**
+ * Keeps authenticated SMTP connections open between sends, so that a mail does not pay for a TCP connection, a TLS
+ * handshake and an authentication.
+ *
+ * <p>The blocking SMTP exchanges run on a dedicated scheduler with one thread per pooled connection: a thread never
+ * holds more than one connection, and sends beyond the pool size wait in the scheduler queue. A connection is checked
+ * with NOOP before being used, reset with RSET once released, and closed once it exceeds its maximum age or count of
+ * messages.
+ */
+public class SmtpConnectionPool implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SmtpConnectionPool.class);
+    private static final int QUEUED_TASK_CAP = 100_000;
+    private static final int MAX_CONNECT_RETRIES = 3;
+    private static final Duration CONNECT_RETRY_BACKOFF = Duration.ofMillis(100);
+    private static final Retry RETRY_CONNECT = Retry.backoff(MAX_CONNECT_RETRIES, CONNECT_RETRY_BACKOFF)
+        .maxBackoff(Duration.ofSeconds(5))
+        .filter(ConnectFailure.class::isInstance)
+        .doBeforeRetry(retrySignal -> LOGGER.warn("Retrying SMTP connection after transient failure (attempt {}/{})",
+            retrySignal.totalRetries() + 1, MAX_CONNECT_RETRIES, retrySignal.failure()))
+        .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+
+    /**
+     * Opening a connection is retried, but not a failed send: the server may already have accepted the mail.
+     */
+    private static class ConnectFailure extends RuntimeException {
+        ConnectFailure(IOException cause) {
+            super(cause);
+        }
+    }
+
+    @FunctionalInterface
+    interface ConnectionAction<T> {
+        T apply(PooledConnection connection) throws IOException;
+    }
+
+    static class PooledConnection {
+        private final StreamingSmtpClient client;
+        private final MailSender.Default sender;
+        private final Instant openedAt;
+        private int messageCount;
+
+        PooledConnection(StreamingSmtpClient client, MailSender.Default sender, Instant openedAt) {
+            this.client = client;
+            this.sender = sender;
+            this.openedAt = openedAt;
+        }
+
+        StreamingSmtpClient client() {
+            return client;
+        }
+
+        List<MailAddress> send(Mail mail) throws IOException {
+            messageCount++;
+            return sender.sendMailTransaction(mail);
+        }
+    }
+
+    private final MailSenderConfiguration mailSenderConfiguration;
+    private final SmtpPoolConfiguration poolConfiguration;
+    private final EventEmailFilter eventEmailFilter;
+    private final Clock clock;
+    private final Scheduler scheduler;
+    private final Deque<PooledConnection> idleConnections = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger openedConnections = new AtomicInteger();
+
+    @Inject
+    public SmtpConnectionPool(MailSenderConfiguration mailSenderConfiguration,
+                              SmtpPoolConfiguration poolConfiguration,
+                              EventEmailFilter eventEmailFilter,
+                              Clock clock) {
+        this.mailSenderConfiguration = mailSenderConfiguration;
+        this.poolConfiguration = poolConfiguration;
+        this.eventEmailFilter = eventEmailFilter;
+        this.clock = clock;
+        this.scheduler = Schedulers.newBoundedElastic(poolConfiguration.size(), QUEUED_TASK_CAP, "smtp-connection-pool");
+    }
+
+    /**
+     * Runs the action with a pooled connection, on the pool scheduler. The connection is released once the action
+     * completes, and closed if the action failed with an I/O error.
+     */
+    <T> Mono<T> withConnection(ConnectionAction<T> action) {
+        return Mono.fromCallable(() -> {
+                PooledConnection connection = acquire();
+                try {
+                    T result = action.apply(connection);
+                    release(connection);
+                    return result;
+                } catch (IOException e) {
+                    close(connection);
+                    throw e;
+                } catch (RuntimeException e) {
+                    release(connection);
+                    throw e;
+                }
+            })
+            .subscribeOn(scheduler)
+            .retryWhen(RETRY_CONNECT)
+            .onErrorMap(ConnectFailure.class, Throwable::getCause);
+    }
+
+    private PooledConnection acquire() {
+        PooledConnection connection = idleConnections.pollFirst();
+        while (connection != null) {
+            if (!expired(connection) && alive(connection)) {
+                return connection;
+            }
+            close(connection);
+            connection = idleConnections.pollFirst();
+        }
+        return open();
+    }
+
+    private PooledConnection open() {
+        StreamingSmtpClient client;
+        try {
+            client = MailSender.Factory.Default.connect(mailSenderConfiguration);
+        } catch (IOException e) {
+            throw new ConnectFailure(e);
+        }
+        openedConnections.incrementAndGet();
+        return new PooledConnection(client, new MailSender.Default(client, mailSenderConfiguration, eventEmailFilter), clock.instant());
+    }
+
+    private void release(PooledConnection connection) {
+        try {
+            if (!expired(connection) && connection.client().isConnected() && connection.client().reset()) {
+                idleConnections.offerFirst(connection);
+                return;
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to reset a pooled SMTP connection", e);
+        }
+        close(connection);
+    }
+
+    private boolean expired(PooledConnection connection) {
+        return connection.messageCount >= poolConfiguration.maxMessages()
+            || !connection.openedAt.plus(poolConfiguration.maxAge()).isAfter(clock.instant());
+    }
+
+    private boolean alive(PooledConnection connection) {
+        try {
+            return connection.client().isConnected() && connection.client().sendNoOp();
+        } catch (IOException e) {
+            LOGGER.debug("Pooled SMTP connection is no longer usable", e);
+            return false;
+        }
+    }
+
+    private void close(PooledConnection connection) {
+        try {
+            if (connection.client().isConnected()) {
+                connection.client().logout();
+                connection.client().disconnect();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to close a pooled SMTP connection", e);
+        }
+    }
+
+    @VisibleForTesting
+    int openedConnections() {
+        return openedConnections.get();
+    }
+
+    @PreDestroy
+    @Override
+    public void close() {
+        PooledConnection connection = idleConnections.pollFirst();
+        while (connection != null) {
+            close(connection);
+            connection = idleConnections.pollFirst();
+        }
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,89 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Frames a message for the SMTP 'data' command (RFC 5321 section 4.5.2) as it is written: line endings are normalized
+ * to CRLF, a '.' starting a line is doubled, and closing the stream writes the terminating "CRLF.CRLF" sequence.
+ *
+ * <p>Closing flushes but does not close the underlying stream, which is the connection to the SMTP server.
+ */
+class SmtpDataOutputStream extends FilterOutputStream {
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] TERMINATOR = {'.', '\r', '\n'};
+
+    private boolean atLineStart = true;
+    private boolean pendingCarriageReturn = false;
+    private boolean closed = false;
+
+    SmtpDataOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (b == '\n') {
+            endLine();
+            return;
+        }
+        if (pendingCarriageReturn) {
+            // A bare CR also ends the line
+            endLine();
+        }
+        if (b == '\r') {
+            pendingCarriageReturn = true;
+            return;
+        }
+        if (atLineStart && b == '.') {
+            out.write('.');
+        }
+        out.write(b);
+        atLineStart = false;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            write(bytes[i]);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (pendingCarriageReturn || !atLineStart) {
+            endLine();
+        }
+        out.write(TERMINATOR);
+        out.flush();
+    }
+
+    private void endLine() throws IOException {
+        out.write(CRLF);
+        pendingCarriageReturn = false;
+        atLineStart = true;
+    }
+}
@@ -0,0 +1,61 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.james.util.DurationParser;
+
+import com.google.common.base.Preconditions;
+
+public record SmtpGroupingConfiguration(int maxRecipients,
+                                        Duration window) {
+
+    public static final String MAX_RECIPIENTS_PROPERTY = "smtp.grouping.max.recipients";
+    public static final int MAX_RECIPIENTS_DEFAULT = 50;
+    public static final String WINDOW_PROPERTY = "smtp.grouping.window";
+    public static final Duration WINDOW_DEFAULT = Duration.ofMillis(50);
+
+    public static final SmtpGroupingConfiguration DEFAULT = new SmtpGroupingConfiguration(MAX_RECIPIENTS_DEFAULT, WINDOW_DEFAULT);
+    public static final SmtpGroupingConfiguration DISABLED = new SmtpGroupingConfiguration(1, WINDOW_DEFAULT);
+
+    public static SmtpGroupingConfiguration parse(Configuration configuration) {
+        Duration window = Optional.ofNullable(configuration.getString(WINDOW_PROPERTY, null))
+            .map(value -> DurationParser.parse(value, ChronoUnit.MILLIS))
+            .orElse(WINDOW_DEFAULT);
+
+        return new SmtpGroupingConfiguration(configuration.getInt(MAX_RECIPIENTS_PROPERTY, MAX_RECIPIENTS_DEFAULT), window);
+    }
+
+    public SmtpGroupingConfiguration {
+        Preconditions.checkArgument(maxRecipients > 0, "'%s' must be positive", MAX_RECIPIENTS_PROPERTY);
+        Preconditions.checkNotNull(window, "'%s' must not be null", WINDOW_PROPERTY);
+        Preconditions.checkArgument(!window.isNegative() && !window.isZero(), "'%s' must be positive", WINDOW_PROPERTY);
+    }
+
+    /**
+     * A limit of one recipient sends a transaction per recipient, as before grouping.
+     */
+    public boolean enabled() {
+        return maxRecipients > 1;
+    }
+}
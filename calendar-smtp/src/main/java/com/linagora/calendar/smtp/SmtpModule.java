@@ -19,21 +19,35 @@
 package com.linagora.calendar.smtp;
 
 import java.io.FileNotFoundException;
+import java.time.Clock;
+
+import jakarta.inject.Named;
+import jakarta.inject.Provider;
 
 import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.james.utils.InitializationOperation;
+import org.apache.james.utils.InitilizationOperationBuilder;
 import org.apache.james.utils.PropertiesProvider;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Scopes;
 import com.google.inject.Singleton;
+import com.google.inject.multibindings.ProvidesIntoSet;
 import com.linagora.calendar.smtp.template.MailTemplateModule;
+import com.linagora.calendar.storage.spool.OutboundMailSpool;
 
 public class SmtpModule extends AbstractModule {
+    public static final String DELIVERY = "smtp-delivery";
+    public static final String PRIORITY = "smtp-priority";
+    private static final String TRANSPORT = "smtp-transport";
+
     @Override
     protected void configure() {
         bind(MailSender.Factory.Default.class).in(Scopes.SINGLETON);
-        bind(MailSender.Factory.class).to(MailSender.Factory.Default.class);
+        bind(RecipientGroupingMailSender.class).in(Scopes.SINGLETON);
+        bind(SmtpSpoolDispatcher.class).in(Scopes.SINGLETON);
+        bind(SmtpConnectionPool.class).in(Scopes.SINGLETON);
 
         install(new MailTemplateModule());
     }
@@ -44,6 +58,90 @@ public class SmtpModule extends AbstractModule {
         return MailSenderConfiguration.from(propertiesProvider.getConfiguration("configuration"));
     }
 
+    @Provides
+    @Singleton
+    public SmtpPoolConfiguration provideSmtpPoolConfiguration(PropertiesProvider propertiesProvider) throws ConfigurationException, FileNotFoundException {
+        return SmtpPoolConfiguration.parse(propertiesProvider.getConfiguration("configuration"));
+    }
+
+    @Provides
+    @Singleton
+    public SmtpGroupingConfiguration provideSmtpGroupingConfiguration(PropertiesProvider propertiesProvider) throws ConfigurationException, FileNotFoundException {
+        return SmtpGroupingConfiguration.parse(propertiesProvider.getConfiguration("configuration"));
+    }
+
+    @Provides
+    @Singleton
+    public SmtpSpoolConfiguration provideSmtpSpoolConfiguration(PropertiesProvider propertiesProvider) throws ConfigurationException, FileNotFoundException {
+        return SmtpSpoolConfiguration.parse(propertiesProvider.getConfiguration("configuration"));
+    }
+
+    @ProvidesIntoSet
+    InitializationOperation startSpoolDispatcher(SmtpSpoolDispatcher dispatcher) {
+        return InitilizationOperationBuilder
+            .forClass(SmtpSpoolDispatcher.class)
+            .init(dispatcher::start);
+    }
+
+    @Provides
+    @Singleton
+    public MailSender.Factory provideMailSenderFactory(SmtpSpoolConfiguration spoolConfiguration,
+                                                       OutboundMailSpool spool,
+                                                       @Named(DELIVERY) MailSender.Factory deliveryFactory) {
+        if (!spoolConfiguration.enabled()) {
+            return deliveryFactory;
+        }
+        return new MailSender.Factory.Spooled(spool);
+    }
+
+    @Provides
+    @Singleton
+    @Named(DELIVERY)
+    public MailSender.Factory provideDeliveryMailSenderFactory(MailSenderConfiguration mailSenderConfiguration,
+                                                               FairMailScheduler scheduler,
+                                                               @Named(TRANSPORT) MailSender.Factory transportFactory) {
+        if (!mailSenderConfiguration.fairQueueing().enabled()) {
+            return transportFactory;
+        }
+        return new MailSender.Factory.FairQueued(transportFactory, scheduler, FairMailScheduler.Lane.NORMAL);
+    }
+
+    /**
+     * For the mails that should not wait behind the others, like alarms. With fair queueing they skip both the spool
+     * and the tenant queues.
+     */
+    @Provides
+    @Singleton
+    @Named(PRIORITY)
+    public MailSender.Factory providePriorityMailSenderFactory(MailSenderConfiguration mailSenderConfiguration,
+                                                               FairMailScheduler scheduler,
+                                                               @Named(TRANSPORT) MailSender.Factory transportFactory,
+                                                               MailSender.Factory mailSenderFactory) {
+        if (!mailSenderConfiguration.fairQueueing().enabled()) {
+            return mailSenderFactory;
+        }
+        return new MailSender.Factory.FairQueued(transportFactory, scheduler, FairMailScheduler.Lane.PRIORITY);
+    }
+
+    @Provides
+    @Singleton
+    public FairMailScheduler provideFairMailScheduler(MailSenderConfiguration mailSenderConfiguration, Clock clock) {
+        return new FairMailScheduler(mailSenderConfiguration.fairQueueing(), clock);
+    }
+
+    @Provides
+    @Singleton
+    @Named(TRANSPORT)
+    MailSender.Factory provideTransportMailSenderFactory(SmtpPoolConfiguration poolConfiguration,
+                                                         EventEmailFilter eventEmailFilter,
+                                                         MailSender.Factory.Default defaultFactory,
+                                                         Provider<SmtpConnectionPool> pool) {
+        if (!poolConfiguration.enabled()) {
+            return defaultFactory;
+        }
+        return new MailSender.Factory.Pooled(pool.get(), eventEmailFilter);
+    }
+
     @Provides
     @Singleton
     public EventEmailFilter provideEventEmailFilter(PropertiesProvider propertiesProvider) throws ConfigurationException {
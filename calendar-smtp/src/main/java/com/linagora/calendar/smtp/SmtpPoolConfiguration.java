@@ -0,0 +1,67 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.smtp;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.james.util.DurationParser;
+
+import com.google.common.base.Preconditions;
+
+public record SmtpPoolConfiguration(int size,
+                                    Duration maxAge,
+                                    int maxMessages) {
+
+    public static final String SIZE_PROPERTY = "smtp.pool.size";
+    public static final int SIZE_DEFAULT = 8;
+    public static final String MAX_AGE_PROPERTY = "smtp.pool.max.age";
+    public static final Duration MAX_AGE_DEFAULT = Duration.ofMinutes(5);
+    public static final String MAX_MESSAGES_PROPERTY = "smtp.pool.max.messages";
+    public static final int MAX_MESSAGES_DEFAULT = 100;
+
+    public static final SmtpPoolConfiguration DEFAULT = new SmtpPoolConfiguration(SIZE_DEFAULT, MAX_AGE_DEFAULT, MAX_MESSAGES_DEFAULT);
+
+    public static SmtpPoolConfiguration parse(Configuration configuration) {
+        Duration maxAge = Optional.ofNullable(configuration.getString(MAX_AGE_PROPERTY, null))
+            .map(value -> DurationParser.parse(value, ChronoUnit.SECONDS))
+            .orElse(MAX_AGE_DEFAULT);
+
+        return new SmtpPoolConfiguration(configuration.getInt(SIZE_PROPERTY, SIZE_DEFAULT),
+            maxAge,
+            configuration.getInt(MAX_MESSAGES_PROPERTY, MAX_MESSAGES_DEFAULT));
+    }
+
+    public SmtpPoolConfiguration {
+        Preconditions.checkArgument(size >= 0, "'%s' must not be negative", SIZE_PROPERTY);
+        Preconditions.checkNotNull(maxAge, "'%s' must not be null", MAX_AGE_PROPERTY);
+        Preconditions.checkArgument(!maxAge.isNegative() && !maxAge.isZero(), "'%s' must be positive", MAX_AGE_PROPERTY);
+        Preconditions.checkArgument(maxMessages > 0, "'%s' must be positive", MAX_MESSAGES_PROPERTY);
+    }
+
+    /**
+     * A size of 0 opens a connection per send, as before pooling.
+     */
+    public boolean enabled() {
+        return size > 0;
+    }
+}
@@ -18,8 +18,31 @@
 
 package com.linagora.calendar.smtp;
 
+import java.util.Optional;
+
+import org.apache.commons.net.smtp.SMTPReply;
+
 public class SmtpSendingFailedException extends RuntimeException {
+    private final Optional<Integer> replyCode;
+
     public SmtpSendingFailedException(String message) {
         super(message);
+        this.replyCode = Optional.empty();
+    }
+
+    public SmtpSendingFailedException(String message, int replyCode) {
+        super(message);
+        this.replyCode = Optional.of(replyCode);
+    }
+
+    public Optional<Integer> replyCode() {
+        return replyCode;
+    }
+
+    /**
+     * Whether the server rejected the mail itself with a 5xx reply, in which case sending it again fails the same way.
+     */
+    public boolean permanent() {
+        return replyCode.map(SMTPReply::isNegativePermanent).orElse(false);
     }
 }
@@ -0,0 +1,95 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.james.util.DurationParser;
+
+import com.google.common.base.Preconditions;
+
+public record SmtpSpoolConfiguration(boolean enabled,
+                                     Duration pollInterval,
+                                     int batchSize,
+                                     int domainConcurrency,
+                                     Duration retryBackoff,
+                                     Duration maxRetryBackoff,
+                                     int maxAttempts) {
+
+    public static final String ENABLED_PROPERTY = "smtp.spool.enabled";
+    public static final boolean ENABLED_DEFAULT = false;
+    public static final String POLL_INTERVAL_PROPERTY = "smtp.spool.poll.interval";
+    public static final Duration POLL_INTERVAL_DEFAULT = Duration.ofSeconds(1);
+    public static final String BATCH_SIZE_PROPERTY = "smtp.spool.batch.size";
+    public static final int BATCH_SIZE_DEFAULT = 100;
+    public static final String DOMAIN_CONCURRENCY_PROPERTY = "smtp.spool.domain.concurrency";
+    public static final int DOMAIN_CONCURRENCY_DEFAULT = 4;
+    public static final String RETRY_BACKOFF_PROPERTY = "smtp.spool.retry.backoff";
+    public static final Duration RETRY_BACKOFF_DEFAULT = Duration.ofSeconds(10);
+    public static final String MAX_RETRY_BACKOFF_PROPERTY = "smtp.spool.retry.max.backoff";
+    public static final Duration MAX_RETRY_BACKOFF_DEFAULT = Duration.ofHours(1);
+    public static final String MAX_ATTEMPTS_PROPERTY = "smtp.spool.max.attempts";
+    public static final int MAX_ATTEMPTS_DEFAULT = 20;
+
+    public static final SmtpSpoolConfiguration DEFAULT = new SmtpSpoolConfiguration(ENABLED_DEFAULT, POLL_INTERVAL_DEFAULT, BATCH_SIZE_DEFAULT,
+        DOMAIN_CONCURRENCY_DEFAULT, RETRY_BACKOFF_DEFAULT, MAX_RETRY_BACKOFF_DEFAULT, MAX_ATTEMPTS_DEFAULT);
+
+    public static SmtpSpoolConfiguration parse(Configuration configuration) {
+        return new SmtpSpoolConfiguration(configuration.getBoolean(ENABLED_PROPERTY, ENABLED_DEFAULT),
+            parseDuration(configuration, POLL_INTERVAL_PROPERTY, POLL_INTERVAL_DEFAULT),
+            configuration.getInt(BATCH_SIZE_PROPERTY, BATCH_SIZE_DEFAULT),
+            configuration.getInt(DOMAIN_CONCURRENCY_PROPERTY, DOMAIN_CONCURRENCY_DEFAULT),
+            parseDuration(configuration, RETRY_BACKOFF_PROPERTY, RETRY_BACKOFF_DEFAULT),
+            parseDuration(configuration, MAX_RETRY_BACKOFF_PROPERTY, MAX_RETRY_BACKOFF_DEFAULT),
+            configuration.getInt(MAX_ATTEMPTS_PROPERTY, MAX_ATTEMPTS_DEFAULT));
+    }
+
+    private static Duration parseDuration(Configuration configuration, String property, Duration defaultValue) {
+        return Optional.ofNullable(configuration.getString(property, null))
+            .map(value -> DurationParser.parse(value, ChronoUnit.SECONDS))
+            .orElse(defaultValue);
+    }
+
+    public SmtpSpoolConfiguration {
+        Preconditions.checkNotNull(pollInterval, "'%s' must not be null", POLL_INTERVAL_PROPERTY);
+        Preconditions.checkArgument(!pollInterval.isNegative() && !pollInterval.isZero(), "'%s' must be positive", POLL_INTERVAL_PROPERTY);
+        Preconditions.checkArgument(batchSize > 0, "'%s' must be positive", BATCH_SIZE_PROPERTY);
+        Preconditions.checkArgument(domainConcurrency > 0, "'%s' must be positive", DOMAIN_CONCURRENCY_PROPERTY);
+        Preconditions.checkNotNull(retryBackoff, "'%s' must not be null", RETRY_BACKOFF_PROPERTY);
+        Preconditions.checkArgument(!retryBackoff.isNegative() && !retryBackoff.isZero(), "'%s' must be positive", RETRY_BACKOFF_PROPERTY);
+        Preconditions.checkNotNull(maxRetryBackoff, "'%s' must not be null", MAX_RETRY_BACKOFF_PROPERTY);
+        Preconditions.checkArgument(maxRetryBackoff.compareTo(retryBackoff) >= 0, "'%s' must not be lower than '%s'", MAX_RETRY_BACKOFF_PROPERTY, RETRY_BACKOFF_PROPERTY);
+        Preconditions.checkArgument(maxAttempts > 0, "'%s' must be positive", MAX_ATTEMPTS_PROPERTY);
+    }
+
+    /**
+     * Delay before the attempt following {@code failedAttempts} failures: doubles at each failure, up to {@link #maxRetryBackoff()}.
+     */
+    public Duration backoff(int failedAttempts) {
+        int exponent = Math.min(Math.max(failedAttempts - 1, 0), 30);
+        Duration backoff = retryBackoff.multipliedBy(1L << exponent);
+        if (backoff.compareTo(maxRetryBackoff) > 0) {
+            return maxRetryBackoff;
+        }
+        return backoff;
+    }
+}
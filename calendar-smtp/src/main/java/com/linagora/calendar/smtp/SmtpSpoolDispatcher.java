@@ -0,0 +1,194 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+
+import org.apache.james.core.Domain;
+import org.apache.james.core.MailAddress;
+import org.apache.james.metrics.api.GaugeRegistry;
+import org.apache.james.metrics.api.Metric;
+import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.message.DefaultMessageBuilder;
+import org.apache.james.mime4j.stream.MimeConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.linagora.calendar.storage.spool.OutboundMailSpool;
+import com.linagora.calendar.storage.spool.OutboundMailSpool.SpooledMail;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Drains the {@link OutboundMailSpool} towards the SMTP server.
+ *
+ * <p>Every {@link SmtpSpoolConfiguration#pollInterval()} at most {@link SmtpSpoolConfiguration#batchSize()} due mails are
+ * leased, which bounds the delivery rate. The mails of a batch are delivered with at most
+ * {@link SmtpSpoolConfiguration#domainConcurrency()} concurrent deliveries per recipient domain. Batches are dispatched
+ * one after the other, so this cap also holds across batches. A failed delivery is retried with an exponential backoff,
+ * and dropped after {@link SmtpSpoolConfiguration#maxAttempts()} attempts. A mail the server rejects permanently, with a
+ * 5xx reply, is dropped without being retried.
+ */
+public class SmtpSpoolDispatcher implements Closeable {
+    public static final String SPOOL_DEPTH_GAUGE = "smtp.spool.depth";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SmtpSpoolDispatcher.class);
+    private static final Duration LEASE_DURATION = Duration.ofMinutes(5);
+
+    private final OutboundMailSpool spool;
+    private final MailSender.Factory mailSenderFactory;
+    private final SmtpSpoolConfiguration configuration;
+    private final Clock clock;
+    private final MetricFactory metricFactory;
+    private final GaugeRegistry gaugeRegistry;
+    private final Metric deliveredMetric;
+    private final Metric retriedMetric;
+    private final Metric droppedMetric;
+    private final AtomicLong depth = new AtomicLong();
+
+    private Disposable loop;
+
+    @Inject
+    public SmtpSpoolDispatcher(OutboundMailSpool spool,
+                               @Named(SmtpModule.DELIVERY) MailSender.Factory mailSenderFactory,
+                               SmtpSpoolConfiguration configuration,
+                               Clock clock,
+                               MetricFactory metricFactory,
+                               GaugeRegistry gaugeRegistry) {
+        this.spool = spool;
+        this.mailSenderFactory = mailSenderFactory;
+        this.configuration = configuration;
+        this.clock = clock;
+        this.metricFactory = metricFactory;
+        this.gaugeRegistry = gaugeRegistry;
+        this.deliveredMetric = metricFactory.generate("smtp.spool.delivered");
+        this.retriedMetric = metricFactory.generate("smtp.spool.retried");
+        this.droppedMetric = metricFactory.generate("smtp.spool.dropped");
+    }
+
+    public void start() {
+        if (!configuration.enabled()) {
+            return;
+        }
+
+        LOGGER.info("Starting SMTP spool dispatcher: pollInterval={}, batchSize={}, domainConcurrency={}",
+            configuration.pollInterval(), configuration.batchSize(), configuration.domainConcurrency());
+        gaugeRegistry.register(SPOOL_DEPTH_GAUGE, depth::get);
+
+        loop = Flux.interval(configuration.pollInterval())
+            .onBackpressureDrop()
+            .concatMap(tick -> dispatchBatch()
+                .onErrorResume(error -> {
+                    LOGGER.warn("SMTP spool dispatch failed", error);
+                    return Mono.empty();
+                }))
+            .subscribe();
+    }
+
+    @Override
+    public void close() {
+        if (loop != null && !loop.isDisposed()) {
+            loop.dispose();
+        }
+    }
+
+    /**
+     * @return the count of mails whose delivery was attempted
+     */
+    @VisibleForTesting
+    Mono<Long> dispatchBatch() {
+        return Mono.from(metricFactory.decoratePublisherWithTimerMetric("smtp.spool.dispatch.duration",
+            spool.lease(configuration.batchSize(), LEASE_DURATION)
+                .groupBy(this::domainOf)
+                .flatMap(domainMails -> domainMails.flatMap(this::deliver, configuration.domainConcurrency()), configuration.batchSize())
+                .count()
+                .flatMap(count -> spool.depth()
+                    .doOnNext(depth::set)
+                    .thenReturn(count))));
+    }
+
+    @VisibleForTesting
+    long depth() {
+        return depth.get();
+    }
+
+    private String domainOf(SpooledMail mail) {
+        return mail.recipients().stream()
+            .findFirst()
+            .map(MailAddress::getDomain)
+            .map(Domain::asString)
+            .orElse("");
+    }
+
+    private Mono<Boolean> deliver(SpooledMail mail) {
+        return send(mail)
+            .thenReturn(true)
+            .onErrorResume(error -> handleFailure(mail, error).thenReturn(false))
+            .filter(delivered -> delivered)
+            .flatMap(delivered -> spool.acknowledge(mail.id())
+                .doOnSuccess(any -> deliveredMetric.increment())
+                .thenReturn(delivered))
+            .onErrorResume(error -> {
+                LOGGER.warn("Failed to update the SMTP spool for mail {}", mail.id().value(), error);
+                return Mono.empty();
+            })
+            .defaultIfEmpty(false);
+    }
+
+    private Mono<Void> send(SpooledMail mail) {
+        return Mono.fromCallable(() -> new Mail(mail.sender(), mail.recipients(), parse(mail.message())))
+            .flatMap(parsedMail -> mailSenderFactory.create()
+                .flatMap(mailSender -> mailSender.send(parsedMail)));
+    }
+
+    private Mono<Void> handleFailure(SpooledMail mail, Throwable error) {
+        int failedAttempts = mail.attempts() + 1;
+        if (error instanceof SmtpSendingFailedException smtpError && smtpError.permanent()) {
+            LOGGER.error("Dropping spooled mail {} to {} permanently rejected by the SMTP server", mail.id().value(), mail.recipients(), error);
+            droppedMetric.increment();
+            return spool.acknowledge(mail.id());
+        }
+        if (failedAttempts >= configuration.maxAttempts()) {
+            LOGGER.error("Dropping spooled mail {} to {} after {} failed attempts", mail.id().value(), mail.recipients(), failedAttempts, error);
+            droppedMetric.increment();
+            return spool.acknowledge(mail.id());
+        }
+        Duration backoff = configuration.backoff(failedAttempts);
+        LOGGER.warn("Delivery of spooled mail {} failed ({} attempts), retrying in {}", mail.id().value(), failedAttempts, backoff, error);
+        retriedMetric.increment();
+        return spool.retryLater(mail.id(), clock.instant().plus(backoff));
+    }
+
+    private Message parse(byte[] message) throws Exception {
+        DefaultMessageBuilder messageBuilder = new DefaultMessageBuilder();
+        messageBuilder.setMimeEntityConfig(MimeConfig.PERMISSIVE);
+        return messageBuilder.parseMessage(new ByteArrayInputStream(message));
+    }
+}
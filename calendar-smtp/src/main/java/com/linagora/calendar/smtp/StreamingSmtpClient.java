@@ -0,0 +1,121 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.commons.net.smtp.AuthenticatingSMTPClient;
+import org.apache.commons.net.smtp.SMTPReply;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * {@link AuthenticatingSMTPClient} giving access to the raw socket output stream, so that a message can be written
+ * to the server as it is serialized instead of being buffered as a {@link String} first.
+ */
+public class StreamingSmtpClient extends AuthenticatingSMTPClient {
+    /**
+     * The ESMTP extensions advertised by the server in its reply to 'ehlo'.
+     */
+    public record Extensions(Set<String> keywords) {
+        public static final Extensions NONE = new Extensions(ImmutableSet.of());
+
+        static Extensions parse(String[] ehloReplyLines) {
+            // The first line holds the server greeting, the following ones an extension keyword each
+            return new Extensions(Arrays.stream(ehloReplyLines)
+                .skip(1)
+                .filter(line -> line.length() > 4)
+                .map(line -> line.substring(4).trim().split(" ")[0].toUpperCase(Locale.US))
+                .collect(ImmutableSet.toImmutableSet()));
+        }
+
+        public boolean eightBitMime() {
+            return keywords.contains("8BITMIME");
+        }
+
+        public boolean chunking() {
+            return keywords.contains("CHUNKING");
+        }
+
+        public boolean pipelining() {
+            return keywords.contains("PIPELINING");
+        }
+    }
+
+    public record Reply(int code, String text) {
+        public boolean positiveCompletion() {
+            return SMTPReply.isPositiveCompletion(code);
+        }
+
+        public boolean positiveIntermediate() {
+            return SMTPReply.isPositiveIntermediate(code);
+        }
+    }
+
+    public StreamingSmtpClient(String protocol, boolean implicit, String encoding) {
+        super(protocol, implicit, encoding);
+    }
+
+    /**
+     * Greets the server with 'ehlo', falling back to 'helo' for servers that do not speak ESMTP.
+     */
+    public Extensions hello(String hostname) throws IOException {
+        if (SMTPReply.isPositiveCompletion(ehlo(hostname))) {
+            return Extensions.parse(getReplyStrings());
+        }
+        if (SMTPReply.isPositiveCompletion(helo(hostname))) {
+            return Extensions.NONE;
+        }
+        throw new SmtpSendingFailedException("'helo' failed: " + getReplyString());
+    }
+
+    /**
+     * Sends the given commands in a single write, then reads their replies in order (RFC 2920). Only meaningful when the
+     * server advertises PIPELINING.
+     */
+    public List<Reply> pipeline(List<String> commands) throws IOException {
+        StringBuilder batch = new StringBuilder();
+        commands.forEach(command -> batch.append(command).append("\r\n"));
+        OutputStream output = rawOutputStream();
+        output.write(batch.toString().getBytes(StandardCharsets.UTF_8));
+        output.flush();
+
+        ImmutableList.Builder<Reply> replies = ImmutableList.builder();
+        for (int i = 0; i < commands.size(); i++) {
+            int code = getReply();
+            replies.add(new Reply(code, getReplyString()));
+        }
+        return replies.build();
+    }
+
+    /**
+     * The stream the SMTP commands are written to. Commands sent through this client are flushed as they are sent,
+     * hence bytes written here are never interleaved with a pending command. Closing it closes the connection.
+     */
+    public OutputStream rawOutputStream() {
+        return _output_;
+    }
+}
@@ -0,0 +1,88 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp.template;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.james.mailbox.model.Cid;
+import org.apache.james.mailbox.model.ContentType;
+import org.apache.james.mime4j.message.BodyPart;
+import org.apache.james.mime4j.message.HeaderImpl;
+import org.apache.james.mime4j.stream.Field;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+/**
+ * Body parts of the inline assets (logos, icons) related to the HTML body of the generated messages.
+ *
+ * <p>The first time an asset is attached, its header fields are built and its content is base64 encoded. The
+ * following messages attaching an equal {@link MimeAttachment}, with the same headers and the same content, get a body
+ * part sharing these fields and the {@link PreEncodedBody}. Assets are compared by a digest of their content, so that a
+ * caller building its assets for every message still benefits from the encoding done once. The least recently used
+ * assets are evicted beyond {@link #MAX_ASSETS}.
+ */
+public class InlineAssetRegistry {
+    public static final int MAX_ASSETS = 100;
+
+    private record AssetKey(ContentType contentType, Optional<Cid> cid, Optional<String> filename,
+                            Optional<String> dispositionType, HashCode contentDigest) {
+        static AssetKey of(MimeAttachment asset) {
+            return new AssetKey(asset.contentType(), asset.cid(), asset.filename(), asset.dispositionType(),
+                Hashing.sha256().hashBytes(asset.content()));
+        }
+    }
+
+    private record EncodedAsset(List<Field> fields, PreEncodedBody body) {
+        BodyPart asBodyPart() {
+            HeaderImpl header = new HeaderImpl();
+            fields.forEach(header::addField);
+            BodyPart bodyPart = new BodyPart();
+            bodyPart.setHeader(header);
+            bodyPart.setBody(body);
+            return bodyPart;
+        }
+    }
+
+    private final Cache<AssetKey, EncodedAsset> assets = CacheBuilder.newBuilder()
+        .maximumSize(MAX_ASSETS)
+        .build();
+
+    public BodyPart bodyPart(MimeAttachment asset) throws IOException {
+        try {
+            return assets.get(AssetKey.of(asset), () -> encode(asset)).asBodyPart();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e);
+        }
+    }
+
+    private EncodedAsset encode(MimeAttachment asset) throws IOException {
+        BodyPart template = asset.asBodyPart();
+        return new EncodedAsset(ImmutableList.copyOf(template.getHeader().getFields()), PreEncodedBody.base64(asset.content()));
+    }
+}
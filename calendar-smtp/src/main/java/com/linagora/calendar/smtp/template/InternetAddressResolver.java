@@ -0,0 +1,106 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp.template;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.inject.Inject;
+import jakarta.mail.internet.InternetAddress;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.james.core.Username;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.fge.lambdas.Throwing;
+import com.google.common.collect.ImmutableMap;
+import com.linagora.calendar.storage.OpenPaaSUser;
+import com.linagora.calendar.storage.OpenPaaSUserDAO;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Resolves the addresses, along with their display names, that messages are sent from and to.
+ *
+ * <p>All the users of a call are looked up with a single query. Resolved addresses are remembered for
+ * {@link #MEMO_DURATION}, so that the notifications of a single event change, which share the same sender and often the
+ * same recipients, do not look the same users up again.
+ */
+public class InternetAddressResolver {
+    public static final Duration MEMO_DURATION = Duration.ofSeconds(30);
+    private static final long MEMO_MAX_SIZE = 10_000;
+
+    private final OpenPaaSUserDAO userDAO;
+    private final Cache<Username, InternetAddress> memo;
+
+    @Inject
+    public InternetAddressResolver(OpenPaaSUserDAO userDAO) {
+        this(userDAO, MEMO_DURATION);
+    }
+
+    public InternetAddressResolver(OpenPaaSUserDAO userDAO, Duration memoDuration) {
+        this.userDAO = userDAO;
+        this.memo = Caffeine.newBuilder()
+            .expireAfterWrite(memoDuration)
+            .maximumSize(MEMO_MAX_SIZE)
+            .build();
+    }
+
+    public Mono<InternetAddress> resolve(Username username) {
+        return resolveAll(List.of(username))
+            .map(addresses -> addresses.get(username));
+    }
+
+    /**
+     * @return the address of every given user, falling back to a bare address for unknown users
+     */
+    public Mono<Map<Username, InternetAddress>> resolveAll(Collection<Username> usernames) {
+        Map<Username, InternetAddress> memoized = memo.getAllPresent(usernames);
+        List<Username> missing = usernames.stream()
+            .filter(username -> !memoized.containsKey(username))
+            .distinct()
+            .toList();
+        if (missing.isEmpty()) {
+            return Mono.just(memoized);
+        }
+
+        return userDAO.retrieveAll(missing)
+            .collectMap(OpenPaaSUser::username, OpenPaaSUser::fullName)
+            .map(fullNames -> {
+                ImmutableMap.Builder<Username, InternetAddress> addresses = ImmutableMap.<Username, InternetAddress>builder()
+                    .putAll(memoized);
+                missing.forEach(Throwing.consumer(username -> {
+                    InternetAddress address = toInternetAddress(username, fullNames.get(username));
+                    memo.put(username, address);
+                    addresses.put(username, address);
+                }));
+                return addresses.build();
+            });
+    }
+
+    private InternetAddress toInternetAddress(Username username, String fullName) throws Exception {
+        if (fullName == null) {
+            return new InternetAddress(username.asString());
+        }
+        return new InternetAddress(username.asString(), StringUtils.defaultIfEmpty(fullName, username.asString()));
+    }
+}
@@ -0,0 +1,44 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp.template;
+
+import org.apache.commons.configuration2.Configuration;
+
+import com.google.common.base.Preconditions;
+
+public record MailTemplateCacheConfiguration(long maxSize, boolean warmUpEnabled, boolean hotReloadEnabled) {
+    public static final String MAX_SIZE_PROPERTY = "mail.template.cache.max.size";
+    public static final long MAX_SIZE_DEFAULT = 500;
+    public static final String WARM_UP_PROPERTY = "mail.template.warmup.enabled";
+    public static final boolean WARM_UP_DEFAULT = true;
+    public static final String HOT_RELOAD_PROPERTY = "mail.template.hot.reload.enabled";
+    public static final boolean HOT_RELOAD_DEFAULT = false;
+
+    public static final MailTemplateCacheConfiguration DEFAULT = new MailTemplateCacheConfiguration(MAX_SIZE_DEFAULT, WARM_UP_DEFAULT, HOT_RELOAD_DEFAULT);
+
+    public static MailTemplateCacheConfiguration parse(Configuration configuration) {
+        return new MailTemplateCacheConfiguration(configuration.getLong(MAX_SIZE_PROPERTY, MAX_SIZE_DEFAULT),
+            configuration.getBoolean(WARM_UP_PROPERTY, WARM_UP_DEFAULT),
+            configuration.getBoolean(HOT_RELOAD_PROPERTY, HOT_RELOAD_DEFAULT));
+    }
+
+    public MailTemplateCacheConfiguration {
+        Preconditions.checkArgument(maxSize > 0, "'%s' must be positive", MAX_SIZE_PROPERTY);
+    }
+}
@@ -0,0 +1,156 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp.template;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linagora.calendar.smtp.template.MessageGenerator.Factory.CacheEntry;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Compiles every mail template and loads every translation bundle at startup, and optionally reloads a template when
+ * its files change on disk.
+ */
+public class MailTemplateCacheWarmer implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MailTemplateCacheWarmer.class);
+    private static final String TRANSLATIONS_DIRECTORY = "translations";
+
+    private final MessageGenerator.Factory.Default templates;
+    private final MessageGenerator.Factory.Cached cache;
+    private final MailTemplateCacheConfiguration configuration;
+    private final Map<WatchKey, TemplateType> watchedDirectories = new ConcurrentHashMap<>();
+
+    private Optional<WatchService> watchService = Optional.empty();
+    private Optional<Scheduler> watchScheduler = Optional.empty();
+    private Optional<Disposable> watchLoop = Optional.empty();
+
+    @Inject
+    public MailTemplateCacheWarmer(MessageGenerator.Factory.Default templates,
+                                   MessageGenerator.Factory.Cached cache,
+                                   MailTemplateCacheConfiguration configuration) {
+        this.templates = templates;
+        this.cache = cache;
+        this.configuration = configuration;
+    }
+
+    public void start() throws IOException {
+        List<CacheEntry> entries = listTemplates();
+        if (configuration.warmUpEnabled()) {
+            int loaded = cache.warmUp(entries);
+            LOGGER.info("Warmed up {} mail templates out of {}", loaded, entries.size());
+        }
+        if (configuration.hotReloadEnabled()) {
+            watch(entries.stream().map(CacheEntry::templateType).distinct().toList());
+        }
+    }
+
+    private List<CacheEntry> listTemplates() {
+        try {
+            return templates.availableTemplates();
+        } catch (IOException e) {
+            LOGGER.warn("Could not list mail templates, they will be loaded on first use", e);
+            return List.of();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchLoop.ifPresent(Disposable::dispose);
+        watchScheduler.ifPresent(Scheduler::dispose);
+        if (watchService.isPresent()) {
+            watchService.get().close();
+        }
+    }
+
+    private void watch(List<TemplateType> templateTypes) throws IOException {
+        WatchService service = FileSystems.getDefault().newWatchService();
+        for (TemplateType templateType : templateTypes) {
+            File templateDirectory = templates.templateDirectory(templateType);
+            register(service, templateDirectory, templateType);
+            register(service, new File(templateDirectory, TRANSLATIONS_DIRECTORY), templateType);
+        }
+
+        Scheduler scheduler = Schedulers.newSingle("mail-template-watcher");
+        watchService = Optional.of(service);
+        watchScheduler = Optional.of(scheduler);
+        watchLoop = Optional.of(Mono.fromRunnable(() -> watchLoop(service))
+            .subscribeOn(scheduler)
+            .subscribe());
+        LOGGER.info("Watching {} mail templates for changes", templateTypes.size());
+    }
+
+    private void register(WatchService service, File directory, TemplateType templateType) throws IOException {
+        if (directory.isDirectory()) {
+            watchedDirectories.put(directory.toPath().register(service, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), templateType);
+        }
+    }
+
+    private void watchLoop(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                key.pollEvents();
+                Optional.ofNullable(watchedDirectories.get(key)).ifPresent(this::reload);
+                if (!key.reset()) {
+                    watchedDirectories.remove(key);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            LOGGER.debug("Mail template watcher closed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reload(TemplateType templateType) {
+        LOGGER.info("Mail template {} changed, reloading it", templateType.value());
+        try {
+            List<CacheEntry> entries = templates.availableTemplates().stream()
+                .filter(entry -> entry.templateType().equals(templateType))
+                .toList();
+            cache.invalidate(templateType);
+            cache.warmUp(entries);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to reload mail template {}", templateType.value(), e);
+        }
+    }
+}
@@ -22,14 +22,26 @@ import java.io.FileNotFoundException;
 
 import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.apache.james.filesystem.api.FileSystem;
+import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.utils.InitializationOperation;
+import org.apache.james.utils.InitilizationOperationBuilder;
 import org.apache.james.utils.PropertiesProvider;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
+import com.google.inject.Scopes;
 import com.google.inject.Singleton;
-import com.linagora.calendar.storage.OpenPaaSUserDAO;
+import com.google.inject.multibindings.ProvidesIntoSet;
 
 public class MailTemplateModule extends AbstractModule {
+    @Override
+    protected void configure() {
+        bind(MailTemplateCacheWarmer.class).in(Scopes.SINGLETON);
+        bind(InternetAddressResolver.class).in(Scopes.SINGLETON);
+        bind(InlineAssetRegistry.class).in(Scopes.SINGLETON);
+        bind(MessageGenerator.Factory.class).to(MessageGenerator.Factory.Cached.class);
+    }
+
     @Provides
     @Singleton
     MailTemplateConfiguration config(PropertiesProvider propertiesProvider) throws ConfigurationException, FileNotFoundException {
@@ -38,7 +50,29 @@ public class MailTemplateModule extends AbstractModule {
 
     @Provides
     @Singleton
-    MessageGenerator.Factory messageGeneratorFactory(MailTemplateConfiguration configuration, FileSystem fileSystem, OpenPaaSUserDAO userDAO) {
-        return MessageGenerator.factory(configuration, fileSystem, userDAO).cached();
+    MailTemplateCacheConfiguration cacheConfig(PropertiesProvider propertiesProvider) throws ConfigurationException, FileNotFoundException {
+        return MailTemplateCacheConfiguration.parse(propertiesProvider.getConfiguration("configuration"));
+    }
+
+    @Provides
+    @Singleton
+    MessageGenerator.Factory.Default defaultMessageGeneratorFactory(MailTemplateConfiguration configuration, FileSystem fileSystem,
+                                                                    InternetAddressResolver internetAddressResolver,
+                                                                    InlineAssetRegistry inlineAssetRegistry) {
+        return MessageGenerator.factory(configuration, fileSystem, internetAddressResolver, inlineAssetRegistry);
+    }
+
+    @Provides
+    @Singleton
+    MessageGenerator.Factory.Cached messageGeneratorFactory(MessageGenerator.Factory.Default factory, MailTemplateCacheConfiguration cacheConfiguration,
+                                                            MetricFactory metricFactory) {
+        return factory.cached(cacheConfiguration, metricFactory);
+    }
+
+    @ProvidesIntoSet
+    InitializationOperation warmUpMailTemplates(MailTemplateCacheWarmer warmer) {
+        return InitilizationOperationBuilder
+            .forClass(MailTemplateCacheWarmer.class)
+            .init(warmer::start);
     }
 }
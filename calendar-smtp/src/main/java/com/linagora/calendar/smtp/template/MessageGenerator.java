@@ -24,13 +24,19 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import jakarta.mail.internet.InternetAddress;
 
@@ -39,19 +45,27 @@ import org.apache.james.core.Domain;
 import org.apache.james.core.MailAddress;
 import org.apache.james.core.Username;
 import org.apache.james.filesystem.api.FileSystem;
+import org.apache.james.metrics.api.Metric;
+import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.metrics.api.NoopMetricFactory;
+import org.apache.james.metrics.api.TimeMetric;
 import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.dom.address.Group;
 import org.apache.james.mime4j.message.BodyPartBuilder;
 import org.apache.james.mime4j.message.MultipartBuilder;
 import org.apache.james.mime4j.stream.RawField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.github.fge.lambdas.Throwing;
 import com.google.common.base.Preconditions;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.linagora.calendar.smtp.i18n.I18NTranslator;
 import com.linagora.calendar.smtp.i18n.I18NTranslator.PropertiesI18NTranslator;
-import com.linagora.calendar.storage.OpenPaaSUser;
 import com.linagora.calendar.storage.OpenPaaSUserDAO;
 
 import reactor.core.publisher.Mono;
@@ -61,17 +75,34 @@ public class MessageGenerator {
         MessageGenerator forLocalizedFeature(Language language, TemplateType templateType) throws IOException;
 
         class Default implements Factory {
+            private static final String TRANSLATIONS_DIRECTORY = "translations";
+            private static final Pattern TRANSLATION_BUNDLE = Pattern.compile("messages_([a-zA-Z-]+)\\.properties");
 
             private final MailTemplateConfiguration configuration;
             private final FileSystem fileSystem;
-            private final OpenPaaSUserDAO userDAO;
+            private final InternetAddressResolver internetAddressResolver;
+            private final InlineAssetRegistry inlineAssetRegistry;
 
             public Default(MailTemplateConfiguration configuration,
                            FileSystem fileSystem,
                            OpenPaaSUserDAO userDAO) {
+                this(configuration, fileSystem, new InternetAddressResolver(userDAO));
+            }
+
+            public Default(MailTemplateConfiguration configuration,
+                           FileSystem fileSystem,
+                           InternetAddressResolver internetAddressResolver) {
+                this(configuration, fileSystem, internetAddressResolver, new InlineAssetRegistry());
+            }
+
+            public Default(MailTemplateConfiguration configuration,
+                           FileSystem fileSystem,
+                           InternetAddressResolver internetAddressResolver,
+                           InlineAssetRegistry inlineAssetRegistry) {
                 this.configuration = configuration;
                 this.fileSystem = fileSystem;
-                this.userDAO = userDAO;
+                this.internetAddressResolver = internetAddressResolver;
+                this.inlineAssetRegistry = inlineAssetRegistry;
             }
 
             public MessageGenerator forLocalizedFeature(Language language, TemplateType templateType) throws IOException {
@@ -84,15 +115,52 @@ public class MessageGenerator {
                 I18NTranslator i18NTranslator = getI18NTranslator(templateType, language.locale());
 
                 HtmlBodyRenderer htmlBodyRenderer = HtmlBodyRenderer.forPath(templateFileDirectory.getAbsolutePath());
-                return new MessageGenerator(i18NTranslator, htmlBodyRenderer, userDAO);
+                return new MessageGenerator(i18NTranslator, htmlBodyRenderer, internetAddressResolver, inlineAssetRegistry);
             }
 
             public Factory cached() {
                 return new Cached(this);
             }
 
+            public Cached cached(MailTemplateCacheConfiguration cacheConfiguration, MetricFactory metricFactory) {
+                return new Cached(this, cacheConfiguration.maxSize(), metricFactory);
+            }
+
+            /**
+             * Lists every template of {@link MailTemplateConfiguration#templateLocationPath()} along with the languages
+             * it has a translation bundle for.
+             */
+            public List<CacheEntry> availableTemplates() throws IOException {
+                File[] templateDirectories = fileSystem.getFile(configuration.templateLocationPath())
+                    .listFiles(file -> new File(file, HtmlBodyRenderer.TEMPLATE_FILE_NAME).isFile());
+                if (templateDirectories == null) {
+                    return List.of();
+                }
+                return Arrays.stream(templateDirectories)
+                    .sorted()
+                    .flatMap(templateDirectory -> translatedLanguages(templateDirectory)
+                        .map(language -> new CacheEntry(language, new TemplateType(templateDirectory.getName()))))
+                    .toList();
+            }
+
+            public File templateDirectory(TemplateType templateType) throws FileNotFoundException {
+                return fileSystem.getFile(Paths.get(configuration.templateLocationPath(), templateType.value()).toString());
+            }
+
+            private Stream<Language> translatedLanguages(File templateDirectory) {
+                File[] bundles = new File(templateDirectory, TRANSLATIONS_DIRECTORY).listFiles();
+                if (bundles == null) {
+                    return Stream.of(Language.ENGLISH);
+                }
+                return Stream.concat(Stream.of(Language.ENGLISH), Arrays.stream(bundles)
+                        .map(bundle -> TRANSLATION_BUNDLE.matcher(bundle.getName()))
+                        .filter(Matcher::matches)
+                        .map(matcher -> new Language(Locale.forLanguageTag(matcher.group(1)))))
+                    .distinct();
+            }
+
             private I18NTranslator getI18NTranslator(TemplateType templateType, Locale locale) throws FileNotFoundException {
-                Path translationsPath = Path.of(configuration.templateLocationPath(), templateType.value(), "translations");
+                Path translationsPath = Path.of(configuration.templateLocationPath(), templateType.value(), TRANSLATIONS_DIRECTORY);
                 File translationsFileDirectory = fileSystem.getFile(translationsPath.toString());
                 return new PropertiesI18NTranslator.Factory(translationsFileDirectory).forLocale(locale);
             }
@@ -102,19 +170,47 @@ public class MessageGenerator {
 
         }
 
+        /**
+         * Keeps the compiled templates and loaded translations of the most recently used (language, template) pairs.
+         */
         class Cached implements Factory {
+            public static final String HIT_METRIC_NAME = "mail.template.cache.hit";
+            public static final String MISS_METRIC_NAME = "mail.template.cache.miss";
+            public static final String LOAD_TIMER_NAME = "mail.template.cache.load";
+
+            private static final Logger LOGGER = LoggerFactory.getLogger(Cached.class);
+
             private final Factory factory;
             private final Cache<CacheEntry, MessageGenerator> loadingCache;
+            private final MetricFactory metricFactory;
+            private final Metric hitMetric;
+            private final Metric missMetric;
 
             public Cached(Factory factory) {
+                this(factory, MailTemplateCacheConfiguration.MAX_SIZE_DEFAULT, new NoopMetricFactory());
+            }
+
+            public Cached(Factory factory, long maxSize, MetricFactory metricFactory) {
                 this.factory = factory;
-                this.loadingCache = CacheBuilder.newBuilder().build();
+                this.loadingCache = CacheBuilder.newBuilder()
+                    .maximumSize(maxSize)
+                    .build();
+                this.metricFactory = metricFactory;
+                this.hitMetric = metricFactory.generate(HIT_METRIC_NAME);
+                this.missMetric = metricFactory.generate(MISS_METRIC_NAME);
             }
 
             @Override
             public MessageGenerator forLocalizedFeature(Language language, TemplateType templateType) throws IOException {
+                CacheEntry key = new CacheEntry(language, templateType);
+                MessageGenerator cached = loadingCache.getIfPresent(key);
+                if (cached != null) {
+                    hitMetric.increment();
+                    return cached;
+                }
+                missMetric.increment();
                 try {
-                    return loadingCache.get(new CacheEntry(language, templateType), () -> factory.forLocalizedFeature(language, templateType));
+                    return loadingCache.get(key, () -> load(key));
                 } catch (ExecutionException e) {
                     if (e.getCause() instanceof IOException) {
                         throw (IOException) e.getCause();
@@ -122,6 +218,44 @@ public class MessageGenerator {
                     throw new RuntimeException(e);
                 }
             }
+
+            /**
+             * Loads the given entries ahead of their first use, so that the first notifications do not pay for template
+             * compilation and file system lookups.
+             *
+             * @return the count of entries successfully loaded
+             */
+            public int warmUp(Collection<CacheEntry> entries) {
+                int loaded = 0;
+                for (CacheEntry entry : entries) {
+                    try {
+                        loadingCache.put(entry, load(entry));
+                        loaded++;
+                    } catch (Exception e) {
+                        LOGGER.warn("Failed to warm up mail template {} for language {}", entry.templateType().value(), entry.language().value(), e);
+                    }
+                }
+                return loaded;
+            }
+
+            public void invalidate(TemplateType templateType) {
+                loadingCache.asMap().keySet().removeIf(entry -> entry.templateType().equals(templateType));
+            }
+
+            public Set<CacheEntry> cachedEntries() {
+                return ImmutableSet.copyOf(loadingCache.asMap().keySet());
+            }
+
+            private MessageGenerator load(CacheEntry entry) throws IOException {
+                TimeMetric timeMetric = metricFactory.timer(LOAD_TIMER_NAME);
+                try {
+                    MessageGenerator messageGenerator = factory.forLocalizedFeature(entry.language(), entry.templateType());
+                    messageGenerator.subjectRenderer();
+                    return messageGenerator;
+                } finally {
+                    timeMetric.stopAndPublish();
+                }
+            }
         }
     }
 
@@ -131,21 +265,39 @@ public class MessageGenerator {
         return new Factory.Default(configuration, fileSystem, userDAO);
     }
 
+    public static Factory.Default factory(MailTemplateConfiguration configuration,
+                                          FileSystem fileSystem,
+                                          InternetAddressResolver internetAddressResolver) {
+        return new Factory.Default(configuration, fileSystem, internetAddressResolver);
+    }
+
+    public static Factory.Default factory(MailTemplateConfiguration configuration,
+                                          FileSystem fileSystem,
+                                          InternetAddressResolver internetAddressResolver,
+                                          InlineAssetRegistry inlineAssetRegistry) {
+        return new Factory.Default(configuration, fileSystem, internetAddressResolver, inlineAssetRegistry);
+    }
+
     private static final String SUBJECT_KEY_NAME = "mail_subject";
     private static final String TRANSLATOR_FUNCTION_NAME = "translator";
     private static final String MULTIPART_MIXED = "mixed";
     private static final String MULTIPART_RELATED = "related";
+    private static final String UNDISCLOSED_RECIPIENTS = "undisclosed-recipients";
 
     private final HtmlBodyRenderer htmlBodyRenderer;
     private final I18NTranslator i18nTranslator;
-    private final OpenPaaSUserDAO userDAO;
+    private final InternetAddressResolver internetAddressResolver;
+    private final InlineAssetRegistry inlineAssetRegistry;
+    private volatile SubjectRenderer subjectRenderer;
 
     public MessageGenerator(I18NTranslator i18nTranslator,
                             HtmlBodyRenderer htmlBodyRenderer,
-                            OpenPaaSUserDAO userDAO) {
+                            InternetAddressResolver internetAddressResolver,
+                            InlineAssetRegistry inlineAssetRegistry) {
         this.i18nTranslator = i18nTranslator;
         this.htmlBodyRenderer = htmlBodyRenderer;
-        this.userDAO = userDAO;
+        this.internetAddressResolver = internetAddressResolver;
+        this.inlineAssetRegistry = inlineAssetRegistry;
     }
 
     public Mono<Message> generate(Username recipient, MailAddress fromAddress, Map<String, Object> scopedVariable) {
@@ -153,8 +305,7 @@ public class MessageGenerator {
     }
 
     public Mono<Message> generate(Username recipient, MailAddress fromAddress, Map<String, Object> scopedVariable, List<MimeAttachment> mimeAttachments) {
-        return resolveInternetAddress(Username.fromMailAddress(fromAddress))
-            .flatMap(fromAsInternetAddress -> generate(recipient, fromAsInternetAddress, scopedVariable, mimeAttachments));
+        return generate(List.of(recipient), fromAddress, scopedVariable, mimeAttachments);
     }
 
     public Mono<Message> generate(Username recipient, InternetAddress fromAddress, Map<String, Object> scopedVariable, List<MimeAttachment> mimeAttachments) {
@@ -162,15 +313,30 @@ public class MessageGenerator {
             .flatMap(recipientAsInternetAddress -> generate(recipientAsInternetAddress, fromAddress, scopedVariable, mimeAttachments));
     }
 
+    /**
+     * Renders a single message for recipients sharing the same content. The sender and the recipients are resolved at
+     * once. A message meant for several recipients is addressed to undisclosed recipients: the recipients are only
+     * carried by the envelope, so that none of them sees the others.
+     */
+    public Mono<Message> generate(List<Username> recipients, MailAddress fromAddress, Map<String, Object> scopedVariable, List<MimeAttachment> mimeAttachments) {
+        Username from = Username.fromMailAddress(fromAddress);
+        return resolveInternetAddresses(ImmutableList.<Username>builder().add(from).addAll(recipients).build())
+            .flatMap(addresses -> generate(recipients.stream().map(addresses::get).toList(), addresses.get(from), scopedVariable, mimeAttachments));
+    }
+
     public Mono<InternetAddress> resolveInternetAddress(Username username) {
-        return userDAO.retrieve(username)
-            .map(OpenPaaSUser::fullName)
-            .flatMap(fullName -> Mono.fromCallable(() -> new InternetAddress(username.asString(),
-                StringUtils.defaultIfEmpty(fullName, username.asString()))))
-            .switchIfEmpty(Mono.fromCallable(() -> new InternetAddress(username.asString())));
+        return internetAddressResolver.resolve(username);
+    }
+
+    public Mono<Map<Username, InternetAddress>> resolveInternetAddresses(Collection<Username> usernames) {
+        return internetAddressResolver.resolveAll(usernames);
     }
 
     public Mono<Message> generate(InternetAddress recipient, InternetAddress fromAddress, Map<String, Object> scopedVariable, List<MimeAttachment> mimeAttachments) {
+        return generate(List.of(recipient), fromAddress, scopedVariable, mimeAttachments);
+    }
+
+    private Mono<Message> generate(List<InternetAddress> recipients, InternetAddress fromAddress, Map<String, Object> scopedVariable, List<MimeAttachment> mimeAttachments) {
         return Mono.fromCallable(() -> {
             Map<String, Object> scopedVariableFinal = ImmutableMap.<String, Object>builder()
                 .putAll(scopedVariable)
@@ -188,14 +354,18 @@ public class MessageGenerator {
 
             MailAddress fromAsMailAddress = new MailAddress(fromAddress.getAddress());
 
-            return Message.Builder.of()
+            Message.Builder message = Message.Builder.of()
                 .setMessageId("<" + UUID.randomUUID() + "@" + Optional.of(fromAsMailAddress).map(MailAddress::getDomain).map(Domain::asString).orElse("") + ">")
                 .setDate(new Date())
                 .setSubject(subject(scopedVariableFinal))
                 .setBody(multipartBuilder.build())
-                .setFrom(fromAddress.toString())
-                .setTo(recipient.toString())
-                .build();
+                .setFrom(fromAddress.toString());
+            if (recipients.size() == 1) {
+                message.setTo(recipients.getFirst().toString());
+            } else {
+                message.setTo(new Group(UNDISCLOSED_RECIPIENTS, ImmutableList.of()));
+            }
+            return message.build();
         });
     }
 
@@ -234,7 +404,7 @@ public class MessageGenerator {
     private MultipartBuilder buildRelatedWithAttachments(BodyPartBuilder htmlBodyPart, List<MimeAttachment> inlineAttachments) {
         MultipartBuilder builder = MultipartBuilder.create(MULTIPART_RELATED)
             .addBodyPart(htmlBodyPart.build());
-        inlineAttachments.forEach(Throwing.consumer(a -> builder.addBodyPart(a.asBodyPart())));
+        inlineAttachments.forEach(Throwing.consumer(a -> builder.addBodyPart(inlineAssetRegistry.bodyPart(a))));
         return builder;
     }
 
@@ -248,14 +418,29 @@ public class MessageGenerator {
     }
 
     private String subject(Map<String, Object> scopedVariable) throws IOException {
-        String subjectTemplate = i18nTranslator.get(SUBJECT_KEY_NAME);
-        Preconditions.checkArgument(StringUtils.isNotBlank(subjectTemplate),
-            "Subject is empty, please check your translations for key: " + SUBJECT_KEY_NAME);
+        return subjectRenderer().render(scopedVariable);
+    }
 
-        return SubjectRenderer.of(subjectTemplate).render(scopedVariable);
+    /**
+     * The subject template only depends on the translations, hence it is compiled once.
+     */
+    SubjectRenderer subjectRenderer() throws IOException {
+        SubjectRenderer renderer = subjectRenderer;
+        if (renderer == null) {
+            String subjectTemplate = i18nTranslator.get(SUBJECT_KEY_NAME);
+            Preconditions.checkArgument(StringUtils.isNotBlank(subjectTemplate),
+                "Subject is empty, please check your translations for key: " + SUBJECT_KEY_NAME);
+            renderer = SubjectRenderer.of(subjectTemplate);
+            subjectRenderer = renderer;
+        }
+        return renderer;
     }
 
     public I18NTranslator getI18nTranslator() {
         return i18nTranslator;
     }
+
+    HtmlBodyRenderer htmlBodyRenderer() {
+        return htmlBodyRenderer;
+    }
 }
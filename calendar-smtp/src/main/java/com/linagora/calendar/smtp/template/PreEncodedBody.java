@@ -0,0 +1,71 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp.template;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.james.mime4j.codec.CodecUtil;
+import org.apache.james.mime4j.dom.BinaryBody;
+
+/**
+ * Immutable binary body that also holds its base64 transfer form, encoded once when the body is created.
+ *
+ * <p>The {@link PreEncodedMessageWriter} writes the transfer form as is. Any other writer reads the decoded content and
+ * encodes it again, which yields the very same bytes: both forms come from the same mime4j base64 encoder.
+ */
+public class PreEncodedBody extends BinaryBody {
+    public static PreEncodedBody base64(byte[] content) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (OutputStream encoder = CodecUtil.wrapBase64(encoded)) {
+            encoder.write(content);
+        }
+        return new PreEncodedBody(content.clone(), encoded.toByteArray());
+    }
+
+    private final byte[] content;
+    private final byte[] encoded;
+
+    private PreEncodedBody(byte[] content, byte[] encoded) {
+        this.content = content;
+        this.encoded = encoded;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new ByteArrayInputStream(content);
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(content);
+    }
+
+    public void writeEncodedTo(OutputStream out) throws IOException {
+        out.write(encoded);
+    }
+
+    @Override
+    public void dispose() {
+        // Shared between messages: nothing to release when one of them is disposed
+    }
+}
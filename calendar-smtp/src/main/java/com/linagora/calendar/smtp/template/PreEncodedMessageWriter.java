@@ -0,0 +1,40 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp.template;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.james.mime4j.dom.Entity;
+import org.apache.james.mime4j.message.DefaultMessageWriter;
+
+/**
+ * {@link DefaultMessageWriter} copying the transfer form of {@link PreEncodedBody} parts instead of encoding them again.
+ */
+public class PreEncodedMessageWriter extends DefaultMessageWriter {
+    @Override
+    public void writeEntity(Entity entity, OutputStream out) throws IOException {
+        if (entity.getBody() instanceof PreEncodedBody body) {
+            writeHeader(entity.getHeader(), out);
+            body.writeEncodedTo(out);
+            return;
+        }
+        super.writeEntity(entity, out);
+    }
+}
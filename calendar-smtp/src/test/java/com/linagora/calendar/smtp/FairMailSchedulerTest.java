@@ -0,0 +1,209 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.james.core.Domain;
+import org.apache.james.utils.UpdatableTickingClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class FairMailSchedulerTest {
+    private static final Domain TENANT_A = Domain.of("tenant-a.tld");
+    private static final Domain TENANT_B = Domain.of("tenant-b.tld");
+    private static final MailSenderConfiguration.FairQueueing SINGLE_SLOT = new MailSenderConfiguration.FairQueueing(true, 1, 1000, 1000, ImmutableMap.of());
+
+    private List<String> sent;
+
+    @BeforeEach
+    void setUp() {
+        sent = new CopyOnWriteArrayList<>();
+    }
+
+    @Test
+    void tenantsShouldBeServedInRoundRobin() {
+        FairMailScheduler testee = new FairMailScheduler(SINGLE_SLOT, Clock.systemUTC());
+        Sinks.Empty<Void> gate = occupySlot(testee);
+
+        schedule(testee, TENANT_A, "a1", "a2", "a3", "a4");
+        schedule(testee, TENANT_B, "b1", "b2");
+        gate.tryEmitEmpty();
+
+        assertThat(sent).containsExactly("a1", "b1", "a2", "b2", "a3", "a4");
+    }
+
+    @Test
+    void tenantsShouldBeServedAccordingToTheirWeight() {
+        FairMailScheduler testee = new FairMailScheduler(new MailSenderConfiguration.FairQueueing(true, 1, 1000, 1000,
+            ImmutableMap.of(TENANT_A, 2)), Clock.systemUTC());
+        Sinks.Empty<Void> gate = occupySlot(testee);
+
+        schedule(testee, TENANT_A, "a1", "a2", "a3", "a4");
+        schedule(testee, TENANT_B, "b1", "b2");
+        gate.tryEmitEmpty();
+
+        assertThat(sent).containsExactly("a1", "a2", "b1", "a3", "a4", "b2");
+    }
+
+    @Test
+    void priorityLaneShouldBeServedFirst() {
+        FairMailScheduler testee = new FairMailScheduler(SINGLE_SLOT, Clock.systemUTC());
+        Sinks.Empty<Void> gate = occupySlot(testee);
+
+        schedule(testee, TENANT_A, "a1", "a2", "a3");
+        testee.schedule(FairMailScheduler.Lane.PRIORITY, Optional.of(TENANT_B), record("alarm")).subscribe();
+        gate.tryEmitEmpty();
+
+        assertThat(sent).containsExactly("alarm", "a1", "a2", "a3");
+    }
+
+    @Test
+    void concurrencyShouldBeBounded() {
+        FairMailScheduler testee = new FairMailScheduler(new MailSenderConfiguration.FairQueueing(true, 2, 1000, 1000, ImmutableMap.of()), Clock.systemUTC());
+
+        Flux.range(0, 5).subscribe(i -> testee.schedule(FairMailScheduler.Lane.NORMAL, Optional.of(TENANT_A), Mono.never()).subscribe());
+
+        assertThat(testee.inFlight()).isEqualTo(2);
+        assertThat(testee.pending()).isEqualTo(3);
+    }
+
+    @Test
+    void mailsCancelledWhileWaitingShouldLeaveTheQueue() {
+        FairMailScheduler testee = new FairMailScheduler(SINGLE_SLOT, Clock.systemUTC());
+        Sinks.Empty<Void> gate = occupySlot(testee);
+
+        Disposable waiting = testee.schedule(FairMailScheduler.Lane.NORMAL, Optional.of(TENANT_A), record("cancelled")).subscribe();
+        schedule(testee, TENANT_B, "b1");
+        waiting.dispose();
+        gate.tryEmitEmpty();
+
+        assertThat(sent).containsExactly("b1");
+        assertThat(testee.pending()).isZero();
+        assertThat(testee.inFlight()).isZero();
+    }
+
+    @Test
+    void failedMailsShouldReleaseTheirSlot() {
+        FairMailScheduler testee = new FairMailScheduler(SINGLE_SLOT, Clock.systemUTC());
+
+        testee.schedule(FairMailScheduler.Lane.NORMAL, Optional.of(TENANT_A), Mono.error(new SmtpSendingFailedException("boom")))
+            .onErrorResume(any -> Mono.empty())
+            .block();
+        schedule(testee, TENANT_A, "a1");
+
+        assertThat(sent).containsExactly("a1");
+        assertThat(testee.inFlight()).isZero();
+    }
+
+    @Test
+    void tenantsShouldBeRateLimited() {
+        FairMailScheduler testee = new FairMailScheduler(new MailSenderConfiguration.FairQueueing(true, 8, 10, 2, ImmutableMap.of()), Clock.systemUTC());
+
+        long start = System.nanoTime();
+        Flux.range(0, 5)
+            .flatMap(i -> testee.schedule(FairMailScheduler.Lane.NORMAL, Optional.of(TENANT_A), record("a" + i)))
+            .then()
+            .block(Duration.ofSeconds(10));
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        // 2 mails from the burst, then 3 more at 10 per second
+        assertThat(elapsed).isGreaterThanOrEqualTo(Duration.ofMillis(250));
+        assertThat(sent).hasSize(5);
+    }
+
+    @Test
+    void rateLimitedTenantShouldNotDelayTheOthers() {
+        FairMailScheduler testee = new FairMailScheduler(new MailSenderConfiguration.FairQueueing(true, 8, 1, 1, ImmutableMap.of()), Clock.systemUTC());
+
+        schedule(testee, TENANT_A, "a1", "a2", "a3");
+        schedule(testee, TENANT_B, "b1");
+
+        assertThat(sent).containsExactly("a1", "b1");
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertThat(sent).contains("a2"));
+    }
+
+    @Test
+    void mailsWithoutTenantShouldNotBeRateLimited() {
+        FairMailScheduler testee = new FairMailScheduler(new MailSenderConfiguration.FairQueueing(true, 8, 1, 1, ImmutableMap.of()), Clock.systemUTC());
+
+        Flux.range(0, 5)
+            .subscribe(i -> testee.schedule(FairMailScheduler.Lane.NORMAL, Optional.empty(), record("none" + i)).subscribe());
+
+        assertThat(sent).hasSize(5);
+    }
+
+    @Test
+    void idleTenantShouldBeForgottenOnceItsBucketIsFull() {
+        UpdatableTickingClock clock = new UpdatableTickingClock(Instant.parse("2026-01-01T10:00:00Z"));
+        FairMailScheduler testee = new FairMailScheduler(new MailSenderConfiguration.FairQueueing(true, 8, 10, 2, ImmutableMap.of()), clock);
+
+        schedule(testee, TENANT_A, "a1", "a2");
+        clock.setInstant(clock.instant().plusSeconds(1));
+        schedule(testee, TENANT_B, "b1");
+
+        assertThat(sent).containsExactly("a1", "a2", "b1");
+        assertThat(testee.tenantCount()).isEqualTo(1);
+    }
+
+    @Test
+    void idleTenantShouldBeKeptWhileItsBucketRefills() {
+        UpdatableTickingClock clock = new UpdatableTickingClock(Instant.parse("2026-01-01T10:00:00Z"));
+        FairMailScheduler testee = new FairMailScheduler(new MailSenderConfiguration.FairQueueing(true, 8, 1, 2, ImmutableMap.of()), clock);
+
+        schedule(testee, TENANT_A, "a1", "a2");
+        clock.setInstant(clock.instant().plusSeconds(1));
+        schedule(testee, TENANT_B, "b1");
+        schedule(testee, TENANT_A, "a3", "a4");
+
+        assertThat(testee.tenantCount()).isEqualTo(2);
+        assertThat(sent).containsExactly("a1", "a2", "b1", "a3");
+    }
+
+    private Sinks.Empty<Void> occupySlot(FairMailScheduler testee) {
+        Sinks.Empty<Void> gate = Sinks.empty();
+        testee.schedule(FairMailScheduler.Lane.NORMAL, Optional.of(TENANT_A), gate.asMono()).subscribe();
+        return gate;
+    }
+
+    private void schedule(FairMailScheduler testee, Domain tenant, String... mails) {
+        for (String mail : mails) {
+            testee.schedule(FairMailScheduler.Lane.NORMAL, Optional.of(tenant), record(mail)).subscribe();
+        }
+    }
+
+    private Mono<Void> record(String mail) {
+        return Mono.fromRunnable(() -> sent.add(mail));
+    }
+}
@@ -0,0 +1,141 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.james.core.Domain;
+import org.apache.james.core.MailAddress;
+import org.apache.james.core.MaybeSender;
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.message.DefaultMessageBuilder;
+import org.apache.james.util.Port;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import io.restassured.RestAssured;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class FairQueuedMailSenderTest {
+    private static final MaybeSender NO_REPLY = MaybeSender.getMailSender("no-reply@localhost");
+
+    @RegisterExtension
+    static final MockSmtpServerExtension mockSmtpExtension = new MockSmtpServerExtension();
+
+    private MailSender.Factory transport;
+    private FairMailScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        MailSenderConfiguration mailSenderConfiguration = new MailSenderConfiguration(
+            "localhost",
+            Port.of(mockSmtpExtension.getMockSmtp().getSmtpPort()),
+            "localhost",
+            Optional.empty(),
+            Optional.empty(),
+            false,
+            false,
+            false);
+        transport = new MailSender.Factory.Default(mailSenderConfiguration, EventEmailFilter.acceptAll());
+        scheduler = new FairMailScheduler(new MailSenderConfiguration.FairQueueing(true, 1, 1000, 1000, ImmutableMap.of()), Clock.systemUTC());
+
+        RestAssured.baseURI = "http://localhost";
+        RestAssured.port = mockSmtpExtension.getMockSmtp().getRestApiPort();
+        RestAssured.delete("/smtpMails");
+        RestAssured.delete("/smtpBehaviors");
+    }
+
+    @Test
+    void smallTenantShouldNotWaitForTheCampaignOfALargeOne() {
+        MailSender sender = new MailSender.Factory.FairQueued(transport, scheduler, FairMailScheduler.Lane.NORMAL).create().block();
+
+        Flux.concat(Flux.range(0, 20).map(i -> mail("organizer@campaign.tld", "attendee" + i + "@localhost")),
+                Flux.range(0, 2).map(i -> mail("organizer@small.tld", "small" + i + "@localhost")))
+            .flatMap(sender::send, 32)
+            .then()
+            .block(Duration.ofMinutes(1));
+
+        List<String> recipients = deliveredRecipients();
+        assertThat(recipients).hasSize(22);
+        // Round robin: the small tenant gets every other slot rather than waiting for the 20 campaign mails
+        assertThat(recipients.indexOf("small1@localhost")).isLessThan(6);
+    }
+
+    @Test
+    void alarmsShouldOvertakeQueuedMails() {
+        MailSender bulkSender = new MailSender.Factory.FairQueued(transport, scheduler, FairMailScheduler.Lane.NORMAL).create().block();
+        MailSender alarmSender = new MailSender.Factory.FairQueued(transport, scheduler, FairMailScheduler.Lane.PRIORITY).create().block();
+
+        Mono<Void> campaign = Flux.range(0, 10)
+            .map(i -> mail("organizer@campaign.tld", "attendee" + i + "@localhost"))
+            .flatMap(bulkSender::send, 16)
+            .then()
+            .cache();
+        campaign.subscribe();
+        Mono<Void> alarm = alarmSender.send(mail("organizer@campaign.tld", "alarm@localhost"));
+        Mono.when(campaign, alarm).block(Duration.ofMinutes(1));
+
+        List<String> recipients = deliveredRecipients();
+        assertThat(recipients).hasSize(11);
+        assertThat(recipients.indexOf("alarm@localhost")).isLessThan(2);
+    }
+
+    @Test
+    void tenantShouldBeTheDomainOfTheFromHeader() {
+        assertThat(MailSender.FairQueued.tenantOf(mail("organizer@tenant.tld", "attendee@localhost")))
+            .contains(Domain.of("tenant.tld"));
+    }
+
+    @Test
+    void tenantShouldFallBackToTheEnvelopeSenderDomain() throws Exception {
+        Message message = new DefaultMessageBuilder().parseMessage(new ByteArrayInputStream(
+            "To: attendee@localhost\nSubject: Test\n\nHello!".getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(MailSender.FairQueued.tenantOf(new Mail(NO_REPLY, ImmutableList.of(new MailAddress("attendee@localhost")), message)))
+            .contains(Domain.of("localhost"));
+    }
+
+    private List<String> deliveredRecipients() {
+        return RestAssured.get("/smtpMails").jsonPath().<List<String>>getList("recipients.address").stream()
+            .map(List::getFirst)
+            .toList();
+    }
+
+    private Mail mail(String from, String recipient) {
+        try {
+            String rawMessage = "From: " + from + "\nTo: " + recipient + "\nSubject: Test\n\nHello!";
+            Message message = new DefaultMessageBuilder().parseMessage(new ByteArrayInputStream(rawMessage.getBytes(StandardCharsets.UTF_8)));
+            return new Mail(NO_REPLY, ImmutableList.of(new MailAddress(recipient)), message);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -26,8 +26,12 @@ import static org.awaitility.Awaitility.await;
 import org.junit.jupiter.api.AfterEach;
 import org.mockito.Mockito;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
@@ -35,14 +39,19 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.Optional;
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
 
 import org.apache.james.core.MailAddress;
 import org.apache.james.core.MaybeSender;
 import org.apache.james.mime4j.dom.Message;
 import org.apache.james.mime4j.message.DefaultMessageBuilder;
+import org.apache.james.mime4j.message.DefaultMessageWriter;
 import org.apache.james.util.Port;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -56,6 +65,7 @@ import io.restassured.path.json.JsonPath;
 import java.util.List;
 
 class MailSenderTest {
+    private static final String LEADING_DOT_LINE = ".This line starts with a dot";
 
     @RegisterExtension
     static final MockSmtpServerExtension mockSmtpExtension = new MockSmtpServerExtension();
@@ -378,4 +388,174 @@ class MailSenderTest {
         serverSocket.close();
         serverThread.join(5000);
     }
+
+    @Test
+    void shouldDeliverLargeAttachmentIntact() throws Exception {
+        String attachment = Base64.getMimeEncoder().encodeToString(randomBytes(5 * 1024 * 1024));
+        Mail mail = new Mail(
+            MaybeSender.of(new MailAddress("sender@localhost")),
+            ImmutableList.of(new MailAddress("recipient@localhost")),
+            messageWithAttachment(attachment));
+
+        mailSender.send(mail).block();
+        JsonPath response = RestAssured.get("/smtpMails").jsonPath();
+
+        assertSoftly(Throwing.consumer(softly -> {
+            softly.assertThat(response.getList("")).hasSize(1);
+            softly.assertThat(response.getString("[0].message")).containsIgnoringNewLines(attachment);
+            softly.assertThat(response.getString("[0].message")).containsPattern("(?m)^" + Pattern.quote(LEADING_DOT_LINE) + "\\r?$");
+        }));
+    }
+
+    @Test
+    void shouldSendChunksWhenTheServerSupportsChunking() throws Exception {
+        try (ChunkingSmtpServer server = new ChunkingSmtpServer()) {
+            Message message = messageWithAttachment(Base64.getMimeEncoder().encodeToString(randomBytes(512 * 1024)));
+            Mail mail = new Mail(
+                MaybeSender.of(new MailAddress("sender@localhost")),
+                ImmutableList.of(new MailAddress("recipient@localhost")),
+                message);
+            MailSenderConfiguration config = new MailSenderConfiguration(
+                "localhost", Port.of(server.port()), "localhost",
+                Optional.empty(), Optional.empty(),
+                false, false, false);
+
+            new MailSender.Factory.Default(config, eventEmailFilter).create()
+                .flatMap(sender -> sender.send(mail))
+                .block(Duration.ofSeconds(30));
+
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            new DefaultMessageWriter().writeMessage(message, expected);
+            await().atMost(Duration.ofSeconds(10)).untilAsserted(() -> assertThat(server.quit()).isTrue());
+            assertSoftly(softly -> {
+                softly.assertThat(server.mailFrom()).isEqualTo("MAIL FROM:<sender@localhost> BODY=8BITMIME");
+                softly.assertThat(server.chunkCount()).isGreaterThan(1);
+                softly.assertThat(server.received()).isEqualTo(expected.toByteArray());
+            });
+        }
+    }
+
+    private Message messageWithAttachment(String base64Attachment) throws IOException {
+        String rawMessage = "From: sender@localhost\r\n" +
+            "To: recipient@localhost\r\n" +
+            "Subject: Large attachment\r\n" +
+            "MIME-Version: 1.0\r\n" +
+            "Content-Type: multipart/mixed; boundary=\"boundary\"\r\n" +
+            "\r\n" +
+            "--boundary\r\n" +
+            "Content-Type: text/plain; charset=UTF-8\r\n" +
+            "\r\n" +
+            LEADING_DOT_LINE + "\r\n" +
+            "--boundary\r\n" +
+            "Content-Type: application/octet-stream\r\n" +
+            "Content-Transfer-Encoding: base64\r\n" +
+            "\r\n" +
+            base64Attachment + "\r\n" +
+            "--boundary--\r\n";
+        return new DefaultMessageBuilder().parseMessage(new ByteArrayInputStream(rawMessage.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Minimal SMTP server advertising 8BITMIME and CHUNKING, recording the 'bdat' chunks of a single transaction.
+     */
+    private static class ChunkingSmtpServer implements AutoCloseable {
+        private final ServerSocket serverSocket;
+        private final Thread serverThread;
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        private final AtomicReference<String> mailFrom = new AtomicReference<>();
+        private final AtomicInteger chunkCount = new AtomicInteger();
+        private volatile boolean quit = false;
+
+        ChunkingSmtpServer() throws IOException {
+            serverSocket = new ServerSocket();
+            serverSocket.bind(new InetSocketAddress("localhost", 0));
+            serverThread = new Thread(this::serve);
+            serverThread.setDaemon(true);
+            serverThread.start();
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        String mailFrom() {
+            return mailFrom.get();
+        }
+
+        int chunkCount() {
+            return chunkCount.get();
+        }
+
+        synchronized byte[] received() {
+            return received.toByteArray();
+        }
+
+        boolean quit() {
+            return quit;
+        }
+
+        private void serve() {
+            try (Socket socket = serverSocket.accept()) {
+                socket.setSoTimeout(10000);
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                OutputStream os = socket.getOutputStream();
+                reply(os, "220 stand-in ESMTP");
+                String line;
+                while ((line = readLine(in)) != null) {
+                    if (line.startsWith("EHLO")) {
+                        reply(os, "250-stand-in\r\n250-8BITMIME\r\n250 CHUNKING");
+                    } else if (line.startsWith("MAIL FROM")) {
+                        mailFrom.set(line);
+                        reply(os, "250 OK");
+                    } else if (line.startsWith("BDAT")) {
+                        byte[] chunk = in.readNBytes(Integer.parseInt(line.split(" ")[1]));
+                        synchronized (this) {
+                            received.write(chunk);
+                        }
+                        chunkCount.incrementAndGet();
+                        reply(os, "250 OK");
+                    } else if (line.startsWith("QUIT")) {
+                        reply(os, "221 Bye");
+                        quit = true;
+                        return;
+                    } else {
+                        reply(os, "250 OK");
+                    }
+                }
+            } catch (IOException e) {
+                // expected on cleanup
+            }
+        }
+
+        private String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b == -1) {
+                    return null;
+                }
+                if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            return line.toString(StandardCharsets.US_ASCII);
+        }
+
+        private void reply(OutputStream os, String reply) throws IOException {
+            os.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            os.flush();
+        }
+
+        @Override
+        public void close() throws Exception {
+            serverSocket.close();
+            serverThread.join(5000);
+        }
+    }
 }
@@ -0,0 +1,126 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.net.io.DotTerminatedMessageWriter;
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.message.DefaultMessageBuilder;
+import org.apache.james.mime4j.message.DefaultMessageWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Writes a notification carrying an attachment to a discarding connection as the 'data' command used to (serialized
+ * into a byte array, decoded into a String, then written through the commons-net dot-terminated writer) and as it
+ * now does (serialized straight into the connection), with the 'bdat' chunks for comparison. Compare the
+ * {@code gc.alloc.rate.norm} figures reported by the GC profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MailSerializationBenchmark {
+    @Param({"65536", "4194304"})
+    public int attachmentSize;
+
+    private Message message;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] attachment = new byte[attachmentSize];
+        new Random(42).nextBytes(attachment);
+        String rawMessage = "From: sender@localhost\r\n" +
+            "To: recipient@localhost\r\n" +
+            "Subject: Team Meeting\r\n" +
+            "MIME-Version: 1.0\r\n" +
+            "Content-Type: multipart/mixed; boundary=\"boundary\"\r\n" +
+            "\r\n" +
+            "--boundary\r\n" +
+            "Content-Type: text/plain; charset=UTF-8\r\n" +
+            "\r\n" +
+            "Discuss project updates.\r\n" +
+            "--boundary\r\n" +
+            "Content-Type: application/octet-stream\r\n" +
+            "Content-Transfer-Encoding: base64\r\n" +
+            "\r\n" +
+            Base64.getMimeEncoder().encodeToString(attachment) + "\r\n" +
+            "--boundary--\r\n";
+        message = new DefaultMessageBuilder().parseMessage(new ByteArrayInputStream(rawMessage.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public void bufferedData() throws IOException {
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            new DefaultMessageWriter().writeMessage(message, baos);
+            try (Writer writer = new DotTerminatedMessageWriter(new OutputStreamWriter(OutputStream.nullOutputStream(), StandardCharsets.UTF_8))) {
+                writer.write(baos.toString(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Benchmark
+    public void streamedData() throws IOException {
+        try (OutputStream data = new SmtpDataOutputStream(new BufferedOutputStream(OutputStream.nullOutputStream(), 8 * 1024))) {
+            new DefaultMessageWriter().writeMessage(message, data);
+        }
+    }
+
+    @Benchmark
+    public void streamedChunks() throws IOException {
+        try (OutputStream chunks = new SmtpChunkingOutputStream(OutputStream.nullOutputStream(), MailSender.Default.CHUNK_SIZE, () -> { })) {
+            new DefaultMessageWriter().writeMessage(message, chunks);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(MailSerializationBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build())
+            .run();
+    }
+}
@@ -0,0 +1,329 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+import static org.awaitility.Awaitility.await;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.apache.james.core.MailAddress;
+import org.apache.james.core.MaybeSender;
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.dom.SingleBody;
+import org.apache.james.mime4j.message.DefaultMessageBuilder;
+import org.apache.james.util.Port;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import reactor.core.publisher.Mono;
+
+class PipeliningMailSenderTest {
+    private static final Duration LATENCY = Duration.ofMillis(20);
+    private static final int RECIPIENT_COUNT = 50;
+
+    @Test
+    void pipeliningShouldSaveARoundTripPerRecipient() throws Exception {
+        try (LatencySmtpServer server = new LatencySmtpServer(true)) {
+            send(server, recipients(RECIPIENT_COUNT));
+
+            assertSoftly(softly -> {
+                softly.assertThat(server.acceptedRecipients()).hasSize(RECIPIENT_COUNT);
+                softly.assertThat(server.messageCount()).isEqualTo(1);
+                softly.assertThat(server.roundTrips()).isLessThan(10);
+            });
+        }
+    }
+
+    @Test
+    void serverWithoutPipeliningShouldReceiveACommandPerRoundTrip() throws Exception {
+        try (LatencySmtpServer server = new LatencySmtpServer(false)) {
+            send(server, recipients(RECIPIENT_COUNT));
+
+            assertSoftly(softly -> {
+                softly.assertThat(server.acceptedRecipients()).hasSize(RECIPIENT_COUNT);
+                softly.assertThat(server.messageCount()).isEqualTo(1);
+                softly.assertThat(server.roundTrips()).isGreaterThan(RECIPIENT_COUNT);
+            });
+        }
+    }
+
+    @Test
+    void pipelinedRepliesShouldBeMappedToTheirRecipient() throws Exception {
+        try (LatencySmtpServer server = new LatencySmtpServer(true)) {
+            List<MailAddress> recipients = ImmutableList.of(
+                new MailAddress("a@localhost"),
+                new MailAddress("rejected1@localhost"),
+                new MailAddress("b@localhost"),
+                new MailAddress("rejected2@localhost"));
+
+            Mail mail = mail(recipients);
+            List<MailAddress> rejectedRecipients = mailSender(server)
+                .flatMap(sender -> sender.sendReportingRejectedRecipients(mail))
+                .block(Duration.ofSeconds(30));
+
+            await().atMost(Duration.ofSeconds(10)).untilAsserted(() -> assertThat(server.quit()).isTrue());
+            assertSoftly(softly -> {
+                softly.assertThat(rejectedRecipients).containsExactly(new MailAddress("rejected1@localhost"), new MailAddress("rejected2@localhost"));
+                softly.assertThat(server.acceptedRecipients()).containsExactly("a@localhost", "b@localhost");
+                softly.assertThat(server.messageCount()).isEqualTo(1);
+            });
+        }
+    }
+
+    @Test
+    void pipelinedTransactionShouldFailWhenAllRecipientsAreRejected() throws Exception {
+        try (LatencySmtpServer server = new LatencySmtpServer(true)) {
+            Mail mail = mail(ImmutableList.of(new MailAddress("rejected1@localhost"), new MailAddress("rejected2@localhost")));
+
+            assertThatThrownBy(() -> mailSender(server)
+                .flatMap(sender -> sender.send(mail))
+                .block(Duration.ofSeconds(30)))
+                .isInstanceOf(SmtpSendingFailedException.class)
+                .hasMessageContaining("All 'rcpt to' commands failed");
+            assertThat(server.messageCount()).isZero();
+        }
+    }
+
+    @Test
+    void messageFailingToBeWrittenShouldNotBeTerminated() throws Exception {
+        try (LatencySmtpServer server = new LatencySmtpServer(true)) {
+            Message message = Message.Builder.of()
+                .setFrom("sender@localhost")
+                .setSubject("Truncated")
+                .setBody(new FailingBody())
+                .build();
+            Mail mail = new Mail(MaybeSender.of(new MailAddress("sender@localhost")), ImmutableList.of(new MailAddress("a@localhost")), message);
+
+            assertThatThrownBy(() -> mailSender(server)
+                .flatMap(sender -> sender.send(mail))
+                .block(Duration.ofSeconds(30)))
+                .hasRootCauseInstanceOf(IOException.class);
+            server.close();
+            assertThat(server.messageCount()).isZero();
+        }
+    }
+
+    private void send(LatencySmtpServer server, List<MailAddress> recipients) throws Exception {
+        Mail mail = mail(recipients);
+        mailSender(server)
+            .flatMap(sender -> sender.send(mail))
+            .block(Duration.ofSeconds(30));
+        await().atMost(Duration.ofSeconds(10)).untilAsserted(() -> assertThat(server.quit()).isTrue());
+    }
+
+    private Mono<MailSender> mailSender(LatencySmtpServer server) {
+        MailSenderConfiguration config = new MailSenderConfiguration(
+            "localhost", Port.of(server.port()), "localhost",
+            Optional.empty(), Optional.empty(),
+            false, false, false);
+        return new MailSender.Factory.Default(config, EventEmailFilter.acceptAll()).create();
+    }
+
+    private List<MailAddress> recipients(int count) {
+        return IntStream.range(0, count)
+            .mapToObj(i -> address("recipient" + i + "@localhost"))
+            .collect(ImmutableList.toImmutableList());
+    }
+
+    private MailAddress address(String address) {
+        try {
+            return new MailAddress(address);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Mail mail(List<MailAddress> recipients) throws Exception {
+        String rawMessage = "From: sender@localhost\r\n" +
+            "To: undisclosed-recipients:;\r\n" +
+            "Subject: Pipelining\r\n" +
+            "\r\n" +
+            "Hello\r\n";
+        Message message = new DefaultMessageBuilder().parseMessage(new ByteArrayInputStream(rawMessage.getBytes(StandardCharsets.UTF_8)));
+        return new Mail(MaybeSender.of(new MailAddress("sender@localhost")), recipients, message);
+    }
+
+    /**
+     * A body whose content can not be read past its first line.
+     */
+    private static class FailingBody extends SingleBody {
+        @Override
+        public InputStream getInputStream() {
+            return new SequenceInputStream(new ByteArrayInputStream("First line\r\n".getBytes(StandardCharsets.US_ASCII)),
+                new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("Failed to read the body");
+                    }
+                });
+        }
+    }
+
+    /**
+     * SMTP stand-in delaying each of its responses by {@link #LATENCY}. Replies to commands sent in the same batch are
+     * delayed and flushed together, as a pipelining server would.
+     */
+    private static class LatencySmtpServer implements AutoCloseable {
+        private final boolean pipelining;
+        private final ServerSocket serverSocket;
+        private final Thread serverThread;
+        private final List<String> acceptedRecipients = new CopyOnWriteArrayList<>();
+        private final AtomicInteger messageCount = new AtomicInteger();
+        private final AtomicInteger roundTrips = new AtomicInteger();
+        private final ByteArrayOutputStream pendingReplies = new ByteArrayOutputStream();
+        private volatile boolean quit = false;
+
+        LatencySmtpServer(boolean pipelining) throws IOException {
+            this.pipelining = pipelining;
+            serverSocket = new ServerSocket();
+            serverSocket.bind(new InetSocketAddress("localhost", 0));
+            serverThread = new Thread(this::serve);
+            serverThread.setDaemon(true);
+            serverThread.start();
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        List<String> acceptedRecipients() {
+            return acceptedRecipients;
+        }
+
+        int messageCount() {
+            return messageCount.get();
+        }
+
+        int roundTrips() {
+            return roundTrips.get();
+        }
+
+        boolean quit() {
+            return quit;
+        }
+
+        private void serve() {
+            try (Socket socket = serverSocket.accept()) {
+                socket.setSoTimeout(10000);
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                OutputStream os = socket.getOutputStream();
+                reply(in, os, "220 stand-in ESMTP");
+                String line;
+                while ((line = readLine(in)) != null) {
+                    if (line.startsWith("EHLO")) {
+                        reply(in, os, pipelining ? "250-stand-in\r\n250-PIPELINING\r\n250 OK" : "250-stand-in\r\n250 OK");
+                    } else if (line.startsWith("RCPT TO")) {
+                        String recipient = line.substring(line.indexOf('<') + 1, line.indexOf('>'));
+                        if (recipient.startsWith("rejected")) {
+                            reply(in, os, "550 5.1.1 No such user");
+                        } else {
+                            acceptedRecipients.add(recipient);
+                            reply(in, os, "250 OK");
+                        }
+                    } else if (line.startsWith("DATA")) {
+                        if (acceptedRecipients.isEmpty()) {
+                            reply(in, os, "554 No valid recipients");
+                        } else {
+                            reply(in, os, "354 Start mail input");
+                            if (!readMessage(in)) {
+                                return;
+                            }
+                            messageCount.incrementAndGet();
+                            reply(in, os, "250 OK");
+                        }
+                    } else if (line.startsWith("QUIT")) {
+                        reply(in, os, "221 Bye");
+                        quit = true;
+                        return;
+                    } else {
+                        reply(in, os, "250 OK");
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                // expected on cleanup
+            }
+        }
+
+        /**
+         * @return whether the message was terminated, rather than cut by the connection being closed
+         */
+        private boolean readMessage(InputStream in) throws IOException {
+            String line;
+            while ((line = readLine(in)) != null) {
+                if (line.equals(".")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b == -1) {
+                    return null;
+                }
+                if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            return line.toString(StandardCharsets.US_ASCII);
+        }
+
+        private void reply(InputStream in, OutputStream os, String reply) throws IOException, InterruptedException {
+            pendingReplies.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            if (pipelining && in.available() > 0) {
+                // More commands of the same batch are pending
+                return;
+            }
+            Thread.sleep(LATENCY.toMillis());
+            pendingReplies.writeTo(os);
+            os.flush();
+            pendingReplies.reset();
+            roundTrips.incrementAndGet();
+        }
+
+        @Override
+        public void close() throws Exception {
+            serverSocket.close();
+            serverThread.join(5000);
+        }
+    }
+}
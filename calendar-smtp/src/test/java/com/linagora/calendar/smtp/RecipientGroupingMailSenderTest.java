@@ -0,0 +1,241 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.apache.james.core.MailAddress;
+import org.apache.james.core.MaybeSender;
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.message.DefaultMessageBuilder;
+import org.apache.james.util.Port;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import io.restassured.RestAssured;
+import io.restassured.path.json.JsonPath;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class RecipientGroupingMailSenderTest {
+    private static final Duration WINDOW = Duration.ofMillis(200);
+    private static final String BODY = "Event cancelled";
+
+    @RegisterExtension
+    static final MockSmtpServerExtension mockSmtpExtension = new MockSmtpServerExtension();
+
+    private MailSender.Factory mailSenderFactory;
+    private AtomicInteger renderCount;
+
+    @BeforeEach
+    void setUp() {
+        MailSenderConfiguration mailSenderConfiguration = new MailSenderConfiguration(
+            "localhost",
+            Port.of(mockSmtpExtension.getMockSmtp().getSmtpPort()),
+            "localhost",
+            Optional.empty(),
+            Optional.empty(),
+            false,
+            false,
+            false);
+        mailSenderFactory = new MailSender.Factory.Default(mailSenderConfiguration, EventEmailFilter.acceptAll());
+        renderCount = new AtomicInteger();
+
+        RestAssured.baseURI = "http://localhost";
+        RestAssured.port = mockSmtpExtension.getMockSmtp().getRestApiPort();
+        RestAssured.delete("/smtpMails");
+        RestAssured.delete("/smtpBehaviors");
+    }
+
+    @Test
+    void recipientsSharingAFingerprintShouldBeSentInASingleTransaction() {
+        RecipientGroupingMailSender testee = testee(new SmtpGroupingConfiguration(50, WINDOW));
+
+        sendAll(testee, "fingerprint", "a@localhost", "b@localhost", "c@localhost").block();
+
+        JsonPath mails = smtpMails();
+        assertThat(mails.getList("")).hasSize(1);
+        assertThat(mails.getList("[0].recipients.address"))
+            .containsExactlyInAnyOrder("a@localhost", "b@localhost", "c@localhost");
+        assertThat(renderCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    void everyRecipientShouldReceiveTheSameContentAsWhenSentAlone() {
+        testee(SmtpGroupingConfiguration.DISABLED).send("fingerprint", sender(), address("alone@localhost"), this::render).block();
+        String aloneContent = body(smtpMails().getString("[0].message"));
+        RestAssured.delete("/smtpMails");
+
+        sendAll(testee(new SmtpGroupingConfiguration(50, WINDOW)), "fingerprint", "a@localhost", "b@localhost").block();
+
+        assertThat(body(smtpMails().getString("[0].message"))).isEqualTo(aloneContent);
+    }
+
+    @Test
+    void recipientsWithDistinctFingerprintsShouldBeSentSeparately() {
+        RecipientGroupingMailSender testee = testee(new SmtpGroupingConfiguration(50, WINDOW));
+
+        Flux.merge(testee.send("fingerprint1", sender(), address("a@localhost"), this::render),
+                testee.send("fingerprint2", sender(), address("b@localhost"), this::render))
+            .then()
+            .block();
+
+        assertThat(smtpMails().getList("")).hasSize(2);
+    }
+
+    @Test
+    void bucketsShouldNotExceedTheMaximumCountOfRecipients() {
+        RecipientGroupingMailSender testee = testee(new SmtpGroupingConfiguration(2, WINDOW));
+
+        sendAll(testee, "fingerprint", "a@localhost", "b@localhost", "c@localhost", "d@localhost", "e@localhost").block();
+
+        JsonPath mails = smtpMails();
+        assertThat(mails.getList("")).hasSize(3);
+        assertThat(mails.getList("recipients.address").stream()
+            .mapToInt(recipients -> ((List<?>) recipients).size()))
+            .allMatch(count -> count <= 2);
+    }
+
+    @Test
+    void fullBucketShouldBeSentWithoutWaitingForTheWindow() {
+        RecipientGroupingMailSender testee = testee(new SmtpGroupingConfiguration(2, Duration.ofMinutes(1)));
+
+        sendAll(testee, "fingerprint", "a@localhost", "b@localhost").block(Duration.ofSeconds(10));
+
+        assertThat(smtpMails().getList("")).hasSize(1);
+    }
+
+    @Test
+    void duplicatedRecipientShouldBeSentOnce() {
+        RecipientGroupingMailSender testee = testee(new SmtpGroupingConfiguration(50, WINDOW));
+
+        sendAll(testee, "fingerprint", "a@localhost", "a@localhost").block();
+
+        assertThat(smtpMails().getList("[0].recipients.address")).containsExactly("a@localhost");
+    }
+
+    @Test
+    void rejectedRecipientShouldFailWithoutFailingTheOthers() {
+        String behaviorJson = """
+            [ { "command": "RCPT TO", "condition": { "operator": "contains", "matchingValue": "@rejected.com" }, "response": { "code": "501", "message": "5.1.3 Bad recipient address syntax" } } ]
+            """;
+        RestAssured.given().body(behaviorJson).contentType("application/json").put("/smtpBehaviors");
+        RecipientGroupingMailSender testee = testee(new SmtpGroupingConfiguration(50, WINDOW));
+
+        Mono<Void> accepted = testee.send("fingerprint", sender(), address("a@localhost"), this::render).cache();
+        Mono<Void> rejected = testee.send("fingerprint", sender(), address("b@rejected.com"), this::render).cache();
+        Flux.merge(accepted.onErrorResume(any -> Mono.empty()), rejected.onErrorResume(any -> Mono.empty())).then().block();
+
+        assertThatCode(accepted::block).doesNotThrowAnyException();
+        assertThatThrownBy(rejected::block).isInstanceOf(SmtpSendingFailedException.class);
+        assertThat(smtpMails().getList("[0].recipients.address")).containsExactly("a@localhost");
+    }
+
+    @Test
+    void allRecipientsShouldFailWhenTheTransactionFails() {
+        String behaviorJson = """
+            [ { "command": "MAIL FROM", "condition": { "operator": "contains", "matchingValue": "sender@localhost" }, "response": { "code": "501", "message": "MAIL FROM failed" } } ]
+            """;
+        RestAssured.given().body(behaviorJson).contentType("application/json").put("/smtpBehaviors");
+        RecipientGroupingMailSender testee = testee(new SmtpGroupingConfiguration(50, WINDOW));
+
+        Mono<Void> first = testee.send("fingerprint", sender(), address("a@localhost"), this::render).cache();
+        Mono<Void> second = testee.send("fingerprint", sender(), address("b@localhost"), this::render).cache();
+        Flux.merge(first.onErrorResume(any -> Mono.empty()), second.onErrorResume(any -> Mono.empty())).then().block();
+
+        assertThatThrownBy(first::block).isInstanceOf(SmtpSendingFailedException.class);
+        assertThatThrownBy(second::block).isInstanceOf(SmtpSendingFailedException.class);
+    }
+
+    @Test
+    void disabledGroupingShouldSendATransactionPerRecipient() {
+        RecipientGroupingMailSender testee = testee(SmtpGroupingConfiguration.DISABLED);
+
+        sendAll(testee, "fingerprint", "a@localhost", "b@localhost", "c@localhost").block();
+
+        assertThat(smtpMails().getList("")).hasSize(3);
+        assertThat(renderCount.get()).isEqualTo(3);
+    }
+
+    @Test
+    void groupingShouldReduceTheCountOfSmtpTransactions() {
+        List<String> recipients = Flux.range(0, 40).map(i -> "recipient" + i + "@localhost").collectList().block();
+
+        sendAll(testee(SmtpGroupingConfiguration.DISABLED), "fingerprint", recipients.toArray(String[]::new)).block();
+        int ungroupedTransactions = smtpMails().getList("").size();
+        RestAssured.delete("/smtpMails");
+
+        sendAll(testee(new SmtpGroupingConfiguration(50, WINDOW)), "fingerprint", recipients.toArray(String[]::new)).block();
+        JsonPath groupedMails = smtpMails();
+
+        assertThat(ungroupedTransactions).isEqualTo(40);
+        assertThat(groupedMails.getList("")).hasSize(1);
+        assertThat(groupedMails.getList("[0].recipients.address")).hasSize(40);
+    }
+
+    private RecipientGroupingMailSender testee(SmtpGroupingConfiguration configuration) {
+        return new RecipientGroupingMailSender(mailSenderFactory, configuration);
+    }
+
+    private Mono<Void> sendAll(RecipientGroupingMailSender testee, String fingerprint, String... recipients) {
+        return Flux.fromArray(recipients)
+            .flatMap(recipient -> testee.send(fingerprint, sender(), address(recipient), this::render))
+            .then();
+    }
+
+    private Mono<Message> render(List<MailAddress> recipients) {
+        renderCount.incrementAndGet();
+        return Mono.fromCallable(() -> {
+            String to = recipients.stream().map(MailAddress::asString).collect(Collectors.joining(", "));
+            String rawMessage = "From: sender@localhost\nTo: " + to + "\nSubject: Cancelled\n\n" + BODY;
+            return new DefaultMessageBuilder().parseMessage(new ByteArrayInputStream(rawMessage.getBytes(StandardCharsets.UTF_8)));
+        });
+    }
+
+    private String body(String rawMessage) {
+        return rawMessage.split("\\r?\\n\\r?\\n", 2)[1].trim();
+    }
+
+    private JsonPath smtpMails() {
+        return RestAssured.get("/smtpMails").jsonPath();
+    }
+
+    private MaybeSender sender() {
+        return MaybeSender.of(address("sender@localhost"));
+    }
+
+    private MailAddress address(String address) {
+        try {
+            return new MailAddress(address);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
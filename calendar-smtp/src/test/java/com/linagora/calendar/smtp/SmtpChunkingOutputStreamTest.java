@@ -0,0 +1,91 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class SmtpChunkingOutputStreamTest {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final AtomicInteger acknowledgements = new AtomicInteger();
+
+    @Test
+    void shouldSendASingleLastChunkWhenTheMessageFits() throws IOException {
+        try (SmtpChunkingOutputStream testee = new SmtpChunkingOutputStream(out, 16, acknowledgements::incrementAndGet)) {
+            testee.write("Hello\r\n.\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        assertThat(sent()).isEqualTo("BDAT 10 LAST\r\nHello\r\n.\r\n");
+        assertThat(acknowledgements.get()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldSplitTheMessageInChunks() throws IOException {
+        try (SmtpChunkingOutputStream testee = new SmtpChunkingOutputStream(out, 4, acknowledgements::incrementAndGet)) {
+            testee.write("0123456789".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        assertThat(sent()).isEqualTo("BDAT 4\r\n0123BDAT 4\r\n4567BDAT 2 LAST\r\n89");
+        assertThat(acknowledgements.get()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldSendAnEmptyLastChunkWhenTheMessageFillsTheLastChunk() throws IOException {
+        try (SmtpChunkingOutputStream testee = new SmtpChunkingOutputStream(out, 4, acknowledgements::incrementAndGet)) {
+            testee.write("0123".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        assertThat(sent()).isEqualTo("BDAT 4\r\n0123BDAT 0 LAST\r\n");
+    }
+
+    @Test
+    void singleByteWritesShouldBeChunked() throws IOException {
+        try (SmtpChunkingOutputStream testee = new SmtpChunkingOutputStream(out, 2, acknowledgements::incrementAndGet)) {
+            for (byte b : "abc".getBytes(StandardCharsets.US_ASCII)) {
+                testee.write(b);
+            }
+        }
+
+        assertThat(sent()).isEqualTo("BDAT 2\r\nabBDAT 1 LAST\r\nc");
+    }
+
+    @Test
+    void shouldNotSendFurtherChunksOnceOneIsRejected() throws IOException {
+        SmtpChunkingOutputStream testee = new SmtpChunkingOutputStream(out, 4, () -> {
+            throw new SmtpSendingFailedException("'bdat' command failed: 554");
+        });
+
+        assertThatThrownBy(() -> testee.write("0123456789".getBytes(StandardCharsets.US_ASCII)))
+            .isInstanceOf(SmtpSendingFailedException.class);
+        testee.close();
+
+        assertThat(sent()).isEqualTo("BDAT 4\r\n0123");
+    }
+
+    private String sent() {
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,227 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.smtp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import org.apache.james.core.MailAddress;
+import org.apache.james.core.MaybeSender;
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.message.DefaultMessageBuilder;
+import org.apache.james.util.Port;
+import org.apache.james.utils.UpdatableTickingClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import io.restassured.RestAssured;
+import reactor.core.publisher.Flux;
+
+class SmtpConnectionPoolTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SmtpConnectionPoolTest.class);
+    private static final int POOL_SIZE = 4;
+
+    @RegisterExtension
+    static final MockSmtpServerExtension mockSmtpExtension = new MockSmtpServerExtension();
+
+    private MailSenderConfiguration mailSenderConfiguration;
+    private UpdatableTickingClock clock;
+    private SmtpConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        mailSenderConfiguration = new MailSenderConfiguration(
+            "localhost",
+            Port.of(mockSmtpExtension.getMockSmtp().getSmtpPort()),
+            "localhost",
+            Optional.empty(),
+            Optional.empty(),
+            false,
+            false,
+            false);
+        clock = new UpdatableTickingClock(Instant.parse("2026-01-01T00:00:00Z"));
+        pool = pool(new SmtpPoolConfiguration(POOL_SIZE, Duration.ofMinutes(5), 100));
+
+        RestAssured.baseURI = "http://localhost";
+        RestAssured.port = mockSmtpExtension.getMockSmtp().getRestApiPort();
+        RestAssured.delete("/smtpMails");
+        RestAssured.delete("/smtpBehaviors");
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void pooledSenderShouldDeliverMail() throws Exception {
+        sender(pool).send(mail("recipient@localhost")).block();
+
+        assertThat(RestAssured.get("/smtpMails").jsonPath().getList("recipients[0].address"))
+            .containsExactly("recipient@localhost");
+    }
+
+    @Test
+    void connectionShouldBeReusedBetweenMails() throws Exception {
+        MailSender sender = sender(pool);
+        for (int i = 0; i < 10; i++) {
+            sender.send(mail("recipient" + i + "@localhost")).block();
+        }
+
+        assertThat(pool.openedConnections()).isEqualTo(1);
+        assertThat(deliveredCount()).isEqualTo(10);
+    }
+
+    @Test
+    void concurrentSendsShouldNotOpenMoreConnectionsThanThePoolSize() throws Exception {
+        MailSender sender = sender(pool);
+
+        Flux.range(0, 50)
+            .flatMap(i -> sender.send(mail("recipient" + i + "@localhost")), 16)
+            .then()
+            .block(Duration.ofSeconds(60));
+
+        assertThat(pool.openedConnections()).isLessThanOrEqualTo(POOL_SIZE);
+        assertThat(deliveredCount()).isEqualTo(50);
+    }
+
+    @Test
+    void connectionShouldBeRenewedAfterItsMaximumCountOfMessages() throws Exception {
+        pool.close();
+        pool = pool(new SmtpPoolConfiguration(POOL_SIZE, Duration.ofMinutes(5), 2));
+        MailSender sender = sender(pool);
+
+        for (int i = 0; i < 5; i++) {
+            sender.send(mail("recipient" + i + "@localhost")).block();
+        }
+
+        assertThat(pool.openedConnections()).isEqualTo(3);
+        assertThat(deliveredCount()).isEqualTo(5);
+    }
+
+    @Test
+    void connectionShouldBeRenewedAfterItsMaximumAge() throws Exception {
+        MailSender sender = sender(pool);
+
+        sender.send(mail("recipient1@localhost")).block();
+        clock.setInstant(clock.instant().plus(Duration.ofMinutes(10)));
+        sender.send(mail("recipient2@localhost")).block();
+
+        assertThat(pool.openedConnections()).isEqualTo(2);
+        assertThat(deliveredCount()).isEqualTo(2);
+    }
+
+    @Test
+    void connectionShouldRemainUsableAfterARejectedMail() throws Exception {
+        String behaviorJson = """
+            [ { "command": "RCPT TO", "condition": { "operator": "contains", "matchingValue": "@rejected.com" }, "response": { "code": "501", "message": "5.1.3 Bad recipient address syntax" } } ]
+            """;
+        RestAssured.given().body(behaviorJson).contentType("application/json").put("/smtpBehaviors");
+        MailSender sender = sender(pool);
+
+        assertThatThrownBy(() -> sender.send(mail("recipient@rejected.com")).block())
+            .isInstanceOf(SmtpSendingFailedException.class);
+        sender.send(mail("recipient@localhost")).block();
+
+        assertThat(pool.openedConnections()).isEqualTo(1);
+        assertThat(deliveredCount()).isEqualTo(1);
+    }
+
+    @Test
+    void pooledSenderShouldDeliverMultipleMailsInBatch() throws Exception {
+        sender(pool).send(ImmutableList.of(mail("recipient1@localhost"), mail("recipient2@localhost"))).block();
+
+        assertThat(deliveredCount()).isEqualTo(2);
+        assertThat(pool.openedConnections()).isEqualTo(1);
+    }
+
+    @Test
+    void batchShouldFailWhenEveryMailLeftByTheFilterIsRejected() throws Exception {
+        String behaviorJson = """
+            [ { "command": "RCPT TO", "condition": { "operator": "contains", "matchingValue": "@rejected.com" }, "response": { "code": "501", "message": "5.1.3 Bad recipient address syntax" } } ]
+            """;
+        RestAssured.given().body(behaviorJson).contentType("application/json").put("/smtpBehaviors");
+        EventEmailFilter filter = new EventEmailFilter.WhitelistRecipientFilter(ImmutableSet.of(new MailAddress("recipient@rejected.com")));
+        MailSender sender = new MailSender.Factory.Pooled(pool, filter).create().block();
+
+        assertThatThrownBy(() -> sender.send(ImmutableList.of(mail("recipient@rejected.com"), mail("filtered@localhost"))).block())
+            .isInstanceOf(SmtpSendingFailedException.class);
+    }
+
+    @Test
+    void pooledSenderShouldOutperformAConnectionPerMail() throws Exception {
+        int mailCount = 100;
+        MailSender.Factory connectionPerMail = new MailSender.Factory.Default(mailSenderConfiguration, EventEmailFilter.acceptAll());
+        MailSender.Factory pooled = new MailSender.Factory.Pooled(pool, EventEmailFilter.acceptAll());
+
+        double connectionPerMailRate = sendAndMeasure(connectionPerMail, mailCount);
+        double pooledRate = sendAndMeasure(pooled, mailCount);
+        LOGGER.info("Connection per mail: {} mails/s, pooled connections: {} mails/s", connectionPerMailRate, pooledRate);
+
+        assertThat(pool.openedConnections()).isLessThanOrEqualTo(POOL_SIZE);
+        await().atMost(Duration.ofSeconds(30))
+            .untilAsserted(() -> assertThat(deliveredCount()).isEqualTo(2 * mailCount));
+    }
+
+    private double sendAndMeasure(MailSender.Factory factory, int mailCount) {
+        long start = System.nanoTime();
+        Flux.range(0, mailCount)
+            .flatMap(i -> factory.create().flatMap(sender -> sender.send(mail("recipient" + i + "@localhost"))), POOL_SIZE)
+            .then()
+            .block(Duration.ofSeconds(120));
+        return mailCount * 1_000_000_000.0 / (System.nanoTime() - start);
+    }
+
+    private SmtpConnectionPool pool(SmtpPoolConfiguration poolConfiguration) {
+        return new SmtpConnectionPool(mailSenderConfiguration, poolConfiguration, EventEmailFilter.acceptAll(), clock);
+    }
+
+    private MailSender sender(SmtpConnectionPool pool) {
+        return new MailSender.Factory.Pooled(pool, EventEmailFilter.acceptAll()).create().block();
+    }
+
+    private int deliveredCount() {
+        return RestAssured.get("/smtpMails").jsonPath().getList("").size();
+    }
+
+    private Mail mail(String recipient) {
+        try {
+            String rawMessage = "From: sender@localhost\nTo: " + recipient + "\nSubject: Test\n\nHello World!";
+            Message message = new DefaultMessageBuilder().parseMessage(new ByteArrayInputStream(rawMessage.getBytes(StandardCharsets.UTF_8)));
+            return new Mail(MaybeSender.of(new MailAddress("sender@localhost")), ImmutableList.of(new MailAddress(recipient)), message);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class SmtpDataOutputStreamTest {
+
+    @Test
+    void shouldTerminateTheMessage() throws IOException {
+        assertThat(frame("Hello\r\n")).isEqualTo("Hello\r\n.\r\n");
+    }
+
+    @Test
+    void shouldEndTheLastLineBeforeTerminating() throws IOException {
+        assertThat(frame("Hello")).isEqualTo("Hello\r\n.\r\n");
+    }
+
+    @Test
+    void shouldTerminateAnEmptyMessage() throws IOException {
+        assertThat(frame("")).isEqualTo(".\r\n");
+    }
+
+    @Test
+    void shouldDoubleLeadingDots() throws IOException {
+        assertThat(frame(".hidden\r\n..\r\n.\r\n"))
+            .isEqualTo("..hidden\r\n...\r\n..\r\n.\r\n");
+    }
+
+    @Test
+    void shouldNotDoubleDotsWithinALine() throws IOException {
+        assertThat(frame("a.b.\r\n")).isEqualTo("a.b.\r\n.\r\n");
+    }
+
+    @Test
+    void shouldNormalizeBareLineFeeds() throws IOException {
+        assertThat(frame("a\nb\n")).isEqualTo("a\r\nb\r\n.\r\n");
+    }
+
+    @Test
+    void shouldNormalizeBareCarriageReturns() throws IOException {
+        assertThat(frame("a\rb\r")).isEqualTo("a\r\nb\r\n.\r\n");
+    }
+
+    @Test
+    void shouldDoubleADotFollowingABareLineFeed() throws IOException {
+        assertThat(frame("a\n.b")).isEqualTo("a\r\n..b\r\n.\r\n");
+    }
+
+    @Test
+    void shouldKeepLineStateAcrossWrites() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SmtpDataOutputStream testee = new SmtpDataOutputStream(out)) {
+            testee.write("a\r".getBytes(StandardCharsets.US_ASCII));
+            testee.write("\n".getBytes(StandardCharsets.US_ASCII));
+            testee.write(".b".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        assertThat(out.toString(StandardCharsets.US_ASCII)).isEqualTo("a\r\n..b\r\n.\r\n");
+    }
+
+    @Test
+    void shouldPassEightBitBytesThrough() throws IOException {
+        assertThat(frame("Réunion d'équipe\r\n")).isEqualTo("Réunion d'équipe\r\n.\r\n");
+    }
+
+    @Test
+    void closeShouldBeIdempotent() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SmtpDataOutputStream testee = new SmtpDataOutputStream(out);
+        testee.write("a".getBytes(StandardCharsets.US_ASCII));
+
+        testee.close();
+        testee.close();
+
+        assertThat(out.toString(StandardCharsets.US_ASCII)).isEqualTo("a\r\n.\r\n");
+    }
+
+    private String frame(String content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SmtpDataOutputStream testee = new SmtpDataOutputStream(out)) {
+            testee.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,257 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.james.core.MailAddress;
+import org.apache.james.core.MaybeSender;
+import org.apache.james.metrics.api.NoopGaugeRegistry;
+import org.apache.james.metrics.tests.RecordingMetricFactory;
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.message.DefaultMessageBuilder;
+import org.apache.james.util.Port;
+import org.apache.james.utils.UpdatableTickingClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.linagora.calendar.storage.spool.MemoryOutboundMailSpool;
+
+import io.restassured.RestAssured;
+import reactor.core.publisher.Flux;
+
+class SmtpSpoolDispatcherTest {
+    private static final Duration RETRY_BACKOFF = Duration.ofSeconds(10);
+    private static final SmtpSpoolConfiguration CONFIGURATION = new SmtpSpoolConfiguration(true, Duration.ofMillis(100),
+        100, 4, RETRY_BACKOFF, Duration.ofMinutes(10), 3);
+
+    @RegisterExtension
+    static final MockSmtpServerExtension mockSmtpExtension = new MockSmtpServerExtension();
+
+    private UpdatableTickingClock clock;
+    private MemoryOutboundMailSpool spool;
+    private RecordingMetricFactory metricFactory;
+    private MailSender.Factory deliveryFactory;
+    private MailSender spooledSender;
+    private SmtpSpoolDispatcher testee;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MailSenderConfiguration mailSenderConfiguration = new MailSenderConfiguration(
+            "localhost",
+            Port.of(mockSmtpExtension.getMockSmtp().getSmtpPort()),
+            "localhost",
+            Optional.empty(),
+            Optional.empty(),
+            false,
+            false,
+            false);
+        deliveryFactory = new MailSender.Factory.Default(mailSenderConfiguration, EventEmailFilter.acceptAll());
+        clock = new UpdatableTickingClock(Instant.parse("2026-01-01T10:00:00Z"));
+        spool = new MemoryOutboundMailSpool(clock);
+        metricFactory = new RecordingMetricFactory();
+        spooledSender = new MailSender.Factory.Spooled(spool).create().block();
+        testee = testee(CONFIGURATION);
+
+        RestAssured.baseURI = "http://localhost";
+        RestAssured.port = mockSmtpExtension.getMockSmtp().getRestApiPort();
+        RestAssured.delete("/smtpMails");
+        RestAssured.delete("/smtpBehaviors");
+    }
+
+    @AfterEach
+    void tearDown() {
+        testee.close();
+    }
+
+    @Test
+    void spooledSendShouldNotDeliverUntilDispatched() throws Exception {
+        spooledSender.send(mail("a@localhost")).block();
+
+        assertThat(smtpMailCount()).isZero();
+        assertThat(spool.depth().block()).isEqualTo(1);
+    }
+
+    @Test
+    void dispatchShouldDeliverSpooledMails() throws Exception {
+        spooledSender.send(mail("a@localhost")).block();
+        spooledSender.send(mail("b@localhost")).block();
+
+        assertThat(testee.dispatchBatch().block()).isEqualTo(2);
+
+        assertThat(RestAssured.get("/smtpMails").jsonPath().getList("recipients.address.flatten()"))
+            .containsExactlyInAnyOrder("a@localhost", "b@localhost");
+        assertThat(spool.depth().block()).isZero();
+        assertThat(testee.depth()).isZero();
+        assertThat(metricFactory.countFor("smtp.spool.delivered")).isEqualTo(2);
+    }
+
+    @Test
+    void dispatchShouldPreserveTheMessage() throws Exception {
+        spooledSender.send(mail("a@localhost")).block();
+
+        testee.dispatchBatch().block();
+
+        assertThat(RestAssured.get("/smtpMails").jsonPath().getString("[0].message"))
+            .contains("Subject: Spooled")
+            .contains("Spooled body");
+    }
+
+    @Test
+    void dispatchShouldNotLeaseMoreThanTheBatchSize() throws Exception {
+        testee = testee(new SmtpSpoolConfiguration(true, Duration.ofMillis(100), 2, 4, RETRY_BACKOFF, Duration.ofMinutes(10), 3));
+        for (int i = 0; i < 5; i++) {
+            spooledSender.send(mail("recipient" + i + "@localhost")).block();
+        }
+
+        assertThat(testee.dispatchBatch().block()).isEqualTo(2);
+        assertThat(spool.depth().block()).isEqualTo(3);
+    }
+
+    @Test
+    void failedDeliveryShouldBeRetriedAfterTheBackoff() throws Exception {
+        smtpDown();
+        spooledSender.send(mail("a@localhost")).block();
+        testee.dispatchBatch().block();
+        smtpUp();
+
+        assertThat(testee.dispatchBatch().block()).isZero();
+
+        clock.setInstant(clock.instant().plus(RETRY_BACKOFF));
+        assertThat(testee.dispatchBatch().block()).isEqualTo(1);
+        assertThat(smtpMailCount()).isEqualTo(1);
+        assertThat(metricFactory.countFor("smtp.spool.retried")).isEqualTo(1);
+    }
+
+    @Test
+    void retryBackoffShouldGrowExponentially() throws Exception {
+        smtpDown();
+        spooledSender.send(mail("a@localhost")).block();
+        testee.dispatchBatch().block();
+        clock.setInstant(clock.instant().plus(RETRY_BACKOFF));
+        testee.dispatchBatch().block();
+        smtpUp();
+
+        clock.setInstant(clock.instant().plus(RETRY_BACKOFF));
+        assertThat(testee.dispatchBatch().block()).isZero();
+
+        clock.setInstant(clock.instant().plus(RETRY_BACKOFF));
+        assertThat(testee.dispatchBatch().block()).isEqualTo(1);
+    }
+
+    @Test
+    void mailShouldBeDroppedAfterTheMaximumCountOfAttempts() throws Exception {
+        smtpDown();
+        spooledSender.send(mail("a@localhost")).block();
+
+        for (int i = 0; i < CONFIGURATION.maxAttempts(); i++) {
+            testee.dispatchBatch().block();
+            clock.setInstant(clock.instant().plus(CONFIGURATION.maxRetryBackoff()));
+        }
+
+        assertThat(spool.depth().block()).isZero();
+        assertThat(metricFactory.countFor("smtp.spool.dropped")).isEqualTo(1);
+    }
+
+    @Test
+    void permanentlyRejectedMailShouldBeDroppedWithoutRetry() throws Exception {
+        String behaviorJson = """
+            [ { "command": "RCPT TO", "condition": { "operator": "contains", "matchingValue": "@rejected.com" }, "response": { "code": "550", "message": "5.1.1 Mailbox unavailable" } } ]
+            """;
+        RestAssured.given().body(behaviorJson).contentType("application/json").put("/smtpBehaviors");
+        spooledSender.send(mail("a@rejected.com")).block();
+
+        testee.dispatchBatch().block();
+
+        assertThat(spool.depth().block()).isZero();
+        assertThat(metricFactory.countFor("smtp.spool.dropped")).isEqualTo(1);
+        assertThat(metricFactory.countFor("smtp.spool.retried")).isZero();
+    }
+
+    @Test
+    void noMailShouldBeLostWhenSmtpServerGoesDownAndBackUp() throws Exception {
+        int mailCount = 50;
+        smtpDown();
+
+        Instant start = Instant.now();
+        Flux.range(0, mailCount)
+            .concatMap(i -> spooledSender.send(mail("recipient" + i + "@localhost")))
+            .then()
+            .block();
+        Duration enqueueDuration = Duration.between(start, Instant.now());
+
+        testee.dispatchBatch().block();
+        assertThat(smtpMailCount()).isZero();
+        assertThat(spool.depth().block()).isEqualTo(mailCount);
+
+        smtpUp();
+        clock.setInstant(clock.instant().plus(RETRY_BACKOFF));
+        testee.dispatchBatch().block();
+
+        assertThat(smtpMailCount()).isEqualTo(mailCount);
+        assertThat(spool.depth().block()).isZero();
+        assertThat(enqueueDuration).isLessThan(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void startedDispatcherShouldDrainTheSpool() throws Exception {
+        testee.start();
+
+        spooledSender.send(mail("a@localhost")).block();
+
+        await().atMost(Duration.ofSeconds(10))
+            .untilAsserted(() -> assertThat(smtpMailCount()).isEqualTo(1));
+        assertThat(spool.depth().block()).isZero();
+    }
+
+    private SmtpSpoolDispatcher testee(SmtpSpoolConfiguration configuration) {
+        return new SmtpSpoolDispatcher(spool, deliveryFactory, configuration, clock, metricFactory, new NoopGaugeRegistry());
+    }
+
+    private void smtpDown() {
+        String behaviorJson = """
+            [ { "command": "MAIL FROM", "condition": { "operator": "contains", "matchingValue": "sender@localhost" }, "response": { "code": "451", "message": "Requested action aborted: local error" } } ]
+            """;
+        RestAssured.given().body(behaviorJson).contentType("application/json").put("/smtpBehaviors");
+    }
+
+    private void smtpUp() {
+        RestAssured.delete("/smtpBehaviors");
+    }
+
+    private int smtpMailCount() {
+        return RestAssured.get("/smtpMails").jsonPath().getList("").size();
+    }
+
+    private Mail mail(String recipient) throws Exception {
+        String rawMessage = "From: sender@localhost\r\nTo: " + recipient + "\r\nSubject: Spooled\r\n\r\nSpooled body";
+        Message message = new DefaultMessageBuilder().parseMessage(new ByteArrayInputStream(rawMessage.getBytes(StandardCharsets.UTF_8)));
+        return new Mail(MaybeSender.of(new MailAddress("sender@localhost")), List.of(new MailAddress(recipient)), message);
+    }
+}
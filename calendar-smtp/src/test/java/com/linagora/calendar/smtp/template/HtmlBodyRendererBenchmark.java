@@ -0,0 +1,123 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp.template;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.james.core.MaybeSender;
+import org.apache.james.metrics.api.NoopMetricFactory;
+import org.apache.james.server.core.filesystem.FileSystemImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.common.collect.ImmutableMap;
+import com.linagora.calendar.smtp.i18n.I18NTranslator;
+import com.linagora.calendar.storage.MemoryOpenPaaSUserDAO;
+
+/**
+ * Renders the HTML body of a cancellation notification as the first notification after a deploy does (cold: the
+ * template is compiled and the translations loaded from disk) and as later ones do (warm: both come from the cache).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HtmlBodyRendererBenchmark {
+    private static final Path TEMPLATES = Paths.get(Paths.get("").toAbsolutePath().getParent().toString(),
+        "app", "src", "main", "resources", "templates");
+    private static final TemplateType EVENT_CANCEL = new TemplateType("event-cancel");
+
+    private MessageGenerator.Factory.Default factory;
+    private MessageGenerator.Factory.Cached warmCache;
+    private Map<String, Object> content;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        MailTemplateConfiguration configuration = new MailTemplateConfiguration("file://" + TEMPLATES.toAbsolutePath(),
+            MaybeSender.getMailSender("no-reply@openpaas.org"));
+        factory = MessageGenerator.factory(configuration, FileSystemImpl.forTesting(), new MemoryOpenPaaSUserDAO());
+        warmCache = factory.cached(MailTemplateCacheConfiguration.DEFAULT, new NoopMetricFactory());
+        warmCache.warmUp(factory.availableTemplates());
+        content = ImmutableMap.of("content", ImmutableMap.builder()
+            .put("event", ImmutableMap.builder()
+                .put("organizer", ImmutableMap.of("cn", "Alice Organizer", "email", "alice@domain.tld"))
+                .put("attendees", ImmutableMap.of(
+                    "bob@domain.tld", ImmutableMap.of("cn", "Bob Attendee", "email", "bob@domain.tld")))
+                .put("summary", "Team Meeting")
+                .put("allDay", false)
+                .put("start", ImmutableMap.of("date", "2025-06-27", "fullDateTime", "2025-06-27 10:00", "time", "10:00",
+                    "timezone", "Europe/Paris", "fullDate", "2025-06-27"))
+                .put("end", ImmutableMap.of("date", "2025-06-27", "fullDateTime", "2025-06-27 11:00", "time", "11:00",
+                    "fullDate", "2025-06-27"))
+                .put("location", ImmutableMap.of("value", "Conference Room", "urlEncodedValue", "Conference%20Room",
+                    "isLocationAValidURL", false, "isLocationAnAbsoluteURL", false))
+                .put("hasResources", false)
+                .put("description", "Discuss project updates.")
+                .build())
+            .put("canceler", "Alice Organizer")
+            .put("displayForwardWarning", false)
+            .put("seeInCalendarLink", "https://calendar.example.com/event/123")
+            .build());
+    }
+
+    @Benchmark
+    public String coldCache() throws Exception {
+        MessageGenerator.Factory.Cached coldCache = factory.cached(MailTemplateCacheConfiguration.DEFAULT, new NoopMetricFactory());
+        return render(coldCache.forLocalizedFeature(Language.ENGLISH, EVENT_CANCEL));
+    }
+
+    @Benchmark
+    public String warmCache() throws Exception {
+        return render(warmCache.forLocalizedFeature(Language.ENGLISH, EVENT_CANCEL));
+    }
+
+    private String render(MessageGenerator messageGenerator) {
+        I18NTranslator translator = messageGenerator.getI18nTranslator();
+        return messageGenerator.htmlBodyRenderer().render(ImmutableMap.<String, Object>builder()
+            .putAll(content)
+            .put("translator", translator)
+            .build());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(HtmlBodyRendererBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build())
+            .run();
+    }
+}
@@ -0,0 +1,146 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp.template;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.james.core.MailAddress;
+import org.apache.james.core.MaybeSender;
+import org.apache.james.core.Username;
+import org.apache.james.mailbox.model.Cid;
+import org.apache.james.mailbox.model.ContentType;
+import org.apache.james.metrics.api.NoopMetricFactory;
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.message.DefaultMessageWriter;
+import org.apache.james.server.core.filesystem.FileSystemImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.common.collect.ImmutableMap;
+import com.linagora.calendar.storage.MemoryOpenPaaSUserDAO;
+
+/**
+ * Generates and writes 1000 invitations carrying the calendar logo inline, encoding the logo for every invitation as
+ * before (plain mime4j writer) and copying its pre-encoded form (writer used by the mail senders).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InlineAssetBenchmark {
+    private static final int INVITATIONS = 1000;
+    private static final Path TEMPLATES = Paths.get(Paths.get("").toAbsolutePath().getParent().toString(),
+        "app", "src", "main", "resources", "templates");
+    private static final Path LOGO = Paths.get(Paths.get("").toAbsolutePath().getParent().toString(),
+        "calendar-rest-api", "src", "main", "resources", "assets", "calendar", "logo.png");
+
+    private MessageGenerator messageGenerator;
+    private MailAddress sender;
+    private MimeAttachment logo;
+    private Map<String, Object> content;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        MailTemplateConfiguration configuration = new MailTemplateConfiguration("file://" + TEMPLATES.toAbsolutePath(),
+            MaybeSender.getMailSender("no-reply@openpaas.org"));
+        messageGenerator = MessageGenerator.factory(configuration, FileSystemImpl.forTesting(), new MemoryOpenPaaSUserDAO())
+            .cached(MailTemplateCacheConfiguration.DEFAULT, new NoopMetricFactory())
+            .forLocalizedFeature(Language.ENGLISH, new TemplateType("event-invite"));
+        sender = new MailAddress("alice@domain.tld");
+        logo = MimeAttachment.builder()
+            .contentType(ContentType.of("image/png"))
+            .cid(Cid.from("logo"))
+            .inline()
+            .content(Files.readAllBytes(LOGO))
+            .fileName("logo.png")
+            .build();
+        content = ImmutableMap.of("content", ImmutableMap.builder()
+            .put("event", ImmutableMap.builder()
+                .put("organizer", ImmutableMap.of("cn", "Alice Organizer", "email", "alice@domain.tld"))
+                .put("attendees", ImmutableMap.of(
+                    "bob@domain.tld", ImmutableMap.of("cn", "Bob Attendee", "email", "bob@domain.tld")))
+                .put("summary", "Team Meeting")
+                .put("allDay", false)
+                .put("start", ImmutableMap.of("date", "2025-06-27", "fullDateTime", "2025-06-27 10:00", "time", "10:00",
+                    "timezone", "Europe/Paris", "fullDate", "2025-06-27"))
+                .put("end", ImmutableMap.of("date", "2025-06-27", "fullDateTime", "2025-06-27 11:00", "time", "11:00",
+                    "fullDate", "2025-06-27"))
+                .put("location", ImmutableMap.of("value", "Conference Room", "urlEncodedValue", "Conference%20Room",
+                    "isLocationAValidURL", false, "isLocationAnAbsoluteURL", false))
+                .put("hasResources", false)
+                .put("description", "Discuss project updates.")
+                .build())
+            .put("seeInCalendarLink", "https://calendar.example.com/event/123")
+            .put("yesLink", "https://calendar.example.com/event/123/yes")
+            .put("maybeLink", "https://calendar.example.com/event/123/maybe")
+            .put("noLink", "https://calendar.example.com/event/123/no")
+            .build());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INVITATIONS)
+    public void encodedPerInvitation() throws IOException {
+        generateAndWrite(new DefaultMessageWriter());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INVITATIONS)
+    public void preEncoded() throws IOException {
+        generateAndWrite(new PreEncodedMessageWriter());
+    }
+
+    private void generateAndWrite(DefaultMessageWriter writer) throws IOException {
+        for (int i = 0; i < INVITATIONS; i++) {
+            Message message = messageGenerator.generate(Username.of("attendee" + i + "@domain.tld"), sender, content, List.of(logo))
+                .block();
+            writer.writeMessage(message, OutputStream.nullOutputStream());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(InlineAssetBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build())
+            .run();
+    }
+}
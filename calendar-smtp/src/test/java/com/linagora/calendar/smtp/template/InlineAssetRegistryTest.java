@@ -0,0 +1,157 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp.template;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.james.core.MailAddress;
+import org.apache.james.core.MaybeSender;
+import org.apache.james.core.Username;
+import org.apache.james.mailbox.model.Cid;
+import org.apache.james.mailbox.model.ContentType;
+import org.apache.james.mime4j.dom.Entity;
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.message.DefaultMessageWriter;
+import org.apache.james.server.core.filesystem.FileSystemImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.linagora.calendar.storage.MemoryOpenPaaSUserDAO;
+
+class InlineAssetRegistryTest {
+    private static final Path TEMPLATES = Paths.get(Paths.get("").toAbsolutePath().getParent().toString(),
+        "app", "src", "main", "resources", "templates");
+
+    private InlineAssetRegistry testee;
+    private MimeAttachment logo;
+
+    @BeforeEach
+    void setUp() {
+        testee = new InlineAssetRegistry();
+        logo = logo(randomBytes(10 * 1024));
+    }
+
+    @Test
+    void preEncodedPartShouldBeWrittenAsTheFreshlyEncodedOne() throws IOException {
+        assertThat(write(new PreEncodedMessageWriter(), testee.bodyPart(logo)))
+            .isEqualTo(write(new DefaultMessageWriter(), logo.asBodyPart()));
+    }
+
+    @Test
+    void preEncodedPartShouldBeWrittenIdenticallyByOtherWriters() throws IOException {
+        assertThat(write(new DefaultMessageWriter(), testee.bodyPart(logo)))
+            .isEqualTo(write(new DefaultMessageWriter(), logo.asBodyPart()));
+    }
+
+    @Test
+    void preEncodedPartShouldBeWrittenAsTheFreshlyEncodedOneWhenContentIsEmpty() throws IOException {
+        MimeAttachment empty = logo(new byte[0]);
+
+        assertThat(write(new PreEncodedMessageWriter(), testee.bodyPart(empty)))
+            .isEqualTo(write(new DefaultMessageWriter(), empty.asBodyPart()));
+    }
+
+    @Test
+    void bodyPartsOfTheSameAssetShouldShareTheirBody() throws IOException {
+        assertThat(testee.bodyPart(logo).getBody()).isSameAs(testee.bodyPart(logo).getBody());
+    }
+
+    @Test
+    void bodyPartsOfEqualAssetsBuiltSeparatelyShouldShareTheirBody() throws IOException {
+        MimeAttachment sameLogo = logo(randomBytes(10 * 1024));
+
+        assertThat(testee.bodyPart(sameLogo).getBody()).isSameAs(testee.bodyPart(logo).getBody());
+    }
+
+    @Test
+    void bodyPartsOfAssetsWithTheSameContentButDistinctHeadersShouldNotShareTheirBody() throws IOException {
+        MimeAttachment renamedLogo = MimeAttachment.builder()
+            .contentType(ContentType.of("image/png"))
+            .cid(Cid.from("other-logo"))
+            .inline()
+            .content(randomBytes(10 * 1024))
+            .fileName("other-logo.png")
+            .build();
+
+        assertThat(testee.bodyPart(renamedLogo).getBody()).isNotSameAs(testee.bodyPart(logo).getBody());
+    }
+
+    @Test
+    void bodyPartsOfTheSameAssetShouldBeDistinctEntities() throws IOException {
+        assertThat(testee.bodyPart(logo)).isNotSameAs(testee.bodyPart(logo));
+    }
+
+    @Test
+    void bodyPartsOfDistinctAssetsShouldNotShareTheirBody() throws IOException {
+        MimeAttachment otherLogo = logo(randomBytes(1024));
+
+        assertThat(testee.bodyPart(logo).getBody()).isNotSameAs(testee.bodyPart(otherLogo).getBody());
+    }
+
+    @Test
+    void generatedMessageShouldBeWrittenAsWithoutPreEncoding() throws Exception {
+        MailTemplateConfiguration configuration = new MailTemplateConfiguration("file://" + TEMPLATES.toAbsolutePath(),
+            MaybeSender.getMailSender("no-reply@openpaas.org"));
+        MessageGenerator messageGenerator = MessageGenerator.factory(configuration, FileSystemImpl.forTesting(), new MemoryOpenPaaSUserDAO())
+            .forLocalizedFeature(Language.ENGLISH, new TemplateType("import-calendar"));
+        Map<String, Object> model = ImmutableMap.of("content", ImmutableMap.of(
+            "baseUrl", "https://calendar.example.com",
+            "jobFailedList", ImmutableList.of(),
+            "jobSucceedCount", 3,
+            "jobFailedCount", 0));
+
+        Message message = messageGenerator.generate(Username.of("bob@domain.tld"), new MailAddress("no-reply@openpaas.org"),
+            model, List.of(logo)).block();
+
+        assertThat(write(new PreEncodedMessageWriter(), message))
+            .isEqualTo(write(new DefaultMessageWriter(), message));
+    }
+
+    private MimeAttachment logo(byte[] content) {
+        return MimeAttachment.builder()
+            .contentType(ContentType.of("image/png"))
+            .cid(Cid.from("logo"))
+            .inline()
+            .content(content)
+            .fileName("logo.png")
+            .build();
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    private byte[] write(DefaultMessageWriter writer, Entity entity) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeEntity(entity, out);
+        return out.toByteArray();
+    }
+}
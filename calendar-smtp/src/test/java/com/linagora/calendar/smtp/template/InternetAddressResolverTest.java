@@ -0,0 +1,132 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp.template;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.mail.internet.InternetAddress;
+
+import org.apache.james.core.Username;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.linagora.calendar.storage.MemoryOpenPaaSUserDAO;
+import com.linagora.calendar.storage.OpenPaaSUser;
+
+import reactor.core.publisher.Flux;
+
+class InternetAddressResolverTest {
+    private static final Username BOB = Username.of("bob@domain.tld");
+    private static final Username ALICE = Username.of("alice@domain.tld");
+    private static final Username CEDRIC = Username.of("cedric@domain.tld");
+    private static final Username UNKNOWN = Username.of("unknown@domain.tld");
+
+    private static class CountingUserDAO extends MemoryOpenPaaSUserDAO {
+        private final AtomicInteger queries = new AtomicInteger();
+
+        @Override
+        public Flux<OpenPaaSUser> retrieveAll(Collection<Username> usernames) {
+            queries.incrementAndGet();
+            return super.retrieveAll(usernames);
+        }
+    }
+
+    private CountingUserDAO userDAO;
+    private InternetAddressResolver testee;
+
+    @BeforeEach
+    void setUp() {
+        userDAO = new CountingUserDAO();
+        userDAO.add(BOB, "Bob", "Marley").block();
+        userDAO.add(ALICE, "Alice", "Cooper").block();
+        userDAO.add(CEDRIC).block();
+        testee = new InternetAddressResolver(userDAO);
+    }
+
+    @Test
+    void resolveAllShouldLookAllUsersUpWithASingleQuery() {
+        testee.resolveAll(List.of(BOB, ALICE, CEDRIC, UNKNOWN)).block();
+
+        assertThat(userDAO.queries.get()).isEqualTo(1);
+    }
+
+    @Test
+    void resolveAllShouldReturnAnAddressForEveryUser() throws Exception {
+        assertThat(testee.resolveAll(List.of(BOB, ALICE)).block())
+            .containsOnlyKeys(BOB, ALICE)
+            .containsEntry(BOB, new InternetAddress("bob@domain.tld", "Bob Marley"))
+            .containsEntry(ALICE, new InternetAddress("alice@domain.tld", "Alice Cooper"));
+    }
+
+    @Test
+    void resolveShouldUseTheFullNameAsDisplayName() {
+        assertThat(testee.resolve(BOB).block().getPersonal()).isEqualTo("Bob Marley");
+    }
+
+    @Test
+    void resolveShouldFallBackToTheAddressWhenNoName() {
+        assertThat(testee.resolve(CEDRIC).block().getPersonal()).isEqualTo("cedric@domain.tld");
+    }
+
+    @Test
+    void resolveShouldReturnABareAddressForUnknownUsers() {
+        InternetAddress address = testee.resolve(UNKNOWN).block();
+
+        assertThat(address.getAddress()).isEqualTo("unknown@domain.tld");
+        assertThat(address.getPersonal()).isNull();
+    }
+
+    @Test
+    void resolveAllShouldNotQueryMemoizedUsersAgain() {
+        testee.resolveAll(List.of(BOB, ALICE)).block();
+        testee.resolveAll(List.of(BOB, ALICE)).block();
+        testee.resolve(BOB).block();
+
+        assertThat(userDAO.queries.get()).isEqualTo(1);
+    }
+
+    @Test
+    void resolveAllShouldOnlyQueryTheUsersMissingFromTheMemo() {
+        testee.resolve(BOB).block();
+
+        assertThat(testee.resolveAll(List.of(BOB, ALICE)).block()).containsOnlyKeys(BOB, ALICE);
+        assertThat(userDAO.queries.get()).isEqualTo(2);
+    }
+
+    @Test
+    void resolveAllShouldQueryAgainWhenTheMemoExpired() {
+        testee = new InternetAddressResolver(userDAO, Duration.ZERO);
+
+        testee.resolve(BOB).block();
+        testee.resolve(BOB).block();
+
+        assertThat(userDAO.queries.get()).isEqualTo(2);
+    }
+
+    @Test
+    void resolveAllShouldNotQueryWhenNoUsers() {
+        assertThat(testee.resolveAll(List.of()).block()).isEmpty();
+        assertThat(userDAO.queries.get()).isZero();
+    }
+}
@@ -0,0 +1,196 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.smtp.template;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import org.apache.james.core.MaybeSender;
+import org.apache.james.metrics.tests.RecordingMetricFactory;
+import org.apache.james.server.core.filesystem.FileSystemImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.linagora.calendar.smtp.template.MessageGenerator.Factory.CacheEntry;
+import com.linagora.calendar.storage.MemoryOpenPaaSUserDAO;
+
+class MessageGeneratorCacheTest {
+    private static final TemplateType EVENT_CANCEL = new TemplateType("event-cancel");
+    private static final TemplateType EVENT_INVITE = new TemplateType("event-invite");
+    private static final Language FRENCH = new Language(Locale.FRENCH);
+    private static final Path TEMPLATES = Paths.get(Paths.get("").toAbsolutePath().getParent().toString(),
+        "app", "src", "main", "resources", "templates");
+
+    private RecordingMetricFactory metricFactory;
+    private MailTemplateCacheWarmer warmer;
+
+    @BeforeEach
+    void setUp() {
+        metricFactory = new RecordingMetricFactory();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (warmer != null) {
+            warmer.close();
+        }
+    }
+
+    @Test
+    void availableTemplatesShouldListEveryTemplateWithItsLanguages() throws Exception {
+        assertThat(factory(TEMPLATES).availableTemplates())
+            .contains(new CacheEntry(Language.ENGLISH, EVENT_CANCEL),
+                new CacheEntry(FRENCH, EVENT_CANCEL),
+                new CacheEntry(Language.ENGLISH, EVENT_INVITE),
+                new CacheEntry(FRENCH, EVENT_INVITE));
+    }
+
+    @Test
+    void availableTemplatesShouldIgnoreDirectoriesWithoutTemplate(@TempDir Path templates) throws Exception {
+        Files.createDirectories(templates.resolve("not-a-template"));
+
+        assertThat(factory(templates).availableTemplates()).isEmpty();
+    }
+
+    @Test
+    void firstUseShouldBeAMiss() throws Exception {
+        MessageGenerator.Factory.Cached testee = cached(TEMPLATES, MailTemplateCacheConfiguration.DEFAULT);
+
+        testee.forLocalizedFeature(Language.ENGLISH, EVENT_CANCEL);
+        testee.forLocalizedFeature(Language.ENGLISH, EVENT_CANCEL);
+
+        assertThat(metricFactory.countFor(MessageGenerator.Factory.Cached.MISS_METRIC_NAME)).isEqualTo(1);
+        assertThat(metricFactory.countFor(MessageGenerator.Factory.Cached.HIT_METRIC_NAME)).isEqualTo(1);
+    }
+
+    @Test
+    void warmedUpTemplatesShouldBeHitsOnFirstUse() throws Exception {
+        MessageGenerator.Factory.Default factory = factory(TEMPLATES);
+        MessageGenerator.Factory.Cached testee = factory.cached(MailTemplateCacheConfiguration.DEFAULT, metricFactory);
+        List<CacheEntry> entries = factory.availableTemplates();
+
+        assertThat(testee.warmUp(entries)).isEqualTo(entries.size());
+        for (CacheEntry entry : entries) {
+            testee.forLocalizedFeature(entry.language(), entry.templateType());
+        }
+
+        assertThat(metricFactory.countFor(MessageGenerator.Factory.Cached.MISS_METRIC_NAME)).isZero();
+        assertThat(metricFactory.countFor(MessageGenerator.Factory.Cached.HIT_METRIC_NAME)).isEqualTo(entries.size());
+    }
+
+    @Test
+    void cacheShouldBeBounded() throws Exception {
+        MessageGenerator.Factory.Cached testee = cached(TEMPLATES, new MailTemplateCacheConfiguration(2, true, false));
+
+        testee.forLocalizedFeature(Language.ENGLISH, EVENT_CANCEL);
+        testee.forLocalizedFeature(FRENCH, EVENT_CANCEL);
+        testee.forLocalizedFeature(Language.ENGLISH, EVENT_INVITE);
+
+        assertThat(testee.cachedEntries()).hasSizeLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void invalidateShouldOnlyDropTheGivenTemplate() throws Exception {
+        MessageGenerator.Factory.Cached testee = cached(TEMPLATES, MailTemplateCacheConfiguration.DEFAULT);
+        testee.forLocalizedFeature(Language.ENGLISH, EVENT_CANCEL);
+        testee.forLocalizedFeature(FRENCH, EVENT_CANCEL);
+        testee.forLocalizedFeature(Language.ENGLISH, EVENT_INVITE);
+
+        testee.invalidate(EVENT_CANCEL);
+
+        assertThat(testee.cachedEntries()).containsExactly(new CacheEntry(Language.ENGLISH, EVENT_INVITE));
+    }
+
+    @Test
+    void warmerShouldLoadEveryTemplateAtStartup() throws Exception {
+        MessageGenerator.Factory.Default factory = factory(TEMPLATES);
+        MessageGenerator.Factory.Cached cache = factory.cached(MailTemplateCacheConfiguration.DEFAULT, metricFactory);
+        warmer = new MailTemplateCacheWarmer(factory, cache, MailTemplateCacheConfiguration.DEFAULT);
+
+        warmer.start();
+
+        assertThat(cache.cachedEntries()).containsExactlyInAnyOrderElementsOf(factory.availableTemplates());
+    }
+
+    @Test
+    void warmerShouldNotLoadTemplatesWhenWarmUpIsDisabled() throws Exception {
+        MessageGenerator.Factory.Default factory = factory(TEMPLATES);
+        MailTemplateCacheConfiguration configuration = new MailTemplateCacheConfiguration(500, false, false);
+        MessageGenerator.Factory.Cached cache = factory.cached(configuration, metricFactory);
+        warmer = new MailTemplateCacheWarmer(factory, cache, configuration);
+
+        warmer.start();
+
+        assertThat(cache.cachedEntries()).isEmpty();
+    }
+
+    @Test
+    void warmerShouldReloadAChangedTemplate(@TempDir Path templates) throws Exception {
+        copyDirectory(TEMPLATES.resolve(EVENT_CANCEL.value()), templates.resolve(EVENT_CANCEL.value()));
+        MessageGenerator.Factory.Default factory = factory(templates);
+        MailTemplateCacheConfiguration configuration = new MailTemplateCacheConfiguration(500, true, true);
+        MessageGenerator.Factory.Cached cache = factory.cached(configuration, metricFactory);
+        warmer = new MailTemplateCacheWarmer(factory, cache, configuration);
+        warmer.start();
+        MessageGenerator beforeChange = cache.forLocalizedFeature(Language.ENGLISH, EVENT_CANCEL);
+
+        Path englishBundle = templates.resolve(EVENT_CANCEL.value()).resolve("translations").resolve("messages_en.properties");
+        Files.writeString(englishBundle, "mail_subject=Changed subject\n", StandardCharsets.UTF_8);
+
+        await().atMost(Duration.ofSeconds(30))
+            .untilAsserted(() -> assertThat(cache.forLocalizedFeature(Language.ENGLISH, EVENT_CANCEL).getI18nTranslator().get("mail_subject"))
+                .isEqualTo("Changed subject"));
+        assertThat(cache.forLocalizedFeature(Language.ENGLISH, EVENT_CANCEL)).isNotSameAs(beforeChange);
+    }
+
+    private MessageGenerator.Factory.Default factory(Path templates) {
+        MailTemplateConfiguration configuration = new MailTemplateConfiguration("file://" + templates.toAbsolutePath(),
+            MaybeSender.getMailSender("no-reply@openpaas.org"));
+        return MessageGenerator.factory(configuration, FileSystemImpl.forTesting(), new MemoryOpenPaaSUserDAO());
+    }
+
+    private MessageGenerator.Factory.Cached cached(Path templates, MailTemplateCacheConfiguration configuration) {
+        return factory(templates).cached(configuration, metricFactory);
+    }
+
+    private void copyDirectory(Path source, Path target) throws IOException {
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : paths.toList()) {
+                Path destination = target.resolve(source.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(destination);
+                } else {
+                    Files.copy(path, destination);
+                }
+            }
+        }
+    }
+}
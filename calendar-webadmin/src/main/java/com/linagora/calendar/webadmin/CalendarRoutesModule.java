@@ -60,6 +60,7 @@ public class CalendarRoutesModule extends AbstractModule {
         routesMultibinder.addBinding().to(UserCalendarRoutes.class);
         routesMultibinder.addBinding().to(UserAddressBookRoutes.class);
         routesMultibinder.addBinding().to(BookingLinkUserRoutes.class);
+        routesMultibinder.addBinding().to(SmtpSpoolRoutes.class);
 
         bind(MemoryTaskManager.class).in(Scopes.SINGLETON);
         bind(TaskManager.class).to(MemoryTaskManager.class);
@@ -0,0 +1,60 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.webadmin;
+
+import jakarta.inject.Inject;
+
+import org.apache.james.webadmin.Routes;
+import org.apache.james.webadmin.utils.JsonTransformer;
+
+import com.linagora.calendar.storage.spool.OutboundMailSpool;
+
+import spark.Request;
+import spark.Response;
+import spark.Service;
+
+public class SmtpSpoolRoutes implements Routes {
+    public static final String BASE_PATH = "/smtp/spool";
+
+    public record SpoolDTO(long depth) {
+    }
+
+    private final OutboundMailSpool spool;
+    private final JsonTransformer jsonTransformer;
+
+    @Inject
+    public SmtpSpoolRoutes(OutboundMailSpool spool, JsonTransformer jsonTransformer) {
+        this.spool = spool;
+        this.jsonTransformer = jsonTransformer;
+    }
+
+    @Override
+    public String getBasePath() {
+        return BASE_PATH;
+    }
+
+    @Override
+    public void define(Service service) {
+        service.get(BASE_PATH, this::getSpool, jsonTransformer);
+    }
+
+    private SpoolDTO getSpool(Request request, Response response) {
+        return new SpoolDTO(spool.depth().block());
+    }
+}
@@ -0,0 +1,103 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.webadmin;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.is;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.List;
+
+import org.apache.james.core.MailAddress;
+import org.apache.james.core.MaybeSender;
+import org.apache.james.webadmin.WebAdminServer;
+import org.apache.james.webadmin.utils.JsonTransformer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.linagora.calendar.storage.OpenPaaSId;
+import com.linagora.calendar.storage.spool.MemoryOutboundMailSpool;
+
+import io.restassured.RestAssured;
+
+class SmtpSpoolRoutesTest {
+
+    private WebAdminServer webAdminServer;
+    private MemoryOutboundMailSpool spool;
+
+    @BeforeEach
+    void setUp() {
+        spool = new MemoryOutboundMailSpool(Clock.systemUTC());
+        webAdminServer = WebAdminUtils.createWebAdminServer(new SmtpSpoolRoutes(spool, new JsonTransformer())).start();
+
+        RestAssured.requestSpecification = WebAdminUtils.buildRequestSpecification(webAdminServer)
+            .setBasePath(SmtpSpoolRoutes.BASE_PATH)
+            .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        webAdminServer.destroy();
+    }
+
+    @Test
+    void getShouldReturnZeroWhenSpoolIsEmpty() {
+        given()
+        .when()
+            .get()
+        .then()
+            .statusCode(200)
+            .body("depth", is(0));
+    }
+
+    @Test
+    void getShouldReturnTheCountOfSpooledMails() throws Exception {
+        enqueue();
+        enqueue();
+
+        given()
+        .when()
+            .get()
+        .then()
+            .statusCode(200)
+            .body("depth", is(2));
+    }
+
+    @Test
+    void getShouldNotCountAcknowledgedMails() throws Exception {
+        enqueue();
+        spool.acknowledge(enqueue()).block();
+
+        given()
+        .when()
+            .get()
+        .then()
+            .statusCode(200)
+            .body("depth", is(1));
+    }
+
+    private OpenPaaSId enqueue() throws Exception {
+        return spool.enqueue(MaybeSender.of(new MailAddress("sender@linagora.com")),
+                List.of(new MailAddress("bob@linagora.com")),
+                "Subject: test\r\n\r\nbody".getBytes(StandardCharsets.UTF_8))
+            .block();
+    }
+}
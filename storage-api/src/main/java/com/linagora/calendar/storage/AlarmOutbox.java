@@ -0,0 +1,47 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage;
+
+import org.apache.james.core.Username;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Short-retention, per-user log of the display alarms that were triggered.
+ *
+ * Alarms are appended before being dispatched on the event bus so that a client whose websocket was disconnected
+ * when the alarm triggered can replay what it missed from the last cursor it received.
+ */
+public interface AlarmOutbox {
+    int MAX_REPLAY_SIZE = 100;
+
+    record Entry(AlarmOutboxCursor cursor, EventBusAlarmEvent event) {
+    }
+
+    /**
+     * @return the appended event, carrying its outbox cursor
+     */
+    Mono<EventBusAlarmEvent> append(EventBusAlarmEvent event);
+
+    /**
+     * @return the retained alarms of the user strictly after the given cursor, oldest first, at most {@link #MAX_REPLAY_SIZE}
+     */
+    Flux<Entry> readAfter(Username username, AlarmOutboxCursor cursor);
+}
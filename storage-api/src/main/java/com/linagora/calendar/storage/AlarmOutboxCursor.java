@@ -0,0 +1,59 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage;
+
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+
+/**
+ * Position within the alarm outbox of a user. Follows the Redis stream entry id format: {@code <epochMillis>-<sequence>}.
+ */
+public record AlarmOutboxCursor(long timestamp, long sequence) implements Comparable<AlarmOutboxCursor> {
+    private static final String SEPARATOR = "-";
+    private static final Comparator<AlarmOutboxCursor> COMPARATOR = Comparator.comparingLong(AlarmOutboxCursor::timestamp)
+        .thenComparingLong(AlarmOutboxCursor::sequence);
+
+    public static AlarmOutboxCursor parse(String value) {
+        Preconditions.checkArgument(value != null, "Alarm outbox cursor must not be null");
+        List<String> parts = Splitter.on(SEPARATOR).splitToList(value.trim());
+        Preconditions.checkArgument(parts.size() == 2, "Invalid alarm outbox cursor: %s", value);
+        try {
+            return new AlarmOutboxCursor(Long.parseLong(parts.get(0)), Long.parseLong(parts.get(1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid alarm outbox cursor: " + value, e);
+        }
+    }
+
+    public AlarmOutboxCursor {
+        Preconditions.checkArgument(timestamp >= 0, "timestamp must not be negative");
+        Preconditions.checkArgument(sequence >= 0, "sequence must not be negative");
+    }
+
+    public String asString() {
+        return timestamp + SEPARATOR + sequence;
+    }
+
+    @Override
+    public int compareTo(AlarmOutboxCursor other) {
+        return COMPARATOR.compare(this, other);
+    }
+}
@@ -19,6 +19,7 @@
 package com.linagora.calendar.storage;
 
 import java.time.Instant;
+import java.util.Optional;
 
 import org.apache.james.core.Username;
 import org.apache.james.events.Event;
@@ -27,7 +28,16 @@ public record EventBusAlarmEvent(Event.EventId eventId,
                                   Username username,
                                   String eventSummary,
                                   String eventURL,
-                                  Instant eventStartTime) implements Event {
+                                  Instant eventStartTime,
+                                  Optional<AlarmOutboxCursor> outboxCursor) implements Event {
+
+    public EventBusAlarmEvent(EventId eventId, Username username, String eventSummary, String eventURL, Instant eventStartTime) {
+        this(eventId, username, eventSummary, eventURL, eventStartTime, Optional.empty());
+    }
+
+    public EventBusAlarmEvent withOutboxCursor(AlarmOutboxCursor cursor) {
+        return new EventBusAlarmEvent(eventId, username, eventSummary, eventURL, eventStartTime, Optional.of(cursor));
+    }
 
     @Override
     public Username getUsername() {
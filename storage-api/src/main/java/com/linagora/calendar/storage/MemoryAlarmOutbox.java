@@ -0,0 +1,91 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import jakarta.inject.Inject;
+
+import org.apache.james.core.Username;
+
+import com.linagora.calendar.storage.configuration.AlarmOutboxConfiguration;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class MemoryAlarmOutbox implements AlarmOutbox {
+
+    private final Clock clock;
+    private final AlarmOutboxConfiguration configuration;
+    private final Map<Username, NavigableMap<AlarmOutboxCursor, EventBusAlarmEvent>> outboxes = new ConcurrentHashMap<>();
+    private AlarmOutboxCursor lastCursor = new AlarmOutboxCursor(0, 0);
+
+    @Inject
+    public MemoryAlarmOutbox(Clock clock, AlarmOutboxConfiguration configuration) {
+        this.clock = clock;
+        this.configuration = configuration;
+    }
+
+    @Override
+    public Mono<EventBusAlarmEvent> append(EventBusAlarmEvent event) {
+        return Mono.fromCallable(() -> {
+            AlarmOutboxCursor cursor = nextCursor();
+            EventBusAlarmEvent withCursor = event.withOutboxCursor(cursor);
+            NavigableMap<AlarmOutboxCursor, EventBusAlarmEvent> outbox = outboxes.computeIfAbsent(event.username(), any -> new ConcurrentSkipListMap<>());
+            outbox.put(cursor, withCursor);
+            outbox.headMap(retentionLowerBound()).clear();
+            return withCursor;
+        });
+    }
+
+    @Override
+    public Flux<Entry> readAfter(Username username, AlarmOutboxCursor cursor) {
+        return Flux.defer(() -> {
+            NavigableMap<AlarmOutboxCursor, EventBusAlarmEvent> outbox = outboxes.get(username);
+            if (outbox == null) {
+                return Flux.empty();
+            }
+            AlarmOutboxCursor lowerBound = retentionLowerBound();
+            return Flux.fromIterable(outbox.tailMap(cursor, false).entrySet())
+                .filter(entry -> entry.getKey().compareTo(lowerBound) >= 0)
+                .map(entry -> new Entry(entry.getKey(), entry.getValue()))
+                .take(MAX_REPLAY_SIZE);
+        });
+    }
+
+    private synchronized AlarmOutboxCursor nextCursor() {
+        long now = clock.millis();
+        if (now > lastCursor.timestamp()) {
+            lastCursor = new AlarmOutboxCursor(now, 0);
+        } else {
+            lastCursor = new AlarmOutboxCursor(lastCursor.timestamp(), lastCursor.sequence() + 1);
+        }
+        return lastCursor;
+    }
+
+    private AlarmOutboxCursor retentionLowerBound() {
+        Instant oldestRetained = clock.instant().minus(configuration.retention());
+        return new AlarmOutboxCursor(Math.max(0, oldestRetained.toEpochMilli()), 0);
+    }
+}
@@ -0,0 +1,45 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.james.core.Username;
+
+import reactor.core.publisher.Mono;
+
+public class MemoryPresenceRegistry implements PresenceRegistry {
+    private final Map<Username, Integer> connections = new ConcurrentHashMap<>();
+
+    @Override
+    public Mono<Void> connect(Username username) {
+        return Mono.fromRunnable(() -> connections.merge(username, 1, Integer::sum));
+    }
+
+    @Override
+    public Mono<Void> disconnect(Username username) {
+        return Mono.fromRunnable(() -> connections.computeIfPresent(username, (key, count) -> count > 1 ? count - 1 : null));
+    }
+
+    @Override
+    public Mono<Boolean> isOnline(Username username) {
+        return Mono.fromCallable(() -> connections.containsKey(username));
+    }
+}
@@ -37,10 +37,14 @@ import com.linagora.calendar.storage.booking.BookingLinkDAO;
 import com.linagora.calendar.storage.booking.EventBusBookingLinkDAO;
 import com.linagora.calendar.storage.booking.MemoryBookingLinkDAO;
 import com.linagora.calendar.storage.configuration.UserConfigurationDAO;
+import com.linagora.calendar.storage.digest.MemoryNotificationDigestStore;
+import com.linagora.calendar.storage.digest.NotificationDigestStore;
 import com.linagora.calendar.storage.eventsearch.CalendarSearchService;
 import com.linagora.calendar.storage.eventsearch.MemoryCalendarSearchService;
 import com.linagora.calendar.storage.secretlink.MemorySecretLinkStore;
 import com.linagora.calendar.storage.secretlink.SecretLinkStore;
+import com.linagora.calendar.storage.spool.MemoryOutboundMailSpool;
+import com.linagora.calendar.storage.spool.OutboundMailSpool;
 import com.linagora.tmail.james.jmap.ticket.MemoryTicketStore;
 import com.linagora.tmail.james.jmap.ticket.TicketStore;
 
@@ -88,6 +92,12 @@ public class MemoryStorageModule extends AbstractModule {
 
         bind(MemoryDomainSettingsDAO.class).in(Scopes.SINGLETON);
         bind(DomainSettingsDAO.class).to(MemoryDomainSettingsDAO.class);
+
+        bind(MemoryOutboundMailSpool.class).in(Scopes.SINGLETON);
+        bind(OutboundMailSpool.class).to(MemoryOutboundMailSpool.class);
+
+        bind(MemoryNotificationDigestStore.class).in(Scopes.SINGLETON);
+        bind(NotificationDigestStore.class).to(MemoryNotificationDigestStore.class);
     }
 
     @Provides
@@ -18,6 +18,7 @@
 
 package com.linagora.calendar.storage;
 
+import java.util.Collection;
 import java.util.Optional;
 
 import org.apache.james.core.Domain;
@@ -33,6 +34,16 @@ public interface OpenPaaSUserDAO {
 
     Mono<OpenPaaSUser> retrieve(Username username);
 
+    /**
+     * Retrieves the users of the given usernames at once. Each returned user carries the username it was requested
+     * with; unknown usernames are skipped.
+     */
+    default Flux<OpenPaaSUser> retrieveAll(Collection<Username> usernames) {
+        return Flux.fromIterable(usernames)
+            .distinct()
+            .concatMap(this::retrieve);
+    }
+
     Mono<OpenPaaSUser> add(Username username);
 
     Mono<OpenPaaSUser> add(Username username, String firstName, String lastName);
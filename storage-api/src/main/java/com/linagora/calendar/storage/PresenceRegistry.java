@@ -0,0 +1,46 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage;
+
+import org.apache.james.core.Username;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Tracks which users have a realtime notification channel (websocket, server-sent events) opened on any node, so that
+ * notifications targeting offline users are not dispatched on the event bus.
+ */
+public interface PresenceRegistry {
+
+    /**
+     * Records a newly opened connection of the user on this node.
+     */
+    Mono<Void> connect(Username username);
+
+    /**
+     * Records a closed connection of the user on this node.
+     */
+    Mono<Void> disconnect(Username username);
+
+    /**
+     * Lookups may be served from a short lived cache: a user that just connected might be reported offline for a
+     * little while on other nodes.
+     */
+    Mono<Boolean> isOnline(Username username);
+}
@@ -0,0 +1,41 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.storage.audit;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.base.Preconditions;
+
+public record AuditTrailEntry(Instant date,
+                              String action,
+                              Optional<String> username,
+                              Map<String, String> parameters,
+                              String message) {
+
+    public AuditTrailEntry {
+        Preconditions.checkNotNull(date, "'date' must not be null");
+        Preconditions.checkNotNull(action, "'action' must not be null");
+        Preconditions.checkNotNull(username, "'username' must not be null");
+        Preconditions.checkNotNull(parameters, "'parameters' must not be null");
+        Preconditions.checkNotNull(message, "'message' must not be null");
+    }
+}
@@ -0,0 +1,44 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.storage.audit;
+
+import java.util.List;
+
+import org.apache.james.util.AuditTrail;
+
+import com.google.common.collect.ImmutableMap;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Writes the audit trail to the application logs, through the James audit trail logger.
+ */
+public class LoggerAuditTrailSink implements AuditTrailSink {
+    public static final String NAME = "logger";
+
+    @Override
+    public Mono<Void> write(List<AuditTrailEntry> entries) {
+        return Mono.fromRunnable(() -> entries.forEach(entry -> AuditTrail.entry()
+            .action(entry.action())
+            .username(() -> entry.username().orElse(null))
+            .parameters(() -> ImmutableMap.copyOf(entry.parameters()))
+            .log(entry.message())));
+    }
+}
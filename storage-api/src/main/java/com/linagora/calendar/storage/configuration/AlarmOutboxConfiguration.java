@@ -0,0 +1,47 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage.configuration;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.james.util.DurationParser;
+
+import com.google.common.base.Preconditions;
+
+public record AlarmOutboxConfiguration(Duration retention) {
+
+    public static final String RETENTION_PROPERTY = "alarm.outbox.retention";
+    public static final Duration RETENTION_DEFAULT = Duration.ofHours(1);
+
+    public static final AlarmOutboxConfiguration DEFAULT = new AlarmOutboxConfiguration(RETENTION_DEFAULT);
+
+    public static AlarmOutboxConfiguration parse(Configuration configuration) {
+        Optional<Duration> retention = Optional.ofNullable(configuration.getString(RETENTION_PROPERTY, null))
+            .map(string -> DurationParser.parse(string, ChronoUnit.SECONDS));
+
+        return new AlarmOutboxConfiguration(retention.orElse(RETENTION_DEFAULT));
+    }
+
+    public AlarmOutboxConfiguration {
+        Preconditions.checkArgument(retention != null && retention.isPositive(), "'%s' must be positive", RETENTION_PROPERTY);
+    }
+}
@@ -0,0 +1,60 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage.configuration;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.james.util.DurationParser;
+
+import com.google.common.base.Preconditions;
+
+public record PresenceConfiguration(Duration heartbeatInterval,
+                                    Duration expiry,
+                                    Duration nearCacheTtl) {
+
+    public static final String HEARTBEAT_INTERVAL_PROPERTY = "presence.heartbeat.interval";
+    public static final String EXPIRY_PROPERTY = "presence.expiry";
+    public static final String NEAR_CACHE_TTL_PROPERTY = "presence.near.cache.ttl";
+    public static final Duration HEARTBEAT_INTERVAL_DEFAULT = Duration.ofSeconds(10);
+    public static final Duration EXPIRY_DEFAULT = Duration.ofSeconds(30);
+    public static final Duration NEAR_CACHE_TTL_DEFAULT = Duration.ofSeconds(2);
+
+    public static final PresenceConfiguration DEFAULT = new PresenceConfiguration(HEARTBEAT_INTERVAL_DEFAULT, EXPIRY_DEFAULT, NEAR_CACHE_TTL_DEFAULT);
+
+    public static PresenceConfiguration parse(Configuration configuration) {
+        return new PresenceConfiguration(
+            parseDuration(configuration, HEARTBEAT_INTERVAL_PROPERTY).orElse(HEARTBEAT_INTERVAL_DEFAULT),
+            parseDuration(configuration, EXPIRY_PROPERTY).orElse(EXPIRY_DEFAULT),
+            parseDuration(configuration, NEAR_CACHE_TTL_PROPERTY).orElse(NEAR_CACHE_TTL_DEFAULT));
+    }
+
+    private static Optional<Duration> parseDuration(Configuration configuration, String property) {
+        return Optional.ofNullable(configuration.getString(property, null))
+            .map(string -> DurationParser.parse(string, ChronoUnit.SECONDS));
+    }
+
+    public PresenceConfiguration {
+        Preconditions.checkArgument(heartbeatInterval != null && heartbeatInterval.isPositive(), "'%s' must be positive", HEARTBEAT_INTERVAL_PROPERTY);
+        Preconditions.checkArgument(expiry != null && expiry.compareTo(heartbeatInterval) > 0, "'%s' must be greater than '%s'", EXPIRY_PROPERTY, HEARTBEAT_INTERVAL_PROPERTY);
+        Preconditions.checkArgument(nearCacheTtl != null && !nearCacheTtl.isNegative(), "'%s' must not be negative", NEAR_CACHE_TTL_PROPERTY);
+    }
+}
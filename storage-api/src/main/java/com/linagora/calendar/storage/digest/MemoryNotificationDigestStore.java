@@ -0,0 +1,134 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage.digest;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import jakarta.inject.Inject;
+
+import com.google.common.collect.ImmutableList;
+import com.linagora.calendar.storage.OpenPaaSId;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class MemoryNotificationDigestStore implements NotificationDigestStore {
+
+    private static class Entry {
+        private final OpenPaaSId id;
+        private final DigestKey key;
+        private final List<byte[]> notifications = new ArrayList<>();
+        private Instant dueAt;
+        private boolean open = true;
+
+        Entry(OpenPaaSId id, DigestKey key, Instant dueAt) {
+            this.id = id;
+            this.key = key;
+            this.dueAt = dueAt;
+        }
+    }
+
+    private final Clock clock;
+    private final Map<OpenPaaSId, Entry> entries = new LinkedHashMap<>();
+
+    @Inject
+    public MemoryNotificationDigestStore(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public Mono<Void> append(DigestKey key, byte[] notification, Duration window) {
+        return Mono.fromRunnable(() -> doAppend(key, notification, window));
+    }
+
+    private synchronized void doAppend(DigestKey key, byte[] notification, Duration window) {
+        Entry entry = entries.values().stream()
+            .filter(candidate -> candidate.open && candidate.key.equals(key))
+            .findFirst()
+            .orElseGet(() -> {
+                Entry opened = new Entry(new OpenPaaSId(UUID.randomUUID().toString()), key, clock.instant().plus(window));
+                entries.put(opened.id, opened);
+                return opened;
+            });
+        entry.notifications.add(notification);
+    }
+
+    @Override
+    public Flux<PendingDigest> lease(int limit, Duration leaseDuration) {
+        return Flux.defer(() -> Flux.fromIterable(leaseDue(limit, leaseDuration)));
+    }
+
+    private synchronized List<PendingDigest> leaseDue(int limit, Duration leaseDuration) {
+        Instant now = clock.instant();
+        List<Entry> due = entries.values().stream()
+            .filter(entry -> !entry.dueAt.isAfter(now))
+            .sorted(Comparator.comparing(entry -> entry.dueAt))
+            .limit(limit)
+            .toList();
+        return due.stream()
+            .map(entry -> {
+                entry.open = false;
+                entry.dueAt = now.plus(leaseDuration);
+                return new PendingDigest(entry.id, entry.key, ImmutableList.copyOf(entry.notifications));
+            })
+            .toList();
+    }
+
+    @Override
+    public Mono<Void> acknowledge(OpenPaaSId id) {
+        return Mono.fromRunnable(() -> remove(id));
+    }
+
+    private synchronized void remove(OpenPaaSId id) {
+        entries.remove(id);
+    }
+
+    @Override
+    public Mono<Void> discard(DigestKey key) {
+        return Mono.fromRunnable(() -> removeOpen(key));
+    }
+
+    private synchronized void removeOpen(DigestKey key) {
+        entries.values().removeIf(entry -> entry.open && covers(key, entry.key));
+    }
+
+    private static boolean covers(DigestKey discarded, DigestKey key) {
+        if (discarded.recurrenceId().isPresent()) {
+            return discarded.equals(key);
+        }
+        return discarded.recipient().equals(key.recipient()) && discarded.eventUid().equals(key.eventUid());
+    }
+
+    @Override
+    public Mono<Long> depth() {
+        return Mono.fromCallable(this::size);
+    }
+
+    private synchronized long size() {
+        return entries.size();
+    }
+}
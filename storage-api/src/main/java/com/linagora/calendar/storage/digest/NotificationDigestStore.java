@@ -0,0 +1,81 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage.digest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.james.core.MailAddress;
+
+import com.google.common.collect.ImmutableList;
+import com.linagora.calendar.storage.OpenPaaSId;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Durable store of the notifications waiting to be coalesced into a single mail per recipient and event.
+ *
+ * A digest is opened by the first notification of a (recipient, event uid, recurrence id) key and is due once its window
+ * elapsed. Notifications for the same key are appended to the open digest until a dispatcher leases it. Leasing closes the
+ * digest: later notifications open a new one. A leased digest is acknowledged once sent; a digest whose dispatcher died
+ * before doing so becomes due again when its lease expires.
+ */
+public interface NotificationDigestStore {
+
+    /**
+     * @param recurrenceId the RECURRENCE-ID of an overridden occurrence, empty for the event as a whole
+     */
+    record DigestKey(MailAddress recipient, String eventUid, Optional<String> recurrenceId) {
+        public DigestKey(MailAddress recipient, String eventUid) {
+            this(recipient, eventUid, Optional.empty());
+        }
+    }
+
+    record PendingDigest(OpenPaaSId id, DigestKey key, List<byte[]> notifications) {
+        public PendingDigest {
+            notifications = ImmutableList.copyOf(notifications);
+        }
+    }
+
+    /**
+     * Appends a serialized notification to the open digest of {@code key}, opening a digest due after {@code window}
+     * when none is open.
+     */
+    Mono<Void> append(DigestKey key, byte[] notification, Duration window);
+
+    /**
+     * @return at most {@code limit} due digests, earliest due first, that are not due again before {@code leaseDuration}
+     */
+    Flux<PendingDigest> lease(int limit, Duration leaseDuration);
+
+    Mono<Void> acknowledge(OpenPaaSId id);
+
+    /**
+     * Removes the open digest of {@code key}, if any. Discarding the digest of an event as a whole also removes the open
+     * digests of its occurrences. A leased digest is left to its dispatcher.
+     */
+    Mono<Void> discard(DigestKey key);
+
+    /**
+     * @return the count of digests in the store, leased or not
+     */
+    Mono<Long> depth();
+}
@@ -0,0 +1,96 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage.spool;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.inject.Inject;
+
+import org.apache.james.core.MailAddress;
+import org.apache.james.core.MaybeSender;
+
+import com.linagora.calendar.storage.OpenPaaSId;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class MemoryOutboundMailSpool implements OutboundMailSpool {
+
+    private record Entry(SpooledMail mail, Instant nextAttempt) {
+    }
+
+    private final Clock clock;
+    private final Map<OpenPaaSId, Entry> entries = new ConcurrentHashMap<>();
+
+    @Inject
+    public MemoryOutboundMailSpool(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public Mono<OpenPaaSId> enqueue(MaybeSender sender, Collection<MailAddress> recipients, byte[] message) {
+        return Mono.fromCallable(() -> {
+            OpenPaaSId id = new OpenPaaSId(UUID.randomUUID().toString());
+            entries.put(id, new Entry(new SpooledMail(id, sender, List.copyOf(recipients), message, 0), clock.instant()));
+            return id;
+        });
+    }
+
+    @Override
+    public Flux<SpooledMail> lease(int limit, Duration leaseDuration) {
+        return Flux.defer(() -> Flux.fromIterable(leaseDue(limit, leaseDuration)));
+    }
+
+    private synchronized List<SpooledMail> leaseDue(int limit, Duration leaseDuration) {
+        Instant now = clock.instant();
+        List<Entry> due = entries.values().stream()
+            .filter(entry -> !entry.nextAttempt().isAfter(now))
+            .sorted(Comparator.comparing(Entry::nextAttempt))
+            .limit(limit)
+            .toList();
+        due.forEach(entry -> entries.computeIfPresent(entry.mail().id(), (id, current) -> new Entry(current.mail(), now.plus(leaseDuration))));
+        return due.stream().map(Entry::mail).toList();
+    }
+
+    @Override
+    public Mono<Void> acknowledge(OpenPaaSId id) {
+        return Mono.fromRunnable(() -> entries.remove(id));
+    }
+
+    @Override
+    public Mono<Void> retryLater(OpenPaaSId id, Instant nextAttempt) {
+        return Mono.fromRunnable(() -> entries.computeIfPresent(id, (any, current) -> {
+            SpooledMail mail = current.mail();
+            return new Entry(new SpooledMail(mail.id(), mail.sender(), mail.recipients(), mail.message(), mail.attempts() + 1), nextAttempt);
+        }));
+    }
+
+    @Override
+    public Mono<Long> depth() {
+        return Mono.fromCallable(() -> (long) entries.size());
+    }
+}
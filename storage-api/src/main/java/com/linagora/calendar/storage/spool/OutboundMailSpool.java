@@ -0,0 +1,71 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage.spool;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.james.core.MailAddress;
+import org.apache.james.core.MaybeSender;
+
+import com.google.common.collect.ImmutableList;
+import com.linagora.calendar.storage.OpenPaaSId;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Durable queue of the outbound mails waiting to be delivered over SMTP.
+ *
+ * A spooled mail is due as soon as it is enqueued. A dispatcher leases due mails, which hides them from other
+ * dispatchers for the lease duration, then either acknowledges them once delivered or schedules a later attempt. A
+ * mail whose dispatcher died before doing either becomes due again when its lease expires.
+ */
+public interface OutboundMailSpool {
+
+    record SpooledMail(OpenPaaSId id, MaybeSender sender, List<MailAddress> recipients, byte[] message, int attempts) {
+        public SpooledMail {
+            recipients = ImmutableList.copyOf(recipients);
+        }
+    }
+
+    /**
+     * @param message the serialized MIME message
+     */
+    Mono<OpenPaaSId> enqueue(MaybeSender sender, Collection<MailAddress> recipients, byte[] message);
+
+    /**
+     * @return at most {@code limit} due mails, earliest due first, that are not due again before {@code leaseDuration}
+     */
+    Flux<SpooledMail> lease(int limit, Duration leaseDuration);
+
+    Mono<Void> acknowledge(OpenPaaSId id);
+
+    /**
+     * Records a failed attempt: the mail is due again at {@code nextAttempt}.
+     */
+    Mono<Void> retryLater(OpenPaaSId id, Instant nextAttempt);
+
+    /**
+     * @return the count of mails in the spool, leased or not
+     */
+    Mono<Long> depth();
+}
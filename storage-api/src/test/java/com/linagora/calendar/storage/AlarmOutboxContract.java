@@ -0,0 +1,151 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.apache.james.core.Username;
+import org.apache.james.events.Event;
+import org.apache.james.utils.UpdatableTickingClock;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Flux;
+
+public interface AlarmOutboxContract {
+    Username BOB = Username.of("bob@linagora.com");
+    Username ALICE = Username.of("alice@linagora.com");
+    AlarmOutboxCursor BEGINNING = new AlarmOutboxCursor(0, 0);
+
+    AlarmOutbox testee();
+
+    UpdatableTickingClock clock();
+
+    private static EventBusAlarmEvent alarm(Username username, String summary) {
+        return new EventBusAlarmEvent(Event.EventId.random(), username, summary,
+            "/calendars/" + username.asString() + "/calendar/" + summary + ".ics",
+            Instant.parse("2026-01-01T10:00:00Z"));
+    }
+
+    private List<String> summariesAfter(Username username, AlarmOutboxCursor cursor) {
+        return testee().readAfter(username, cursor)
+            .map(entry -> entry.event().eventSummary())
+            .collectList()
+            .block();
+    }
+
+    @Test
+    default void appendShouldReturnEventWithCursor() {
+        EventBusAlarmEvent appended = testee().append(alarm(BOB, "standup")).block();
+
+        assertThat(appended.outboxCursor()).isPresent();
+    }
+
+    @Test
+    default void appendShouldAssignIncreasingCursors() {
+        AlarmOutboxCursor first = testee().append(alarm(BOB, "first")).block().outboxCursor().get();
+        AlarmOutboxCursor second = testee().append(alarm(BOB, "second")).block().outboxCursor().get();
+
+        assertThat(second).isGreaterThan(first);
+    }
+
+    @Test
+    default void readAfterShouldReturnEmptyWhenNothingAppended() {
+        assertThat(summariesAfter(BOB, BEGINNING)).isEmpty();
+    }
+
+    @Test
+    default void readAfterShouldReturnAppendedEventsInOrder() {
+        testee().append(alarm(BOB, "first")).block();
+        testee().append(alarm(BOB, "second")).block();
+        testee().append(alarm(BOB, "third")).block();
+
+        assertThat(summariesAfter(BOB, BEGINNING)).containsExactly("first", "second", "third");
+    }
+
+    @Test
+    default void readAfterShouldExcludeTheGivenCursor() {
+        AlarmOutboxCursor first = testee().append(alarm(BOB, "first")).block().outboxCursor().get();
+        testee().append(alarm(BOB, "second")).block();
+
+        assertThat(summariesAfter(BOB, first)).containsExactly("second");
+    }
+
+    @Test
+    default void readAfterShouldReturnEmptyWhenCursorIsTheLatest() {
+        testee().append(alarm(BOB, "first")).block();
+        AlarmOutboxCursor last = testee().append(alarm(BOB, "second")).block().outboxCursor().get();
+
+        assertThat(summariesAfter(BOB, last)).isEmpty();
+    }
+
+    @Test
+    default void readAfterShouldReturnEntriesCarryingTheirCursor() {
+        EventBusAlarmEvent appended = testee().append(alarm(BOB, "first")).block();
+
+        AlarmOutbox.Entry entry = testee().readAfter(BOB, BEGINNING).blockFirst();
+
+        assertThat(entry.cursor()).isEqualTo(appended.outboxCursor().get());
+        assertThat(entry.event()).isEqualTo(appended);
+    }
+
+    @Test
+    default void readAfterShouldBeScopedToTheUser() {
+        testee().append(alarm(BOB, "bob-alarm")).block();
+        testee().append(alarm(ALICE, "alice-alarm")).block();
+
+        assertThat(summariesAfter(BOB, BEGINNING)).containsExactly("bob-alarm");
+    }
+
+    @Test
+    default void readAfterShouldNotReturnEntriesOlderThanRetention() {
+        testee().append(alarm(BOB, "old")).block();
+
+        clock().setInstant(clock().instant().plus(Duration.ofHours(2)));
+
+        assertThat(summariesAfter(BOB, BEGINNING)).isEmpty();
+    }
+
+    @Test
+    default void readAfterShouldBeLimitedToMaxReplaySize() {
+        Flux.fromStream(IntStream.range(0, AlarmOutbox.MAX_REPLAY_SIZE + 10).boxed())
+            .concatMap(i -> testee().append(alarm(BOB, "alarm-" + i)))
+            .blockLast();
+
+        List<String> summaries = summariesAfter(BOB, BEGINNING);
+        assertThat(summaries)
+            .hasSize(AlarmOutbox.MAX_REPLAY_SIZE)
+            .startsWith("alarm-0");
+    }
+
+    @Test
+    default void expiredEntriesShouldNotCountInTheReplaySize() {
+        Flux.fromStream(IntStream.range(0, AlarmOutbox.MAX_REPLAY_SIZE + 10).boxed())
+            .concatMap(i -> testee().append(alarm(BOB, "old-" + i)))
+            .blockLast();
+        clock().setInstant(clock().instant().plus(Duration.ofHours(2)));
+        testee().append(alarm(BOB, "recent")).block();
+
+        assertThat(summariesAfter(BOB, BEGINNING)).containsExactly("recent");
+    }
+}
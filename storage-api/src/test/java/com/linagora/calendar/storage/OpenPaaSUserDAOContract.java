@@ -74,6 +74,38 @@ public interface OpenPaaSUserDAOContract {
         assertThat(testee().retrieve(new OpenPaaSId("659387b9d486dc0046aeff21")).blockOptional()).isEmpty();
     }
 
+    @Test
+    default void retrieveAllShouldReturnAddedResults() {
+        OpenPaaSUser user1 = testee().add(USERNAME, "James", "Bond").block();
+        OpenPaaSUser user2 = testee().add(USERNAME_2).block();
+
+        assertThat(testee().retrieveAll(List.of(USERNAME, USERNAME_2)).collectList().block())
+            .containsExactlyInAnyOrder(user1, user2);
+    }
+
+    @Test
+    default void retrieveAllShouldSkipUnknownUsers() {
+        OpenPaaSUser user = testee().add(USERNAME).block();
+
+        assertThat(testee().retrieveAll(List.of(USERNAME, USERNAME_2)).collectList().block())
+            .containsExactly(user);
+    }
+
+    @Test
+    default void retrieveAllShouldReturnEmptyWhenNoUsernames() {
+        testee().add(USERNAME).block();
+
+        assertThat(testee().retrieveAll(List.of()).collectList().block()).isEmpty();
+    }
+
+    @Test
+    default void retrieveAllShouldNotDuplicateRepeatedUsernames() {
+        OpenPaaSUser user = testee().add(USERNAME).block();
+
+        assertThat(testee().retrieveAll(List.of(USERNAME, USERNAME)).collectList().block())
+            .containsExactly(user);
+    }
+
     @Test
     default void addWithNameShouldWork() {
         OpenPaaSUser actual = testee().add(USERNAME, "James", "Bond").block();
@@ -0,0 +1,85 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.james.core.Username;
+import org.junit.jupiter.api.Test;
+
+public interface PresenceRegistryContract {
+    Username BOB = Username.of("bob@linagora.com");
+    Username ALICE = Username.of("alice@linagora.com");
+
+    PresenceRegistry testee();
+
+    @Test
+    default void isOnlineShouldReturnFalseByDefault() {
+        assertThat(testee().isOnline(BOB).block()).isFalse();
+    }
+
+    @Test
+    default void isOnlineShouldReturnTrueWhenConnected() {
+        testee().connect(BOB).block();
+
+        assertThat(testee().isOnline(BOB).block()).isTrue();
+    }
+
+    @Test
+    default void isOnlineShouldReturnFalseAfterDisconnect() {
+        testee().connect(BOB).block();
+        testee().disconnect(BOB).block();
+
+        assertThat(testee().isOnline(BOB).block()).isFalse();
+    }
+
+    @Test
+    default void isOnlineShouldReturnTrueWhileAnotherConnectionRemains() {
+        testee().connect(BOB).block();
+        testee().connect(BOB).block();
+        testee().disconnect(BOB).block();
+
+        assertThat(testee().isOnline(BOB).block()).isTrue();
+    }
+
+    @Test
+    default void isOnlineShouldReturnFalseOnceAllConnectionsAreClosed() {
+        testee().connect(BOB).block();
+        testee().connect(BOB).block();
+        testee().disconnect(BOB).block();
+        testee().disconnect(BOB).block();
+
+        assertThat(testee().isOnline(BOB).block()).isFalse();
+    }
+
+    @Test
+    default void disconnectShouldBeNoopWhenNotConnected() {
+        testee().disconnect(BOB).block();
+        testee().connect(BOB).block();
+
+        assertThat(testee().isOnline(BOB).block()).isTrue();
+    }
+
+    @Test
+    default void connectShouldNotAffectOtherUsers() {
+        testee().connect(BOB).block();
+
+        assertThat(testee().isOnline(ALICE).block()).isFalse();
+    }
+}
@@ -0,0 +1,283 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage.digest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.james.core.MailAddress;
+import org.apache.james.utils.UpdatableTickingClock;
+import org.junit.jupiter.api.Test;
+
+import com.linagora.calendar.storage.OpenPaaSId;
+import com.linagora.calendar.storage.digest.NotificationDigestStore.DigestKey;
+import com.linagora.calendar.storage.digest.NotificationDigestStore.PendingDigest;
+
+public interface NotificationDigestStoreContract {
+    Duration WINDOW = Duration.ofMinutes(2);
+    Duration LEASE = Duration.ofMinutes(5);
+    DigestKey BOB_EVENT = new DigestKey(address("bob@domain.tld"), "event-uid");
+    DigestKey BOB_FIRST_OCCURRENCE = new DigestKey(address("bob@domain.tld"), "event-uid", Optional.of("20250101T100000Z"));
+    DigestKey BOB_SECOND_OCCURRENCE = new DigestKey(address("bob@domain.tld"), "event-uid", Optional.of("20250102T100000Z"));
+    byte[] FIRST = "first".getBytes(StandardCharsets.UTF_8);
+    byte[] SECOND = "second".getBytes(StandardCharsets.UTF_8);
+    byte[] THIRD = "third".getBytes(StandardCharsets.UTF_8);
+
+    NotificationDigestStore testee();
+
+    UpdatableTickingClock clock();
+
+    static MailAddress address(String value) {
+        try {
+            return new MailAddress(value);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void elapse(Duration duration) {
+        clock().setInstant(clock().instant().plus(duration));
+    }
+
+    @Test
+    default void leaseShouldReturnNothingWhenEmpty() {
+        assertThat(testee().lease(10, LEASE).collectList().block()).isEmpty();
+    }
+
+    @Test
+    default void digestShouldNotBeDueBeforeItsWindowElapsed() {
+        testee().append(BOB_EVENT, FIRST, WINDOW).block();
+
+        elapse(WINDOW.minusSeconds(1));
+
+        assertThat(testee().lease(10, LEASE).collectList().block()).isEmpty();
+    }
+
+    @Test
+    default void digestShouldBeDueOnceItsWindowElapsed() {
+        testee().append(BOB_EVENT, FIRST, WINDOW).block();
+
+        elapse(WINDOW);
+
+        List<PendingDigest> leased = testee().lease(10, LEASE).collectList().block();
+        assertThat(leased).hasSize(1);
+        assertThat(leased.getFirst().key()).isEqualTo(BOB_EVENT);
+        assertThat(leased.getFirst().notifications()).containsExactly(FIRST);
+    }
+
+    @Test
+    default void notificationsOfTheSameKeyShouldBeAppendedInOrder() {
+        testee().append(BOB_EVENT, FIRST, WINDOW).block();
+        elapse(Duration.ofSeconds(30));
+        testee().append(BOB_EVENT, SECOND, WINDOW).block();
+        testee().append(BOB_EVENT, THIRD, WINDOW).block();
+
+        elapse(WINDOW);
+
+        assertThat(testee().lease(10, LEASE).collectList().block())
+            .singleElement()
+            .satisfies(digest -> assertThat(digest.notifications()).containsExactly(FIRST, SECOND, THIRD));
+    }
+
+    @Test
+    default void appendingShouldNotPostponeTheDigest() {
+        testee().append(BOB_EVENT, FIRST, WINDOW).block();
+        elapse(WINDOW.minusSeconds(1));
+        testee().append(BOB_EVENT, SECOND, WINDOW).block();
+
+        elapse(Duration.ofSeconds(1));
+
+        assertThat(testee().lease(10, LEASE).collectList().block()).hasSize(1);
+    }
+
+    @Test
+    default void distinctKeysShouldHaveDistinctDigests() {
+        DigestKey aliceEvent = new DigestKey(address("alice@domain.tld"), "event-uid");
+        DigestKey bobOtherEvent = new DigestKey(address("bob@domain.tld"), "other-uid");
+        testee().append(BOB_EVENT, FIRST, WINDOW).block();
+        testee().append(aliceEvent, SECOND, WINDOW).block();
+        testee().append(bobOtherEvent, THIRD, WINDOW).block();
+
+        elapse(WINDOW);
+
+        assertThat(testee().lease(10, LEASE).collectList().block())
+            .extracting(PendingDigest::key)
+            .containsExactlyInAnyOrder(BOB_EVENT, aliceEvent, bobOtherEvent);
+    }
+
+    @Test
+    default void occurrencesShouldHaveDistinctDigests() {
+        testee().append(BOB_EVENT, FIRST, WINDOW).block();
+        testee().append(BOB_FIRST_OCCURRENCE, SECOND, WINDOW).block();
+        testee().append(BOB_SECOND_OCCURRENCE, THIRD, WINDOW).block();
+
+        elapse(WINDOW);
+
+        assertThat(testee().lease(10, LEASE).collectList().block())
+            .extracting(PendingDigest::key)
+            .containsExactlyInAnyOrder(BOB_EVENT, BOB_FIRST_OCCURRENCE, BOB_SECOND_OCCURRENCE);
+    }
+
+    @Test
+    default void leaseShouldRespectTheLimit() {
+        for (int i = 0; i < 5; i++) {
+            testee().append(new DigestKey(address("bob@domain.tld"), "uid-" + i), FIRST, WINDOW).block();
+        }
+        elapse(WINDOW);
+
+        assertThat(testee().lease(3, LEASE).collectList().block()).hasSize(3);
+        assertThat(testee().lease(3, LEASE).collectList().block()).hasSize(2);
+    }
+
+    @Test
+    default void notificationAppendedAfterLeasingShouldOpenANewDigest() {
+        testee().append(BOB_EVENT, FIRST, WINDOW).block();
+        elapse(WINDOW);
+        PendingDigest leased = testee().lease(10, LEASE).blockFirst();
+
+        testee().append(BOB_EVENT, SECOND, WINDOW).block();
+        elapse(WINDOW);
+
+        assertThat(testee().lease(10, LEASE).collectList().block())
+            .singleElement()
+            .satisfies(digest -> {
+                assertThat(digest.id()).isNotEqualTo(leased.id());
+                assertThat(digest.notifications()).containsExactly(SECOND);
+            });
+    }
+
+    @Test
+    default void leasedDigestShouldNotBeLeasedAgainBeforeTheLeaseExpires() {
+        testee().append(BOB_EVENT, FIRST, WINDOW).block();
+        elapse(WINDOW);
+        testee().lease(10, LEASE).collectList().block();
+
+        elapse(Duration.ofMinutes(1));
+
+        assertThat(testee().lease(10, LEASE).collectList().block()).isEmpty();
+    }
+
+    @Test
+    default void leasedDigestShouldBeLeasedAgainOnceTheLeaseExpires() {
+        testee().append(BOB_EVENT, FIRST, WINDOW).block();
+        elapse(WINDOW);
+        OpenPaaSId id = testee().lease(10, LEASE).blockFirst().id();
+
+        elapse(LEASE.plusSeconds(1));
+
+        assertThat(testee().lease(10, LEASE).collectList().block())
+            .extracting(PendingDigest::id)
+            .containsExactly(id);
+    }
+
+    @Test
+    default void acknowledgedDigestShouldBeRemoved() {
+        testee().append(BOB_EVENT, FIRST, WINDOW).block();
+        elapse(WINDOW);
+        OpenPaaSId id = testee().lease(10, LEASE).blockFirst().id();
+
+        testee().acknowledge(id).block();
+        elapse(LEASE.plusSeconds(1));
+
+        assertThat(testee().lease(10, LEASE).collectList().block()).isEmpty();
+        assertThat(testee().depth().block()).isZero();
+    }
+
+    @Test
+    default void discardedDigestShouldNotBeLeased() {
+        DigestKey aliceEvent = new DigestKey(address("alice@domain.tld"), "event-uid");
+        testee().append(BOB_EVENT, FIRST, WINDOW).block();
+        testee().append(aliceEvent, SECOND, WINDOW).block();
+
+        testee().discard(BOB_EVENT).block();
+        elapse(WINDOW);
+
+        assertThat(testee().lease(10, LEASE).collectList().block())
+            .extracting(PendingDigest::key)
+            .containsExactly(aliceEvent);
+    }
+
+    @Test
+    default void discardShouldNotRemoveALeasedDigest() {
+        testee().append(BOB_EVENT, FIRST, WINDOW).block();
+        elapse(WINDOW);
+        testee().lease(10, LEASE).collectList().block();
+
+        testee().discard(BOB_EVENT).block();
+
+        assertThat(testee().depth().block()).isEqualTo(1);
+    }
+
+    @Test
+    default void notificationAppendedAfterADiscardShouldOpenANewDigest() {
+        testee().append(BOB_EVENT, FIRST, WINDOW).block();
+        testee().discard(BOB_EVENT).block();
+        testee().append(BOB_EVENT, SECOND, WINDOW).block();
+
+        elapse(WINDOW);
+
+        assertThat(testee().lease(10, LEASE).collectList().block())
+            .singleElement()
+            .satisfies(digest -> assertThat(digest.notifications()).containsExactly(SECOND));
+    }
+
+    @Test
+    default void discardingAnOccurrenceShouldNotRemoveTheOtherDigestsOfTheEvent() {
+        testee().append(BOB_EVENT, FIRST, WINDOW).block();
+        testee().append(BOB_FIRST_OCCURRENCE, SECOND, WINDOW).block();
+        testee().append(BOB_SECOND_OCCURRENCE, THIRD, WINDOW).block();
+
+        testee().discard(BOB_FIRST_OCCURRENCE).block();
+        elapse(WINDOW);
+
+        assertThat(testee().lease(10, LEASE).collectList().block())
+            .extracting(PendingDigest::key)
+            .containsExactlyInAnyOrder(BOB_EVENT, BOB_SECOND_OCCURRENCE);
+    }
+
+    @Test
+    default void discardingAnEventShouldRemoveTheDigestsOfItsOccurrences() {
+        DigestKey aliceOccurrence = new DigestKey(address("alice@domain.tld"), "event-uid", Optional.of("20250101T100000Z"));
+        testee().append(BOB_EVENT, FIRST, WINDOW).block();
+        testee().append(BOB_FIRST_OCCURRENCE, SECOND, WINDOW).block();
+        testee().append(aliceOccurrence, THIRD, WINDOW).block();
+
+        testee().discard(BOB_EVENT).block();
+        elapse(WINDOW);
+
+        assertThat(testee().lease(10, LEASE).collectList().block())
+            .extracting(PendingDigest::key)
+            .containsExactly(aliceOccurrence);
+    }
+
+    @Test
+    default void depthShouldCountOpenAndLeasedDigests() {
+        testee().append(BOB_EVENT, FIRST, WINDOW).block();
+        elapse(WINDOW);
+        testee().lease(10, LEASE).collectList().block();
+        testee().append(BOB_EVENT, SECOND, WINDOW).block();
+        testee().append(BOB_EVENT, THIRD, WINDOW).block();
+
+        assertThat(testee().depth().block()).isEqualTo(2);
+    }
+}
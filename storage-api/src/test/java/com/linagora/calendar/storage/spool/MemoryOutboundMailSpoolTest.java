@@ -0,0 +1,45 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage.spool;
+
+import java.time.Instant;
+
+import org.apache.james.utils.UpdatableTickingClock;
+import org.junit.jupiter.api.BeforeEach;
+
+public class MemoryOutboundMailSpoolTest implements OutboundMailSpoolContract {
+    private UpdatableTickingClock clock;
+    private MemoryOutboundMailSpool testee;
+
+    @BeforeEach
+    void setUp() {
+        clock = new UpdatableTickingClock(Instant.parse("2026-01-01T10:00:00Z"));
+        testee = new MemoryOutboundMailSpool(clock);
+    }
+
+    @Override
+    public OutboundMailSpool testee() {
+        return testee;
+    }
+
+    @Override
+    public UpdatableTickingClock clock() {
+        return clock;
+    }
+}
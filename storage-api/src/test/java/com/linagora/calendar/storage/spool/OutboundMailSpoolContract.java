@@ -0,0 +1,177 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage.spool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import org.apache.james.core.MailAddress;
+import org.apache.james.core.MaybeSender;
+import org.apache.james.utils.UpdatableTickingClock;
+import org.junit.jupiter.api.Test;
+
+import com.linagora.calendar.storage.OpenPaaSId;
+import com.linagora.calendar.storage.spool.OutboundMailSpool.SpooledMail;
+
+public interface OutboundMailSpoolContract {
+    Duration LEASE = Duration.ofMinutes(5);
+    byte[] MESSAGE = "Subject: test\r\n\r\nHello".getBytes(StandardCharsets.UTF_8);
+
+    OutboundMailSpool testee();
+
+    UpdatableTickingClock clock();
+
+    static MailAddress address(String value) {
+        try {
+            return new MailAddress(value);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    default void leaseShouldReturnEnqueuedMail() {
+        MaybeSender sender = MaybeSender.of(address("sender@domain.tld"));
+        OpenPaaSId id = testee().enqueue(sender, List.of(address("bob@domain.tld"), address("alice@domain.tld")), MESSAGE).block();
+
+        List<SpooledMail> leased = testee().lease(10, LEASE).collectList().block();
+
+        assertThat(leased).hasSize(1);
+        SpooledMail mail = leased.getFirst();
+        assertThat(mail.id()).isEqualTo(id);
+        assertThat(mail.sender()).isEqualTo(sender);
+        assertThat(mail.recipients()).containsExactly(address("bob@domain.tld"), address("alice@domain.tld"));
+        assertThat(mail.message()).isEqualTo(MESSAGE);
+        assertThat(mail.attempts()).isZero();
+    }
+
+    @Test
+    default void leaseShouldPreserveNullSender() {
+        testee().enqueue(MaybeSender.nullSender(), List.of(address("bob@domain.tld")), MESSAGE).block();
+
+        assertThat(testee().lease(10, LEASE).blockFirst().sender().isNullSender()).isTrue();
+    }
+
+    @Test
+    default void leaseShouldReturnNothingWhenEmpty() {
+        assertThat(testee().lease(10, LEASE).collectList().block()).isEmpty();
+    }
+
+    @Test
+    default void leaseShouldRespectTheLimit() {
+        for (int i = 0; i < 5; i++) {
+            testee().enqueue(MaybeSender.nullSender(), List.of(address("bob@domain.tld")), MESSAGE).block();
+        }
+
+        assertThat(testee().lease(3, LEASE).collectList().block()).hasSize(3);
+        assertThat(testee().lease(3, LEASE).collectList().block()).hasSize(2);
+    }
+
+    @Test
+    default void leasedMailShouldNotBeLeasedAgainBeforeTheLeaseExpires() {
+        testee().enqueue(MaybeSender.nullSender(), List.of(address("bob@domain.tld")), MESSAGE).block();
+        testee().lease(10, LEASE).collectList().block();
+
+        clock().setInstant(clock().instant().plus(Duration.ofMinutes(1)));
+
+        assertThat(testee().lease(10, LEASE).collectList().block()).isEmpty();
+    }
+
+    @Test
+    default void leasedMailShouldBeLeasedAgainOnceTheLeaseExpires() {
+        OpenPaaSId id = testee().enqueue(MaybeSender.nullSender(), List.of(address("bob@domain.tld")), MESSAGE).block();
+        testee().lease(10, LEASE).collectList().block();
+
+        clock().setInstant(clock().instant().plus(LEASE).plusSeconds(1));
+
+        assertThat(testee().lease(10, LEASE).collectList().block())
+            .extracting(SpooledMail::id)
+            .containsExactly(id);
+    }
+
+    @Test
+    default void acknowledgedMailShouldBeRemoved() {
+        OpenPaaSId id = testee().enqueue(MaybeSender.nullSender(), List.of(address("bob@domain.tld")), MESSAGE).block();
+        testee().lease(10, LEASE).collectList().block();
+
+        testee().acknowledge(id).block();
+        clock().setInstant(clock().instant().plus(LEASE).plusSeconds(1));
+
+        assertThat(testee().lease(10, LEASE).collectList().block()).isEmpty();
+        assertThat(testee().depth().block()).isZero();
+    }
+
+    @Test
+    default void acknowledgeShouldBeIdempotent() {
+        OpenPaaSId id = testee().enqueue(MaybeSender.nullSender(), List.of(address("bob@domain.tld")), MESSAGE).block();
+
+        testee().acknowledge(id).block();
+        testee().acknowledge(id).block();
+
+        assertThat(testee().depth().block()).isZero();
+    }
+
+    @Test
+    default void retryLaterShouldDelayTheNextLease() {
+        OpenPaaSId id = testee().enqueue(MaybeSender.nullSender(), List.of(address("bob@domain.tld")), MESSAGE).block();
+        testee().lease(10, LEASE).collectList().block();
+
+        testee().retryLater(id, clock().instant().plusSeconds(30)).block();
+
+        assertThat(testee().lease(10, LEASE).collectList().block()).isEmpty();
+        clock().setInstant(clock().instant().plusSeconds(31));
+        assertThat(testee().lease(10, LEASE).collectList().block())
+            .extracting(SpooledMail::id)
+            .containsExactly(id);
+    }
+
+    @Test
+    default void retryLaterShouldCountAttempts() {
+        OpenPaaSId id = testee().enqueue(MaybeSender.nullSender(), List.of(address("bob@domain.tld")), MESSAGE).block();
+
+        testee().retryLater(id, clock().instant()).block();
+        testee().retryLater(id, clock().instant()).block();
+
+        assertThat(testee().lease(10, LEASE).blockFirst().attempts()).isEqualTo(2);
+    }
+
+    @Test
+    default void leaseShouldReturnTheEarliestDueMailsFirst() {
+        OpenPaaSId first = testee().enqueue(MaybeSender.nullSender(), List.of(address("bob@domain.tld")), MESSAGE).block();
+        OpenPaaSId second = testee().enqueue(MaybeSender.nullSender(), List.of(address("bob@domain.tld")), MESSAGE).block();
+        testee().retryLater(first, clock().instant().plusSeconds(10)).block();
+        clock().setInstant(clock().instant().plusSeconds(20));
+
+        assertThat(testee().lease(1, LEASE).collectList().block())
+            .extracting(SpooledMail::id)
+            .containsExactly(second);
+    }
+
+    @Test
+    default void depthShouldCountLeasedAndPendingMails() {
+        testee().enqueue(MaybeSender.nullSender(), List.of(address("bob@domain.tld")), MESSAGE).block();
+        testee().enqueue(MaybeSender.nullSender(), List.of(address("bob@domain.tld")), MESSAGE).block();
+        testee().lease(1, LEASE).collectList().block();
+
+        assertThat(testee().depth().block()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,88 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.storage.mongodb;
+
+import java.util.Date;
+import java.util.List;
+
+import jakarta.inject.Inject;
+
+import org.bson.Document;
+
+import com.linagora.calendar.storage.audit.AuditTrailEntry;
+import com.linagora.calendar.storage.audit.AuditTrailSink;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Writes the audit trail to a capped collection: the oldest entries are dropped once the collection reaches its
+ * size, without any cleanup job.
+ */
+public class MongoDBAuditTrailSink implements AuditTrailSink {
+    public static final String NAME = "mongodb";
+    public static final String COLLECTION = "audit_trail";
+    public static final long COLLECTION_SIZE_IN_BYTES = 512L * 1024 * 1024;
+
+    static final String FIELD_DATE = "date";
+    static final String FIELD_ACTION = "action";
+    static final String FIELD_USERNAME = "username";
+    static final String FIELD_PARAMETERS = "parameters";
+    static final String FIELD_MESSAGE = "message";
+
+    // Entries are independent: a failing one must not prevent the following ones from being written
+    private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
+
+    private final MongoCollection<Document> collection;
+
+    @Inject
+    public MongoDBAuditTrailSink(MongoDatabase database) {
+        this.collection = database.getCollection(COLLECTION);
+    }
+
+    public static Mono<Void> createCollection(MongoDatabase database) {
+        return Mono.from(database.createCollection(COLLECTION, new CreateCollectionOptions()
+                .capped(true)
+                .sizeInBytes(COLLECTION_SIZE_IN_BYTES)))
+            .then();
+    }
+
+    @Override
+    public Mono<Void> write(List<AuditTrailEntry> entries) {
+        if (entries.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.from(collection.insertMany(entries.stream().map(this::toDocument).toList(), UNORDERED))
+            .then();
+    }
+
+    private Document toDocument(AuditTrailEntry entry) {
+        Document document = new Document()
+            .append(FIELD_DATE, Date.from(entry.date()))
+            .append(FIELD_ACTION, entry.action())
+            .append(FIELD_PARAMETERS, new Document(entry.parameters()))
+            .append(FIELD_MESSAGE, entry.message());
+        entry.username().ifPresent(username -> document.append(FIELD_USERNAME, username));
+        return document;
+    }
+}
@@ -40,6 +40,9 @@ public class MongoDBCollectionFactory {
     public static final String BOOKING_LINKS = MongoDBBookingLinkDAO.COLLECTION;
     public static final String DOMAIN_SETTINGS = MongoDBDomainSettingsDAO.COLLECTION;
     public static final String TEAM_CALENDAR = MongoDBTeamCalendarRepository.COLLECTION;
+    public static final String AUDIT_TRAIL = MongoDBAuditTrailSink.COLLECTION;
+    public static final String OUTBOUND_MAIL_SPOOL = MongoDBOutboundMailSpool.COLLECTION;
+    public static final String NOTIFICATION_DIGESTS = MongoDBNotificationDigestStore.COLLECTION;
 
     public static void initialize(MongoDatabase database) {
         createUsersCollection(database);
@@ -50,6 +53,9 @@ public class MongoDBCollectionFactory {
         createBookingLinksCollection(database);
         createDomainSettingsCollection(database);
         createTeamCalendarCollection(database);
+        createAuditTrailCollection(database);
+        createOutboundMailSpoolCollection(database);
+        createNotificationDigestsCollection(database);
     }
 
     private static void createUsersCollection(MongoDatabase database) {
@@ -156,6 +162,26 @@ public class MongoDBCollectionFactory {
         MongoDBTeamCalendarRepository.declareIndex(database.getCollection(TEAM_CALENDAR)).block();
     }
 
+    private static void createAuditTrailCollection(MongoDatabase database) {
+        if (!collectionExists(database, AUDIT_TRAIL)) {
+            MongoDBAuditTrailSink.createCollection(database).block();
+        }
+    }
+
+    private static void createOutboundMailSpoolCollection(MongoDatabase database) {
+        if (!collectionExists(database, OUTBOUND_MAIL_SPOOL)) {
+            Mono.from(database.createCollection(OUTBOUND_MAIL_SPOOL)).block();
+        }
+        MongoDBOutboundMailSpool.declareIndex(database.getCollection(OUTBOUND_MAIL_SPOOL)).block();
+    }
+
+    private static void createNotificationDigestsCollection(MongoDatabase database) {
+        if (!collectionExists(database, NOTIFICATION_DIGESTS)) {
+            Mono.from(database.createCollection(NOTIFICATION_DIGESTS)).block();
+        }
+        MongoDBNotificationDigestStore.declareIndex(database.getCollection(NOTIFICATION_DIGESTS)).block();
+    }
+
     private static boolean collectionExists(MongoDatabase database, String collectionName) {
         return Flux.from(database.listCollectionNames())
             .filter(collectionName::equals)
@@ -0,0 +1,168 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage.mongodb;
+
+import static com.linagora.calendar.storage.mongodb.MongoConstants.MONGO_DUPLICATE_KEY_CODE;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import jakarta.inject.Inject;
+
+import org.apache.james.core.MailAddress;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+
+import com.github.fge.lambdas.Throwing;
+import com.linagora.calendar.storage.OpenPaaSId;
+import com.linagora.calendar.storage.digest.NotificationDigestStore;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+public class MongoDBNotificationDigestStore implements NotificationDigestStore {
+    public static final String COLLECTION = "twake_calendar_notification_digests";
+
+    private static final String FIELD_ID = "_id";
+    private static final String FIELD_RECIPIENT = "recipient";
+    private static final String FIELD_EVENT_UID = "eventUid";
+    private static final String FIELD_RECURRENCE_ID = "recurrenceId";
+    private static final String FIELD_OPEN = "open";
+    private static final String FIELD_NOTIFICATIONS = "notifications";
+    private static final String FIELD_DUE_AT = "dueAt";
+
+    private final MongoCollection<Document> collection;
+    private final Clock clock;
+
+    @Inject
+    public MongoDBNotificationDigestStore(MongoDatabase database, Clock clock) {
+        this.collection = database.getCollection(COLLECTION);
+        this.clock = clock;
+    }
+
+    public static Mono<Void> declareIndex(MongoCollection<Document> collection) {
+        // At most one open digest per recipient and event occurrence
+        Mono<String> openDigestUniqueness = Mono.from(collection.createIndex(
+            Indexes.ascending(FIELD_RECIPIENT, FIELD_EVENT_UID, FIELD_RECURRENCE_ID),
+            new IndexOptions()
+                .unique(true)
+                .partialFilterExpression(Filters.eq(FIELD_OPEN, true))));
+        Mono<String> dueAt = Mono.from(collection.createIndex(Indexes.ascending(FIELD_DUE_AT)));
+        return openDigestUniqueness.then(dueAt).then();
+    }
+
+    @Override
+    public Mono<Void> append(DigestKey key, byte[] notification, Duration window) {
+        return Mono.defer(() -> Mono.from(collection.updateOne(
+                Filters.and(
+                    Filters.eq(FIELD_RECIPIENT, key.recipient().asString()),
+                    Filters.eq(FIELD_EVENT_UID, key.eventUid()),
+                    Filters.eq(FIELD_RECURRENCE_ID, key.recurrenceId().orElse(null)),
+                    Filters.eq(FIELD_OPEN, true)),
+                Updates.combine(
+                    Updates.push(FIELD_NOTIFICATIONS, new Binary(notification)),
+                    Updates.setOnInsert(FIELD_DUE_AT, Date.from(clock.instant().plus(window)))),
+                new UpdateOptions().upsert(true))))
+            // Two concurrent upserts may both try to open the digest: the loser appends to the winner's one
+            .retryWhen(Retry.max(1).filter(this::isDuplicateKey))
+            .then();
+    }
+
+    private boolean isDuplicateKey(Throwable error) {
+        return error instanceof MongoWriteException writeException
+            && writeException.getError().getCode() == MONGO_DUPLICATE_KEY_CODE;
+    }
+
+    @Override
+    public Flux<PendingDigest> lease(int limit, Duration leaseDuration) {
+        return Flux.range(0, limit)
+            .concatMap(any -> leaseOne(leaseDuration)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty()))
+            .takeWhile(Optional::isPresent)
+            .map(Optional::get);
+    }
+
+    private Mono<PendingDigest> leaseOne(Duration leaseDuration) {
+        return Mono.defer(() -> {
+            Instant now = clock.instant();
+            return Mono.from(collection.findOneAndUpdate(
+                    Filters.lte(FIELD_DUE_AT, Date.from(now)),
+                    Updates.combine(
+                        Updates.set(FIELD_DUE_AT, Date.from(now.plus(leaseDuration))),
+                        Updates.set(FIELD_OPEN, false)),
+                    new FindOneAndUpdateOptions()
+                        .sort(Sorts.ascending(FIELD_DUE_AT))
+                        .returnDocument(ReturnDocument.AFTER)))
+                .map(this::toPendingDigest);
+        });
+    }
+
+    @Override
+    public Mono<Void> acknowledge(OpenPaaSId id) {
+        return Mono.from(collection.deleteOne(Filters.eq(FIELD_ID, new ObjectId(id.value()))))
+            .then();
+    }
+
+    @Override
+    public Mono<Void> discard(DigestKey key) {
+        Bson openDigestsOfTheEvent = Filters.and(
+            Filters.eq(FIELD_RECIPIENT, key.recipient().asString()),
+            Filters.eq(FIELD_EVENT_UID, key.eventUid()),
+            Filters.eq(FIELD_OPEN, true));
+        // Discarding an event as a whole also discards its occurrences
+        Bson filter = key.recurrenceId()
+            .map(recurrenceId -> Filters.and(openDigestsOfTheEvent, Filters.eq(FIELD_RECURRENCE_ID, recurrenceId)))
+            .orElse(openDigestsOfTheEvent);
+        return Mono.from(collection.deleteMany(filter))
+            .then();
+    }
+
+    @Override
+    public Mono<Long> depth() {
+        return Mono.from(collection.countDocuments());
+    }
+
+    private PendingDigest toPendingDigest(Document document) {
+        DigestKey key = new DigestKey(Throwing.supplier(() -> new MailAddress(document.getString(FIELD_RECIPIENT))).get(),
+            document.getString(FIELD_EVENT_UID), Optional.ofNullable(document.getString(FIELD_RECURRENCE_ID)));
+        List<byte[]> notifications = document.getList(FIELD_NOTIFICATIONS, Binary.class).stream()
+            .map(Binary::getData)
+            .toList();
+        return new PendingDigest(new OpenPaaSId(document.getObjectId(FIELD_ID).toHexString()), key, notifications);
+    }
+}
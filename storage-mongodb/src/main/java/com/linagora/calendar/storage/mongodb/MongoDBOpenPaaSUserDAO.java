@@ -20,8 +20,12 @@ package com.linagora.calendar.storage.mongodb;
 
 import static com.linagora.calendar.storage.mongodb.MongoConstants.MONGO_DUPLICATE_KEY_CODE;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 import jakarta.inject.Inject;
@@ -34,6 +38,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
 import com.linagora.calendar.storage.MigrationResult;
 import com.linagora.calendar.storage.OpenPaaSId;
 import com.linagora.calendar.storage.OpenPaaSUser;
@@ -84,6 +89,24 @@ public class MongoDBOpenPaaSUserDAO implements OpenPaaSUserDAO {
                 document.getString("firstname"), document.getString("lastname")));
     }
 
+    @Override
+    public Flux<OpenPaaSUser> retrieveAll(Collection<Username> usernames) {
+        Map<String, Username> requested = usernames.stream()
+            .collect(ImmutableMap.toImmutableMap(Username::asString, Function.identity(), (first, second) -> first));
+        if (requested.isEmpty()) {
+            return Flux.empty();
+        }
+        return Flux.from(database.getCollection(COLLECTION)
+                .find(Filters.in("accounts.emails", requested.keySet())))
+            .flatMapIterable(document -> document.getList("accounts", Document.class).stream()
+                .flatMap(account -> account.getList("emails", String.class, List.of()).stream())
+                .distinct()
+                .flatMap(email -> Optional.ofNullable(requested.get(email)).stream())
+                .map(username -> new OpenPaaSUser(username, new OpenPaaSId(document.getObjectId("_id").toHexString()),
+                    document.getString("firstname"), document.getString("lastname")))
+                .toList());
+    }
+
     @Override
     public Mono<OpenPaaSUser> add(Username username) {
         return add(username, "", "");
@@ -0,0 +1,145 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage.mongodb;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import jakarta.inject.Inject;
+
+import org.apache.james.core.MailAddress;
+import org.apache.james.core.MaybeSender;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+
+import com.github.fge.lambdas.Throwing;
+import com.linagora.calendar.storage.OpenPaaSId;
+import com.linagora.calendar.storage.spool.OutboundMailSpool;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class MongoDBOutboundMailSpool implements OutboundMailSpool {
+    public static final String COLLECTION = "twake_calendar_outbound_mail_spool";
+
+    private static final String FIELD_ID = "_id";
+    private static final String FIELD_SENDER = "sender";
+    private static final String FIELD_RECIPIENTS = "recipients";
+    private static final String FIELD_MESSAGE = "message";
+    private static final String FIELD_ATTEMPTS = "attempts";
+    private static final String FIELD_NEXT_ATTEMPT = "nextAttempt";
+    private static final String FIELD_CREATED = "created";
+
+    private final MongoCollection<Document> collection;
+    private final Clock clock;
+
+    @Inject
+    public MongoDBOutboundMailSpool(MongoDatabase database, Clock clock) {
+        this.collection = database.getCollection(COLLECTION);
+        this.clock = clock;
+    }
+
+    public static Mono<Void> declareIndex(MongoCollection<Document> collection) {
+        return Mono.from(collection.createIndex(Indexes.ascending(FIELD_NEXT_ATTEMPT)))
+            .then();
+    }
+
+    @Override
+    public Mono<OpenPaaSId> enqueue(MaybeSender sender, Collection<MailAddress> recipients, byte[] message) {
+        Date now = Date.from(clock.instant());
+        Document document = new Document()
+            .append(FIELD_SENDER, sender.asString(""))
+            .append(FIELD_RECIPIENTS, recipients.stream().map(MailAddress::asString).toList())
+            .append(FIELD_MESSAGE, new Binary(message))
+            .append(FIELD_ATTEMPTS, 0)
+            .append(FIELD_NEXT_ATTEMPT, now)
+            .append(FIELD_CREATED, now);
+
+        return Mono.from(collection.insertOne(document))
+            .map(success -> new OpenPaaSId(document.getObjectId(FIELD_ID).toHexString()));
+    }
+
+    @Override
+    public Flux<SpooledMail> lease(int limit, Duration leaseDuration) {
+        return Flux.range(0, limit)
+            .concatMap(any -> leaseOne(leaseDuration)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty()))
+            .takeWhile(Optional::isPresent)
+            .map(Optional::get);
+    }
+
+    private Mono<SpooledMail> leaseOne(Duration leaseDuration) {
+        return Mono.defer(() -> {
+            Instant now = clock.instant();
+            return Mono.from(collection.findOneAndUpdate(
+                    Filters.lte(FIELD_NEXT_ATTEMPT, Date.from(now)),
+                    Updates.set(FIELD_NEXT_ATTEMPT, Date.from(now.plus(leaseDuration))),
+                    new FindOneAndUpdateOptions()
+                        .sort(Sorts.ascending(FIELD_NEXT_ATTEMPT))
+                        .returnDocument(ReturnDocument.AFTER)))
+                .map(this::toSpooledMail);
+        });
+    }
+
+    @Override
+    public Mono<Void> acknowledge(OpenPaaSId id) {
+        return Mono.from(collection.deleteOne(Filters.eq(FIELD_ID, new ObjectId(id.value()))))
+            .then();
+    }
+
+    @Override
+    public Mono<Void> retryLater(OpenPaaSId id, Instant nextAttempt) {
+        return Mono.from(collection.updateOne(Filters.eq(FIELD_ID, new ObjectId(id.value())),
+                Updates.combine(
+                    Updates.set(FIELD_NEXT_ATTEMPT, Date.from(nextAttempt)),
+                    Updates.inc(FIELD_ATTEMPTS, 1))))
+            .then();
+    }
+
+    @Override
+    public Mono<Long> depth() {
+        return Mono.from(collection.countDocuments());
+    }
+
+    private SpooledMail toSpooledMail(Document document) {
+        List<MailAddress> recipients = document.getList(FIELD_RECIPIENTS, String.class).stream()
+            .map(Throwing.function(MailAddress::new))
+            .toList();
+        return new SpooledMail(new OpenPaaSId(document.getObjectId(FIELD_ID).toHexString()),
+            MaybeSender.getMailSender(document.getString(FIELD_SENDER)),
+            recipients,
+            document.get(FIELD_MESSAGE, Binary.class).getData(),
+            document.getInteger(FIELD_ATTEMPTS, 0));
+    }
+}
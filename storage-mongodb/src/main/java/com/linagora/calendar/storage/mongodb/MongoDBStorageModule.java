@@ -34,6 +34,7 @@ import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Scopes;
 import com.google.inject.Singleton;
+import com.google.inject.multibindings.MapBinder;
 import com.google.inject.multibindings.Multibinder;
 import com.google.inject.multibindings.ProvidesIntoSet;
 import com.linagora.calendar.storage.AlarmEventDAO;
@@ -47,10 +48,13 @@ import com.linagora.calendar.storage.OpenPaaSUserDAO;
 import com.linagora.calendar.storage.ResourceDAO;
 import com.linagora.calendar.storage.TeamCalendarRepository;
 import com.linagora.calendar.storage.UploadedFileDAO;
+import com.linagora.calendar.storage.audit.AuditTrailSink;
 import com.linagora.calendar.storage.booking.BookingLinkDAO;
 import com.linagora.calendar.storage.booking.EventBusBookingLinkDAO;
 import com.linagora.calendar.storage.configuration.UserConfigurationDAO;
+import com.linagora.calendar.storage.digest.NotificationDigestStore;
 import com.linagora.calendar.storage.secretlink.SecretLinkStore;
+import com.linagora.calendar.storage.spool.OutboundMailSpool;
 import com.linagora.tmail.james.jmap.ticket.TicketStore;
 import com.mongodb.reactivestreams.client.MongoDatabase;
 
@@ -94,6 +98,17 @@ public class MongoDBStorageModule extends AbstractModule {
         bind(MongoDBDomainSettingsDAO.class).in(Scopes.SINGLETON);
         bind(DomainSettingsDAO.class).to(MongoDBDomainSettingsDAO.class);
 
+        bind(MongoDBAuditTrailSink.class).in(Scopes.SINGLETON);
+        MapBinder.newMapBinder(binder(), String.class, AuditTrailSink.class)
+            .addBinding(MongoDBAuditTrailSink.NAME)
+            .to(MongoDBAuditTrailSink.class);
+
+        bind(MongoDBOutboundMailSpool.class).in(Scopes.SINGLETON);
+        bind(OutboundMailSpool.class).to(MongoDBOutboundMailSpool.class);
+
+        bind(MongoDBNotificationDigestStore.class).in(Scopes.SINGLETON);
+        bind(NotificationDigestStore.class).to(MongoDBNotificationDigestStore.class);
+
         Multibinder.newSetBinder(binder(), HealthCheck.class)
             .addBinding()
             .to(MongoDBHealthCheck.class);
@@ -0,0 +1,103 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.storage.mongodb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.linagora.calendar.storage.audit.AuditTrailEntry;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class MongoDBAuditTrailSinkTest {
+    private static final Instant DATE = Instant.parse("2026-01-01T10:15:30Z");
+
+    @RegisterExtension
+    static DockerMongoDBExtension mongo = new DockerMongoDBExtension(List.of(MongoDBAuditTrailSink.COLLECTION));
+
+    private MongoDBAuditTrailSink testee;
+
+    @BeforeEach
+    void setUp() {
+        testee = new MongoDBAuditTrailSink(mongo.getDb());
+    }
+
+    @Test
+    void collectionShouldBeCapped() {
+        Document stats = Mono.from(mongo.getDb().runCommand(new Document("collStats", MongoDBAuditTrailSink.COLLECTION))).block();
+
+        assertThat(stats.getBoolean("capped")).isTrue();
+    }
+
+    @Test
+    void writeShouldStoreAllEntriesOfTheBatch() {
+        testee.write(List.of(
+            new AuditTrailEntry(DATE, "calendar:event:created", Optional.of("bob"), Map.of("path", "/calendars/bob/cal/1.ics"), "Calendar event created"),
+            new AuditTrailEntry(DATE, "calendar:event:deleted", Optional.of("alice"), Map.of(), "Calendar event deleted"))).block();
+
+        assertThat(documents())
+            .extracting(document -> document.getString(MongoDBAuditTrailSink.FIELD_ACTION))
+            .containsExactly("calendar:event:created", "calendar:event:deleted");
+    }
+
+    @Test
+    void writeShouldStoreEntryFields() {
+        testee.write(List.of(
+            new AuditTrailEntry(DATE, "calendar:event:created", Optional.of("bob"), Map.of("path", "/calendars/bob/cal/1.ics"), "Calendar event created"))).block();
+
+        Document document = documents().getFirst();
+        assertThat(document.getDate(MongoDBAuditTrailSink.FIELD_DATE)).isEqualTo(Date.from(DATE));
+        assertThat(document.getString(MongoDBAuditTrailSink.FIELD_USERNAME)).isEqualTo("bob");
+        assertThat(document.get(MongoDBAuditTrailSink.FIELD_PARAMETERS, Document.class))
+            .containsEntry("path", "/calendars/bob/cal/1.ics");
+        assertThat(document.getString(MongoDBAuditTrailSink.FIELD_MESSAGE)).isEqualTo("Calendar event created");
+    }
+
+    @Test
+    void writeShouldOmitAbsentUsername() {
+        testee.write(List.of(new AuditTrailEntry(DATE, "calendar:event:created", Optional.empty(), Map.of(), "Calendar event created"))).block();
+
+        assertThat(documents().getFirst().containsKey(MongoDBAuditTrailSink.FIELD_USERNAME)).isFalse();
+    }
+
+    @Test
+    void writeShouldAcceptEmptyBatches() {
+        testee.write(List.of()).block();
+
+        assertThat(documents()).isEmpty();
+    }
+
+    private List<Document> documents() {
+        return Flux.from(mongo.getDb().getCollection(MongoDBAuditTrailSink.COLLECTION).find())
+            .collectList()
+            .block();
+    }
+}
@@ -0,0 +1,54 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+package com.linagora.calendar.storage.mongodb;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.apache.james.utils.UpdatableTickingClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.linagora.calendar.storage.spool.OutboundMailSpool;
+import com.linagora.calendar.storage.spool.OutboundMailSpoolContract;
+
+public class MongoDBOutboundMailSpoolTest implements OutboundMailSpoolContract {
+    @RegisterExtension
+    static DockerMongoDBExtension mongo = new DockerMongoDBExtension(List.of(MongoDBOutboundMailSpool.COLLECTION));
+
+    private UpdatableTickingClock clock;
+    private MongoDBOutboundMailSpool testee;
+
+    @BeforeEach
+    void setUp() {
+        clock = new UpdatableTickingClock(Instant.parse("2026-01-01T10:00:00Z"));
+        testee = new MongoDBOutboundMailSpool(mongo.getDb(), clock);
+        MongoDBOutboundMailSpool.declareIndex(mongo.getDb().getCollection(MongoDBOutboundMailSpool.COLLECTION)).block();
+    }
+
+    @Override
+    public OutboundMailSpool testee() {
+        return testee;
+    }
+
+    @Override
+    public UpdatableTickingClock clock() {
+        return clock;
+    }
+}
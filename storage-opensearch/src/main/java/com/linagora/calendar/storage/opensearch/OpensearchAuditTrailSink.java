@@ -0,0 +1,144 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.storage.opensearch;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+
+import jakarta.inject.Inject;
+
+import org.apache.james.backends.opensearch.IndexCreationFactory;
+import org.apache.james.backends.opensearch.IndexName;
+import org.apache.james.backends.opensearch.OpenSearchConfiguration;
+import org.apache.james.backends.opensearch.ReactorOpenSearchClient;
+import org.apache.james.lifecycle.api.Startable;
+import org.opensearch.client.opensearch._types.ErrorCause;
+import org.opensearch.client.opensearch._types.mapping.DateProperty;
+import org.opensearch.client.opensearch._types.mapping.DynamicTemplate;
+import org.opensearch.client.opensearch._types.mapping.KeywordProperty;
+import org.opensearch.client.opensearch._types.mapping.ObjectProperty;
+import org.opensearch.client.opensearch._types.mapping.Property;
+import org.opensearch.client.opensearch._types.mapping.TextProperty;
+import org.opensearch.client.opensearch._types.mapping.TypeMapping;
+import org.opensearch.client.opensearch.core.BulkRequest;
+import org.opensearch.client.opensearch.core.bulk.BulkResponseItem;
+
+import com.google.common.collect.ImmutableMap;
+import com.linagora.calendar.storage.audit.AuditTrailEntry;
+import com.linagora.calendar.storage.audit.AuditTrailSink;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Writes the audit trail to an OpenSearch index, one {@code _bulk} request per batch. The index is created with its
+ * mapping at startup by the {@link IndexCreator}.
+ */
+public class OpensearchAuditTrailSink implements AuditTrailSink {
+    public static final String NAME = "opensearch";
+    public static final String INDEX_NAME = "calendar_audit_trail";
+
+    static final String FIELD_DATE = "date";
+    static final String FIELD_ACTION = "action";
+    static final String FIELD_USERNAME = "username";
+    static final String FIELD_PARAMETERS = "parameters";
+    static final String FIELD_MESSAGE = "message";
+
+    public static class IndexCreator implements Startable {
+        private final OpenSearchConfiguration openSearchConfiguration;
+        private final ReactorOpenSearchClient client;
+
+        @Inject
+        public IndexCreator(OpenSearchConfiguration openSearchConfiguration, ReactorOpenSearchClient client) {
+            this.openSearchConfiguration = openSearchConfiguration;
+            this.client = client;
+        }
+
+        public void createIndexMapping() {
+            new IndexCreationFactory(openSearchConfiguration)
+                .useIndex(new IndexName(INDEX_NAME))
+                .createIndexAndAliases(client, Optional.empty(), Optional.of(createTypeMapping()));
+        }
+    }
+
+    public static TypeMapping createTypeMapping() {
+        Property keywordProperty = new Property(new KeywordProperty.Builder().build());
+
+        return new TypeMapping.Builder()
+            .properties(FIELD_DATE, new Property(new DateProperty.Builder().build()))
+            .properties(FIELD_ACTION, keywordProperty)
+            .properties(FIELD_USERNAME, keywordProperty)
+            .properties(FIELD_PARAMETERS, new Property(new ObjectProperty.Builder().build()))
+            .properties(FIELD_MESSAGE, new Property(new TextProperty.Builder().build()))
+            // Parameter names depend on the action: their values are all mapped as keywords
+            .dynamicTemplates(Map.of(FIELD_PARAMETERS, new DynamicTemplate.Builder()
+                .pathMatch(FIELD_PARAMETERS + ".*")
+                .matchMappingType("string")
+                .mapping(keywordProperty)
+                .build()))
+            .build();
+    }
+
+    private final ReactorOpenSearchClient client;
+
+    @Inject
+    public OpensearchAuditTrailSink(ReactorOpenSearchClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public Mono<Void> write(List<AuditTrailEntry> entries) {
+        if (entries.isEmpty()) {
+            return Mono.empty();
+        }
+        BulkRequest.Builder request = new BulkRequest.Builder();
+        entries.forEach(entry -> request.operations(operation -> operation
+            .index(index -> index
+                .index(INDEX_NAME)
+                .document(toDocument(entry)))));
+
+        return Mono.fromCallable(() -> client.bulk(request.build()))
+            .flatMap(Function.identity())
+            .flatMap(response -> {
+                if (response.errors()) {
+                    List<String> errors = response.items().stream()
+                        .map(BulkResponseItem::error)
+                        .filter(Objects::nonNull)
+                        .map(ErrorCause::reason)
+                        .distinct()
+                        .toList();
+                    return Mono.error(new IllegalStateException("Failed to write audit trail entries: " + errors));
+                }
+                return Mono.empty();
+            });
+    }
+
+    private Map<String, Object> toDocument(AuditTrailEntry entry) {
+        ImmutableMap.Builder<String, Object> document = ImmutableMap.<String, Object>builder()
+            .put(FIELD_DATE, entry.date().toString())
+            .put(FIELD_ACTION, entry.action())
+            .put(FIELD_PARAMETERS, entry.parameters())
+            .put(FIELD_MESSAGE, entry.message());
+        entry.username().ifPresent(username -> document.put(FIELD_USERNAME, username));
+        return document.build();
+    }
+}
@@ -0,0 +1,131 @@
+/********************************************************************
+ *  As a subpart of Twake Mail, this file is edited by Linagora.    *
+ *                                                                  *
+ *  https://twake-mail.com/                                         *
+ *  https://linagora.com                                            *
+ *                                                                  *
+ *  This file is subject to The Affero Gnu Public License           *
+ *  version 3.                                                      *
+ *                                                                  *
+ *  https://www.gnu.org/licenses/agpl-3.0.en.html                   *
+ *                                                                  *
+ *  This program is distributed in the hope that it will be         *
+ *  useful, but WITHOUT ANY WARRANTY; without even the implied      *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR         *
+ *  PURPOSE. See the GNU Affero General Public License for          *
+ *  more details.                                                   *
+ ********************************************************************/
+
+
+package com.linagora.calendar.storage.opensearch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.apache.james.backends.opensearch.DockerOpenSearchExtension;
+import org.apache.james.backends.opensearch.OpenSearchConfiguration;
+import org.apache.james.backends.opensearch.ReactorOpenSearchClient;
+import org.awaitility.Awaitility;
+import org.awaitility.core.ConditionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.opensearch.client.Request;
+import org.opensearch.client.Response;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.search.Hit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.linagora.calendar.storage.audit.AuditTrailEntry;
+
+import reactor.core.publisher.Mono;
+
+class OpensearchAuditTrailSinkTest {
+    private static final Instant DATE = Instant.parse("2026-01-01T10:15:30Z");
+    private static final ConditionFactory CALMLY_AWAIT = Awaitility.with()
+        .pollInterval(Duration.ofMillis(200))
+        .await()
+        .atMost(Duration.ofSeconds(10));
+
+    @RegisterExtension
+    public final DockerOpenSearchExtension openSearch = new DockerOpenSearchExtension();
+
+    private ReactorOpenSearchClient client;
+    private OpensearchAuditTrailSink testee;
+
+    @BeforeEach
+    void setUp() {
+        client = openSearch.getDockerOpenSearch().clientProvider().get();
+        new OpensearchAuditTrailSink.IndexCreator(OpenSearchConfiguration.DEFAULT_CONFIGURATION, client).createIndexMapping();
+        testee = new OpensearchAuditTrailSink(client);
+    }
+
+    @Test
+    void writeShouldIndexAllEntriesOfTheBatch() {
+        testee.write(List.of(
+            new AuditTrailEntry(DATE, "calendar:event:created", Optional.of("bob"), Map.of("path", "/calendars/bob/cal/1.ics"), "Calendar event created"),
+            new AuditTrailEntry(DATE, "calendar:event:deleted", Optional.of("alice"), Map.of(), "Calendar event deleted"))).block();
+
+        CALMLY_AWAIT.untilAsserted(() -> assertThat(documents())
+            .extracting(document -> document.get(OpensearchAuditTrailSink.FIELD_ACTION).asText())
+            .containsExactlyInAnyOrder("calendar:event:created", "calendar:event:deleted"));
+    }
+
+    @Test
+    void writeShouldIndexEntryFields() {
+        testee.write(List.of(
+            new AuditTrailEntry(DATE, "calendar:event:created", Optional.of("bob"), Map.of("path", "/calendars/bob/cal/1.ics"), "Calendar event created"))).block();
+
+        CALMLY_AWAIT.untilAsserted(() -> assertThat(documents()).hasSize(1));
+        ObjectNode document = documents().getFirst();
+        assertThat(document.get(OpensearchAuditTrailSink.FIELD_DATE).asText()).isEqualTo(DATE.toString());
+        assertThat(document.get(OpensearchAuditTrailSink.FIELD_USERNAME).asText()).isEqualTo("bob");
+        assertThat(document.get(OpensearchAuditTrailSink.FIELD_PARAMETERS).get("path").asText()).isEqualTo("/calendars/bob/cal/1.ics");
+        assertThat(document.get(OpensearchAuditTrailSink.FIELD_MESSAGE).asText()).isEqualTo("Calendar event created");
+    }
+
+    @Test
+    void indexShouldBeCreatedWithItsMapping() throws Exception {
+        testee.write(List.of(
+            new AuditTrailEntry(DATE, "calendar:event:created", Optional.of("bob"), Map.of("path", "/calendars/bob/cal/1.ics"), "Calendar event created"))).block();
+
+        Response response = client.getLowLevelClient().performRequest(new Request("GET", "/" + OpensearchAuditTrailSink.INDEX_NAME + "/_mapping"));
+        JsonNode properties = new ObjectMapper().readTree(response.getEntity().getContent())
+            .path(OpensearchAuditTrailSink.INDEX_NAME).path("mappings").path("properties");
+
+        assertThat(properties.path(OpensearchAuditTrailSink.FIELD_DATE).path("type").asText()).isEqualTo("date");
+        assertThat(properties.path(OpensearchAuditTrailSink.FIELD_ACTION).path("type").asText()).isEqualTo("keyword");
+        assertThat(properties.path(OpensearchAuditTrailSink.FIELD_USERNAME).path("type").asText()).isEqualTo("keyword");
+        assertThat(properties.path(OpensearchAuditTrailSink.FIELD_PARAMETERS).path("properties").path("path").path("type").asText()).isEqualTo("keyword");
+    }
+
+    @Test
+    void indexCreationShouldBeIdempotent() {
+        new OpensearchAuditTrailSink.IndexCreator(OpenSearchConfiguration.DEFAULT_CONFIGURATION, client).createIndexMapping();
+    }
+
+    @Test
+    void writeShouldAcceptEmptyBatches() {
+        testee.write(List.of()).block();
+    }
+
+    private List<ObjectNode> documents() {
+        SearchRequest request = new SearchRequest.Builder()
+            .index(OpensearchAuditTrailSink.INDEX_NAME)
+            .build();
+        return Mono.fromCallable(() -> client.search(request))
+            .flatMap(Function.identity())
+            .map(response -> response.hits().hits().stream()
+                .map(Hit::source)
+                .toList())
+            .block();
+    }
+}